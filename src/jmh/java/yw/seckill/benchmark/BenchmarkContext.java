@@ -0,0 +1,55 @@
+package yw.seckill.benchmark;
+
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.core.env.MapPropertySource;
+import yw.seckill.config.RedissonConfig;
+import yw.seckill.util.HotKeyDetector;
+import yw.seckill.util.RedisPoolMonitor;
+import yw.seckill.util.RedissonUtil;
+import yw.seckill.util.SeckillEventRecorder;
+import yw.seckill.util.StockBucketUtil;
+import yw.seckill.util.StockKeys;
+import yw.seckill.util.StockNearCache;
+import yw.seckill.service.StockService;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 基准测试上下文
+ * 只装配被测的Redis组件（不启动Web、MySQL、Kafka），连接本地Redis：
+ * -Dbench.redis.host=localhost -Dbench.redis.port=6379 -Dbench.redis.database=15
+ */
+public final class BenchmarkContext {
+
+    /**
+     * 基准测试使用的商品ID起点，避免覆盖业务数据
+     */
+    public static final long PRODUCT_ID_BASE = 900_000L;
+
+    private BenchmarkContext() {
+    }
+
+    public static AnnotationConfigApplicationContext start(Map<String, Object> properties, Class<?>... extraComponents) {
+        AnnotationConfigApplicationContext context = new AnnotationConfigApplicationContext();
+
+        Map<String, Object> props = new HashMap<>();
+        props.put("spring.data.redis.host", System.getProperty("bench.redis.host", "localhost"));
+        props.put("spring.data.redis.port", System.getProperty("bench.redis.port", "6379"));
+        props.put("spring.data.redis.database", System.getProperty("bench.redis.database", "15"));
+        props.putAll(properties);
+        context.getEnvironment().getPropertySources().addFirst(new MapPropertySource("benchmark", props));
+
+        context.register(RedissonConfig.class, RedisPoolMonitor.class, RedissonUtil.class, StockNearCache.class,
+                SeckillEventRecorder.class, HotKeyDetector.class, StockKeys.class, StockService.class, StockBucketUtil.class);
+        if (extraComponents.length > 0) {
+            context.register(extraComponents);
+        }
+        context.refresh();
+        return context;
+    }
+
+    public static AnnotationConfigApplicationContext start(Class<?>... extraComponents) {
+        return start(Map.of(), extraComponents);
+    }
+}
@@ -0,0 +1,50 @@
+package yw.seckill.benchmark;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * 基准测试入口
+ * - 无参数：运行全部基准，预占基准按 1/4/16/64/256 线程扫描；结果写入 target/jmh-*.json
+ * - 有参数：透传给JMH命令行（例如 -Dexec.args="StockDeduct -prof gc"）
+ *
+ * 吞吐量来自 Throughput 模式，p99延迟来自 SampleTime 模式的百分位，每次操作分配字节数见 gc.alloc.rate.norm
+ */
+public class BenchmarkRunner {
+
+    private static final int[] PRE_OCCUPY_THREADS = {1, 4, 16, 64, 256};
+
+    public static void main(String[] args) throws RunnerException, java.io.IOException {
+        if (args.length > 0) {
+            org.openjdk.jmh.Main.main(args);
+            return;
+        }
+
+        new Runner(options("deduct")
+                .include(StockDeductBenchmark.class.getSimpleName())
+                .include(BucketDeductBenchmark.class.getSimpleName())
+                .include(PreheatBenchmark.class.getSimpleName())
+                .include(StockResponseBenchmark.class.getSimpleName())
+                .include(RedisCodecBenchmark.class.getSimpleName())
+                .include(OrderMessageBenchmark.class.getSimpleName())
+                .build()).run();
+
+        for (int threads : PRE_OCCUPY_THREADS) {
+            new Runner(options("pre-occupy-t" + threads)
+                    .include(PreOccupyBenchmark.class.getSimpleName())
+                    .threads(threads)
+                    .build()).run();
+        }
+    }
+
+    private static ChainedOptionsBuilder options(String name) {
+        return new OptionsBuilder()
+                .addProfiler(GCProfiler.class)
+                .resultFormat(ResultFormatType.JSON)
+                .result("target/jmh-" + name + ".json");
+    }
+}
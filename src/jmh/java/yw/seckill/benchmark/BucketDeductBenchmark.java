@@ -0,0 +1,83 @@
+package yw.seckill.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import yw.seckill.util.StockBucketUtil;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 分桶扣减：不同桶数量与路由键倾斜度
+ * uniform：用户均匀分布；zipf：少量活跃用户贡献大部分请求，路由集中到少数桶
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 10)
+@Fork(1)
+public class BucketDeductBenchmark {
+
+    private static final int INITIAL_STOCK = 1_000_000_000;
+    private static final int USER_COUNT = 100_000;
+    private static final int ROUTE_KEY_SAMPLES = 1 << 16;
+
+    @Param({"1", "10", "64"})
+    public int bucketCount;
+
+    @Param({"uniform", "zipf"})
+    public String skew;
+
+    private AnnotationConfigApplicationContext context;
+    private StockBucketUtil stockBucketUtil;
+    private long[] routeKeys;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        context = BenchmarkContext.start(Map.of("seckill.stock.bucket-count", String.valueOf(bucketCount)));
+        stockBucketUtil = context.getBean(StockBucketUtil.class);
+        stockBucketUtil.initBucketStocks(BenchmarkContext.PRODUCT_ID_BASE, INITIAL_STOCK);
+        routeKeys = sampleRouteKeys(skew, new SplittableRandom(42));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @State(Scope.Thread)
+    public static class Cursor {
+        int next;
+    }
+
+    @Benchmark
+    public StockBucketUtil.DeductResult deductAuto(Cursor cursor) {
+        long userId = routeKeys[cursor.next++ & (ROUTE_KEY_SAMPLES - 1)];
+        return stockBucketUtil.deductAuto(BenchmarkContext.PRODUCT_ID_BASE, 1, userId);
+    }
+
+    private static long[] sampleRouteKeys(String skew, SplittableRandom random) {
+        long[] keys = new long[ROUTE_KEY_SAMPLES];
+        if ("uniform".equals(skew)) {
+            for (int i = 0; i < keys.length; i++) {
+                keys[i] = random.nextInt(USER_COUNT);
+            }
+            return keys;
+        }
+        // Zipf(s=1.1)：预计算累积分布，按二分查找反查用户
+        double[] cdf = new double[USER_COUNT];
+        double sum = 0;
+        for (int i = 0; i < USER_COUNT; i++) {
+            sum += 1.0 / Math.pow(i + 1, 1.1);
+            cdf[i] = sum;
+        }
+        for (int i = 0; i < keys.length; i++) {
+            int idx = Arrays.binarySearch(cdf, random.nextDouble() * sum);
+            keys[i] = idx >= 0 ? idx : -idx - 1;
+        }
+        return keys;
+    }
+}
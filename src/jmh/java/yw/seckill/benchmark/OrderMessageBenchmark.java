@@ -0,0 +1,75 @@
+package yw.seckill.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import yw.seckill.dto.CreateOrderRequestDTO;
+import yw.seckill.util.OrderMessageCodec;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 下单消息编解码：JSON字符串（原 StringSerializer 路径） vs JSON字节 vs 二进制编码
+ * 不依赖Kafka；消息大小在启动时输出一次，重点关注吞吐量和 -prof gc 的 gc.alloc.rate.norm
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 3)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class OrderMessageBenchmark {
+
+    private ObjectMapper objectMapper;
+    private CreateOrderRequestDTO request;
+    private byte[] json;
+    private byte[] binary;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        objectMapper = Jackson2ObjectMapperBuilder.json().build();
+        request = new CreateOrderRequestDTO(123_456_789L, 10_001L, BenchmarkContext.PRODUCT_ID_BASE,
+                System.currentTimeMillis());
+        json = objectMapper.writeValueAsBytes(request);
+        binary = OrderMessageCodec.encode(request);
+        System.out.printf("%n下单消息大小: json=%d bytes, binary=%d bytes%n", json.length, binary.length);
+    }
+
+    /**
+     * 原路径：writeValueAsString + StringSerializer 转字节
+     */
+    @Benchmark
+    public byte[] encodeJsonString() throws IOException {
+        return objectMapper.writeValueAsString(request).getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public byte[] encodeJsonBytes() throws IOException {
+        return objectMapper.writeValueAsBytes(request);
+    }
+
+    @Benchmark
+    public byte[] encodeBinary() {
+        return OrderMessageCodec.encode(request);
+    }
+
+    /**
+     * 原路径：StringDeserializer 转字符串 + readValue(String)
+     */
+    @Benchmark
+    public CreateOrderRequestDTO decodeJsonString() throws IOException {
+        return objectMapper.readValue(new String(json, StandardCharsets.UTF_8), CreateOrderRequestDTO.class);
+    }
+
+    @Benchmark
+    public CreateOrderRequestDTO decodeJsonBytes() throws IOException {
+        return objectMapper.readValue(json, CreateOrderRequestDTO.class);
+    }
+
+    @Benchmark
+    public CreateOrderRequestDTO decodeBinary() {
+        return OrderMessageCodec.decode(binary);
+    }
+}
@@ -0,0 +1,58 @@
+package yw.seckill.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import yw.seckill.service.StockService;
+import yw.seckill.util.RedissonUtil;
+import yw.seckill.util.StockKeys;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 库存预占，线程数由 BenchmarkRunner 在 1~256 之间扫描
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 10)
+@Fork(1)
+public class PreOccupyBenchmark {
+
+    private static final int INITIAL_STOCK = 1_000_000_000;
+    private static final long PRODUCT_ID = BenchmarkContext.PRODUCT_ID_BASE + 1;
+
+    private AnnotationConfigApplicationContext context;
+    private StockService stockService;
+    private RedissonUtil redissonUtil;
+    private StockKeys stockKeys;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        context = BenchmarkContext.start();
+        stockService = context.getBean(StockService.class);
+        redissonUtil = context.getBean(RedissonUtil.class);
+        stockKeys = context.getBean(StockKeys.class);
+        clearHolds();
+        stockService.setStock(PRODUCT_ID, INITIAL_STOCK);
+    }
+
+    /**
+     * 每轮结束清理预占记录，避免有序集合无限增长影响后续轮次
+     */
+    @TearDown(Level.Iteration)
+    public void clearHolds() {
+        redissonUtil.getRedissonClient().getKeys().delete(
+                stockKeys.occupy(PRODUCT_ID), stockKeys.holds(PRODUCT_ID), stockKeys.holdQuantities(PRODUCT_ID));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public StockService.StockPreOccupyResult preOccupy() {
+        return stockService.preOccupyStock(PRODUCT_ID, 1, 300);
+    }
+}
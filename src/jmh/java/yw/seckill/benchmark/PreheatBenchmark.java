@@ -0,0 +1,94 @@
+package yw.seckill.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import yw.seckill.entity.SeckillActivity;
+import yw.seckill.service.SeckillActivityService;
+import yw.seckill.service.StockPreheatService;
+import yw.seckill.service.impl.StockPreheatServiceImpl;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 活动库存预热（冷启动）耗时：单key与分桶两种布局
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 10)
+@Fork(1)
+public class PreheatBenchmark {
+
+    private static final long ACTIVITY_ID = 1L;
+
+    @Param({"false", "true"})
+    public boolean bucketed;
+
+    @Param({"10", "64"})
+    public int bucketCount;
+
+    private AnnotationConfigApplicationContext context;
+    private StockPreheatService stockPreheatService;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        context = BenchmarkContext.start(Map.of(
+                "seckill.preheat.bucketed", String.valueOf(bucketed),
+                "seckill.stock.bucket-count", String.valueOf(bucketCount)),
+                FixedActivityService.class, StockPreheatServiceImpl.class);
+        stockPreheatService = context.getBean(StockPreheatService.class);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public StockPreheatService.PreheatResult preheat() {
+        return stockPreheatService.preheatActivity(ACTIVITY_ID, true);
+    }
+
+    /**
+     * 固定返回一个活动，替代MySQL查询
+     */
+    public static class FixedActivityService implements SeckillActivityService {
+
+        private final SeckillActivity activity = new SeckillActivity();
+
+        public FixedActivityService() {
+            activity.setId(ACTIVITY_ID);
+            activity.setProductId(BenchmarkContext.PRODUCT_ID_BASE + 2);
+            activity.setSeckillPrice(new BigDecimal("99.00"));
+            activity.setSeckillStock(10_000);
+            activity.setStartTime(LocalDateTime.now().plusMinutes(5));
+            activity.setEndTime(LocalDateTime.now().plusHours(1));
+            activity.setStatus(0);
+        }
+
+        @Override
+        public List<SeckillActivity> getActiveActivities() {
+            return List.of(activity);
+        }
+
+        @Override
+        public SeckillActivity getActivityById(Long activityId) {
+            return activity;
+        }
+
+        @Override
+        public List<SeckillActivity> getUnstartedActivitiesStartingBefore(LocalDateTime deadline) {
+            return List.of(activity);
+        }
+
+        @Override
+        public List<SeckillActivity> getWaitingRoomActivities(LocalDateTime deadline) {
+            return List.of(activity);
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package yw.seckill.benchmark;
+
+import io.netty.buffer.ByteBuf;
+import org.openjdk.jmh.annotations.*;
+import org.redisson.client.codec.Codec;
+import org.redisson.client.codec.LongCodec;
+import org.redisson.client.codec.StringCodec;
+import org.redisson.codec.Kryo5Codec;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 库存值编解码开销：Redisson默认Kryo5 vs 纯整数字符串（StringCodec + 解析 / LongCodec）
+ * 不依赖Redis；一次操作 = 编码一个库存值 + 解码为int，对应一次setStock/getStock在客户端的开销
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 3)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class RedisCodecBenchmark {
+
+    @Param({"kryo5", "string", "long"})
+    public String codecName;
+
+    @Param({"7", "1000000"})
+    public int stock;
+
+    private Codec codec;
+    private Object value;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        switch (codecName) {
+            case "kryo5" -> {
+                codec = new Kryo5Codec();
+                value = stock;
+            }
+            case "string" -> {
+                codec = StringCodec.INSTANCE;
+                value = String.valueOf(stock);
+            }
+            case "long" -> {
+                codec = LongCodec.INSTANCE;
+                value = (long) stock;
+            }
+            default -> throw new IllegalArgumentException(codecName);
+        }
+    }
+
+    @Benchmark
+    public int encodeDecode() throws IOException {
+        ByteBuf buf = codec.getValueEncoder().encode(value);
+        try {
+            Object decoded = codec.getValueDecoder().decode(buf, null);
+            return decoded instanceof Number number ? number.intValue() : Integer.parseInt((String) decoded);
+        } finally {
+            buf.release();
+        }
+    }
+
+    @Benchmark
+    public int encodedSize() throws IOException {
+        ByteBuf buf = codec.getValueEncoder().encode(value);
+        try {
+            return buf.readableBytes();
+        } finally {
+            buf.release();
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package yw.seckill.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import yw.seckill.service.StockService;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 单key Lua扣减与批量扣减
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 10)
+@Fork(1)
+public class StockDeductBenchmark {
+
+    private static final int INITIAL_STOCK = 1_000_000_000;
+
+    /**
+     * 批量扣减中的商品数量
+     */
+    @Param({"10", "100"})
+    public int batchSize;
+
+    private AnnotationConfigApplicationContext context;
+    private StockService stockService;
+    private List<StockService.StockDeductRequest> batch;
+    private final AtomicLong orderId = new AtomicLong();
+
+    @Setup(Level.Trial)
+    public void setup() {
+        context = BenchmarkContext.start();
+        stockService = context.getBean(StockService.class);
+
+        batch = new ArrayList<>(batchSize);
+        for (int i = 0; i < batchSize; i++) {
+            long productId = BenchmarkContext.PRODUCT_ID_BASE + i;
+            stockService.setStock(productId, INITIAL_STOCK);
+            batch.add(new StockService.StockDeductRequest(productId, 1, (long) i, (long) i));
+        }
+        if (!stockService.deductStock(BenchmarkContext.PRODUCT_ID_BASE, 1, 0L, 0L).isSuccess()) {
+            throw new IllegalStateException("预置库存后扣减失败，请检查Redis连接及库存编码");
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public StockService.StockDeductResult singleKeyDeduct() {
+        long id = orderId.incrementAndGet();
+        return stockService.deductStock(BenchmarkContext.PRODUCT_ID_BASE, 1, id, id);
+    }
+
+    @Benchmark
+    public List<StockService.StockDeductResult> batchDeduct() {
+        return stockService.batchDeductStock(batch);
+    }
+}
@@ -0,0 +1,90 @@
+package yw.seckill.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import yw.seckill.config.ApiResponse;
+import yw.seckill.config.JacksonConfig;
+import yw.seckill.dto.StockDeductResponseDTO;
+import yw.seckill.dto.StockQueryResponseDTO;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 库存接口响应构造+序列化：HashMap响应 vs 响应record
+ * 不依赖Redis；重点关注 -prof gc 的 gc.alloc.rate.norm（每次请求分配字节数）
+ * insufficientConstant 序列化预先创建的失败响应，代表Jackson每次写出的固定开销，其余基准减去它即为响应构造本身的分配
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 3)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class StockResponseBenchmark {
+
+    private static final ApiResponse<StockDeductResponseDTO> INSUFFICIENT = ApiResponse.error("库存不足");
+
+    private ObjectMapper objectMapper;
+    private ByteArrayOutputStream out;
+    private final Long productId = BenchmarkContext.PRODUCT_ID_BASE;
+    private int stock = 1_000;
+    private long orderId;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        // 与Spring MVC消息转换器相同的构建方式，并注册应用中的响应序列化器
+        objectMapper = Jackson2ObjectMapperBuilder.json()
+                .modulesToInstall(JacksonConfig.createStockResponseModule())
+                .build();
+        out = new ByteArrayOutputStream(512);
+    }
+
+    @Benchmark
+    public int deductMap() throws IOException {
+        orderId++;
+        Map<String, Object> response = new HashMap<>();
+        response.put("success", true);
+        response.put("productId", productId);
+        response.put("quantity", 1);
+        response.put("newStock", stock - 1);
+        response.put("originalStock", stock);
+        response.put("orderId", orderId);
+        return write(ApiResponse.success(response));
+    }
+
+    @Benchmark
+    public int deductRecord() throws IOException {
+        orderId++;
+        return write(ApiResponse.success(new StockDeductResponseDTO(true, productId, 1, stock - 1, stock, orderId, orderId)));
+    }
+
+    @Benchmark
+    public int queryMap() throws IOException {
+        Map<String, Object> response = new HashMap<>();
+        response.put("productId", productId);
+        response.put("stock", stock);
+        response.put("consistent", false);
+        return write(ApiResponse.success(response));
+    }
+
+    @Benchmark
+    public int queryRecord() throws IOException {
+        return write(ApiResponse.success(new StockQueryResponseDTO(productId, stock, false)));
+    }
+
+    @Benchmark
+    public int insufficientConstant() throws IOException {
+        return write(INSUFFICIENT);
+    }
+
+    private int write(Object value) throws IOException {
+        out.reset();
+        objectMapper.writeValue(out, value);
+        return out.size();
+    }
+}
@@ -0,0 +1,300 @@
+package yw.seckill.loadgen;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.HexFormat;
+import java.util.SplittableRandom;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 秒杀压测流量发生器（独立进程，不运行在被测应用内）
+ *
+ * 开环模型：到达时间由 LoadProfile 按seed预先决定，与被测系统的响应快慢无关；
+ * 每个到达由一个虚拟线程执行，预热期只轮询库存，开抢后执行 排队 -> 令牌 -> 资格 -> 扣减 -> 使用令牌 -> 下单，
+ * 排队阶段领取排队号后按 pollMillis 轮询状态直到放行（--waitingRoom=false 时跳过），
+ * 扣减失败按指数退避重试，重试的计划发送时间同样作为延迟起点；
+ * 每次扣减尝试使用新的 Idempotency-Key（按本次运行的ID生成，重复运行同一seed也不会命中上次缓存的结果），
+ * 只有网络异常（未收到响应）时才以相同key重发。
+ *
+ * 运行：mvn -Pbenchmark test-compile exec:exec -Dexec.args="-classpath %classpath yw.seckill.loadgen.FlashSaleLoadGenerator --herdRps=8000 --seed=7"
+ */
+public class FlashSaleLoadGenerator {
+
+    static final String STOCK = "stock.get";
+    static final String WAITING_ROOM_ENTER = "waiting-room.enter";
+    static final String WAITING_ROOM_STATUS = "waiting-room.status";
+    static final String TOKEN_GENERATE = "token.generate";
+    static final String QUALIFY = "qualify";
+    static final String DEDUCT = "stock.deduct";
+    static final String TOKEN_CONSUME = "token.consume";
+    static final String ORDER = "order";
+
+    private final LoadProfile profile;
+    private final LoadReport report = new LoadReport(STOCK, WAITING_ROOM_ENTER, WAITING_ROOM_STATUS, TOKEN_GENERATE, QUALIFY, DEDUCT, TOKEN_CONSUME, ORDER);
+    private final HttpClient client;
+    private final String runId = UUID.randomUUID().toString();
+    private final AtomicLong idempotencySeq = new AtomicLong();
+
+    FlashSaleLoadGenerator(LoadProfile profile) {
+        this.profile = profile;
+        this.client = HttpClient.newBuilder()
+                .connectTimeout(Duration.ofSeconds(5))
+                .executor(Executors.newVirtualThreadPerTaskExecutor())
+                .build();
+    }
+
+    public static void main(String[] args) throws Exception {
+        LoadProfile profile = LoadProfile.fromArgs(args);
+        new FlashSaleLoadGenerator(profile).run();
+    }
+
+    void run() throws Exception {
+        SplittableRandom random = new SplittableRandom(profile.seed);
+        AtomicLong lateArrivals = new AtomicLong();
+        long arrivals = 0;
+        long startNanos = System.nanoTime();
+        double horizon = profile.totalSeconds();
+
+        try (ExecutorService sessions = Executors.newVirtualThreadPerTaskExecutor()) {
+            double t = 0;
+            while (true) {
+                // 非齐次泊松过程：按当前速率抽取下一个到达间隔
+                t += -Math.log(1 - random.nextDouble()) / profile.rateAt(t);
+                if (t >= horizon) {
+                    break;
+                }
+                long intended = startNanos + (long) (t * 1e9);
+                long userId = random.nextInt(profile.users) + 1;
+                int product = profile.pickProduct(random);
+                boolean purchase = t >= profile.startTimeSecond();
+                long sessionSeed = random.nextLong();
+
+                long wait = intended - System.nanoTime();
+                if (wait > 0) {
+                    LockSupport.parkNanos(wait);
+                } else if (wait < -TimeUnit.MILLISECONDS.toNanos(1)) {
+                    lateArrivals.incrementAndGet();
+                }
+                arrivals++;
+                sessions.submit(() -> {
+                    if (purchase) {
+                        purchase(userId, product, intended, new SplittableRandom(sessionSeed));
+                    } else {
+                        browse(profile.productIds[product], intended);
+                    }
+                });
+            }
+        }
+        report.write(profile, System.nanoTime() - startNanos, arrivals, lateArrivals.get());
+    }
+
+    private void browse(long productId, long intended) {
+        call(STOCK, get("/api/stock/" + productId), intended);
+    }
+
+    private void purchase(long userId, int product, long intended, SplittableRandom random) {
+        long productId = profile.productIds[product];
+        long activityId = profile.activityIds[product];
+
+        String ticket = null;
+        if (profile.waitingRoom) {
+            ticket = waitForAdmission(userId, activityId, intended);
+            if (ticket == null) {
+                return;
+            }
+        }
+
+        String token = extractToken(call(TOKEN_GENERATE, post("/api/token/generate",
+                "{\"activityId\":" + activityId + ",\"count\":1,\"ttlSeconds\":60}"), System.nanoTime()));
+        if (token == null) {
+            return;
+        }
+
+        long timestamp = System.currentTimeMillis();
+        String signature = md5Hex(userId + ":" + activityId + ":" + timestamp + ":" + profile.secret);
+        String qualified = call(QUALIFY, post("/seckill/qualify?signature=" + signature,
+                "{\"userId\":" + userId + ",\"activityId\":" + activityId + ",\"timestamp\":" + timestamp + "}"),
+                System.nanoTime());
+        if (qualified == null || !qualified.contains("\"data\":true")) {
+            return;
+        }
+
+        String deductBody = "{\"productId\":" + productId + ",\"quantity\":1,\"userId\":" + userId + "}";
+        long attemptStart = System.nanoTime();
+        String deductionId = null;
+        for (int attempt = 0; attempt <= profile.maxRetries && deductionId == null; attempt++) {
+            if (attempt > 0) {
+                // 指数退避 + 抖动，计划发送时间作为下一次请求的延迟起点
+                long backoff = profile.retryBackoffMillis * (1L << (attempt - 1));
+                attemptStart = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(backoff + random.nextLong(backoff + 1));
+                LockSupport.parkNanos(attemptStart - System.nanoTime());
+            }
+            HttpRequest deduct = withHeader(withTicket(post("/api/stock/deduct", deductBody), ticket),
+                    "Idempotency-Key", runId + ":" + idempotencySeq.incrementAndGet());
+            deductionId = extractNumber(callIdempotent(DEDUCT, deduct, attemptStart), "deductionId");
+        }
+        if (deductionId == null) {
+            return;
+        }
+
+        if (!isSuccess(call(TOKEN_CONSUME, post("/api/token/consume?token=" + token, ""), System.nanoTime()))) {
+            return;
+        }
+        call(ORDER, withTicket(post("/seckill/order", "{\"userId\":" + userId + ",\"activityId\":" + activityId
+                + ",\"productId\":" + productId + ",\"timestamp\":" + System.currentTimeMillis()
+                + ",\"deductionId\":" + deductionId + "}"), ticket),
+                System.nanoTime());
+    }
+
+    /**
+     * 领取排队号并轮询状态，放行后返回入场凭证；被拒绝、售罄或超时返回null
+     */
+    private String waitForAdmission(long userId, long activityId, long intended) {
+        String body = call(WAITING_ROOM_ENTER,
+                post("/seckill/waiting-room/" + activityId + "?userId=" + userId, ""), intended);
+        String ticket = extractField(body, "ticket");
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(profile.maxWaitSeconds);
+        while (ticket != null) {
+            String state = extractField(body, "state");
+            if ("ADMITTED".equals(state)) {
+                return ticket;
+            }
+            if (!"WAITING".equals(state) || System.nanoTime() > deadline) {
+                return null;
+            }
+            LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(profile.pollMillis));
+            body = call(WAITING_ROOM_STATUS, get("/seckill/waiting-room/status?ticket=" + ticket), System.nanoTime());
+        }
+        return null;
+    }
+    /**
+     * 发送请求并记录延迟，返回响应体；网络异常或非200返回null
+     */
+    private String call(String endpoint, HttpRequest request, long intendedStartNanos) {
+        try {
+            HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+            String body = response.statusCode() == 200 ? response.body() : null;
+            report.record(endpoint, intendedStartNanos, isSuccess(body));
+            return body;
+        } catch (Exception e) {
+            report.record(endpoint, intendedStartNanos, false);
+            if (e instanceof InterruptedException) {
+                Thread.currentThread().interrupt();
+            }
+            return null;
+        }
+    }
+
+    /**
+     * 发送携带幂等key的请求：网络异常时以同一请求（同一key）重发，最多 maxRetries 次，服务端合并或重放首次结果
+     */
+    private String callIdempotent(String endpoint, HttpRequest request, long intendedStartNanos) {
+        for (int transportAttempt = 0; ; transportAttempt++) {
+            try {
+                HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+                String body = response.statusCode() == 200 ? response.body() : null;
+                report.record(endpoint, intendedStartNanos, isSuccess(body));
+                return body;
+            } catch (IOException e) {
+                report.record(endpoint, intendedStartNanos, false);
+                if (transportAttempt >= profile.maxRetries) {
+                    return null;
+                }
+            } catch (InterruptedException e) {
+                report.record(endpoint, intendedStartNanos, false);
+                Thread.currentThread().interrupt();
+                return null;
+            }
+        }
+    }
+
+    private HttpRequest get(String path) {
+        return HttpRequest.newBuilder(URI.create(profile.baseUrl + path))
+                .timeout(Duration.ofSeconds(10))
+                .GET()
+                .build();
+    }
+
+    private HttpRequest post(String path, String json) {
+        return HttpRequest.newBuilder(URI.create(profile.baseUrl + path))
+                .timeout(Duration.ofSeconds(10))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(json))
+                .build();
+    }
+
+    private static HttpRequest withTicket(HttpRequest request, String ticket) {
+        return ticket == null ? request : withHeader(request, "Waiting-Room-Ticket", ticket);
+    }
+
+    private static HttpRequest withHeader(HttpRequest request, String name, String value) {
+        return HttpRequest.newBuilder(request, (n, v) -> true).header(name, value).build();
+    }
+
+    private static boolean isSuccess(String body) {
+        return body != null && body.contains("\"code\":0");
+    }
+
+    private static String extractToken(String body) {
+        if (!isSuccess(body)) {
+            return null;
+        }
+        int idx = body.indexOf("\"tokens\":[\"");
+        if (idx < 0) {
+            return null;
+        }
+        int start = idx + "\"tokens\":[\"".length();
+        return body.substring(start, body.indexOf('"', start));
+    }
+
+    private static String extractField(String body, String name) {
+        if (!isSuccess(body)) {
+            return null;
+        }
+        String prefix = "\"" + name + "\":\"";
+        int idx = body.indexOf(prefix);
+        if (idx < 0) {
+            return null;
+        }
+        int start = idx + prefix.length();
+        return body.substring(start, body.indexOf('"', start));
+    }
+
+    private static String extractNumber(String body, String name) {
+        if (!isSuccess(body)) {
+            return null;
+        }
+        String prefix = "\"" + name + "\":";
+        int idx = body.indexOf(prefix);
+        if (idx < 0) {
+            return null;
+        }
+        int start = idx + prefix.length();
+        int end = start;
+        while (end < body.length() && Character.isDigit(body.charAt(end))) {
+            end++;
+        }
+        return end > start ? body.substring(start, end) : null;
+    }
+
+    private static String md5Hex(String raw) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("MD5");
+            return HexFormat.of().formatHex(digest.digest(raw.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
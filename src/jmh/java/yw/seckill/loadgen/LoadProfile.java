@@ -0,0 +1,138 @@
+package yw.seckill.loadgen;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+/**
+ * 秒杀流量模型
+ *
+ * 时间轴（秒）：
+ * [0, ramp)                预热期：用户浏览商品页，只轮询库存，速率从 rampStartRps 线性升至 rampEndRps
+ * [ramp, ramp+herd)        开抢：所有用户同时发起购买流程，速率 herdRps
+ * [ramp+herd, +tail)       尾部：速率按指数从 herdRps 衰减到 tailRps
+ *
+ * 商品热度服从Zipf分布，用户从固定人群中均匀抽取；同一个seed生成完全相同的到达序列
+ */
+public class LoadProfile {
+
+    final String baseUrl;
+    final long seed;
+    final int users;
+    final long[] productIds;
+    final long[] activityIds;
+    final double zipfExponent;
+    final int rampSeconds;
+    final double rampStartRps;
+    final double rampEndRps;
+    final int herdSeconds;
+    final double herdRps;
+    final int tailSeconds;
+    final double tailRps;
+    final int maxRetries;
+    final long retryBackoffMillis;
+    final String secret;
+    final String reportDir;
+    final boolean waitingRoom;
+    final long pollMillis;
+    final long maxWaitSeconds;
+
+    private final double[] productCdf;
+
+    LoadProfile(Map<String, String> args) {
+        baseUrl = args.getOrDefault("baseUrl", "http://localhost:8080");
+        seed = Long.parseLong(args.getOrDefault("seed", "42"));
+        users = Integer.parseInt(args.getOrDefault("users", "100000"));
+        productIds = parseIds(args.getOrDefault("products", "1,2,3"));
+        activityIds = parseIds(args.getOrDefault("activities", "1,2,3"));
+        if (productIds.length != activityIds.length) {
+            throw new IllegalArgumentException("products 与 activities 数量必须一致");
+        }
+        zipfExponent = Double.parseDouble(args.getOrDefault("zipf", "1.2"));
+        rampSeconds = Integer.parseInt(args.getOrDefault("rampSeconds", "30"));
+        rampStartRps = Double.parseDouble(args.getOrDefault("rampStartRps", "50"));
+        rampEndRps = Double.parseDouble(args.getOrDefault("rampEndRps", "500"));
+        herdSeconds = Integer.parseInt(args.getOrDefault("herdSeconds", "5"));
+        herdRps = Double.parseDouble(args.getOrDefault("herdRps", "5000"));
+        tailSeconds = Integer.parseInt(args.getOrDefault("tailSeconds", "30"));
+        tailRps = Double.parseDouble(args.getOrDefault("tailRps", "200"));
+        maxRetries = Integer.parseInt(args.getOrDefault("maxRetries", "3"));
+        retryBackoffMillis = Long.parseLong(args.getOrDefault("retryBackoffMillis", "100"));
+        secret = args.getOrDefault("secret", "seckillSecretKey");
+        reportDir = args.getOrDefault("reportDir", "target/loadgen");
+        waitingRoom = Boolean.parseBoolean(args.getOrDefault("waitingRoom", "true"));
+        pollMillis = Long.parseLong(args.getOrDefault("pollMillis", "250"));
+        maxWaitSeconds = Long.parseLong(args.getOrDefault("maxWaitSeconds", "60"));
+
+        productCdf = new double[productIds.length];
+        double sum = 0;
+        for (int i = 0; i < productIds.length; i++) {
+            sum += 1.0 / Math.pow(i + 1, zipfExponent);
+            productCdf[i] = sum;
+        }
+        for (int i = 0; i < productCdf.length; i++) {
+            productCdf[i] /= sum;
+        }
+    }
+
+    static LoadProfile fromArgs(String[] args) {
+        Map<String, String> map = new HashMap<>();
+        for (String arg : args) {
+            if (arg.startsWith("--") && arg.contains("=")) {
+                int idx = arg.indexOf('=');
+                map.put(arg.substring(2, idx), arg.substring(idx + 1));
+            }
+        }
+        return new LoadProfile(map);
+    }
+
+    int totalSeconds() {
+        return rampSeconds + herdSeconds + tailSeconds;
+    }
+
+    /**
+     * 开抢时刻（相对运行开始的秒数）
+     */
+    int startTimeSecond() {
+        return rampSeconds;
+    }
+
+    /**
+     * t 秒时的到达速率
+     */
+    double rateAt(double t) {
+        if (t < rampSeconds) {
+            return rampStartRps + (rampEndRps - rampStartRps) * t / Math.max(rampSeconds, 1);
+        }
+        if (t < rampSeconds + herdSeconds) {
+            return herdRps;
+        }
+        double elapsed = t - rampSeconds - herdSeconds;
+        double decay = Math.log(herdRps / tailRps) / Math.max(tailSeconds, 1);
+        return Math.max(tailRps, herdRps * Math.exp(-decay * elapsed));
+    }
+
+    /**
+     * 按Zipf分布选取商品下标
+     */
+    int pickProduct(SplittableRandom random) {
+        int idx = Arrays.binarySearch(productCdf, random.nextDouble());
+        return Math.min(idx >= 0 ? idx : -idx - 1, productIds.length - 1);
+    }
+
+    private static long[] parseIds(String value) {
+        return Arrays.stream(value.split(",")).map(String::trim).mapToLong(Long::parseLong).toArray();
+    }
+
+    @Override
+    public String toString() {
+        return "baseUrl=" + baseUrl + ", seed=" + seed + ", users=" + users
+                + ", products=" + Arrays.toString(productIds) + ", activities=" + Arrays.toString(activityIds)
+                + ", zipf=" + zipfExponent
+                + ", ramp=" + rampSeconds + "s(" + rampStartRps + "->" + rampEndRps + "rps)"
+                + ", herd=" + herdSeconds + "s(" + herdRps + "rps)"
+                + ", tail=" + tailSeconds + "s(->" + tailRps + "rps)"
+                + ", maxRetries=" + maxRetries + ", retryBackoff=" + retryBackoffMillis + "ms";
+    }
+}
@@ -0,0 +1,84 @@
+package yw.seckill.loadgen;
+
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 压测报告：按接口统计延迟直方图与成功/失败次数
+ * 延迟从"计划发送时间"开始计算（而不是实际发送时间），被压测系统变慢导致的排队时间也会计入，避免协调遗漏
+ */
+public class LoadReport {
+
+    private static final long HIGHEST_TRACKABLE_NANOS = TimeUnit.MINUTES.toNanos(1);
+
+    private final Map<String, Endpoint> endpoints = new LinkedHashMap<>();
+
+    LoadReport(String... names) {
+        for (String name : names) {
+            endpoints.put(name, new Endpoint());
+        }
+    }
+
+    void record(String endpoint, long intendedStartNanos, boolean success) {
+        Endpoint e = endpoints.get(endpoint);
+        long latency = Math.min(System.nanoTime() - intendedStartNanos, HIGHEST_TRACKABLE_NANOS);
+        e.histogram.recordValue(Math.max(latency, 0));
+        (success ? e.success : e.failure).increment();
+    }
+
+    void write(LoadProfile profile, long durationNanos, long arrivals, long lateArrivals) throws IOException {
+        Path dir = Path.of(profile.reportDir);
+        Files.createDirectories(dir);
+        Path file = dir.resolve("run-seed" + profile.seed + "-" + System.currentTimeMillis() + ".txt");
+        try (PrintStream out = new PrintStream(Files.newOutputStream(file), true, "UTF-8")) {
+            print(out, profile, durationNanos, arrivals, lateArrivals);
+            for (Map.Entry<String, Endpoint> entry : endpoints.entrySet()) {
+                if (entry.getValue().histogram.getTotalCount() == 0) {
+                    continue;
+                }
+                out.println();
+                out.println("# " + entry.getKey() + " 延迟分布（毫秒）");
+                entry.getValue().histogram.outputPercentileDistribution(out, 5, 1_000_000.0);
+            }
+        }
+        print(System.out, profile, durationNanos, arrivals, lateArrivals);
+        System.out.println("报告已写入: " + file.toAbsolutePath());
+    }
+
+    private void print(PrintStream out, LoadProfile profile, long durationNanos, long arrivals, long lateArrivals) {
+        double seconds = durationNanos / 1e9;
+        out.println("# 配置: " + profile);
+        out.printf("# 运行时长: %.1fs, 到达数: %d, 调度滞后的到达数: %d%n", seconds, arrivals, lateArrivals);
+        out.printf("%-16s %10s %10s %10s %9s %9s %9s %9s %9s%n",
+                "endpoint", "success", "failure", "rps", "p50(ms)", "p90(ms)", "p99(ms)", "p999(ms)", "max(ms)");
+        for (Map.Entry<String, Endpoint> entry : endpoints.entrySet()) {
+            Endpoint e = entry.getValue();
+            Histogram h = e.histogram;
+            long total = h.getTotalCount();
+            out.printf("%-16s %10d %10d %10.1f %9.2f %9.2f %9.2f %9.2f %9.2f%n",
+                    entry.getKey(), e.success.sum(), e.failure.sum(), total / seconds,
+                    millis(h.getValueAtPercentile(50)), millis(h.getValueAtPercentile(90)),
+                    millis(h.getValueAtPercentile(99)), millis(h.getValueAtPercentile(99.9)),
+                    millis(h.getMaxValue()));
+        }
+    }
+
+    private static double millis(long nanos) {
+        return nanos / 1_000_000.0;
+    }
+
+    private static class Endpoint {
+        final Histogram histogram = new ConcurrentHistogram(HIGHEST_TRACKABLE_NANOS, 3);
+        final LongAdder success = new LongAdder();
+        final LongAdder failure = new LongAdder();
+    }
+}
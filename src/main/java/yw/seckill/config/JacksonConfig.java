@@ -0,0 +1,77 @@
+package yw.seckill.config;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.Module;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.module.SimpleModule;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import yw.seckill.dto.StockDeductResponseDTO;
+import yw.seckill.dto.StockQueryResponseDTO;
+
+import java.io.IOException;
+
+/**
+ * Jackson配置
+ * 为库存热点接口的响应record预注册手写序列化器：直接按字段写出基本类型，
+ * 不经过反射属性遍历，也不产生装箱对象（Spring Boot会将Module类型的Bean注册到全局ObjectMapper）
+ */
+@Configuration
+public class JacksonConfig {
+
+    @Bean
+    public Module stockResponseModule() {
+        return createStockResponseModule();
+    }
+
+    public static SimpleModule createStockResponseModule() {
+        SimpleModule module = new SimpleModule("stockResponseModule");
+        module.addSerializer(StockDeductResponseDTO.class, new StockDeductResponseSerializer());
+        module.addSerializer(StockQueryResponseDTO.class, new StockQueryResponseSerializer());
+        return module;
+    }
+
+    static class StockDeductResponseSerializer extends StdSerializer<StockDeductResponseDTO> {
+
+        StockDeductResponseSerializer() {
+            super(StockDeductResponseDTO.class);
+        }
+
+        @Override
+        public void serialize(StockDeductResponseDTO value, JsonGenerator gen, SerializerProvider provider) throws IOException {
+            gen.writeStartObject();
+            gen.writeBooleanField("success", value.success());
+            writeLongField(gen, "productId", value.productId());
+            gen.writeNumberField("quantity", value.quantity());
+            gen.writeNumberField("newStock", value.newStock());
+            gen.writeNumberField("originalStock", value.originalStock());
+            gen.writeNumberField("orderId", value.orderId());
+            gen.writeEndObject();
+        }
+    }
+
+    static class StockQueryResponseSerializer extends StdSerializer<StockQueryResponseDTO> {
+
+        StockQueryResponseSerializer() {
+            super(StockQueryResponseDTO.class);
+        }
+
+        @Override
+        public void serialize(StockQueryResponseDTO value, JsonGenerator gen, SerializerProvider provider) throws IOException {
+            gen.writeStartObject();
+            writeLongField(gen, "productId", value.productId());
+            gen.writeNumberField("stock", value.stock());
+            gen.writeBooleanField("consistent", value.consistent());
+            gen.writeEndObject();
+        }
+    }
+
+    private static void writeLongField(JsonGenerator gen, String name, Long value) throws IOException {
+        if (value == null) {
+            gen.writeNullField(name);
+        } else {
+            gen.writeNumberField(name, value.longValue());
+        }
+    }
+}
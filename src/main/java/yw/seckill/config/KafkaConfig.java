@@ -1,8 +1,43 @@
 package yw.seckill.config;
 
+import org.apache.kafka.clients.admin.NewTopic;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.kafka.config.TopicBuilder;
+import org.springframework.kafka.core.KafkaAdmin;
+
+import java.util.ArrayList;
+import java.util.List;
 
 @Configuration
 public class KafkaConfig {
     public static final String ORDER_TOPIC = "seckill_order_topic";
-} 
\ No newline at end of file
+
+    /**
+     * 下单消息重试主题前缀，第 i 级重试主题为 前缀 + i
+     */
+    public static final String ORDER_RETRY_TOPIC_PREFIX = ORDER_TOPIC + "-retry-";
+
+    /**
+     * 下单消息死信主题
+     */
+    public static final String ORDER_DLT_TOPIC = ORDER_TOPIC + "-dlt";
+
+    public static String orderRetryTopic(int tier) {
+        return ORDER_RETRY_TOPIC_PREFIX + tier;
+    }
+
+    /**
+     * 启动时创建重试主题和死信主题（分区数、副本数取broker默认值）
+     */
+    @Bean
+    public KafkaAdmin.NewTopics orderRetryTopics(@Value("${seckill.kafka.order-retry.delays-ms:1000,10000,60000}") long[] delaysMs) {
+        List<NewTopic> topics = new ArrayList<>();
+        for (int i = 0; i < delaysMs.length; i++) {
+            topics.add(TopicBuilder.name(orderRetryTopic(i)).build());
+        }
+        topics.add(TopicBuilder.name(ORDER_DLT_TOPIC).build());
+        return new KafkaAdmin.NewTopics(topics.toArray(new NewTopic[0]));
+    }
+}
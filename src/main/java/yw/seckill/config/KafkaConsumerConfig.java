@@ -1,6 +1,7 @@
 package yw.seckill.config;
 
 import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.common.serialization.ByteArrayDeserializer;
 import org.apache.kafka.common.serialization.StringDeserializer;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
@@ -8,6 +9,9 @@ import org.springframework.context.annotation.Configuration;
 import org.springframework.kafka.config.ConcurrentKafkaListenerContainerFactory;
 import org.springframework.kafka.core.ConsumerFactory;
 import org.springframework.kafka.core.DefaultKafkaConsumerFactory;
+import org.springframework.kafka.listener.ContainerProperties;
+import org.springframework.kafka.listener.DefaultErrorHandler;
+import org.springframework.util.backoff.FixedBackOff;
 
 import java.util.HashMap;
 import java.util.Map;
@@ -17,23 +21,60 @@ public class KafkaConsumerConfig {
     @Value("${spring.kafka.bootstrap-servers:localhost:9092}")
     private String bootstrapServers;
 
+    // 每个分区消费线程一次poll的最大消息数，即一批内可并行处理的消息上限
+    @Value("${spring.kafka.consumer.max-poll-records:500}")
+    private int maxPollRecords;
+
+    // 分区消费线程数；消息处理的并行度由 seckill.kafka.order-consumer.parallelism 决定
+    @Value("${spring.kafka.listener.concurrency:3}")
+    private int concurrency;
+
+    // 监听方法抛出异常（数据库故障、转投失败）后重新投递同一消息的间隔；不限次数，不会跳过消息
+    @Value("${seckill.kafka.order-consumer.redeliver-backoff-ms:1000}")
+    private long redeliverBackoffMs;
+
     @Bean
-    public ConsumerFactory<String, String> consumerFactory() {
+    public ConsumerFactory<String, byte[]> consumerFactory() {
         Map<String, Object> props = new HashMap<>();
         props.put(ConsumerConfig.BOOTSTRAP_SERVERS_CONFIG, bootstrapServers);
         props.put(ConsumerConfig.GROUP_ID_CONFIG, "seckill-order-group");
         props.put(ConsumerConfig.KEY_DESERIALIZER_CLASS_CONFIG, StringDeserializer.class);
-        props.put(ConsumerConfig.VALUE_DESERIALIZER_CLASS_CONFIG, StringDeserializer.class);
+        props.put(ConsumerConfig.VALUE_DESERIALIZER_CLASS_CONFIG, ByteArrayDeserializer.class);
         props.put(ConsumerConfig.AUTO_OFFSET_RESET_CONFIG, "earliest");
         props.put(ConsumerConfig.ENABLE_AUTO_COMMIT_CONFIG, false);
+        props.put(ConsumerConfig.MAX_POLL_RECORDS_CONFIG, maxPollRecords);
         return new DefaultKafkaConsumerFactory<>(props);
     }
 
     @Bean
-    public ConcurrentKafkaListenerContainerFactory<String, String> kafkaListenerContainerFactory() {
-        ConcurrentKafkaListenerContainerFactory<String, String> factory = new ConcurrentKafkaListenerContainerFactory<>();
+    public ConcurrentKafkaListenerContainerFactory<String, byte[]> kafkaListenerContainerFactory() {
+        ConcurrentKafkaListenerContainerFactory<String, byte[]> factory = new ConcurrentKafkaListenerContainerFactory<>();
+        factory.setConsumerFactory(consumerFactory());
+        factory.setConcurrency(concurrency); // 并发消费者数量
+        // 批量监听：一次poll的消息交给 KeyOrderedProcessor 按key并行处理，整批完成后手动提交
+        factory.setBatchListener(true);
+        factory.getContainerProperties().setAckMode(ContainerProperties.AckMode.MANUAL);
+        factory.setCommonErrorHandler(redeliverErrorHandler());
+        return factory;
+    }
+
+    /**
+     * 重试主题的监听容器：逐条消费，未到重试时间的消息以 nack 延迟重新投递（暂停分区，不阻塞poll）
+     */
+    @Bean
+    public ConcurrentKafkaListenerContainerFactory<String, byte[]> retryKafkaListenerContainerFactory() {
+        ConcurrentKafkaListenerContainerFactory<String, byte[]> factory = new ConcurrentKafkaListenerContainerFactory<>();
         factory.setConsumerFactory(consumerFactory());
-        factory.setConcurrency(3); // 并发消费者数量
+        factory.getContainerProperties().setAckMode(ContainerProperties.AckMode.MANUAL);
+        factory.setCommonErrorHandler(redeliverErrorHandler());
         return factory;
     }
-} 
\ No newline at end of file
+
+    /**
+     * 监听方法抛出异常时从失败消息开始重新投递，不限次数：默认的错误处理器重试10次后会跳过消息，数据库长时间故障时会丢单
+     * 重试/死信由监听方法自行转投，抛到容器的只有数据库故障和转投失败
+     */
+    private DefaultErrorHandler redeliverErrorHandler() {
+        return new DefaultErrorHandler(new FixedBackOff(redeliverBackoffMs, FixedBackOff.UNLIMITED_ATTEMPTS));
+    }
+}
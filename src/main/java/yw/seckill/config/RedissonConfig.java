@@ -1,15 +1,43 @@
 package yw.seckill.config;
 
+import lombok.extern.slf4j.Slf4j;
 import org.redisson.Redisson;
 import org.redisson.api.RedissonClient;
+import org.redisson.client.codec.Codec;
+import org.redisson.client.codec.LongCodec;
+import org.redisson.client.codec.StringCodec;
+import org.redisson.codec.JsonJacksonCodec;
+import org.redisson.codec.Kryo5Codec;
+import org.redisson.config.BaseConfig;
+import org.redisson.config.BaseMasterSlaveServersConfig;
+import org.redisson.config.ClusterServersConfig;
 import org.redisson.config.Config;
+import org.redisson.config.ReadMode;
+import org.redisson.config.ReplicatedServersConfig;
+import org.redisson.config.SentinelServersConfig;
+import org.redisson.config.SingleServerConfig;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.util.StringUtils;
+import yw.seckill.util.RedisPoolMonitor;
+import yw.seckill.util.RedisReadRouter;
+
+import java.util.Arrays;
 
 /**
  * Redisson配置类
+ * 部署拓扑、连接池、线程数、编解码器与超时均由配置决定（seckill.redis.*）：
+ * - mode=single：单节点，地址取 spring.data.redis.host/port
+ * - mode=sentinel：哨兵，nodes 为哨兵地址，sentinel-master 为主节点名
+ * - mode=cluster：集群，nodes 为种子节点地址
+ * - mode=replicated：云托管主从（如阿里云/AWS ElastiCache），nodes 为全部节点地址
+ * 自动调优模式（seckill.redis.autotune.enabled=true）下，连接池大小由 RedisPoolMonitor 根据观测到的并发给出
+ *
+ * 主客户端的读请求固定走主节点（ReadMode.MASTER），保证写后读一致；非single模式下另建一个只读客户端
+ * （ReadMode 见 seckill.redis.replica-read-mode），由 RedisReadRouter 按调用方的读偏好选择
  */
+@Slf4j
 @Configuration
 public class RedissonConfig {
 
@@ -22,34 +50,186 @@ public class RedissonConfig {
     @Value("${spring.data.redis.database}")
     private int redisDatabase;
 
+    @Value("${spring.data.redis.password:}")
+    private String redisPassword;
+
     @Value("${spring.data.redis.timeout:3000}")
-    private int timeout;
+    private int connectTimeout;
+
+    @Value("${seckill.redis.mode:single}")
+    private String mode;
+
+    @Value("${seckill.redis.nodes:}")
+    private String nodes;
+
+    @Value("${seckill.redis.sentinel-master:mymaster}")
+    private String sentinelMaster;
+
+    @Value("${seckill.redis.pool-size:64}")
+    private int poolSize;
+
+    @Value("${seckill.redis.min-idle:24}")
+    private int minIdle;
+
+    @Value("${seckill.redis.threads:16}")
+    private int threads;
+
+    @Value("${seckill.redis.netty-threads:32}")
+    private int nettyThreads;
+
+    @Value("${seckill.redis.codec:kryo5}")
+    private String codec;
+
+    @Value("${seckill.redis.timeout:3000}")
+    private int commandTimeout;
+
+    @Value("${seckill.redis.retry-attempts:3}")
+    private int retryAttempts;
+
+    @Value("${seckill.redis.retry-interval:1500}")
+    private int retryInterval;
+
+    @Value("${seckill.redis.idle-connection-timeout:10000}")
+    private int idleConnectionTimeout;
+
+    @Value("${seckill.redis.replica-reads:true}")
+    private boolean replicaReads;
+
+    @Value("${seckill.redis.replica-read-mode:SLAVE}")
+    private ReadMode replicaReadMode;
+
+    /**
+     * 自动调优的启动并发提示：同时可能访问Redis的线程数（Web工作线程 + Kafka消费线程 + 定时任务）
+     */
+    @Value("${server.tomcat.threads.max:200}")
+    private int webThreads;
+
+    @Value("${spring.kafka.listener.concurrency:1}")
+    private int listenerThreads;
 
     /**
      * 配置Redisson客户端
      */
     @Bean
-    public RedissonClient redissonClient() {
+    public RedissonClient redissonClient(RedisPoolMonitor poolMonitor) {
+        int effectivePoolSize = poolMonitor.isAutotuneEnabled()
+                ? poolMonitor.autotunePoolSize(webThreads + listenerThreads + 1)
+                : poolSize;
+        int effectiveMinIdle = Math.min(minIdle, effectivePoolSize);
+        poolMonitor.setPoolSize(effectivePoolSize);
+
+        Config config = buildConfig(poolMonitor, ReadMode.MASTER, effectivePoolSize, effectiveMinIdle,
+                effectivePoolSize, effectiveMinIdle);
+
+        log.info("创建Redisson客户端: mode={}, poolSize={}, minIdle={}, threads={}, nettyThreads={}, codec={}, autotune={}",
+                mode, effectivePoolSize, effectiveMinIdle, threads, nettyThreads, codec, poolMonitor.isAutotuneEnabled());
+        return Redisson.create(config);
+    }
+
+    /**
+     * 读路由：single模式或关闭副本读时，所有读请求都走主客户端
+     * 只读客户端的主节点连接池只保留少量连接（它不承担写请求），从节点连接池与主客户端一致
+     */
+    @Bean
+    public RedisReadRouter redisReadRouter(RedissonClient redissonClient, RedisPoolMonitor poolMonitor) {
+        if (!replicaReads || "single".equals(mode)) {
+            return new RedisReadRouter(redissonClient, null, ReadMode.MASTER);
+        }
+        int replicaPoolSize = poolMonitor.getPoolSize();
+        Config config = buildConfig(poolMonitor, replicaReadMode, Math.min(8, replicaPoolSize), 1,
+                replicaPoolSize, Math.min(minIdle, replicaPoolSize));
+        log.info("创建Redisson只读客户端: mode={}, readMode={}, slavePoolSize={}", mode, replicaReadMode, replicaPoolSize);
+        return new RedisReadRouter(redissonClient, Redisson.create(config), replicaReadMode);
+    }
+
+    private Config buildConfig(RedisPoolMonitor poolMonitor, ReadMode readMode, int masterPool, int masterIdle,
+                               int slavePool, int slaveIdle) {
         Config config = new Config();
-        
-        // 单节点配置
-        config.useSingleServer()
-                .setAddress("redis://" + redisHost + ":" + redisPort)
-                .setDatabase(redisDatabase)
-                .setConnectTimeout(timeout)
-                .setConnectionMinimumIdleSize(1)
-                .setConnectionPoolSize(8)
-                .setIdleConnectionTimeout(10000)
-                .setRetryAttempts(3)
-                .setRetryInterval(1500)
-                .setSubscriptionsPerConnection(5)
-                .setSubscriptionConnectionMinimumIdleSize(1)
-                .setSubscriptionConnectionPoolSize(50);
+        config.setThreads(threads);
+        config.setNettyThreads(nettyThreads);
+        config.setCodec(createCodec(codec));
+        config.setNettyHook(poolMonitor.nettyHook());
+
+        switch (mode) {
+            case "single" -> {
+                SingleServerConfig server = config.useSingleServer()
+                        .setAddress("redis://" + redisHost + ":" + redisPort)
+                        .setDatabase(redisDatabase)
+                        .setConnectionMinimumIdleSize(masterIdle)
+                        .setConnectionPoolSize(masterPool)
+                        .setSubscriptionConnectionMinimumIdleSize(1)
+                        .setSubscriptionConnectionPoolSize(50);
+                applyCommon(server);
+            }
+            case "sentinel" -> {
+                SentinelServersConfig server = config.useSentinelServers()
+                        .setMasterName(sentinelMaster)
+                        .addSentinelAddress(nodeAddresses())
+                        .setDatabase(redisDatabase);
+                applyMasterSlave(server, readMode, masterPool, masterIdle, slavePool, slaveIdle);
+            }
+            case "cluster" -> {
+                ClusterServersConfig server = config.useClusterServers()
+                        .addNodeAddress(nodeAddresses());
+                applyMasterSlave(server, readMode, masterPool, masterIdle, slavePool, slaveIdle);
+            }
+            case "replicated" -> {
+                ReplicatedServersConfig server = config.useReplicatedServers()
+                        .addNodeAddress(nodeAddresses())
+                        .setDatabase(redisDatabase);
+                applyMasterSlave(server, readMode, masterPool, masterIdle, slavePool, slaveIdle);
+            }
+            default -> throw new IllegalArgumentException("不支持的Redis部署模式: " + mode);
+        }
 
         // 配置锁的看门狗机制
         config.setLockWatchdogTimeout(30000); // 30秒，看门狗超时时间
         config.setKeepPubSubOrder(true); // 保持发布订阅顺序
+        return config;
+    }
 
-        return Redisson.create(config);
+    private void applyMasterSlave(BaseMasterSlaveServersConfig<?> server, ReadMode readMode, int masterPool,
+                                  int masterIdle, int slavePool, int slaveIdle) {
+        server.setReadMode(readMode)
+                .setMasterConnectionPoolSize(masterPool)
+                .setMasterConnectionMinimumIdleSize(masterIdle)
+                .setSlaveConnectionPoolSize(slavePool)
+                .setSlaveConnectionMinimumIdleSize(slaveIdle)
+                .setSubscriptionConnectionMinimumIdleSize(1)
+                .setSubscriptionConnectionPoolSize(50);
+        applyCommon(server);
+    }
+
+    private void applyCommon(BaseConfig<?> server) {
+        server.setConnectTimeout(connectTimeout)
+                .setTimeout(commandTimeout)
+                .setIdleConnectionTimeout(idleConnectionTimeout)
+                .setRetryAttempts(retryAttempts)
+                .setRetryInterval(retryInterval)
+                .setSubscriptionsPerConnection(5);
+        if (StringUtils.hasText(redisPassword)) {
+            server.setPassword(redisPassword);
+        }
+    }
+
+    private String[] nodeAddresses() {
+        if (!StringUtils.hasText(nodes)) {
+            throw new IllegalArgumentException("seckill.redis.mode=" + mode + " 时必须配置 seckill.redis.nodes");
+        }
+        return Arrays.stream(nodes.split(","))
+                .map(String::trim)
+                .filter(StringUtils::hasText)
+                .map(node -> node.contains("://") ? node : "redis://" + node)
+                .toArray(String[]::new);
+    }
+
+    private static Codec createCodec(String name) {
+        return switch (name) {
+            case "kryo5" -> new Kryo5Codec();
+            case "string" -> StringCodec.INSTANCE;
+            case "long" -> LongCodec.INSTANCE;
+            case "json" -> new JsonJacksonCodec();
+            default -> throw new IllegalArgumentException("不支持的Redis编解码器: " + name);
+        };
     }
-} 
\ No newline at end of file
+}
@@ -2,10 +2,20 @@ package yw.seckill.config;
 
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.scheduling.annotation.EnableScheduling;
 import org.springframework.scheduling.annotation.Scheduled;
 import yw.seckill.service.LockMonitorService;
+import yw.seckill.service.OrderTimeoutService;
+import yw.seckill.service.StockLayoutService;
+import yw.seckill.service.StockPreheatService;
+import yw.seckill.service.StockService;
+import yw.seckill.service.StockSyncService;
+import yw.seckill.service.WaitingRoomService;
+import yw.seckill.util.OrderConsumerBackpressure;
+import yw.seckill.util.RedisPoolMonitor;
+import yw.seckill.util.SeckillEventRecorder;
 
 /**
  * 定时任务配置类
@@ -18,6 +28,36 @@ public class ScheduleConfig {
     @Autowired
     private LockMonitorService lockMonitorService;
 
+    @Autowired
+    private StockSyncService stockSyncService;
+
+    @Autowired
+    private StockPreheatService stockPreheatService;
+
+    @Autowired
+    private StockService stockService;
+
+    @Autowired
+    private OrderTimeoutService orderTimeoutService;
+
+    @Autowired
+    private SeckillEventRecorder eventRecorder;
+
+    @Autowired
+    private RedisPoolMonitor redisPoolMonitor;
+
+    @Autowired
+    private StockLayoutService stockLayoutService;
+
+    @Autowired
+    private WaitingRoomService waitingRoomService;
+
+    @Autowired
+    private OrderConsumerBackpressure orderConsumerBackpressure;
+
+    @Value("${seckill.stock-hold.reap-batch-size:500}")
+    private int holdReapBatchSize;
+
     /**
      * 每小时清理一次过期的锁统计信息
      */
@@ -31,4 +71,133 @@ public class ScheduleConfig {
             log.error("清理过期的锁统计信息失败", e);
         }
     }
+
+    /**
+     * 定时将本节点的锁统计增量写入Redis，供集群视图合并
+     */
+    @Scheduled(fixedDelayString = "${seckill.lock-stats.flush-interval-ms:10000}")
+    public void flushLockStatistics() {
+        try {
+            int flushed = lockMonitorService.flushToRedis();
+            if (flushed > 0) {
+                log.debug("写入锁统计增量: {}个锁key", flushed);
+            }
+        } catch (Exception e) {
+            log.error("写入锁统计增量失败", e);
+        }
+    }
+
+    /**
+     * 定时将Redis中累计的扣减量写回MySQL
+     */
+    @Scheduled(fixedDelayString = "${seckill.stock-sync.interval-ms:1000}")
+    public void syncStockToDatabase() {
+        try {
+            int synced = stockSyncService.syncAll();
+            if (synced > 0) {
+                log.debug("库存写回完成: 活动数={}", synced);
+            }
+        } catch (Exception e) {
+            log.error("库存写回失败", e);
+        }
+    }
+
+    /**
+     * 定时预热即将开始的活动库存
+     */
+    @Scheduled(fixedDelayString = "${seckill.preheat.scan-interval-ms:30000}")
+    public void preheatUpcomingActivities() {
+        try {
+            int count = stockPreheatService.preheatUpcoming();
+            if (count > 0) {
+                log.info("库存预热完成: 活动数={}", count);
+            }
+        } catch (Exception e) {
+            log.error("库存预热失败", e);
+        }
+    }
+
+    /**
+     * 定时释放已过期的库存预占
+     */
+    @Scheduled(fixedDelayString = "${seckill.stock-hold.reap-interval-ms:1000}")
+    public void releaseExpiredStockHolds() {
+        try {
+            stockService.releaseExpiredHolds(holdReapBatchSize);
+        } catch (Exception e) {
+            log.error("释放过期库存预占失败", e);
+        }
+    }
+
+    /**
+     * 定时取消支付超时的订单并归还库存
+     */
+    @Scheduled(fixedDelayString = "${seckill.order.timeout-scan-interval-ms:1000}")
+    public void cancelTimeoutOrders() {
+        try {
+            orderTimeoutService.cancelExpiredOrders();
+        } catch (Exception e) {
+            log.error("取消超时订单失败", e);
+        }
+    }
+
+    /**
+     * 定时输出请求事件的聚合计数与采样事件
+     */
+    @Scheduled(fixedDelayString = "${seckill.event.flush-interval-ms:10000}")
+    public void flushSeckillEvents() {
+        try {
+            eventRecorder.flush();
+        } catch (Exception e) {
+            log.error("输出请求事件失败", e);
+        }
+    }
+
+    /**
+     * 定时保存Redisson连接池建议大小（仅自动调优模式生效）
+     */
+    @Scheduled(fixedDelayString = "${seckill.redis.autotune.save-interval-ms:60000}")
+    public void saveRedisPoolRecommendation() {
+        try {
+            redisPoolMonitor.saveRecommendation();
+        } catch (Exception e) {
+            log.error("保存连接池调优状态失败", e);
+        }
+    }
+
+    /**
+     * 每个热点探测窗口结束时升级热点商品为分桶库存，回退已冷却的分桶商品
+     */
+    @Scheduled(fixedDelayString = "${seckill.hot-key.window-ms:1000}")
+    public void rebalanceStockLayout() {
+        try {
+            stockLayoutService.rebalance();
+        } catch (Exception e) {
+            log.error("调整库存布局失败", e);
+        }
+    }
+
+    /**
+     * 定时刷新本地缓存的排队活动（即将开始或进行中的活动）
+     */
+    @Scheduled(fixedDelayString = "${seckill.waiting-room.refresh-interval-ms:5000}")
+    public void refreshWaitingRooms() {
+        try {
+            waitingRoomService.refreshRooms();
+        } catch (Exception e) {
+            log.error("刷新排队活动失败", e);
+        }
+    }
+
+    /**
+     * 定时检查订单消费者的暂停是否到期
+     */
+    @Scheduled(fixedDelayString = "${seckill.kafka.order-consumer.evaluate-interval-ms:500}")
+    public void evaluateOrderConsumerBackpressure() {
+        try {
+            orderConsumerBackpressure.evaluate();
+        } catch (Exception e) {
+            log.error("检查订单消费者背压状态失败", e);
+        }
+    }
 } 
\ No newline at end of file
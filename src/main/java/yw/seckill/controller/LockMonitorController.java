@@ -11,6 +11,7 @@ import yw.seckill.util.EnhancedRedissonUtil;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.TimeUnit;
 
 /**
@@ -21,6 +22,9 @@ import java.util.concurrent.TimeUnit;
 @RequestMapping("/api/lock-monitor")
 public class LockMonitorController {
 
+    private static final String DETAIL_DISABLED_MESSAGE =
+        "未开启锁明细记录（seckill.lock-monitor.detail-enabled=false），竞争统计请使用 /api/lock-monitor/competition/{lockKey}";
+
     @Autowired
     private LockMonitorService lockMonitorService;
     
@@ -28,10 +32,13 @@ public class LockMonitorController {
     private EnhancedRedissonUtil enhancedRedissonUtil;
 
     /**
-     * 获取指定锁的统计信息
+     * 获取指定锁的明细记录（需开启 seckill.lock-monitor.detail-enabled）
      */
     @GetMapping("/statistics/{lockKey}")
     public ApiResponse<List<LockStatistics>> getLockStatistics(@PathVariable String lockKey) {
+        if (!lockMonitorService.isDetailEnabled()) {
+            return ApiResponse.error(DETAIL_DISABLED_MESSAGE);
+        }
         try {
             List<LockStatistics> statistics = lockMonitorService.getLockStatistics(lockKey);
             return ApiResponse.success(statistics);
@@ -42,10 +49,13 @@ public class LockMonitorController {
     }
 
     /**
-     * 获取所有锁的统计信息
+     * 获取所有锁的明细记录（需开启 seckill.lock-monitor.detail-enabled）
      */
     @GetMapping("/statistics")
     public ApiResponse<Map<String, List<LockStatistics>>> getAllLockStatistics() {
+        if (!lockMonitorService.isDetailEnabled()) {
+            return ApiResponse.error(DETAIL_DISABLED_MESSAGE);
+        }
         try {
             Map<String, List<LockStatistics>> allStatistics = lockMonitorService.getAllLockStatistics();
             return ApiResponse.success(allStatistics);
@@ -56,7 +66,7 @@ public class LockMonitorController {
     }
 
     /**
-     * 获取锁竞争统计
+     * 获取本节点的锁竞争统计（预聚合计数，不需要开启明细记录）
      */
     @GetMapping("/competition/{lockKey}")
     public ApiResponse<Map<String, Object>> getLockCompetitionStats(@PathVariable String lockKey) {
@@ -69,6 +79,33 @@ public class LockMonitorController {
         }
     }
 
+    /**
+     * 获取集群范围的锁竞争统计（合并各节点写入Redis的预聚合数据，不含各节点尚未写入的最近一个周期）
+     */
+    @GetMapping("/cluster/competition/{lockKey}")
+    public ApiResponse<Map<String, Object>> getClusterLockStats(@PathVariable String lockKey,
+                                                                @RequestParam(defaultValue = "15") int windowMinutes) {
+        try {
+            return ApiResponse.success(lockMonitorService.getClusterLockStats(lockKey, windowMinutes));
+        } catch (Exception e) {
+            log.error("获取集群锁竞争统计失败: lockKey={}", lockKey, e);
+            return ApiResponse.error("获取集群锁竞争统计失败: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 获取时间窗口内集群中有统计数据的锁key
+     */
+    @GetMapping("/cluster/keys")
+    public ApiResponse<Set<String>> getClusterLockKeys(@RequestParam(defaultValue = "15") int windowMinutes) {
+        try {
+            return ApiResponse.success(lockMonitorService.getClusterLockKeys(windowMinutes));
+        } catch (Exception e) {
+            log.error("获取集群锁key失败", e);
+            return ApiResponse.error("获取集群锁key失败: " + e.getMessage());
+        }
+    }
+
     /**
      * 测试带监控的分布式锁
      */
@@ -76,27 +113,26 @@ public class LockMonitorController {
     public ApiResponse<Map<String, Object>> testLock(@RequestParam String lockKey,
                                                     @RequestParam(defaultValue = "5") long waitTime,
                                                     @RequestParam(defaultValue = "10") long leaseTime) {
+        Map<String, Object> response = new HashMap<>();
+        response.put("lockKey", lockKey);
+        response.put("waitTime", waitTime);
+        response.put("leaseTime", leaseTime);
         try {
-            long startTime = System.currentTimeMillis();
-            boolean acquired = enhancedRedissonUtil.tryLock(lockKey, waitTime, leaseTime, TimeUnit.SECONDS);
-            long totalTime = System.currentTimeMillis() - startTime;
-            
-            Map<String, Object> response = new HashMap<>();
-            response.put("lockKey", lockKey);
-            response.put("acquired", acquired);
-            response.put("totalTime", totalTime);
-            response.put("waitTime", waitTime);
-            response.put("leaseTime", leaseTime);
-            
-            if (acquired) {
-                // 模拟业务处理
-                Thread.sleep(2000);
-                enhancedRedissonUtil.unlock(lockKey);
-                response.put("message", "锁测试完成，已释放锁");
-            } else {
-                response.put("message", "获取锁失败");
+            EnhancedRedissonUtil.LockHandle handle = enhancedRedissonUtil.acquire(lockKey, waitTime, leaseTime, TimeUnit.SECONDS);
+            try (handle) {
+                response.put("acquired", handle.isAcquired());
+                response.put("totalTime", TimeUnit.NANOSECONDS.toMillis(handle.getWaitNanos()));
+
+                if (handle.isAcquired()) {
+                    // 模拟业务处理
+                    Thread.sleep(2000);
+                    response.put("message", "锁测试完成，已释放锁");
+                } else {
+                    response.put("message", "获取锁失败");
+                }
             }
-            
+            // 关闭句柄后为真实持有时长（获取成功到开始释放）
+            response.put("holdTime", TimeUnit.NANOSECONDS.toMillis(handle.getHoldNanos()));
             return ApiResponse.success(response);
         } catch (Exception e) {
             log.error("锁测试失败: lockKey={}", lockKey, e);
@@ -153,12 +189,10 @@ public class LockMonitorController {
         for (int i = 0; i < threadCount; i++) {
             final int threadId = i;
             new Thread(() -> {
-                try {
-                    boolean acquired = enhancedRedissonUtil.tryLock(lockKey, 3, 5, TimeUnit.SECONDS);
-                    if (acquired) {
+                try (EnhancedRedissonUtil.LockHandle handle = enhancedRedissonUtil.acquire(lockKey, 3, 5, TimeUnit.SECONDS)) {
+                    if (handle.isAcquired()) {
                         log.info("线程 {} 成功获取锁", threadId);
                         Thread.sleep(1000); // 模拟业务处理
-                        enhancedRedissonUtil.unlock(lockKey);
                         log.info("线程 {} 释放锁", threadId);
                     } else {
                         log.warn("线程 {} 获取锁失败", threadId);
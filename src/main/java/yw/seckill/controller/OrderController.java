@@ -4,16 +4,68 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.web.bind.annotation.*;
 import yw.seckill.config.ApiResponse;
 import yw.seckill.entity.Order;
+import yw.seckill.service.OrderRetryService;
 import yw.seckill.service.OrderService;
+import yw.seckill.service.WaitingRoomService;
 import yw.seckill.dto.CreateOrderRequestDTO;
+import yw.seckill.dto.OrderDeadLetterDTO;
+import yw.seckill.util.IdempotencyGuard;
+import yw.seckill.util.OrderConsumerBackpressure;
 import org.springframework.validation.annotation.Validated;
 
+import java.util.List;
+
 @RestController
 @RequestMapping("/seckill/order")
 public class OrderController {
     @Autowired
     private OrderService orderService;
 
+    @Autowired
+    private IdempotencyGuard idempotencyGuard;
+
+    @Autowired
+    private WaitingRoomService waitingRoomService;
+
+    @Autowired
+    private OrderConsumerBackpressure orderConsumerBackpressure;
+
+    @Autowired
+    private OrderRetryService orderRetryService;
+
+    /**
+     * 订单消费者背压状态（写库并行度、时延EWMA、是否暂停拉取）
+     */
+    @GetMapping("/consumer/backpressure")
+    public ApiResponse<OrderConsumerBackpressure.BackpressureStatus> getConsumerBackpressure() {
+        return ApiResponse.success(orderConsumerBackpressure.getStatus());
+    }
+
+    /**
+     * 查看下单死信消息（含原始位置和失败原因）
+     */
+    @GetMapping("/dlt")
+    public ApiResponse<List<OrderDeadLetterDTO>> getDeadLetters(@RequestParam(defaultValue = "0") int partition,
+                                                               @RequestParam(defaultValue = "0") long offset,
+                                                               @RequestParam(defaultValue = "20") int limit) {
+        if (limit <= 0 || limit > 500) {
+            return ApiResponse.error("limit必须在1-500之间");
+        }
+        return ApiResponse.success(orderRetryService.peekDeadLetters(partition, offset, limit));
+    }
+
+    /**
+     * 将一条死信消息重新投递到下单主题（重复调用会重复投递）
+     */
+    @PostMapping("/dlt/replay")
+    public ApiResponse<OrderDeadLetterDTO> replayDeadLetter(@RequestParam int partition, @RequestParam long offset) {
+        try {
+            return ApiResponse.success(orderRetryService.replayDeadLetter(partition, offset));
+        } catch (IllegalArgumentException e) {
+            return ApiResponse.error(e.getMessage());
+        }
+    }
+
     @GetMapping("/{orderId}")
     public ApiResponse<Order> getOrderById(@PathVariable Long orderId) {
         try {
@@ -24,11 +76,24 @@ public class OrderController {
         }
     }
 
+    /**
+     * 幂等key取请求头 Idempotency-Key；未传入时按 用户+活动+商品+客户端时间戳 生成，重复请求不会再次发送下单消息
+     * 活动开放排队时，需携带已放行的排队凭证（请求头 Waiting-Room-Ticket）
+     */
     @PostMapping("")
-    public ApiResponse<String> createOrder(@RequestBody @Validated CreateOrderRequestDTO request) {
+    public ApiResponse<String> createOrder(@RequestBody @Validated CreateOrderRequestDTO request,
+            @RequestHeader(value = IdempotencyGuard.HEADER, required = false) String idempotencyKey,
+            @RequestHeader(value = WaitingRoomService.TICKET_HEADER, required = false) String ticket) {
+        if (!waitingRoomService.isAdmittedForActivity(request.activityId(), request.userId(), ticket)) {
+            return ApiResponse.error("未获得排队入场资格");
+        }
         try {
-            orderService.createOrderAsync(request);
-            return ApiResponse.success("下单请求已受理");
+            String key = idempotencyKey != null && !idempotencyKey.isBlank() ? idempotencyKey
+                : request.userId() + ":" + request.activityId() + ":" + request.productId() + ":" + request.timestamp();
+            return idempotencyGuard.execute("order-create", key, String.class, () -> {
+                orderService.createOrderAsync(request);
+                return ApiResponse.success("下单请求已受理");
+            });
         } catch (Exception e) {
             throw e;
         }
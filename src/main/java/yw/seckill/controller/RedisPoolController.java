@@ -0,0 +1,53 @@
+package yw.seckill.controller;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import yw.seckill.config.ApiResponse;
+import yw.seckill.util.RedisPoolMonitor;
+import yw.seckill.util.RedisReadRouter;
+
+import java.util.Map;
+
+/**
+ * Redis连接池监控接口
+ */
+@Slf4j
+@RestController
+@RequestMapping("/api/redis-pool")
+public class RedisPoolController {
+
+    @Autowired
+    private RedisPoolMonitor redisPoolMonitor;
+
+    @Autowired
+    private RedisReadRouter redisReadRouter;
+
+    /**
+     * 连接池饱和度指标：各节点在途命令数、峰值并发、饱和次数及建议连接池大小
+     */
+    @GetMapping("/metrics")
+    public ApiResponse<Map<String, Object>> getMetrics() {
+        try {
+            return ApiResponse.success(redisPoolMonitor.getMetrics());
+        } catch (Exception e) {
+            log.error("获取连接池指标失败", e);
+            return ApiResponse.error("获取连接池指标失败: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 读路由指标：主节点读与从节点读的数量及比例（各节点实际命令数见 /metrics）
+     */
+    @GetMapping("/read-routing")
+    public ApiResponse<Map<String, Object>> getReadRouting() {
+        try {
+            return ApiResponse.success(redisReadRouter.getMetrics());
+        } catch (Exception e) {
+            log.error("获取读路由指标失败", e);
+            return ApiResponse.error("获取读路由指标失败: " + e.getMessage());
+        }
+    }
+}
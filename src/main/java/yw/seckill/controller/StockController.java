@@ -4,18 +4,38 @@ import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.web.bind.annotation.*;
 import yw.seckill.config.ApiResponse;
+import yw.seckill.dto.StockBatchDeductItemDTO;
+import yw.seckill.dto.StockCancelResponseDTO;
+import yw.seckill.dto.StockCartDeductResponseDTO;
+import yw.seckill.dto.StockConfirmResponseDTO;
+import yw.seckill.dto.StockDeductResponseDTO;
+import yw.seckill.dto.StockLogsResponseDTO;
+import yw.seckill.dto.StockPreOccupyResponseDTO;
+import yw.seckill.dto.StockQueryResponseDTO;
 import yw.seckill.dto.StockRequestDTO;
+import yw.seckill.dto.StockStreamResultDTO;
+import yw.seckill.service.StockLayoutService;
 import yw.seckill.service.StockService;
+import yw.seckill.service.WaitingRoomService;
+import yw.seckill.util.IdempotencyGuard;
+import yw.seckill.util.NdjsonPipeline;
 
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import jakarta.validation.Valid;
+import java.io.IOException;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletionStage;
 import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * 库存控制器
  * 提供库存管理的REST API接口
+ * 热点接口返回不可变的响应record（字段为基本类型，避免每次请求创建HashMap和装箱），固定的失败响应预先创建复用
  */
 @Slf4j
 @RestController
@@ -25,50 +45,75 @@ public class StockController {
     @Autowired
     private StockService stockService;
 
+    @Autowired
+    private StockLayoutService stockLayoutService;
+
+    @Autowired
+    private IdempotencyGuard idempotencyGuard;
+
+    @Autowired
+    private WaitingRoomService waitingRoomService;
+
+    @Autowired
+    private NdjsonPipeline ndjsonPipeline;
+
     private final AtomicLong orderIdGenerator = new AtomicLong(1);
 
+    private static final ApiResponse<StockDeductResponseDTO> DEDUCT_INSUFFICIENT = ApiResponse.error("库存不足");
+    private static final ApiResponse<StockPreOccupyResponseDTO> PRE_OCCUPY_INSUFFICIENT = ApiResponse.error("库存不足");
+    private static final ApiResponse<StockConfirmResponseDTO> CONFIRM_FAILED = ApiResponse.error("预占不存在、已过期或库存不足");
+    private static final ApiResponse<StockCancelResponseDTO> CANCEL_FAILED = ApiResponse.error("预占不存在或已释放");
+    private static final ApiResponse<StockDeductResponseDTO> DEDUCT_NOT_ADMITTED = ApiResponse.error("未获得排队入场资格");
+    private static final ApiResponse<StockDeductResponseDTO> DEDUCT_MISSING_IDEMPOTENCY_KEY =
+        ApiResponse.error("缺少请求头 " + IdempotencyGuard.HEADER);
+
     /**
      * 库存扣减
+     * 必须携带请求头 Idempotency-Key（客户端每次购买生成新key，仅网络重试时沿用），重复请求返回首次扣减的结果
+     * Redis异常时返回错误且不缓存结果，客户端可用同一key重试
+     * 商品处于排队活动中时，需携带已放行的排队凭证（请求头 Waiting-Room-Ticket）
      */
     @PostMapping("/deduct")
-    public ApiResponse<Map<String, Object>> deductStock(@Valid @RequestBody StockRequestDTO request) {
+    public ApiResponse<StockDeductResponseDTO> deductStock(@Valid @RequestBody StockRequestDTO request,
+            @RequestHeader(value = IdempotencyGuard.HEADER, required = false) String idempotencyKey,
+            @RequestHeader(value = WaitingRoomService.TICKET_HEADER, required = false) String ticket) {
+        if (idempotencyKey == null || idempotencyKey.isBlank()) {
+            return DEDUCT_MISSING_IDEMPOTENCY_KEY;
+        }
+        if (!waitingRoomService.isAdmittedForProduct(request.getProductId(), request.getUserId(), ticket)) {
+            return DEDUCT_NOT_ADMITTED;
+        }
         try {
-            Long orderId = orderIdGenerator.incrementAndGet();
-            StockService.StockDeductResult result = stockService.deductStock(
-                request.getProductId(), 
-                request.getQuantity(), 
-                orderId, 
-                request.getUserId()
-            );
-
-            Map<String, Object> response = new HashMap<>();
-            response.put("success", result.isSuccess());
-            response.put("productId", request.getProductId());
-            response.put("quantity", request.getQuantity());
-            response.put("newStock", result.getNewStock());
-            response.put("originalStock", result.getOriginalStock());
-            response.put("orderId", orderId);
-
-            if (result.isSuccess()) {
-                log.info("库存扣减成功: productId={}, quantity={}, newStock={}", 
-                    request.getProductId(), request.getQuantity(), result.getNewStock());
-                return ApiResponse.success(response);
-            } else {
-                log.warn("库存扣减失败: productId={}, quantity={}, currentStock={}", 
-                    request.getProductId(), request.getQuantity(), result.getOriginalStock());
-                return ApiResponse.error("库存不足");
-            }
+            return idempotencyGuard.execute("stock-deduct", idempotencyKey,
+                StockDeductResponseDTO.class, () -> doDeductStock(request));
         } catch (Exception e) {
             log.error("库存扣减异常: productId={}, quantity={}", request.getProductId(), request.getQuantity(), e);
             return ApiResponse.error("库存扣减异常: " + e.getMessage());
         }
     }
 
+    private ApiResponse<StockDeductResponseDTO> doDeductStock(StockRequestDTO request) {
+        Long orderId = orderIdGenerator.incrementAndGet();
+        StockService.StockDeductResult result = stockService.deductStock(
+            request.getProductId(), 
+            request.getQuantity(), 
+            orderId, 
+            request.getUserId()
+        );
+
+        if (result.isSuccess()) {
+            return ApiResponse.success(new StockDeductResponseDTO(true, request.getProductId(),
+                request.getQuantity(), result.getNewStock(), result.getOriginalStock(), orderId,
+                result.getDeductionId()));
+        }
+        return DEDUCT_INSUFFICIENT;
+    }
+
     /**
      * 批量库存扣减
      */
     @PostMapping("/deduct/batch")
-    public ApiResponse<List<Map<String, Object>>> batchDeductStock(@Valid @RequestBody List<StockRequestDTO> requests) {
+    public ApiResponse<List<StockBatchDeductItemDTO>> batchDeductStock(@Valid @RequestBody List<StockRequestDTO> requests) {
         try {
             if (requests.size() > 100) {
                 return ApiResponse.error("批量扣减数量不能超过100");
@@ -85,19 +130,11 @@ public class StockController {
 
             List<StockService.StockDeductResult> results = stockService.batchDeductStock(deductRequests);
 
-            List<Map<String, Object>> response = results.stream()
-                .map(result -> {
-                    Map<String, Object> item = new HashMap<>();
-                    item.put("success", result.isSuccess());
-                    item.put("newStock", result.getNewStock());
-                    item.put("originalStock", result.getOriginalStock());
-                    item.put("deductQuantity", result.getDeductQuantity());
-                    return item;
-                })
+            List<StockBatchDeductItemDTO> response = results.stream()
+                .map(result -> new StockBatchDeductItemDTO(result.isSuccess(), result.getNewStock(),
+                    result.getOriginalStock(), result.getDeductQuantity()))
                 .toList();
 
-            log.info("批量库存扣减完成: 请求数量={}, 成功数量={}", 
-                requests.size(), results.stream().filter(StockService.StockDeductResult::isSuccess).count());
             return ApiResponse.success(response);
         } catch (Exception e) {
             log.error("批量库存扣减异常", e);
@@ -105,11 +142,140 @@ public class StockController {
         }
     }
 
+    /**
+     * 购物车整单库存扣减：全部商品一次脚本调用先校验后扣减，任一商品库存不足则整单失败且不做任何修改
+     * 幂等key只取请求头 Idempotency-Key；每个商品按各自所属的排队活动校验排队凭证
+     */
+    @PostMapping("/deduct/cart")
+    public ApiResponse<StockCartDeductResponseDTO> deductCart(@Valid @RequestBody List<StockRequestDTO> requests,
+            @RequestHeader(value = IdempotencyGuard.HEADER, required = false) String idempotencyKey,
+            @RequestHeader(value = WaitingRoomService.TICKET_HEADER, required = false) String ticket) {
+        if (requests.isEmpty() || requests.size() > 100) {
+            return ApiResponse.error("购物车商品数量须在1到100之间");
+        }
+        for (StockRequestDTO request : requests) {
+            if (!waitingRoomService.isAdmittedForProduct(request.getProductId(), request.getUserId(), ticket)) {
+                return ApiResponse.error("未获得排队入场资格: productId=" + request.getProductId());
+            }
+        }
+        try {
+            return idempotencyGuard.execute("stock-deduct-cart", idempotencyKey,
+                StockCartDeductResponseDTO.class, () -> doDeductCart(requests));
+        } catch (Exception e) {
+            log.error("购物车库存扣减异常: items={}", requests.size(), e);
+            return ApiResponse.error("购物车库存扣减异常: " + e.getMessage());
+        }
+    }
+
+    private ApiResponse<StockCartDeductResponseDTO> doDeductCart(List<StockRequestDTO> requests) {
+        long orderId = orderIdGenerator.incrementAndGet();
+        List<StockService.StockDeductRequest> items = requests.stream()
+            .map(request -> new StockService.StockDeductRequest(request.getProductId(), request.getQuantity(),
+                orderId, request.getUserId()))
+            .toList();
+
+        StockService.CartDeductResult result = stockService.deductCart(items);
+        if (!result.isSuccess()) {
+            if (result.getFailedProductId() != null) {
+                return ApiResponse.error("库存不足: productId=" + result.getFailedProductId()
+                    + ", available=" + result.getFailedAvailableStock());
+            }
+            return ApiResponse.error(result.getMessage());
+        }
+
+        List<StockDeductResponseDTO> lines = new ArrayList<>(result.getItems().size());
+        for (int i = 0; i < result.getItems().size(); i++) {
+            StockService.StockDeductResult item = result.getItems().get(i);
+            lines.add(new StockDeductResponseDTO(true, result.getLines().get(i).getProductId(),
+                item.getDeductQuantity(), item.getNewStock(), item.getOriginalStock(), orderId, 0));
+        }
+        return ApiResponse.success(new StockCartDeductResponseDTO(orderId, lines));
+    }
+
+    /**
+     * 流式批量库存扣减（NDJSON）：请求体每行一个 {"productId","quantity","userId","orderId"}，行数不受100条限制
+     * 按输入顺序每行返回一行 StockStreamResultDTO；每 seckill.stream.chunk-size 行一次扣减脚本，多块流水线执行
+     */
+    @PostMapping(value = "/deduct/stream", consumes = NdjsonPipeline.MEDIA_TYPE, produces = NdjsonPipeline.MEDIA_TYPE)
+    public void streamDeductStock(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        response.setContentType(NdjsonPipeline.MEDIA_TYPE);
+        long count = ndjsonPipeline.process(request.getInputStream(), StockRequestDTO.class, response.getOutputStream(),
+            this::deductChunk);
+        log.info("流式批量库存扣减完成: lines={}", count);
+    }
+
+    private CompletionStage<List<StockStreamResultDTO>> deductChunk(List<StockRequestDTO> chunk) {
+        List<StockService.StockDeductRequest> deductRequests = new ArrayList<>(chunk.size());
+        for (StockRequestDTO item : chunk) {
+            if (isValidStreamItem(item)) {
+                Long orderId = item.getOrderId() != null ? item.getOrderId() : orderIdGenerator.incrementAndGet();
+                deductRequests.add(new StockService.StockDeductRequest(item.getProductId(), item.getQuantity(),
+                    orderId, item.getUserId()));
+            }
+        }
+        return stockService.batchDeductStockAsync(deductRequests).thenApply(results -> {
+            Iterator<StockService.StockDeductResult> it = results.iterator();
+            List<StockStreamResultDTO> lines = new ArrayList<>(chunk.size());
+            for (StockRequestDTO item : chunk) {
+                if (!isValidStreamItem(item)) {
+                    lines.add(invalidStreamItem(item));
+                    continue;
+                }
+                StockService.StockDeductResult result = it.next();
+                lines.add(new StockStreamResultDTO(item.getProductId(), item.getQuantity(), result.isSuccess(),
+                    result.isSuccess() ? result.getNewStock() : result.getOriginalStock(),
+                    result.isSuccess() ? null : "库存不足"));
+            }
+            return lines;
+        });
+    }
+
+    /**
+     * 流式批量增加库存（NDJSON）：请求体每行一个 {"productId","quantity"}，按输入顺序每行返回一行 StockStreamResultDTO
+     * 每 seckill.stream.chunk-size 行放入一个Redis批次一次提交，多块流水线执行
+     */
+    @PostMapping(value = "/increase/stream", consumes = NdjsonPipeline.MEDIA_TYPE, produces = NdjsonPipeline.MEDIA_TYPE)
+    public void streamIncreaseStock(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        response.setContentType(NdjsonPipeline.MEDIA_TYPE);
+        long count = ndjsonPipeline.process(request.getInputStream(), StockRequestDTO.class, response.getOutputStream(),
+            this::increaseChunk);
+        log.info("流式批量增加库存完成: lines={}", count);
+    }
+
+    private CompletionStage<List<StockStreamResultDTO>> increaseChunk(List<StockRequestDTO> chunk) {
+        List<StockService.StockIncreaseRequest> increaseRequests = chunk.stream()
+            .filter(this::isValidStreamItem)
+            .map(item -> new StockService.StockIncreaseRequest(item.getProductId(), item.getQuantity()))
+            .toList();
+        return stockService.batchIncreaseStockAsync(increaseRequests).thenApply(results -> {
+            Iterator<Long> it = results.iterator();
+            List<StockStreamResultDTO> lines = new ArrayList<>(chunk.size());
+            for (StockRequestDTO item : chunk) {
+                if (!isValidStreamItem(item)) {
+                    lines.add(invalidStreamItem(item));
+                    continue;
+                }
+                Long newStock = it.next();
+                lines.add(new StockStreamResultDTO(item.getProductId(), item.getQuantity(), newStock != null,
+                    newStock != null ? newStock.intValue() : 0, newStock != null ? null : "增加库存失败"));
+            }
+            return lines;
+        });
+    }
+
+    private boolean isValidStreamItem(StockRequestDTO item) {
+        return item.getProductId() != null && item.getQuantity() != null && item.getQuantity() > 0;
+    }
+
+    private StockStreamResultDTO invalidStreamItem(StockRequestDTO item) {
+        return new StockStreamResultDTO(item.getProductId(), item.getQuantity(), false, 0, "商品ID不能为空且数量必须大于0");
+    }
+
     /**
      * 库存预占
      */
     @PostMapping("/pre-occupy")
-    public ApiResponse<Map<String, Object>> preOccupyStock(@Valid @RequestBody StockRequestDTO request,
+    public ApiResponse<StockPreOccupyResponseDTO> preOccupyStock(@Valid @RequestBody StockRequestDTO request,
                                                           @RequestParam(defaultValue = "300") Long expireSeconds) {
         try {
             StockService.StockPreOccupyResult result = stockService.preOccupyStock(
@@ -118,22 +284,12 @@ public class StockController {
                 expireSeconds
             );
 
-            Map<String, Object> response = new HashMap<>();
-            response.put("success", result.isSuccess());
-            response.put("productId", request.getProductId());
-            response.put("quantity", request.getQuantity());
-            response.put("availableStock", result.getAvailableStock());
-            response.put("totalStock", result.getTotalStock());
-            response.put("expireSeconds", expireSeconds);
-
             if (result.isSuccess()) {
-                log.info("库存预占成功: productId={}, quantity={}, availableStock={}", 
-                    request.getProductId(), request.getQuantity(), result.getAvailableStock());
-                return ApiResponse.success(response);
+                return ApiResponse.success(new StockPreOccupyResponseDTO(true, request.getProductId(),
+                    request.getQuantity(), result.getAvailableStock(), result.getTotalStock(),
+                    expireSeconds, result.getReservationId()));
             } else {
-                log.warn("库存预占失败: productId={}, quantity={}, availableStock={}", 
-                    request.getProductId(), request.getQuantity(), result.getAvailableStock());
-                return ApiResponse.error("库存不足");
+                return PRE_OCCUPY_INSUFFICIENT;
             }
         } catch (Exception e) {
             log.error("库存预占异常: productId={}, quantity={}", request.getProductId(), request.getQuantity(), e);
@@ -141,20 +297,57 @@ public class StockController {
         }
     }
 
+    /**
+     * 确认预占（转为正式扣减）
+     */
+    @PostMapping("/pre-occupy/confirm")
+    public ApiResponse<StockConfirmResponseDTO> confirmPreOccupy(@RequestParam Long productId,
+                                                            @RequestParam Long reservationId) {
+        try {
+            StockService.StockDeductResult result = stockService.confirmPreOccupy(productId, reservationId);
+
+            if (result.isSuccess()) {
+                return ApiResponse.success(new StockConfirmResponseDTO(true, productId, reservationId,
+                    result.getDeductQuantity(), result.getNewStock()));
+            } else {
+                return CONFIRM_FAILED;
+            }
+        } catch (Exception e) {
+            log.error("确认预占异常: productId={}, reservationId={}", productId, reservationId, e);
+            return ApiResponse.error("确认预占异常: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 取消预占
+     */
+    @PostMapping("/pre-occupy/cancel")
+    public ApiResponse<StockCancelResponseDTO> cancelPreOccupy(@RequestParam Long productId,
+                                                           @RequestParam Long reservationId) {
+        try {
+            int released = stockService.cancelPreOccupy(productId, reservationId);
+
+            if (released > 0) {
+                return ApiResponse.success(new StockCancelResponseDTO(productId, reservationId, released));
+            } else {
+                return CANCEL_FAILED;
+            }
+        } catch (Exception e) {
+            log.error("取消预占异常: productId={}, reservationId={}", productId, reservationId, e);
+            return ApiResponse.error("取消预占异常: " + e.getMessage());
+        }
+    }
+
     /**
      * 获取商品库存
+     * 默认返回本地近端缓存中的展示库存，consistent=true 时直接读取Redis
      */
     @GetMapping("/{productId}")
-    public ApiResponse<Map<String, Object>> getStock(@PathVariable Long productId) {
+    public ApiResponse<StockQueryResponseDTO> getStock(@PathVariable Long productId,
+                                                    @RequestParam(defaultValue = "false") boolean consistent) {
         try {
-            int stock = stockService.getStock(productId);
-            
-            Map<String, Object> response = new HashMap<>();
-            response.put("productId", productId);
-            response.put("stock", stock);
-            
-            log.info("获取库存成功: productId={}, stock={}", productId, stock);
-            return ApiResponse.success(response);
+            int stock = consistent ? stockService.getStock(productId) : stockService.getDisplayStock(productId);
+            return ApiResponse.success(new StockQueryResponseDTO(productId, stock, consistent));
         } catch (Exception e) {
             log.error("获取库存异常: productId={}", productId, e);
             return ApiResponse.error("获取库存异常: " + e.getMessage());
@@ -207,24 +400,86 @@ public class StockController {
      * 获取库存日志
      */
     @GetMapping("/logs/{productId}")
-    public ApiResponse<Map<String, Object>> getStockLogs(@PathVariable Long productId,
+    public ApiResponse<StockLogsResponseDTO> getStockLogs(@PathVariable Long productId,
                                                         @RequestParam(defaultValue = "10") Integer limit) {
         try {
             List<String> logs = stockService.getStockLogs(productId, limit);
             
-            Map<String, Object> response = new HashMap<>();
-            response.put("productId", productId);
-            response.put("logs", logs);
-            response.put("count", logs.size());
-            
             log.info("获取库存日志成功: productId={}, count={}", productId, logs.size());
-            return ApiResponse.success(response);
+            return ApiResponse.success(new StockLogsResponseDTO(productId, logs, logs.size()));
         } catch (Exception e) {
             log.error("获取库存日志异常: productId={}", productId, e);
             return ApiResponse.error("获取库存日志异常: " + e.getMessage());
         }
     }
 
+    /**
+     * 迁移旧编码的库存值为纯整数字符串
+     */
+    @PostMapping("/migrate-encoding")
+    public ApiResponse<Map<String, Object>> migrateStockEncoding() {
+        try {
+            StockService.StockEncodingMigrationResult result = stockService.migrateStockEncoding();
+
+            Map<String, Object> response = new HashMap<>();
+            response.put("scanned", result.getScanned());
+            response.put("migrated", result.getMigrated());
+            response.put("relocated", result.getRelocated());
+            response.put("failed", result.getFailed());
+            return ApiResponse.success(response);
+        } catch (Exception e) {
+            log.error("迁移库存编码异常", e);
+            return ApiResponse.error("迁移库存编码异常: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 查询商品库存布局（单key/分桶）及本节点观测的QPS
+     */
+    @GetMapping("/layout/{productId}")
+    public ApiResponse<Map<String, Object>> getStockLayout(@PathVariable Long productId) {
+        try {
+            return ApiResponse.success(stockLayoutService.getLayout(productId));
+        } catch (Exception e) {
+            log.error("查询库存布局异常: productId={}", productId, e);
+            return ApiResponse.error("查询库存布局异常: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 手动将商品升级为分桶库存
+     */
+    @PostMapping("/layout/{productId}/promote")
+    public ApiResponse<Map<String, Object>> promoteStockLayout(@PathVariable Long productId) {
+        try {
+            int result = stockLayoutService.promote(productId);
+            if (result < 0) {
+                return ApiResponse.error("单key库存不存在或库存少于桶数");
+            }
+            return ApiResponse.success(stockLayoutService.getLayout(productId));
+        } catch (Exception e) {
+            log.error("升级分桶库存异常: productId={}", productId, e);
+            return ApiResponse.error("升级分桶库存异常: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 手动将分桶库存回退为单key
+     */
+    @PostMapping("/layout/{productId}/collapse")
+    public ApiResponse<Map<String, Object>> collapseStockLayout(@PathVariable Long productId) {
+        try {
+            int result = stockLayoutService.collapse(productId);
+            if (result < 0) {
+                return ApiResponse.error("商品不是分桶库存");
+            }
+            return ApiResponse.success(stockLayoutService.getLayout(productId));
+        } catch (Exception e) {
+            log.error("回退单key库存异常: productId={}", productId, e);
+            return ApiResponse.error("回退单key库存异常: " + e.getMessage());
+        }
+    }
+
     /**
      * 性能测试接口
      */
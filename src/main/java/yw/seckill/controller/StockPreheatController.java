@@ -0,0 +1,59 @@
+package yw.seckill.controller;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.web.bind.annotation.*;
+import yw.seckill.config.ApiResponse;
+import yw.seckill.service.StockPreheatService;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 库存预热控制器
+ */
+@Slf4j
+@RestController
+@RequestMapping("/api/stock-preheat")
+public class StockPreheatController {
+
+    @Autowired
+    private StockPreheatService stockPreheatService;
+
+    /**
+     * 手动预热指定活动
+     */
+    @PostMapping("/{activityId}")
+    public ApiResponse<StockPreheatService.PreheatResult> preheat(@PathVariable Long activityId,
+                                                                 @RequestParam(defaultValue = "false") boolean force) {
+        try {
+            StockPreheatService.PreheatResult result = stockPreheatService.preheatActivity(activityId, force);
+            if (result == null) {
+                return ApiResponse.error("商品库存已预热，如需覆盖请使用force=true");
+            }
+            return ApiResponse.success(result);
+        } catch (Exception e) {
+            log.error("库存预热失败: activityId={}", activityId, e);
+            return ApiResponse.error("库存预热失败: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 查询预热状态（含最近一次预热耗时）
+     */
+    @GetMapping("/{activityId}")
+    public ApiResponse<Map<String, Object>> status(@PathVariable Long activityId,
+                                                   @RequestParam Long productId) {
+        try {
+            Map<String, Object> response = new HashMap<>();
+            response.put("activityId", activityId);
+            response.put("productId", productId);
+            response.put("ready", stockPreheatService.isReady(productId));
+            response.put("lastResult", stockPreheatService.getLastResult(activityId));
+            return ApiResponse.success(response);
+        } catch (Exception e) {
+            log.error("查询预热状态失败: activityId={}", activityId, e);
+            return ApiResponse.error("查询预热状态失败: " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package yw.seckill.controller;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.web.bind.annotation.*;
+import yw.seckill.config.ApiResponse;
+import yw.seckill.service.StockSyncService;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 库存写回同步控制器
+ */
+@Slf4j
+@RestController
+@RequestMapping("/api/stock-sync")
+public class StockSyncController {
+
+    @Autowired
+    private StockSyncService stockSyncService;
+
+    /**
+     * 立即写回指定活动的库存
+     */
+    @PostMapping("/{activityId}")
+    public ApiResponse<Map<String, Object>> syncActivity(@PathVariable Long activityId) {
+        try {
+            int delta = stockSyncService.syncActivity(activityId);
+
+            Map<String, Object> response = new HashMap<>();
+            response.put("activityId", activityId);
+            response.put("syncedDelta", delta);
+            return ApiResponse.success(response);
+        } catch (Exception e) {
+            log.error("库存写回失败: activityId={}", activityId, e);
+            return ApiResponse.error("库存写回失败: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 校验检查点
+     */
+    @GetMapping("/checkpoint/{activityId}")
+    public ApiResponse<Map<String, Object>> verifyCheckpoint(@PathVariable Long activityId) {
+        try {
+            return ApiResponse.success(stockSyncService.verifyCheckpoint(activityId));
+        } catch (Exception e) {
+            log.error("校验库存检查点失败: activityId={}", activityId, e);
+            return ApiResponse.error("校验库存检查点失败: " + e.getMessage());
+        }
+    }
+}
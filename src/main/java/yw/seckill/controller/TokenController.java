@@ -2,13 +2,18 @@ package yw.seckill.controller;
 
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.web.bind.annotation.*;
 import yw.seckill.config.ApiResponse;
 import yw.seckill.dto.TokenRequestDTO;
 import yw.seckill.dto.TokenResponseDTO;
 import yw.seckill.service.TokenService;
+import yw.seckill.util.IdempotencyGuard;
+import yw.seckill.util.NdjsonPipeline;
 
+import jakarta.servlet.http.HttpServletResponse;
 import jakarta.validation.Valid;
+import java.io.IOException;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -24,6 +29,15 @@ public class TokenController {
     @Autowired
     private TokenService tokenService;
 
+    @Autowired
+    private IdempotencyGuard idempotencyGuard;
+
+    @Autowired
+    private NdjsonPipeline ndjsonPipeline;
+
+    @Value("${seckill.stream.max-tokens:1000000}")
+    private int maxStreamTokens;
+
     /**
      * 生成单个令牌
      */
@@ -76,6 +90,24 @@ public class TokenController {
         }
     }
 
+    /**
+     * 流式批量发放令牌（NDJSON）：每行一个令牌字符串，数量上限 seckill.stream.max-tokens
+     * 每 seckill.stream.chunk-size 个令牌预留一段ID并一次批量写入，多块流水线执行，服务端不持有完整令牌列表
+     */
+    @PostMapping(value = "/generate/stream", produces = NdjsonPipeline.MEDIA_TYPE)
+    public void streamGenerateTokens(@Valid @RequestBody TokenRequestDTO request, HttpServletResponse response)
+            throws IOException {
+        response.setContentType(NdjsonPipeline.MEDIA_TYPE);
+        if (request.getCount() == null || request.getCount() > maxStreamTokens) {
+            response.setStatus(HttpServletResponse.SC_BAD_REQUEST);
+            ndjsonPipeline.writeError(response.getOutputStream(), "流式生成数量须在1到" + maxStreamTokens + "之间");
+            return;
+        }
+        long count = ndjsonPipeline.generate(request.getCount(), response.getOutputStream(),
+            size -> tokenService.generateTokensAsync(request.getActivityId(), size, request.getTtlSeconds()));
+        log.info("流式批量生成令牌完成: activityId={}, count={}", request.getActivityId(), count);
+    }
+
     /**
      * 验证令牌
      */
@@ -105,23 +137,28 @@ public class TokenController {
 
     /**
      * 使用令牌
+     * 幂等key取请求头 Idempotency-Key，未传入时为令牌本身：客户端重试时返回首次使用的结果，而不是"已被使用"
      */
     @PostMapping("/consume")
-    public ApiResponse<Map<String, Object>> consumeToken(@RequestParam String token) {
+    public ApiResponse<Map<String, Object>> consumeToken(@RequestParam String token,
+            @RequestHeader(value = IdempotencyGuard.HEADER, required = false) String idempotencyKey) {
         try {
-            boolean consumed = tokenService.consumeToken(token);
-            
-            Map<String, Object> response = new HashMap<>();
-            response.put("token", token);
-            response.put("consumed", consumed);
-            
-            if (consumed) {
-                log.info("令牌使用成功: token={}", token);
-                return ApiResponse.success(response);
-            } else {
-                log.warn("令牌使用失败: token={}", token);
-                return ApiResponse.error("令牌无效或已被使用");
-            }
+            String key = idempotencyKey != null && !idempotencyKey.isBlank() ? idempotencyKey : token;
+            return idempotencyGuard.execute("token-consume", key, Map.class, () -> {
+                boolean consumed = tokenService.consumeToken(token);
+
+                Map<String, Object> response = new HashMap<>();
+                response.put("token", token);
+                response.put("consumed", consumed);
+
+                if (consumed) {
+                    log.info("令牌使用成功: token={}", token);
+                    return ApiResponse.success(response);
+                } else {
+                    log.warn("令牌使用失败: token={}", token);
+                    return ApiResponse.error("令牌无效或已被使用");
+                }
+            });
         } catch (Exception e) {
             log.error("令牌使用异常: token={}", token, e);
             return ApiResponse.error("令牌使用异常: " + e.getMessage());
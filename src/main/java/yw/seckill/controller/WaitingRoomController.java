@@ -0,0 +1,43 @@
+package yw.seckill.controller;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.web.bind.annotation.*;
+import yw.seckill.config.ApiResponse;
+import yw.seckill.service.WaitingRoomService;
+
+/**
+ * 秒杀排队控制器
+ */
+@Slf4j
+@RestController
+@RequestMapping("/seckill/waiting-room")
+public class WaitingRoomController {
+
+    @Autowired
+    private WaitingRoomService waitingRoomService;
+
+    /**
+     * 领取排队号，返回入场凭证及当前排队状态
+     */
+    @PostMapping("/{activityId}")
+    public ApiResponse<WaitingRoomService.WaitingRoomStatus> enter(@PathVariable Long activityId,
+                                                                   @RequestParam Long userId) {
+        try {
+            return ApiResponse.success(waitingRoomService.enter(activityId, userId));
+        } catch (IllegalArgumentException e) {
+            return ApiResponse.error(e.getMessage());
+        } catch (Exception e) {
+            log.error("领取排队号失败: activityId={}, userId={}", activityId, userId, e);
+            return ApiResponse.error("领取排队号失败: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 查询排队状态（本地计算，售罄判断读取展示库存近端缓存，可高频轮询）
+     */
+    @GetMapping("/status")
+    public ApiResponse<WaitingRoomService.WaitingRoomStatus> status(@RequestParam String ticket) {
+        return ApiResponse.success(waitingRoomService.status(ticket));
+    }
+}
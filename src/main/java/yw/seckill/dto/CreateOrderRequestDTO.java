@@ -1,9 +1,17 @@
 package yw.seckill.dto;
 
-public record CreateOrderRequestDTO(Long userId, Long activityId, Long productId, Long timestamp) {
+/**
+ * 下单请求
+ * deductionId 为库存扣减接口返回的扣减明细ID（可选），订单超时取消时按该明细归还库存；未携带时取消订单不归还库存
+ */
+public record CreateOrderRequestDTO(Long userId, Long activityId, Long productId, Long timestamp, Long deductionId) {
     public CreateOrderRequestDTO {
         if (userId == null || activityId == null || productId == null || timestamp == null) {
             throw new IllegalArgumentException("参数不能为空");
         }
     }
-} 
\ No newline at end of file
+
+    public CreateOrderRequestDTO(Long userId, Long activityId, Long productId, Long timestamp) {
+        this(userId, activityId, productId, timestamp, null);
+    }
+}
@@ -0,0 +1,9 @@
+package yw.seckill.dto;
+
+/**
+ * 下单死信消息（message 为JSON原文或二进制的十六进制，original* 为首次失败时的原始位置）
+ */
+public record OrderDeadLetterDTO(int partition, long offset, String key, String message, String originalTopic,
+                                 Integer originalPartition, Long originalOffset, int attempts, String exceptionClass,
+                                 String exceptionMessage, long timestamp) {
+}
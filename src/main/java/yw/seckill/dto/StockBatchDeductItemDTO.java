@@ -0,0 +1,7 @@
+package yw.seckill.dto;
+
+/**
+ * 批量库存扣减的单项结果
+ */
+public record StockBatchDeductItemDTO(boolean success, int newStock, int originalStock, int deductQuantity) {
+}
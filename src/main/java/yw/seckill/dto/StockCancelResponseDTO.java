@@ -0,0 +1,7 @@
+package yw.seckill.dto;
+
+/**
+ * 取消预占响应
+ */
+public record StockCancelResponseDTO(Long productId, Long reservationId, int released) {
+}
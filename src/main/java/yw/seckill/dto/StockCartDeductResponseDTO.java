@@ -0,0 +1,9 @@
+package yw.seckill.dto;
+
+import java.util.List;
+
+/**
+ * 购物车整单扣减的响应（items 按合并后的商品顺序）
+ */
+public record StockCartDeductResponseDTO(long orderId, List<StockDeductResponseDTO> items) {
+}
@@ -0,0 +1,7 @@
+package yw.seckill.dto;
+
+/**
+ * 确认预占响应
+ */
+public record StockConfirmResponseDTO(boolean success, Long productId, Long reservationId, int quantity, int newStock) {
+}
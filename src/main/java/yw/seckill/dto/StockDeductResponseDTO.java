@@ -0,0 +1,9 @@
+package yw.seckill.dto;
+
+/**
+ * 库存扣减响应
+ * deductionId 为扣减明细ID（单商品扣减时大于0），下单请求携带它，订单超时取消时按明细归还库存
+ */
+public record StockDeductResponseDTO(boolean success, Long productId, int quantity,
+                                     int newStock, int originalStock, long orderId, long deductionId) {
+}
@@ -0,0 +1,9 @@
+package yw.seckill.dto;
+
+import java.util.List;
+
+/**
+ * 库存日志响应
+ */
+public record StockLogsResponseDTO(Long productId, List<String> logs, int count) {
+}
@@ -0,0 +1,8 @@
+package yw.seckill.dto;
+
+/**
+ * 库存预占响应
+ */
+public record StockPreOccupyResponseDTO(boolean success, Long productId, int quantity, int availableStock,
+                                        int totalStock, long expireSeconds, Long reservationId) {
+}
@@ -0,0 +1,7 @@
+package yw.seckill.dto;
+
+/**
+ * 库存查询响应
+ */
+public record StockQueryResponseDTO(Long productId, int stock, boolean consistent) {
+}
@@ -0,0 +1,7 @@
+package yw.seckill.dto;
+
+/**
+ * 流式批量扣减/增加库存的单行结果（stock 为操作后库存，失败时为当前库存或0）
+ */
+public record StockStreamResultDTO(Long productId, Integer quantity, boolean success, int stock, String message) {
+}
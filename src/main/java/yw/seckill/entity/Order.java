@@ -18,6 +18,7 @@ public class Order {
     private String orderNo;
     private BigDecimal amount;
     private Integer status; // 0-待支付 1-已支付 2-已取消 3-已退款
+    private Long deductionId; // 库存扣减明细ID，超时取消时按明细归还库存
     private LocalDateTime createTime;
     private LocalDateTime updateTime;
 } 
\ No newline at end of file
@@ -0,0 +1,24 @@
+package yw.seckill.entity;
+
+import com.baomidou.mybatisplus.annotation.IdType;
+import com.baomidou.mybatisplus.annotation.TableId;
+import com.baomidou.mybatisplus.annotation.TableName;
+import lombok.Data;
+import java.time.LocalDateTime;
+
+/**
+ * 库存回写检查点
+ * 与库存扣减在同一事务中更新，last_seq 用于保证同一批次只回写一次
+ */
+@Data
+@TableName("t_stock_sync_checkpoint")
+public class StockSyncCheckpoint {
+    @TableId(type = IdType.INPUT)
+    private Long activityId;
+    private Long productId;
+    private Long lastSeq; // 最后一次已回写的批次号
+    private Integer lastDelta; // 最后一次回写的扣减量
+    private Long syncedTotal; // 累计回写的扣减量
+    private Integer dbStock; // 回写后数据库中的库存
+    private LocalDateTime syncTime;
+}
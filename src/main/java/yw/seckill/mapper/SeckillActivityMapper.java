@@ -3,6 +3,7 @@ package yw.seckill.mapper;
 import com.baomidou.mybatisplus.core.mapper.BaseMapper;
 import org.apache.ibatis.annotations.Mapper;
 import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.annotations.Select;
 import org.apache.ibatis.annotations.Update;
 import yw.seckill.entity.SeckillActivity;
 
@@ -11,4 +12,13 @@ public interface SeckillActivityMapper extends BaseMapper<SeckillActivity> {
     
     @Update("UPDATE t_seckill_activity SET seckill_stock = seckill_stock - 1 WHERE id = #{activityId} AND seckill_stock > 0")
     int decreaseStock(@Param("activityId") Long activityId);
+
+    /**
+     * 按写回批次扣减库存（delta 为负数时增加库存），扣减后库存不能为负，返回0表示活动不存在或库存不足
+     */
+    @Update("UPDATE t_seckill_activity SET seckill_stock = seckill_stock - #{delta} WHERE id = #{activityId} AND seckill_stock >= #{delta}")
+    int decreaseStockBy(@Param("activityId") Long activityId, @Param("delta") int delta);
+
+    @Select("SELECT * FROM t_seckill_activity WHERE id = #{activityId} FOR UPDATE")
+    SeckillActivity selectForUpdate(@Param("activityId") Long activityId);
 } 
\ No newline at end of file
@@ -0,0 +1,14 @@
+package yw.seckill.mapper;
+
+import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.annotations.Select;
+import yw.seckill.entity.StockSyncCheckpoint;
+
+@Mapper
+public interface StockSyncCheckpointMapper extends BaseMapper<StockSyncCheckpoint> {
+
+    @Select("SELECT * FROM t_stock_sync_checkpoint WHERE activity_id = #{activityId} FOR UPDATE")
+    StockSyncCheckpoint selectForUpdate(@Param("activityId") Long activityId);
+}
@@ -4,6 +4,7 @@ import yw.seckill.entity.LockStatistics;
 
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 /**
  * 锁监控服务接口
@@ -16,7 +17,9 @@ public interface LockMonitorService {
      * @param lockKey 锁的key
      * @param threadId 线程ID
      * @return 锁统计对象
+     * @deprecated 分步记录需要按线程查找之前的尝试记录，已由 {@link #recordLockCompleted} 一次写入代替，没有调用方
      */
+    @Deprecated
     LockStatistics recordLockAttempt(String lockKey, String threadId);
     
     /**
@@ -25,7 +28,9 @@ public interface LockMonitorService {
      * @param lockKey 锁的key
      * @param threadId 线程ID
      * @param waitDuration 等待时长
+     * @deprecated 使用 {@link #recordLockCompleted}
      */
+    @Deprecated
     void recordLockAcquired(String lockKey, String threadId, Long waitDuration);
     
     /**
@@ -34,7 +39,9 @@ public interface LockMonitorService {
      * @param lockKey 锁的key
      * @param threadId 线程ID
      * @param holdDuration 持有时长
+     * @deprecated 使用 {@link #recordLockCompleted}
      */
+    @Deprecated
     void recordLockReleased(String lockKey, String threadId, Long holdDuration);
     
     /**
@@ -43,7 +50,9 @@ public interface LockMonitorService {
      * @param lockKey 锁的key
      * @param threadId 线程ID
      * @param renewalDuration 续期时长
+     * @deprecated Redisson看门狗续期没有回调，没有调用方
      */
+    @Deprecated
     void recordLockRenewal(String lockKey, String threadId, Long renewalDuration);
     
     /**
@@ -52,31 +61,71 @@ public interface LockMonitorService {
      * @param lockKey 锁的key
      * @param threadId 线程ID
      * @param waitDuration 等待时长
+     * @deprecated 使用 {@link #recordLockCompleted}
      */
+    @Deprecated
     void recordLockFailed(String lockKey, String threadId, Long waitDuration);
     
     /**
-     * 获取锁统计信息
+     * 记录一次完整的加锁过程（获取结果、等待时长、持有时长一次写入，无需按线程查找之前的尝试记录）
+     * 每次释放锁都会调用：只累加预聚合计数，明细记录仅在 seckill.lock-monitor.detail-enabled=true 时生成
      *
      * @param lockKey 锁的key
-     * @return 锁统计信息
+     * @param threadId 持有者标识
+     * @param acquired 是否成功获取锁
+     * @param waitNanos 等待时长（纳秒）
+     * @param holdNanos 持有时长（纳秒），未获取时为0
+     */
+    void recordLockCompleted(String lockKey, String threadId, boolean acquired, long waitNanos, long holdNanos);
+
+    /**
+     * 获取锁的明细记录（仅在 seckill.lock-monitor.detail-enabled=true 时生成）
+     *
+     * @param lockKey 锁的key
+     * @return 明细记录
      */
     List<LockStatistics> getLockStatistics(String lockKey);
     
     /**
-     * 获取所有锁的统计信息
+     * 获取所有锁的明细记录（仅在 seckill.lock-monitor.detail-enabled=true 时生成）
      *
-     * @return 所有锁的统计信息
+     * @return 所有锁的明细记录
      */
     Map<String, List<LockStatistics>> getAllLockStatistics();
     
     /**
-     * 获取锁竞争统计
+     * 获取本节点的锁竞争统计（基于预聚合计数，不依赖明细记录）
      *
      * @param lockKey 锁的key
-     * @return 竞争统计信息
+     * @return 竞争统计信息，分位数为直方图桶上界的近似值
      */
     Map<String, Object> getLockCompetitionStats(String lockKey);
+
+    /**
+     * 是否记录明细
+     */
+    boolean isDetailEnabled();
+
+    /**
+     * 把本节点自上次写入以来的预聚合统计增量写入Redis当前时间桶（定时任务调用）
+     *
+     * @return 写入的锁key数
+     */
+    int flushToRedis();
+
+    /**
+     * 获取集群范围的锁竞争统计：合并时间窗口内各节点写入的计数、时长和直方图
+     *
+     * @param lockKey 锁的key
+     * @param windowMinutes 时间窗口（分钟）
+     * @return 竞争统计信息，分位数为直方图桶上界的近似值
+     */
+    Map<String, Object> getClusterLockStats(String lockKey, int windowMinutes);
+
+    /**
+     * 获取时间窗口内集群中有统计数据的锁key
+     */
+    Set<String> getClusterLockKeys(int windowMinutes);
     
     /**
      * 清理过期的统计信息
@@ -1,8 +1,12 @@
 package yw.seckill.service;
 
+import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
 import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.core.JsonProcessingException;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.DuplicateKeyException;
 import org.springframework.kafka.annotation.KafkaListener;
 import org.springframework.kafka.support.Acknowledgment;
 import org.springframework.stereotype.Service;
@@ -10,48 +14,189 @@ import yw.seckill.config.KafkaConfig;
 import yw.seckill.dto.CreateOrderRequestDTO;
 import yw.seckill.entity.Order;
 import yw.seckill.mapper.OrderMapper;
+import yw.seckill.util.KeyOrderedProcessor;
+import yw.seckill.util.OrderConsumerBackpressure;
+import yw.seckill.util.OrderMessageCodec;
+import yw.seckill.util.SeckillEventRecorder;
+import yw.seckill.util.SeckillEventRecorder.EventType;
+import yw.seckill.util.SeckillJfrEvents;
 
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
 import java.time.LocalDateTime;
+import java.util.HexFormat;
+import java.util.List;
 
+@Slf4j
 @Service
 public class OrderConsumerService {
     @Autowired
     private ObjectMapper objectMapper;
     @Autowired
     private OrderMapper orderMapper;
+    @Autowired
+    private OrderTimeoutService orderTimeoutService;
+    @Autowired
+    private SeckillEventRecorder eventRecorder;
+    @Autowired
+    private KeyOrderedProcessor keyOrderedProcessor;
+    @Autowired
+    private OrderConsumerBackpressure backpressure;
+    @Autowired
+    private OrderRetryService orderRetryService;
 
-    @KafkaListener(topics = KafkaConfig.ORDER_TOPIC, groupId = "seckill-order-group")
-    public void handleOrderMessage(String message, Acknowledgment ack) {
+    /**
+     * 批量消费下单消息：同一用户（消息key）的消息按顺序处理，不同用户并行处理
+     * 处理失败的消息转投重试/死信主题后视为完成，整批完成后提交偏移量；
+     * 数据库故障或转投失败时由容器提交失败消息之前的偏移量，并从失败消息开始重新投递
+     */
+    @KafkaListener(id = OrderConsumerBackpressure.LISTENER_ID, topics = KafkaConfig.ORDER_TOPIC,
+                   groupId = "seckill-order-group")
+    public void handleOrderMessages(List<ConsumerRecord<String, byte[]>> records, Acknowledgment ack) {
+        keyOrderedProcessor.process(records, record -> handleOrderMessage(record.value()), this::redirectOrRethrow);
+        // 手动提交偏移量
+        ack.acknowledge();
+    }
+
+    /**
+     * 消费重试主题：未到重试时间的消息延迟重新投递（暂停该分区，不阻塞poll），到期后重新处理，再次失败转投下一级；
+     * 数据库故障时不确认，由容器重新投递该消息
+     */
+    @KafkaListener(id = OrderConsumerBackpressure.RETRY_LISTENER_ID, topics = "#{@orderRetryService.retryTopics}",
+                   groupId = "seckill-order-retry-group", containerFactory = "retryKafkaListenerContainerFactory")
+    public void handleRetryMessage(ConsumerRecord<String, byte[]> record, Acknowledgment ack) {
+        long remainingMs = orderRetryService.remainingDelayMs(record);
+        if (remainingMs > 0) {
+            ack.nack(Duration.ofMillis(remainingMs));
+            return;
+        }
         try {
-            System.out.println("[Kafka] 收到下单消息: " + message);
-            
-            // 1. 反序列化消息
-            CreateOrderRequestDTO request = objectMapper.readValue(message, CreateOrderRequestDTO.class);
-            
-            // 2. 创建订单实体
+            handleOrderMessage(record.value());
+        } catch (Exception e) {
+            redirectOrRethrow(record, e);
+        }
+        ack.acknowledge();
+    }
+
+    /**
+     * 处理失败的消息：数据库故障时原样抛出（不转投，消息留在原分区由容器重新投递），其它失败转投重试/死信主题
+     */
+    private void redirectOrRethrow(ConsumerRecord<String, byte[]> record, Exception e) {
+        if (orderRetryService.isDatabaseOutage(e)) {
+            log.warn("[Kafka] 数据库故障，下单消息留在原分区重新投递: key={}, {}-{}@{}, cause={}",
+                record.key(), record.topic(), record.partition(), record.offset(), e.toString());
+            throw e instanceof RuntimeException runtime ? runtime : new IllegalStateException(e);
+        }
+        orderRetryService.redirect(record, e);
+    }
+
+    private void handleOrderMessage(byte[] message) {
+        // 1. 反序列化消息
+        CreateOrderRequestDTO request = decode(message);
+        try {
+            // 2. 创建订单实体（订单号由消息内容确定，重复消费的消息写入时冲突）
             Order order = new Order();
             order.setUserId(request.userId());
             order.setActivityId(request.activityId());
             order.setProductId(request.productId());
+            order.setOrderNo(orderNo(request));
+            order.setDeductionId(request.deductionId());
             order.setStatus(0); // 0: 待支付
             order.setCreateTime(LocalDateTime.now());
             
-            // 3. 保存订单到数据库
-            orderMapper.insert(order);
-            
-            // 4. 记录日志
-            System.out.println("[Kafka] 订单创建成功，订单ID: " + order.getId());
+            // 3. 保存订单到数据库（受背压许可数限制）；订单已存在（上次写入后登记超时失败而重试）时沿用已有订单
+            boolean created = true;
+            try {
+                insert(order);
+            } catch (DuplicateKeyException e) {
+                Order existing = orderMapper.selectOne(new QueryWrapper<Order>().eq("order_no", order.getOrderNo()));
+                if (existing == null) {
+                    throw e;
+                }
+                order = existing;
+                created = false;
+            }
+
+            // 4. 登记支付超时（已登记的不会重复登记）
+            if (order.getStatus() == 0) {
+                orderTimeoutService.scheduleTimeout(order.getId());
+            }
             
-            // 5. 手动提交偏移量
-            ack.acknowledge();
+            // 5. 记录事件（聚合计数+采样）
+            if (created) {
+                eventRecorder.record(EventType.ORDER_CREATED, order.getId(), 0, request.activityId());
+            }
             
-        } catch (JsonProcessingException e) {
-            System.err.println("[Kafka] 消息反序列化失败: " + e.getMessage());
-            throw new RuntimeException("消息反序列化失败", e);
         } catch (Exception e) {
-            System.err.println("[Kafka] 处理下单消息失败: " + e.getMessage());
-            // 异常时不提交偏移量，消息会被重新消费
+            log.error("[Kafka] 处理下单消息失败: {}", OrderMessageCodec.describe(message), e);
+            // 抛出给调用方：数据库故障时不提交偏移量、从该消息重新投递；其它失败由 OrderRetryService 转投重试主题
+            // （用完重试次数或不可重试时进入死信主题），转投也失败时同样从该消息重新投递
             throw e;
         }
     }
-} 
\ No newline at end of file
+
+    /**
+     * 订单号：由扣减明细（商品+扣减ID）或 用户+活动+商品+客户端时间戳 确定，32位十六进制
+     * 同一条消息重复消费得到相同订单号，同一笔库存扣减也只能对应一个订单
+     */
+    private static String orderNo(CreateOrderRequestDTO request) {
+        String source = request.deductionId() != null
+            ? "d:" + request.productId() + ":" + request.deductionId()
+            : "u:" + request.userId() + ":" + request.activityId() + ":" + request.productId() + ":" + request.timestamp();
+        try {
+            byte[] digest = MessageDigest.getInstance("MD5").digest(source.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * 写入订单：先取得背压许可，写完上报耗时和结果
+     */
+    private void insert(Order order) {
+        try {
+            backpressure.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("等待写库许可被中断", e);
+        }
+        SeckillJfrEvents.OrderInsertEvent insertEvent = new SeckillJfrEvents.OrderInsertEvent();
+        insertEvent.begin();
+        long startNanos = System.nanoTime();
+        // 约束冲突说明数据库正常响应，只有超时、连接失败等才作为背压的失败信号
+        boolean responsive = false;
+        try {
+            orderMapper.insert(order);
+            responsive = true;
+        } catch (DataIntegrityViolationException e) {
+            responsive = true;
+            throw e;
+        } finally {
+            backpressure.release(responsive, System.nanoTime() - startNanos);
+            insertEvent.end();
+            if (insertEvent.shouldCommit()) {
+                insertEvent.rows = 1;
+                insertEvent.activityId = order.getActivityId();
+                insertEvent.commit();
+            }
+        }
+    }
+
+    /**
+     * 解码下单消息：二进制编码，兼容升级前的JSON消息
+     */
+    private CreateOrderRequestDTO decode(byte[] message) {
+        try {
+            return OrderMessageCodec.isJson(message)
+                ? objectMapper.readValue(message, CreateOrderRequestDTO.class)
+                : OrderMessageCodec.decode(message);
+        } catch (IOException | IllegalArgumentException e) {
+            log.error("[Kafka] 消息反序列化失败: {}", OrderMessageCodec.describe(message), e);
+            throw new RuntimeException("消息反序列化失败", e);
+        }
+    }
+}
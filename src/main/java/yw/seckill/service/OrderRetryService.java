@@ -0,0 +1,298 @@
+package yw.seckill.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.header.Header;
+import org.apache.kafka.common.header.Headers;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.RecoverableDataAccessException;
+import org.springframework.dao.TransientDataAccessException;
+import org.springframework.kafka.core.ConsumerFactory;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.support.KafkaHeaders;
+import org.springframework.stereotype.Service;
+import yw.seckill.config.KafkaConfig;
+import yw.seckill.dto.OrderDeadLetterDTO;
+import yw.seckill.util.OrderConsumerBackpressure;
+import yw.seckill.util.OrderMessageCodec;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.sql.SQLRecoverableException;
+import java.sql.SQLTransientException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * 下单消息的分级重试与死信
+ * - 处理失败的消息转投到下一级重试主题（延迟按 seckill.kafka.order-retry.delays-ms 逐级增加），原分区继续消费后续消息
+ * - 反序列化失败、数据约束冲突等重试也不会成功的消息，以及用完重试次数的消息，直接转投死信主题
+ * - 数据库故障（连接失败、超时等暂时性异常，或背压已暂停/试探中）与消息内容无关，不转投，
+ *   由调用方抛出异常、不提交偏移量，容器在原分区重新投递（背压暂停期间不拉取），避免故障期间的消息耗尽重试次数进入死信
+ * - 转投的消息保留原key和消息体，头部记录原始主题/分区/偏移量、失败次数、到期时间和异常信息（异常头使用 KafkaHeaders.DLT_*）
+ * - 死信消息可按分区/偏移量查看，并重新投递到下单主题
+ */
+@Slf4j
+@Service
+public class OrderRetryService {
+
+    /**
+     * 已失败次数（int，4字节）
+     */
+    public static final String ATTEMPTS_HEADER = "seckill-attempts";
+
+    /**
+     * 重试到期时间（epoch毫秒，long，8字节）
+     */
+    public static final String DUE_AT_HEADER = "seckill-due-at";
+
+    /**
+     * 从死信主题重新投递的来源（文本 分区@偏移量）
+     */
+    public static final String REPLAYED_FROM_HEADER = "seckill-replayed-from";
+
+    private static final int MAX_STACKTRACE_LENGTH = 4096;
+
+    @Autowired
+    private KafkaTemplate<String, byte[]> kafkaTemplate;
+
+    @Autowired
+    private ConsumerFactory<String, byte[]> consumerFactory;
+
+    @Autowired
+    private OrderConsumerBackpressure backpressure;
+
+    @Value("${seckill.kafka.order-retry.delays-ms:1000,10000,60000}")
+    private long[] retryDelaysMs;
+
+    @Value("${seckill.kafka.order-retry.send-timeout-ms:5000}")
+    private long sendTimeoutMs;
+
+    @Value("${seckill.kafka.order-retry.dlt-read-timeout-ms:3000}")
+    private long dltReadTimeoutMs;
+
+    /**
+     * 重试主题列表（供重试监听器订阅）
+     */
+    public String[] getRetryTopics() {
+        String[] topics = new String[retryDelaysMs.length];
+        for (int i = 0; i < topics.length; i++) {
+            topics[i] = KafkaConfig.orderRetryTopic(i);
+        }
+        return topics;
+    }
+
+    /**
+     * 转投处理失败的消息：可重试且未用完重试次数时投递到下一级重试主题，否则投递到死信主题
+     * 同步等待发送完成，发送失败时抛出异常（由调用方按处理失败对待，不提交偏移量）
+     *
+     * @param record 失败的消息（来自下单主题或重试主题）
+     * @param cause 失败原因
+     */
+    public void redirect(ConsumerRecord<String, byte[]> record, Exception cause) {
+        int attempts = intHeader(record.headers(), ATTEMPTS_HEADER, 0) + 1;
+        boolean retryable = isRetryable(cause);
+        String topic = retryable && attempts <= retryDelaysMs.length
+            ? KafkaConfig.orderRetryTopic(attempts - 1)
+            : KafkaConfig.ORDER_DLT_TOPIC;
+
+        ProducerRecord<String, byte[]> out = new ProducerRecord<>(topic, null, record.key(), record.value());
+        Headers headers = out.headers();
+        // 原始位置：首次失败时取自消息本身，之后沿用
+        Header originalTopic = record.headers().lastHeader(KafkaHeaders.DLT_ORIGINAL_TOPIC);
+        if (originalTopic != null) {
+            copyHeader(record.headers(), headers, KafkaHeaders.DLT_ORIGINAL_TOPIC);
+            copyHeader(record.headers(), headers, KafkaHeaders.DLT_ORIGINAL_PARTITION);
+            copyHeader(record.headers(), headers, KafkaHeaders.DLT_ORIGINAL_OFFSET);
+            copyHeader(record.headers(), headers, KafkaHeaders.DLT_ORIGINAL_TIMESTAMP);
+        } else {
+            headers.add(KafkaHeaders.DLT_ORIGINAL_TOPIC, record.topic().getBytes(StandardCharsets.UTF_8));
+            headers.add(KafkaHeaders.DLT_ORIGINAL_PARTITION, ByteBuffer.allocate(Integer.BYTES).putInt(record.partition()).array());
+            headers.add(KafkaHeaders.DLT_ORIGINAL_OFFSET, ByteBuffer.allocate(Long.BYTES).putLong(record.offset()).array());
+            headers.add(KafkaHeaders.DLT_ORIGINAL_TIMESTAMP, ByteBuffer.allocate(Long.BYTES).putLong(record.timestamp()).array());
+        }
+        headers.add(ATTEMPTS_HEADER, ByteBuffer.allocate(Integer.BYTES).putInt(attempts).array());
+        if (!KafkaConfig.ORDER_DLT_TOPIC.equals(topic)) {
+            long dueAt = System.currentTimeMillis() + retryDelaysMs[attempts - 1];
+            headers.add(DUE_AT_HEADER, ByteBuffer.allocate(Long.BYTES).putLong(dueAt).array());
+        }
+        headers.add(KafkaHeaders.DLT_EXCEPTION_FQCN, cause.getClass().getName().getBytes(StandardCharsets.UTF_8));
+        headers.add(KafkaHeaders.DLT_EXCEPTION_MESSAGE, String.valueOf(rootCause(cause).getMessage()).getBytes(StandardCharsets.UTF_8));
+        headers.add(KafkaHeaders.DLT_EXCEPTION_STACKTRACE, stackTrace(cause).getBytes(StandardCharsets.UTF_8));
+
+        send(out);
+        log.warn("[Kafka] 下单消息处理失败，转投{}: key={}, from={}-{}@{}, attempts={}, cause={}",
+            topic, record.key(), record.topic(), record.partition(), record.offset(), attempts, cause.toString());
+    }
+
+    /**
+     * 是否为数据库故障：可重试的失败发生在背压暂停或试探期间，或异常为连接失败、超时、锁等待等暂时性数据访问异常
+     * 此类失败应留在原分区重新投递，不转投重试/死信主题；反序列化失败、约束冲突等数据问题始终返回 false
+     */
+    public boolean isDatabaseOutage(Exception cause) {
+        if (!isRetryable(cause)) {
+            return false;
+        }
+        OrderConsumerBackpressure.State state = backpressure.getStatus().getState();
+        if (state == OrderConsumerBackpressure.State.PAUSED || state == OrderConsumerBackpressure.State.PROBING) {
+            return true;
+        }
+        for (Throwable t = cause; t != null; t = t.getCause()) {
+            if (t instanceof TransientDataAccessException || t instanceof RecoverableDataAccessException
+                || t instanceof DataAccessResourceFailureException
+                || t instanceof SQLTransientException || t instanceof SQLRecoverableException) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 重试消息距到期还需等待的毫秒数，已到期或不是重试消息时为0
+     */
+    public long remainingDelayMs(ConsumerRecord<String, byte[]> record) {
+        Header dueAt = record.headers().lastHeader(DUE_AT_HEADER);
+        return dueAt == null ? 0 : Math.max(ByteBuffer.wrap(dueAt.value()).getLong() - System.currentTimeMillis(), 0);
+    }
+
+    /**
+     * 查看死信消息
+     *
+     * @param partition 死信主题分区
+     * @param offset 起始偏移量
+     * @param limit 最多返回条数
+     */
+    public List<OrderDeadLetterDTO> peekDeadLetters(int partition, long offset, int limit) {
+        List<OrderDeadLetterDTO> result = new ArrayList<>();
+        for (ConsumerRecord<String, byte[]> record : readDeadLetters(partition, offset, limit)) {
+            result.add(toDeadLetter(record));
+        }
+        return result;
+    }
+
+    /**
+     * 将一条死信消息重新投递到下单主题（保留原key和消息体，清除重试/异常头部）
+     * 重复调用会重复投递，投递前应确认该订单尚未写入
+     *
+     * @throws IllegalArgumentException 偏移量处没有消息
+     */
+    public OrderDeadLetterDTO replayDeadLetter(int partition, long offset) {
+        List<ConsumerRecord<String, byte[]>> records = readDeadLetters(partition, offset, 1);
+        if (records.isEmpty() || records.get(0).offset() != offset) {
+            throw new IllegalArgumentException("死信消息不存在: partition=" + partition + ", offset=" + offset);
+        }
+        ConsumerRecord<String, byte[]> record = records.get(0);
+        ProducerRecord<String, byte[]> out = new ProducerRecord<>(KafkaConfig.ORDER_TOPIC, null, record.key(), record.value());
+        out.headers().add(REPLAYED_FROM_HEADER, (partition + "@" + offset).getBytes(StandardCharsets.UTF_8));
+        send(out);
+        log.info("[Kafka] 重新投递死信消息: partition={}, offset={}, key={}", partition, offset, record.key());
+        return toDeadLetter(record);
+    }
+
+    private List<ConsumerRecord<String, byte[]>> readDeadLetters(int partition, long offset, int limit) {
+        TopicPartition tp = new TopicPartition(KafkaConfig.ORDER_DLT_TOPIC, partition);
+        List<ConsumerRecord<String, byte[]>> result = new ArrayList<>();
+        // 手动分配分区，不加入消费组，也不提交偏移量
+        try (Consumer<String, byte[]> consumer = consumerFactory.createConsumer("seckill-order-dlt-reader", "-dlt-reader")) {
+            consumer.assign(List.of(tp));
+            long endOffset = consumer.endOffsets(List.of(tp)).get(tp);
+            if (offset >= endOffset) {
+                return result;
+            }
+            consumer.seek(tp, offset);
+            long deadline = System.currentTimeMillis() + dltReadTimeoutMs;
+            while (result.size() < limit && consumer.position(tp) < endOffset && System.currentTimeMillis() < deadline) {
+                for (ConsumerRecord<String, byte[]> record : consumer.poll(Duration.ofMillis(200)).records(tp)) {
+                    result.add(record);
+                    if (result.size() >= limit) {
+                        break;
+                    }
+                }
+            }
+        }
+        return result;
+    }
+
+    private OrderDeadLetterDTO toDeadLetter(ConsumerRecord<String, byte[]> record) {
+        Headers headers = record.headers();
+        Header originalPartition = headers.lastHeader(KafkaHeaders.DLT_ORIGINAL_PARTITION);
+        Header originalOffset = headers.lastHeader(KafkaHeaders.DLT_ORIGINAL_OFFSET);
+        return new OrderDeadLetterDTO(record.partition(), record.offset(), record.key(),
+            record.value() == null ? null : OrderMessageCodec.describe(record.value()),
+            textHeader(headers, KafkaHeaders.DLT_ORIGINAL_TOPIC),
+            originalPartition == null ? null : ByteBuffer.wrap(originalPartition.value()).getInt(),
+            originalOffset == null ? null : ByteBuffer.wrap(originalOffset.value()).getLong(),
+            intHeader(headers, ATTEMPTS_HEADER, 0),
+            textHeader(headers, KafkaHeaders.DLT_EXCEPTION_FQCN),
+            textHeader(headers, KafkaHeaders.DLT_EXCEPTION_MESSAGE),
+            record.timestamp());
+    }
+
+    /**
+     * 反序列化失败（IOException / IllegalArgumentException）和数据约束冲突重试也不会成功，直接进入死信
+     */
+    private boolean isRetryable(Throwable cause) {
+        for (Throwable t = cause; t != null; t = t.getCause()) {
+            if (t instanceof IOException || t instanceof IllegalArgumentException
+                || t instanceof DataIntegrityViolationException) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void send(ProducerRecord<String, byte[]> record) {
+        try {
+            kafkaTemplate.send(record).get(sendTimeoutMs, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("发送到" + record.topic() + "被中断", e);
+        } catch (ExecutionException | TimeoutException e) {
+            throw new IllegalStateException("发送到" + record.topic() + "失败", e);
+        }
+    }
+
+    private static Throwable rootCause(Throwable t) {
+        while (t.getCause() != null && t.getCause() != t) {
+            t = t.getCause();
+        }
+        return t;
+    }
+
+    private static String stackTrace(Throwable t) {
+        StringWriter writer = new StringWriter();
+        t.printStackTrace(new PrintWriter(writer));
+        String trace = writer.toString();
+        return trace.length() > MAX_STACKTRACE_LENGTH ? trace.substring(0, MAX_STACKTRACE_LENGTH) : trace;
+    }
+
+    private static void copyHeader(Headers from, Headers to, String name) {
+        Header header = from.lastHeader(name);
+        if (header != null) {
+            to.add(name, header.value());
+        }
+    }
+
+    private static int intHeader(Headers headers, String name, int defaultValue) {
+        Header header = headers.lastHeader(name);
+        return header == null ? defaultValue : ByteBuffer.wrap(header.value()).getInt();
+    }
+
+    private static String textHeader(Headers headers, String name) {
+        Header header = headers.lastHeader(name);
+        return header == null ? null : new String(header.value(), StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,27 @@
+package yw.seckill.service;
+
+/**
+ * 订单支付超时服务
+ * 待支付订单按超时时间存入Redis有序集合，由单个定时任务批量扫描取消并归还库存，不为每个订单单独创建定时器
+ */
+public interface OrderTimeoutService {
+
+    /**
+     * 登记订单支付超时
+     *
+     * @param orderId 订单ID
+     */
+    void scheduleTimeout(Long orderId);
+
+    /**
+     * 取消所有已到期的未支付订单并归还库存
+     *
+     * @return 本轮取消的订单数量
+     */
+    int cancelExpiredOrders();
+
+    /**
+     * 当前等待超时的订单数量
+     */
+    int pendingCount();
+}
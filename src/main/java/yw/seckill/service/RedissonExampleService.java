@@ -3,6 +3,7 @@ package yw.seckill.service;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
+import yw.seckill.util.EnhancedRedissonUtil;
 import yw.seckill.util.RedissonUtil;
 
 import java.util.concurrent.TimeUnit;
@@ -17,31 +18,31 @@ public class RedissonExampleService {
     @Autowired
     private RedissonUtil redissonUtil;
 
+    @Autowired
+    private EnhancedRedissonUtil enhancedRedissonUtil;
+
     /**
-     * 使用分布式锁保护临界区
+     * 使用分布式锁保护临界区（两级锁：本节点线程先在本地排队，只有本地获胜者竞争Redis锁）
      *
      * @param lockKey 锁的key
      * @param businessLogic 业务逻辑
      * @return 执行结果
      */
     public <T> T executeWithLock(String lockKey, BusinessLogic<T> businessLogic) {
-        boolean locked = false;
-        try {
-            // 尝试获取锁，等待5秒，持有锁30秒
-            locked = redissonUtil.tryLock(lockKey, 5, 30, TimeUnit.SECONDS);
-            if (locked) {
-                log.info("成功获取分布式锁: {}", lockKey);
-                return businessLogic.execute();
-            } else {
-                log.warn("获取分布式锁失败: {}", lockKey);
-                throw new RuntimeException("获取锁失败");
-            }
-        } finally {
-            if (locked) {
-                redissonUtil.unlock(lockKey);
-                log.info("释放分布式锁: {}", lockKey);
-            }
-        }
+        // 等待5秒（本地排队 + Redis加锁），持有锁30秒
+        return enhancedRedissonUtil.executeWithTieredLock(lockKey, 5, 30, TimeUnit.SECONDS, businessLogic::execute);
+    }
+
+    /**
+     * 合并执行临界区：本节点同一锁key的请求由一个线程获取一次Redis锁后依次执行，适合临界区很短、同节点并发很高的场景
+     *
+     * @param lockKey 锁的key
+     * @param businessLogic 业务逻辑
+     * @return 执行结果
+     */
+    public <T> T executeWithBatchedLock(String lockKey, BusinessLogic<T> businessLogic) {
+        // 等待5秒，整批执行期间由看门狗续期
+        return enhancedRedissonUtil.executeWithBatchedLock(lockKey, 5, -1, TimeUnit.SECONDS, businessLogic::execute);
     }
 
     /**
@@ -1,9 +1,19 @@
 package yw.seckill.service;
 
 import yw.seckill.entity.SeckillActivity;
+import java.time.LocalDateTime;
 import java.util.List;
 
 public interface SeckillActivityService {
     List<SeckillActivity> getActiveActivities();
     SeckillActivity getActivityById(Long activityId);
+    /**
+     * 查询尚未开始（status=0 且开始时间晚于当前时间）、将在指定时间前开始的活动
+     * 用于自动库存预热：已开始或进行中的活动不会返回，需要覆盖进行中活动的调用方应使用其它查询
+     */
+    List<SeckillActivity> getUnstartedActivitiesStartingBefore(LocalDateTime deadline);
+    /**
+     * 查询尚未结束、已开始或将在指定时间前开始的活动（status 为0或1，用于秒杀排队）
+     */
+    List<SeckillActivity> getWaitingRoomActivities(LocalDateTime deadline);
 } 
\ No newline at end of file
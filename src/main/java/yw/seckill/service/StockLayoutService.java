@@ -0,0 +1,216 @@
+package yw.seckill.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.redisson.api.RScript;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import yw.seckill.util.HotKeyDetector;
+import yw.seckill.util.RedisCodecs;
+import yw.seckill.util.RedissonUtil;
+import yw.seckill.util.StockBucketUtil;
+import yw.seckill.util.StockKeys;
+import yw.seckill.util.StockNearCache;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 库存布局服务：热点商品自动升级为分桶库存，冷却后回退为单key
+ * - HotKeyDetector 在每个节点上按窗口估算商品QPS，rebalance 由定时任务每个窗口调用一次
+ * - 升级/回退都是单个Lua脚本，在Redis中原子地完成数据搬迁与布局标记；扣减脚本按当时的布局执行，调用方无感知
+ * - 各节点独立判断：任一节点观测到热点即升级（脚本幂等），由升级过的节点在本地连续冷却若干窗口后回退；
+ *   回退阈值远低于升级阈值，避免在阈值附近反复切换
+ */
+@Slf4j
+@Service
+public class StockLayoutService {
+
+    @Autowired
+    private RedissonUtil redissonUtil;
+
+    @Autowired
+    private StockBucketUtil stockBucketUtil;
+
+    @Autowired
+    private HotKeyDetector hotKeyDetector;
+
+    @Autowired
+    private StockNearCache stockNearCache;
+
+    @Autowired
+    private StockKeys stockKeys;
+
+    @Value("${seckill.hot-key.enabled:true}")
+    private boolean enabled;
+
+    @Value("${seckill.hot-key.promote-qps:2000}")
+    private double promoteQps;
+
+    @Value("${seckill.hot-key.collapse-qps:200}")
+    private double collapseQps;
+
+    @Value("${seckill.hot-key.collapse-after-windows:30}")
+    private int collapseAfterWindows;
+
+
+    // 本节点跟踪的分桶商品 -> 连续冷却窗口数
+    private final Map<Long, Integer> bucketedProducts = new ConcurrentHashMap<>();
+
+    // Lua脚本：单key升级为分桶，按桶均分（余数从低索引开始+1）
+    // KEYS = [库存key, 分桶Hash key, 总库存key, 布局key]，ARGV = [桶数, 当前时间]
+    // 返回 1-升级成功 0-已是分桶布局 -1-单key不存在或库存少于桶数
+    private static final String PROMOTE_SCRIPT =
+        "if redis.call('EXISTS', KEYS[2]) == 1 then " +
+        "  return 0 " +
+        "end " +
+        "local stock = tonumber(redis.call('GET', KEYS[1])) " +
+        "local n = tonumber(ARGV[1]) " +
+        "if not stock or stock < n then " +
+        "  return -1 " +
+        "end " +
+        "local avg = math.floor(stock / n) " +
+        "local remainder = stock % n " +
+        "for i = 0, n - 1 do " +
+        "  local bucket_stock = avg " +
+        "  if i < remainder then bucket_stock = avg + 1 end " +
+        "  redis.call('HSET', KEYS[2], tostring(i), tostring(bucket_stock)) " +
+        "end " +
+        "redis.call('SET', KEYS[3], tostring(stock)) " +
+        "redis.call('DEL', KEYS[1]) " +
+        "redis.call('HSET', KEYS[4], 'mode', 'bucket', 'bucketCount', ARGV[1], 'changedAt', ARGV[2]) " +
+        "return 1";
+
+    // Lua脚本：分桶回退为单key，库存取各桶之和
+    // KEYS = [库存key, 分桶Hash key, 总库存key, 布局key]，ARGV = [当前时间]
+    // 返回回退后的库存，-1 表示不是分桶布局
+    private static final String COLLAPSE_SCRIPT =
+        "if redis.call('EXISTS', KEYS[2]) == 0 then " +
+        "  return -1 " +
+        "end " +
+        "local stock = 0 " +
+        "for _, v in ipairs(redis.call('HVALS', KEYS[2])) do " +
+        "  stock = stock + tonumber(v) " +
+        "end " +
+        "redis.call('SET', KEYS[1], tostring(stock)) " +
+        "redis.call('DEL', KEYS[2], KEYS[3]) " +
+        "redis.call('HSET', KEYS[4], 'mode', 'single', 'bucketCount', '0', 'changedAt', ARGV[1]) " +
+        "return stock";
+
+    /**
+     * 结束一个探测窗口：升级新出现的热点商品，回退连续冷却的分桶商品
+     */
+    public void rebalance() {
+        Map<Long, Double> hotProducts = hotKeyDetector.rotate();
+        if (!enabled) {
+            return;
+        }
+
+        for (Map.Entry<Long, Double> entry : hotProducts.entrySet()) {
+            Long productId = entry.getKey();
+            if (entry.getValue() >= promoteQps && !bucketedProducts.containsKey(productId)) {
+                try {
+                    // 其它节点已升级（返回0）时同样跟踪，由本节点在冷却后负责回退
+                    if (promote(productId) >= 0) {
+                        bucketedProducts.put(productId, 0);
+                    }
+                } catch (Exception e) {
+                    log.error("热点商品升级分桶异常: productId={}", productId, e);
+                }
+            }
+        }
+
+        for (Map.Entry<Long, Integer> entry : bucketedProducts.entrySet()) {
+            Long productId = entry.getKey();
+            if (hotKeyDetector.estimateQps(productId) >= collapseQps) {
+                entry.setValue(0);
+                continue;
+            }
+            int coldWindows = entry.getValue() + 1;
+            if (coldWindows < collapseAfterWindows) {
+                entry.setValue(coldWindows);
+                continue;
+            }
+            try {
+                collapse(productId);
+                bucketedProducts.remove(productId);
+            } catch (Exception e) {
+                log.error("分桶商品回退单key异常: productId={}", productId, e);
+            }
+        }
+    }
+
+    /**
+     * 单key升级为分桶
+     *
+     * @return 1-升级成功 0-已是分桶布局 -1-单key不存在或库存少于桶数
+     */
+    public int promote(Long productId) {
+        Long result = redissonUtil.getRedissonClient().getScript(RedisCodecs.TEXT).eval(
+            RScript.Mode.READ_WRITE,
+            PROMOTE_SCRIPT,
+            RScript.ReturnType.INTEGER,
+            layoutKeys(productId),
+            String.valueOf(stockBucketUtil.getBucketCount()), String.valueOf(System.currentTimeMillis())
+        );
+        if (result == 1) {
+            invalidate(productId);
+            log.info("热点商品升级为分桶库存: productId={}, bucketCount={}", productId, stockBucketUtil.getBucketCount());
+        }
+        return result.intValue();
+    }
+
+    /**
+     * 分桶回退为单key
+     *
+     * @return 回退后的库存，-1 表示不是分桶布局
+     */
+    public int collapse(Long productId) {
+        Long result = redissonUtil.getRedissonClient().getScript(RedisCodecs.TEXT).eval(
+            RScript.Mode.READ_WRITE,
+            COLLAPSE_SCRIPT,
+            RScript.ReturnType.INTEGER,
+            layoutKeys(productId),
+            String.valueOf(System.currentTimeMillis())
+        );
+        if (result >= 0) {
+            invalidate(productId);
+            log.info("分桶商品回退为单key库存: productId={}, stock={}", productId, result);
+        }
+        return result.intValue();
+    }
+
+    /**
+     * 商品库存布局（mode/bucketCount/changedAt）及本节点观测的QPS
+     */
+    public Map<String, Object> getLayout(Long productId) {
+        Map<String, Object> layout = new LinkedHashMap<>();
+        layout.put("productId", productId);
+        layout.putAll(redissonUtil.getRedissonClient()
+            .<String, String>getMap(stockKeys.layout(productId), RedisCodecs.TEXT).readAllMap());
+        layout.put("bucketed", redissonUtil.getRedissonClient().getKeys().countExists(stockKeys.bucketHash(productId)) > 0);
+        layout.put("estimatedQps", hotKeyDetector.estimateQps(productId));
+        layout.put("coldWindows", bucketedProducts.get(productId));
+        return layout;
+    }
+
+    /**
+     * 本节点跟踪的分桶商品及其连续冷却窗口数
+     */
+    public Map<Long, Integer> getTrackedProducts() {
+        return Map.copyOf(bucketedProducts);
+    }
+
+    private List<Object> layoutKeys(Long productId) {
+        return Arrays.asList(stockKeys.stock(productId), stockKeys.bucketHash(productId),
+            stockKeys.total(productId), stockKeys.layout(productId));
+    }
+
+    private void invalidate(Long productId) {
+        stockNearCache.invalidate(stockKeys.stock(productId));
+        stockNearCache.invalidate(stockKeys.total(productId));
+    }
+}
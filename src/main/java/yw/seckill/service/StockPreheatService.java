@@ -0,0 +1,78 @@
+package yw.seckill.service;
+
+/**
+ * 库存预热服务
+ * 活动开始前将秒杀库存、活动元数据和分桶布局从MySQL批量加载到Redis
+ */
+public interface StockPreheatService {
+
+    /**
+     * 预热完成标记key前缀，value为活动ID
+     */
+    String STOCK_READY_PREFIX = "stock_ready:";
+
+    /**
+     * 活动元数据Hash key前缀
+     */
+    String ACTIVITY_META_PREFIX = "activity:meta:";
+
+    /**
+     * 预热即将开始的活动（跳过已预热的商品和已开始的活动）
+     *
+     * @return 本轮预热的活动数量
+     */
+    int preheatUpcoming();
+
+    /**
+     * 预热指定活动
+     * 已开始的活动必须 force=true，库存按 MySQL库存 - 待回写量 - 回写中的量 重新加载，不清除写回计数
+     *
+     * @param activityId 活动ID
+     * @param force 是否忽略已预热标记强制覆盖（会重置Redis中的库存）
+     * @return 预热结果，已预热且未强制时返回null
+     * @throws IllegalStateException 活动已开始且未强制
+     */
+    PreheatResult preheatActivity(Long activityId, boolean force);
+
+    /**
+     * 商品库存是否已预热
+     */
+    boolean isReady(Long productId);
+
+    /**
+     * 获取最近一次预热结果
+     */
+    PreheatResult getLastResult(Long activityId);
+
+    /**
+     * 预热结果
+     */
+    class PreheatResult {
+        private final Long activityId;
+        private final Long productId;
+        private final int stock;
+        private final int bucketCount;
+        private final int commandCount;
+        private final long elapsedMicros;
+        private final long preheatTime;
+
+        public PreheatResult(Long activityId, Long productId, int stock, int bucketCount,
+                             int commandCount, long elapsedMicros) {
+            this.activityId = activityId;
+            this.productId = productId;
+            this.stock = stock;
+            this.bucketCount = bucketCount;
+            this.commandCount = commandCount;
+            this.elapsedMicros = elapsedMicros;
+            this.preheatTime = System.currentTimeMillis();
+        }
+
+        public Long getActivityId() { return activityId; }
+        public Long getProductId() { return productId; }
+        public int getStock() { return stock; }
+        public int getBucketCount() { return bucketCount; }
+        public int getCommandCount() { return commandCount; }
+        public long getElapsedMicros() { return elapsedMicros; }
+        public long getPreheatTime() { return preheatTime; }
+    }
+}
@@ -1,13 +1,39 @@
 package yw.seckill.service;
 
 import lombok.extern.slf4j.Slf4j;
+import org.redisson.api.BatchOptions;
+import org.redisson.api.RBatch;
+import org.redisson.api.RBucket;
+import org.redisson.api.RFuture;
+import org.redisson.api.RType;
+import org.redisson.api.RedissonClient;
+import org.redisson.client.codec.ByteArrayCodec;
+import org.redisson.client.codec.Codec;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+import yw.seckill.util.HotKeyDetector;
+import yw.seckill.util.RedisCodecs;
+import yw.seckill.util.RedisReadRouter;
+import yw.seckill.util.RedisReadRouter.ReadPreference;
 import yw.seckill.util.RedissonUtil;
+import yw.seckill.util.SeckillEventRecorder;
+import yw.seckill.util.SeckillEventRecorder.EventType;
+import yw.seckill.util.SeckillJfrEvents;
+import yw.seckill.util.StockBucketUtil;
+import yw.seckill.util.StockKeys;
+import yw.seckill.util.StockNearCache;
 
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
 
 /**
@@ -21,110 +47,278 @@ public class StockService {
     @Autowired
     private RedissonUtil redissonUtil;
 
+    @Autowired
+    private StockNearCache stockNearCache;
+
+    @Autowired
+    private SeckillEventRecorder eventRecorder;
+
+    @Autowired
+    private RedisReadRouter readRouter;
+
+    @Autowired
+    private StockBucketUtil stockBucketUtil;
+
+    @Autowired
+    private HotKeyDetector hotKeyDetector;
+
+    @Autowired
+    private StockKeys stockKeys;
+
+    @Value("${seckill.order.deduction-ttl-seconds:3600}")
+    private long deductionTtlSeconds;
+
     // Redis键前缀
     private static final String STOCK_KEY_PREFIX = "stock:";
     private static final String STOCK_LOCK_PREFIX = "stock_lock:";
-    private static final String STOCK_LOG_PREFIX = "stock_log:";
+    // 启用槽位分组时，各组待回收商品索引key的登记集合（不与脚本中的key一起访问）
+    private static final String STOCK_HOLD_INDEXES_KEY = "stock_hold:indexes";
+
+    // 本节点已登记过的待回收商品索引
+    private final Set<String> registeredHoldIndexes = ConcurrentHashMap.newKeySet();
 
-    // Lua脚本：原子化库存扣减
-    private static final String STOCK_DEDUCT_SCRIPT = 
-        "local stock_key = KEYS[1] " +
+    // Lua公共函数：按库存布局读取/扣减库存，分桶Hash存在即为分桶布局，否则为单key布局
+    // 布局切换（StockLayoutService）同样在Lua脚本中原子完成，脚本执行期间看到的布局始终一致
+    private static final String STOCK_LAYOUT_FUNCTIONS =
+        "local function stock_get(stock_key, hash_key, total_key) " +
+        "  if redis.call('EXISTS', hash_key) == 1 then " +
+        "    return tonumber(redis.call('GET', total_key) or 0) " +
+        "  end " +
+        "  return tonumber(redis.call('GET', stock_key) or 0) " +
+        "end " +
+        // 返回 {1/0, 扣减后库存, 扣减前库存, 扣减的桶(单key为 -)}；分桶布局从路由桶开始依次尝试各桶，库存为总库存
+        "local function stock_take(stock_key, hash_key, total_key, amount, route) " +
+        "  if redis.call('EXISTS', hash_key) == 1 then " +
+        "    local total = tonumber(redis.call('GET', total_key) or 0) " +
+        "    if total >= amount then " +
+        "      local n = redis.call('HLEN', hash_key) " +
+        "      for i = 0, n - 1 do " +
+        "        local field = tostring((route + i) % n) " +
+        "        if tonumber(redis.call('HGET', hash_key, field) or 0) >= amount then " +
+        "          redis.call('HINCRBY', hash_key, field, -amount) " +
+        "          return {1, redis.call('DECRBY', total_key, amount), total, field} " +
+        "        end " +
+        "      end " +
+        "    end " +
+        "    return {0, total, total, '-'} " +
+        "  end " +
+        "  local current_stock = tonumber(redis.call('GET', stock_key) or 0) " +
+        "  if current_stock >= amount then " +
+        "    redis.call('SET', stock_key, current_stock - amount) " +
+        "    return {1, current_stock - amount, current_stock, '-'} " +
+        "  end " +
+        "  return {0, current_stock, current_stock, '-'} " +
+        "end " +
+        // 只校验不扣减：与 stock_take 的判定一致（分桶布局需总库存足够且至少一个桶能整单扣减）
+        "local function stock_can_take(stock_key, hash_key, total_key, amount) " +
+        "  if redis.call('EXISTS', hash_key) == 1 then " +
+        "    if tonumber(redis.call('GET', total_key) or 0) < amount then " +
+        "      return false " +
+        "    end " +
+        "    for _, v in ipairs(redis.call('HVALS', hash_key)) do " +
+        "      if tonumber(v) >= amount then " +
+        "        return true " +
+        "      end " +
+        "    end " +
+        "    return false " +
+        "  end " +
+        "  return tonumber(redis.call('GET', stock_key) or 0) >= amount " +
+        "end ";
+
+    // Lua脚本：原子化库存扣减，成功时记录扣减明细（数量、桶、用户），供超时取消订单时原样归还
+    // KEYS = [库存key, 日志key, 待回写key, 分桶Hash key, 总库存key, 扣减明细key, 扣减ID序号key]，
+    // ARGV = [扣减数量, 日志, 路由桶, 用户ID, 扣减明细保留秒数]
+    private static final String STOCK_DEDUCT_SCRIPT = STOCK_LAYOUT_FUNCTIONS +
         "local deduct_amount = tonumber(ARGV[1]) " +
         "local log_key = KEYS[2] " +
-        "local log_data = ARGV[2] " +
-        "local current_stock = tonumber(redis.call('GET', stock_key) or 0) " +
-        "if current_stock >= deduct_amount then " +
-        "  local new_stock = current_stock - deduct_amount " +
-        "  redis.call('SET', stock_key, new_stock) " +
-        "  redis.call('LPUSH', log_key, log_data) " +
+        "local result = stock_take(KEYS[1], KEYS[4], KEYS[5], deduct_amount, tonumber(ARGV[3])) " +
+        "if result[1] == 1 then " +
+        "  redis.call('INCRBY', KEYS[3], deduct_amount) " + // 累计待回写MySQL的扣减量
+        "  redis.call('LPUSH', log_key, ARGV[2]) " +
         "  redis.call('EXPIRE', log_key, 86400) " +  // 日志保存24小时
-        "  return {1, new_stock, current_stock} " +   // 成功：{1, 新库存, 原库存}
-        "else " +
-        "  return {0, current_stock, current_stock} " + // 失败：{0, 当前库存, 当前库存}
-        "end";
+        "  local deduction_id = redis.call('INCR', KEYS[7]) " +
+        "  redis.call('HSET', KEYS[6], deduction_id, ARGV[1] .. ':' .. result[4] .. ':' .. ARGV[4]) " +
+        "  redis.call('EXPIRE', KEYS[6], tonumber(ARGV[5])) " +
+        "  return {1, result[2], result[3], deduction_id} " +
+        "end " +
+        "return {0, result[2], result[3], 0}";  // 成功：{1, 新库存, 原库存, 扣减ID}，失败：{0, 当前库存, 当前库存, 0}
 
     // Lua脚本：批量库存扣减
-    private static final String BATCH_STOCK_DEDUCT_SCRIPT = 
+    // KEYS = [库存key x n, 待回写key x n, 分桶Hash key x n, 总库存key x n, 日志key x n]，ARGV = [扣减数量 x n, 日志 x n, 路由桶 x n]
+    // 所有key都由调用方传入，不在脚本中拼接（集群模式下脚本只能访问KEYS中声明的key）
+    private static final String BATCH_STOCK_DEDUCT_SCRIPT = STOCK_LAYOUT_FUNCTIONS +
         "local results = {} " +
-        "for i = 1, #KEYS do " +
+        "local n = #KEYS / 5 " +
+        "for i = 1, n do " +
         "  local stock_key = KEYS[i] " +
+        "  local pending_key = KEYS[i + n] " +
         "  local deduct_amount = tonumber(ARGV[i]) " +
-        "  local log_key = 'stock_log:' .. stock_key " +
-        "  local log_data = ARGV[i + #KEYS] " +
-        "  local current_stock = tonumber(redis.call('GET', stock_key) or 0) " +
-        "  if current_stock >= deduct_amount then " +
-        "    local new_stock = current_stock - deduct_amount " +
-        "    redis.call('SET', stock_key, new_stock) " +
-        "    redis.call('LPUSH', log_key, log_data) " +
+        "  local log_key = KEYS[i + 4 * n] " +
+        "  local result = stock_take(stock_key, KEYS[i + 2 * n], KEYS[i + 3 * n], deduct_amount, tonumber(ARGV[i + 2 * n])) " +
+        "  if result[1] == 1 then " +
+        "    redis.call('INCRBY', pending_key, deduct_amount) " +
+        "    redis.call('LPUSH', log_key, ARGV[i + n]) " +
         "    redis.call('EXPIRE', log_key, 86400) " +
-        "    table.insert(results, {1, new_stock, current_stock}) " +
-        "  else " +
-        "    table.insert(results, {0, current_stock, current_stock}) " +
         "  end " +
+        "  table.insert(results, result) " +
         "end " +
         "return results";
 
-    // Lua脚本：库存预占
-    private static final String STOCK_PRE_OCCUPY_SCRIPT = 
-        "local stock_key = KEYS[1] " +
-        "local occupy_amount = tonumber(ARGV[1]) " +
-        "local expire_time = tonumber(ARGV[2]) " +
+    // Lua脚本：购物车整单扣减，先校验全部商品再统一扣减，任一商品不足则不做任何修改
+    // KEYS = [库存key x n, 待回写key x n, 分桶Hash key x n, 总库存key x n, 日志key x n]，ARGV = [扣减数量 x n, 日志 x n, 路由桶 x n]
+    // 同一商品只能出现一次（调用方合并），否则校验通过后扣减仍可能失败
+    // 返回 成功：{1, 新库存1, 原库存1, 新库存2, 原库存2, ...}，失败：{0, 不足商品序号(从1开始), 当前库存}
+    private static final String CART_STOCK_DEDUCT_SCRIPT = STOCK_LAYOUT_FUNCTIONS +
+        "local n = #KEYS / 5 " +
+        "for i = 1, n do " +
+        "  if not stock_can_take(KEYS[i], KEYS[i + 2 * n], KEYS[i + 3 * n], tonumber(ARGV[i])) then " +
+        "    return {0, i, stock_get(KEYS[i], KEYS[i + 2 * n], KEYS[i + 3 * n])} " +
+        "  end " +
+        "end " +
+        "local results = {1} " +
+        "for i = 1, n do " +
+        "  local result = stock_take(KEYS[i], KEYS[i + 2 * n], KEYS[i + 3 * n], tonumber(ARGV[i]), tonumber(ARGV[i + 2 * n])) " +
+        "  redis.call('INCRBY', KEYS[i + n], ARGV[i]) " +
+        "  redis.call('LPUSH', KEYS[i + 4 * n], ARGV[i + n]) " +
+        "  redis.call('EXPIRE', KEYS[i + 4 * n], 86400) " +
+        "  table.insert(results, result[2]) " +
+        "  table.insert(results, result[3]) " +
+        "end " +
+        "return results";
+
+    // Lua脚本：库存预占（每个预占单独记录，按截止时间存入有序集合）
+    // KEYS = [库存key, 预占总量key, 预占有序集合key, 预占数量Hash key, 预占序号key, 待回收商品索引key, 分桶Hash key, 总库存key]
+    // 全部key由 StockKeys 按商品生成，启用槽位分组时位于同一槽位
+    private static final String STOCK_PRE_OCCUPY_SCRIPT = STOCK_LAYOUT_FUNCTIONS +
         "local occupy_key = KEYS[2] " +
-        "local current_stock = tonumber(redis.call('GET', stock_key) or 0) " +
+        "local occupy_amount = tonumber(ARGV[1]) " +
+        "local deadline = tonumber(ARGV[2]) " +
+        "local current_stock = stock_get(KEYS[1], KEYS[7], KEYS[8]) " +
         "local occupied_stock = tonumber(redis.call('GET', occupy_key) or 0) " +
         "local available_stock = current_stock - occupied_stock " +
         "if available_stock >= occupy_amount then " +
+        "  local hold_id = redis.call('INCR', KEYS[5]) " +
+        "  while redis.call('HEXISTS', KEYS[4], hold_id) == 1 do " + // 跳过升级前全局序号分配、尚未释放的预占ID
+        "    hold_id = redis.call('INCR', KEYS[5]) " +
+        "  end " +
         "  redis.call('INCRBY', occupy_key, occupy_amount) " +
-        "  redis.call('EXPIRE', occupy_key, expire_time) " +
-        "  return {1, available_stock - occupy_amount, current_stock} " +
+        "  redis.call('PERSIST', occupy_key) " + // 兼容旧版本带过期时间的预占计数
+        "  redis.call('ZADD', KEYS[3], deadline, hold_id) " +
+        "  redis.call('HSET', KEYS[4], hold_id, occupy_amount) " +
+        "  redis.call('SADD', KEYS[6], ARGV[3]) " +
+        "  return {1, available_stock - occupy_amount, current_stock, hold_id} " +
         "else " +
-        "  return {0, available_stock, current_stock} " +
+        "  return {0, available_stock, current_stock, 0} " +
         "end";
 
+    // Lua脚本：确认预占，转为正式扣减
+    // KEYS = [库存key, 预占总量key, 预占有序集合key, 预占数量Hash key, 待回写key, 分桶Hash key, 总库存key]
+    // 返回 {状态, 新库存, 原库存, 数量}，状态：1-成功 0-预占不存在 -1-预占已过期 -2-库存不足
+    private static final String STOCK_HOLD_CONFIRM_SCRIPT = STOCK_LAYOUT_FUNCTIONS +
+        "local hold_id = ARGV[1] " +
+        "local occupy_amount = tonumber(redis.call('HGET', KEYS[4], hold_id)) " +
+        "if not occupy_amount then " +
+        "  return {0, 0, 0, 0} " +
+        "end " +
+        "local deadline = tonumber(redis.call('ZSCORE', KEYS[3], hold_id)) " +
+        "redis.call('ZREM', KEYS[3], hold_id) " +
+        "redis.call('HDEL', KEYS[4], hold_id) " +
+        "redis.call('DECRBY', KEYS[2], occupy_amount) " +
+        "if deadline and deadline < tonumber(ARGV[2]) then " +
+        "  local current_stock = stock_get(KEYS[1], KEYS[6], KEYS[7]) " +
+        "  return {-1, current_stock, current_stock, occupy_amount} " +
+        "end " +
+        "local result = stock_take(KEYS[1], KEYS[6], KEYS[7], occupy_amount, tonumber(ARGV[3])) " +
+        "if result[1] == 0 then " +
+        "  return {-2, result[2], result[3], occupy_amount} " +
+        "end " +
+        "redis.call('INCRBY', KEYS[5], occupy_amount) " +
+        "return {1, result[2], result[3], occupy_amount}";
+
+    // Lua脚本：增加库存，分桶布局加到路由桶并同步总库存
+    // 与超时归还一样同时 DECRBY 待回写扣减量（可减为负数），写回任务据此增加 MySQL 库存，保持 DB = Redis + pending + inflight
+    // KEYS = [库存key, 分桶Hash key, 总库存key, 待回写扣减量key]，ARGV = [增加数量, 路由桶]
+    private static final String STOCK_INCREASE_SCRIPT =
+        "redis.call('DECRBY', KEYS[4], ARGV[1]) " +
+        "if redis.call('EXISTS', KEYS[2]) == 1 then " +
+        "  local field = tostring(tonumber(ARGV[2]) % redis.call('HLEN', KEYS[2])) " +
+        "  redis.call('HINCRBY', KEYS[2], field, ARGV[1]) " +
+        "  return redis.call('INCRBY', KEYS[3], ARGV[1]) " +
+        "end " +
+        "return redis.call('INCRBY', KEYS[1], ARGV[1])";
+
+    // Lua脚本：取消预占，返回释放数量（0表示预占不存在）
+    private static final String STOCK_HOLD_CANCEL_SCRIPT =
+        "local hold_id = ARGV[1] " +
+        "local occupy_amount = tonumber(redis.call('HGET', KEYS[3], hold_id)) " +
+        "if not occupy_amount then " +
+        "  return 0 " +
+        "end " +
+        "redis.call('ZREM', KEYS[2], hold_id) " +
+        "redis.call('HDEL', KEYS[3], hold_id) " +
+        "redis.call('DECRBY', KEYS[1], occupy_amount) " +
+        "return occupy_amount";
+
+    // Lua脚本：批量释放已过期预占，返回 {释放预占数, 释放库存数}
+    // KEYS = [预占总量key, 预占有序集合key, 预占数量Hash key, 待回收商品索引key]，ARGV = [当前时间, 批量大小, 商品ID]
+    private static final String STOCK_HOLD_REAP_SCRIPT =
+        "local hold_ids = redis.call('ZRANGEBYSCORE', KEYS[2], '-inf', ARGV[1], 'LIMIT', 0, tonumber(ARGV[2])) " +
+        "local released = 0 " +
+        "for _, hold_id in ipairs(hold_ids) do " +
+        "  released = released + tonumber(redis.call('HGET', KEYS[3], hold_id) or 0) " +
+        "  redis.call('HDEL', KEYS[3], hold_id) " +
+        "end " +
+        "if #hold_ids > 0 then " +
+        "  redis.call('ZREM', KEYS[2], unpack(hold_ids)) " +
+        "  redis.call('DECRBY', KEYS[1], released) " +
+        "end " +
+        "if redis.call('ZCARD', KEYS[2]) == 0 then " +
+        "  redis.call('SREM', KEYS[4], ARGV[3]) " +
+        "end " +
+        "return {#hold_ids, released}";
+
     /**
      * 原子化库存扣减
+     * 成功时在 stock_deduction 中记录扣减明细，返回的扣减ID由下单请求携带，订单超时取消时按明细归还
      *
      * @param productId 商品ID
      * @param quantity 扣减数量
      * @param orderId 订单ID（用于日志）
-     * @param userId 用户ID（用于日志）
-     * @return 扣减结果
+     * @param userId 用户ID（用于日志和扣减明细）
+     * @return 扣减结果，success=false 仅表示库存不足
+     * @throws RuntimeException Redis访问失败等基础设施异常（不会被当作库存不足返回，幂等保护也不会缓存）
      */
     public StockDeductResult deductStock(Long productId, int quantity, Long orderId, Long userId) {
-        try {
-            String stockKey = STOCK_KEY_PREFIX + productId;
-            String logKey = STOCK_LOG_PREFIX + productId;
-            String logData = String.format("{\"orderId\":%d,\"userId\":%d,\"quantity\":%d,\"timestamp\":%d}", 
-                orderId, userId, quantity, System.currentTimeMillis());
+        String stockKey = stockKeys.stock(productId);
+        String logKey = stockKeys.log(productId);
+        String pendingKey = stockKeys.pending(productId);
+        String logData = String.format("{\"orderId\":%d,\"userId\":%d,\"quantity\":%d,\"timestamp\":%d}", 
+            orderId, userId, quantity, System.currentTimeMillis());
+        hotKeyDetector.record(productId);
 
-            // 执行Lua脚本
-            List<Object> result = redissonUtil.getRedissonClient().getScript().eval(
+        // 执行Lua脚本（按库存布局扣减单key或分桶）
+        List<Object> result = SeckillJfrEvents.timeScript("deduct", productId, 1, () ->
+            redissonUtil.getRedissonClient().getScript(RedisCodecs.TEXT).eval(
                 org.redisson.api.RScript.Mode.READ_WRITE,
                 STOCK_DEDUCT_SCRIPT,
                 org.redisson.api.RScript.ReturnType.MULTI,
-                Arrays.asList(stockKey, logKey),
-                quantity, logData
-            );
+                Arrays.asList(stockKey, logKey, pendingKey, stockKeys.bucketHash(productId),
+                    stockKeys.total(productId), stockKeys.deductions(productId), stockKeys.deductionSeq(productId)),
+                String.valueOf(quantity), logData, String.valueOf(stockBucketUtil.routeBucketIndex(productId, userId)),
+                String.valueOf(userId), String.valueOf(deductionTtlSeconds)
+            ));
 
-            boolean success = ((Number) result.get(0)).intValue() == 1;
-            int newStock = ((Number) result.get(1)).intValue();
-            int originalStock = ((Number) result.get(2)).intValue();
+        boolean success = ((Number) result.get(0)).intValue() == 1;
+        int newStock = ((Number) result.get(1)).intValue();
+        int originalStock = ((Number) result.get(2)).intValue();
+        long deductionId = ((Number) result.get(3)).longValue();
 
-            StockDeductResult deductResult = new StockDeductResult(success, newStock, originalStock, quantity);
-            
-            if (success) {
-                log.info("库存扣减成功: productId={}, quantity={}, newStock={}, orderId={}", 
-                    productId, quantity, newStock, orderId);
-            } else {
-                log.warn("库存扣减失败: productId={}, quantity={}, currentStock={}, orderId={}", 
-                    productId, quantity, originalStock, orderId);
-            }
-
-            return deductResult;
-        } catch (Exception e) {
-            log.error("库存扣减异常: productId={}, quantity={}", productId, quantity, e);
-            return new StockDeductResult(false, 0, 0, quantity);
+        if (success) {
+            eventRecorder.record(EventType.STOCK_DEDUCT_SUCCESS, productId, quantity, newStock);
+        } else {
+            eventRecorder.record(EventType.STOCK_DEDUCT_INSUFFICIENT, productId, quantity, originalStock);
         }
+        return new StockDeductResult(success, newStock, originalStock, quantity, deductionId);
     }
 
     /**
@@ -134,70 +328,73 @@ public class StockService {
      * @return 扣减结果列表
      */
     public List<StockDeductResult> batchDeductStock(List<StockDeductRequest> deductRequests) {
-        try {
-            if (deductRequests.isEmpty()) {
-                return List.of();
-            }
-
-            // 准备Lua脚本参数
-            List<String> keys = new ArrayList<>();
-            List<String> args = new ArrayList<>();
-            
-            for (StockDeductRequest request : deductRequests) {
-                String stockKey = STOCK_KEY_PREFIX + request.getProductId();
-                keys.add(stockKey);
-                args.add(String.valueOf(request.getQuantity()));
-                
-                String logData = String.format("{\"orderId\":%d,\"userId\":%d,\"quantity\":%d,\"timestamp\":%d}", 
-                    request.getOrderId(), request.getUserId(), request.getQuantity(), System.currentTimeMillis());
-                args.add(logData);
-            }
+        return batchDeductStockAsync(deductRequests).toCompletableFuture().join();
+    }
 
-            // 将 keys 转为 List<Object>
-            List<Object> keyObjects = new ArrayList<>(keys);
+    /**
+     * 批量库存扣减（异步，一次脚本调用），用于流式接口按块流水线提交
+     * 脚本执行失败时整块返回失败结果，不以异常结束
+     *
+     * @param deductRequests 扣减请求列表
+     * @return 与请求一一对应的扣减结果
+     */
+    public CompletionStage<List<StockDeductResult>> batchDeductStockAsync(List<StockDeductRequest> deductRequests) {
+        if (deductRequests.isEmpty()) {
+            return CompletableFuture.completedFuture(List.of());
+        }
+        try {
+            List<Object> keyObjects = new ArrayList<>(deductRequests.size() * 5);
+            List<String> args = new ArrayList<>(deductRequests.size() * 3);
+            buildGroupedArgs(deductRequests, keyObjects, args);
 
             // 执行批量Lua脚本
-            List<Object> results = redissonUtil.getRedissonClient().getScript().eval(
-                org.redisson.api.RScript.Mode.READ_WRITE,
-                BATCH_STOCK_DEDUCT_SCRIPT,
-                org.redisson.api.RScript.ReturnType.MULTI,
-                keyObjects,
-                args.toArray(new String[0])
-            );
-
-            // 解析结果
-            List<StockDeductResult> deductResults = new ArrayList<>();
-            for (int i = 0; i < deductRequests.size(); i++) {
-                StockDeductRequest request = deductRequests.get(i);
-                List<Object> result = (List<Object>) results.get(i);
-                
-                boolean success = ((Number) result.get(0)).intValue() == 1;
-                int newStock = ((Number) result.get(1)).intValue();
-                int originalStock = ((Number) result.get(2)).intValue();
-                
-                StockDeductResult deductResult = new StockDeductResult(success, newStock, originalStock, request.getQuantity());
-                deductResults.add(deductResult);
-                
-                if (success) {
-                    log.info("批量库存扣减成功: productId={}, quantity={}, newStock={}", 
-                        request.getProductId(), request.getQuantity(), newStock);
-                } else {
-                    log.warn("批量库存扣减失败: productId={}, quantity={}, currentStock={}", 
-                        request.getProductId(), request.getQuantity(), originalStock);
-                }
-            }
-
-            return deductResults;
+            CompletionStage<List<Object>> future = SeckillJfrEvents.timeScriptAsync("batchDeduct", 0, deductRequests.size(), () ->
+                redissonUtil.getRedissonClient().getScript(RedisCodecs.TEXT).<List<Object>>evalAsync(
+                    org.redisson.api.RScript.Mode.READ_WRITE,
+                    BATCH_STOCK_DEDUCT_SCRIPT,
+                    org.redisson.api.RScript.ReturnType.MULTI,
+                    keyObjects,
+                    (Object[]) args.toArray(new String[0])
+                ));
+            return future
+                .thenApply(results -> parseBatchDeductResults(deductRequests, results))
+                .exceptionally(e -> {
+                    log.error("批量库存扣减异常", e);
+                    return failedDeductResults(deductRequests);
+                });
         } catch (Exception e) {
             log.error("批量库存扣减异常", e);
-            return deductRequests.stream()
-                .map(request -> new StockDeductResult(false, 0, 0, request.getQuantity()))
-                .toList();
+            return CompletableFuture.completedFuture(failedDeductResults(deductRequests));
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<StockDeductResult> parseBatchDeductResults(List<StockDeductRequest> deductRequests, List<Object> results) {
+        List<StockDeductResult> deductResults = new ArrayList<>(deductRequests.size());
+        for (int i = 0; i < deductRequests.size(); i++) {
+            StockDeductRequest request = deductRequests.get(i);
+            List<Object> result = (List<Object>) results.get(i);
+
+            boolean success = ((Number) result.get(0)).intValue() == 1;
+            int newStock = ((Number) result.get(1)).intValue();
+            int originalStock = ((Number) result.get(2)).intValue();
+
+            deductResults.add(new StockDeductResult(success, newStock, originalStock, request.getQuantity()));
+            eventRecorder.record(success ? EventType.STOCK_DEDUCT_SUCCESS : EventType.STOCK_DEDUCT_INSUFFICIENT,
+                request.getProductId(), request.getQuantity(), success ? newStock : originalStock);
         }
+        return deductResults;
+    }
+
+    private List<StockDeductResult> failedDeductResults(List<StockDeductRequest> deductRequests) {
+        return deductRequests.stream()
+            .map(request -> new StockDeductResult(false, 0, 0, request.getQuantity()))
+            .toList();
     }
 
     /**
      * 库存预占（用于秒杀场景）
+     * 每次预占生成独立的预占ID，到期后由后台任务释放，不会影响其它预占
      *
      * @param productId 商品ID
      * @param quantity 预占数量
@@ -206,33 +403,33 @@ public class StockService {
      */
     public StockPreOccupyResult preOccupyStock(Long productId, int quantity, long expireSeconds) {
         try {
-            String stockKey = STOCK_KEY_PREFIX + productId;
-            String occupyKey = "stock_occupy:" + productId;
+            long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(expireSeconds);
+            hotKeyDetector.record(productId);
 
             // 执行Lua脚本
-            List<Object> result = redissonUtil.getRedissonClient().getScript().eval(
-                org.redisson.api.RScript.Mode.READ_WRITE,
-                STOCK_PRE_OCCUPY_SCRIPT,
-                org.redisson.api.RScript.ReturnType.MULTI,
-                Arrays.asList(stockKey, occupyKey),
-                quantity, expireSeconds
-            );
+            List<Object> result = SeckillJfrEvents.timeScript("preOccupy", productId, 1, () ->
+                redissonUtil.getRedissonClient().getScript(RedisCodecs.TEXT).eval(
+                    org.redisson.api.RScript.Mode.READ_WRITE,
+                    STOCK_PRE_OCCUPY_SCRIPT,
+                    org.redisson.api.RScript.ReturnType.MULTI,
+                    Arrays.asList(stockKeys.stock(productId), stockKeys.occupy(productId),
+                        stockKeys.holds(productId), stockKeys.holdQuantities(productId),
+                        stockKeys.holdSeq(productId), stockKeys.holdIndex(productId), stockKeys.bucketHash(productId),
+                        stockKeys.total(productId)),
+                    String.valueOf(quantity), String.valueOf(deadline), String.valueOf(productId)
+                ));
 
             boolean success = ((Number) result.get(0)).intValue() == 1;
             int availableStock = ((Number) result.get(1)).intValue();
             int totalStock = ((Number) result.get(2)).intValue();
-
-            StockPreOccupyResult occupyResult = new StockPreOccupyResult(success, availableStock, totalStock, quantity);
-            
+            long reservationId = ((Number) result.get(3)).longValue();
             if (success) {
-                log.info("库存预占成功: productId={}, quantity={}, availableStock={}", 
-                    productId, quantity, availableStock);
-            } else {
-                log.warn("库存预占失败: productId={}, quantity={}, availableStock={}", 
-                    productId, quantity, availableStock);
+                registerHoldIndex(productId);
             }
 
-            return occupyResult;
+            eventRecorder.record(success ? EventType.STOCK_PRE_OCCUPY_SUCCESS : EventType.STOCK_PRE_OCCUPY_INSUFFICIENT,
+                productId, quantity, availableStock);
+            return new StockPreOccupyResult(success, availableStock, totalStock, quantity, reservationId);
         } catch (Exception e) {
             log.error("库存预占异常: productId={}, quantity={}", productId, quantity, e);
             return new StockPreOccupyResult(false, 0, 0, quantity);
@@ -240,16 +437,266 @@ public class StockService {
     }
 
     /**
-     * 获取商品库存
+     * 确认预占：释放预占并正式扣减库存
+     *
+     * @param productId 商品ID
+     * @param reservationId 预占ID
+     * @return 扣减结果；预占不存在、已过期或库存不足时失败
+     */
+    public StockDeductResult confirmPreOccupy(Long productId, long reservationId) {
+        try {
+            List<Object> result = SeckillJfrEvents.timeScript("confirmHold", productId, 1, () ->
+                redissonUtil.getRedissonClient().getScript(RedisCodecs.TEXT).eval(
+                    org.redisson.api.RScript.Mode.READ_WRITE,
+                    STOCK_HOLD_CONFIRM_SCRIPT,
+                    org.redisson.api.RScript.ReturnType.MULTI,
+                    Arrays.asList(stockKeys.stock(productId), stockKeys.occupy(productId),
+                        stockKeys.holds(productId), stockKeys.holdQuantities(productId),
+                        stockKeys.pending(productId), stockKeys.bucketHash(productId),
+                        stockKeys.total(productId)),
+                    String.valueOf(reservationId), String.valueOf(System.currentTimeMillis()),
+                    String.valueOf(stockBucketUtil.routeBucketIndex(productId, reservationId))
+                ));
+
+            int status = ((Number) result.get(0)).intValue();
+            int newStock = ((Number) result.get(1)).intValue();
+            int originalStock = ((Number) result.get(2)).intValue();
+            int quantity = ((Number) result.get(3)).intValue();
+
+            if (status == 1) {
+                eventRecorder.record(EventType.STOCK_HOLD_CONFIRM_SUCCESS, productId, quantity, newStock);
+            } else {
+                eventRecorder.record(EventType.STOCK_HOLD_CONFIRM_FAILED, productId, 0, status);
+            }
+            return new StockDeductResult(status == 1, newStock, originalStock, quantity);
+        } catch (Exception e) {
+            log.error("确认预占异常: productId={}, reservationId={}", productId, reservationId, e);
+            return new StockDeductResult(false, 0, 0, 0);
+        }
+    }
+
+    /**
+     * 取消预占
+     *
+     * @param productId 商品ID
+     * @param reservationId 预占ID
+     * @return 释放的数量，0表示预占不存在（已确认、已取消或已过期释放）
+     */
+    public int cancelPreOccupy(Long productId, long reservationId) {
+        try {
+            Long released = SeckillJfrEvents.timeScript("cancelHold", productId, 1, () ->
+                redissonUtil.getRedissonClient().getScript(RedisCodecs.TEXT).<Long>eval(
+                    org.redisson.api.RScript.Mode.READ_WRITE,
+                    STOCK_HOLD_CANCEL_SCRIPT,
+                    org.redisson.api.RScript.ReturnType.INTEGER,
+                    Arrays.asList(stockKeys.occupy(productId), stockKeys.holds(productId),
+                        stockKeys.holdQuantities(productId)),
+                    String.valueOf(reservationId)
+                ));
+            eventRecorder.record(EventType.STOCK_HOLD_CANCEL, productId, released, reservationId);
+            return released.intValue();
+        } catch (Exception e) {
+            log.error("取消预占异常: productId={}, reservationId={}", productId, reservationId, e);
+            return 0;
+        }
+    }
+
+    /**
+     * 批量释放所有商品已过期的预占
+     *
+     * @param batchSize 单次脚本最多释放的预占数
+     * @return 释放的库存总数
+     */
+    public int releaseExpiredHolds(int batchSize) {
+        int totalReleased = 0;
+        String now = String.valueOf(System.currentTimeMillis());
+        RedissonClient client = redissonUtil.getRedissonClient();
+        Set<String> indexKeys = stockKeys.isSlotGrouped()
+            ? client.<String>getSet(STOCK_HOLD_INDEXES_KEY, RedisCodecs.TEXT).readAll()
+            : Set.of(stockKeys.holdIndex(0L));
+
+        for (String indexKey : indexKeys) {
+            Set<String> productIds = client.<String>getSet(indexKey, RedisCodecs.TEXT).readAll();
+            for (String member : productIds) {
+                Long productId = Long.valueOf(member);
+                try {
+                    List<Object> result;
+                    do {
+                        result = client.getScript(RedisCodecs.TEXT).eval(
+                            org.redisson.api.RScript.Mode.READ_WRITE,
+                            STOCK_HOLD_REAP_SCRIPT,
+                            org.redisson.api.RScript.ReturnType.MULTI,
+                            Arrays.asList(stockKeys.occupy(productId), stockKeys.holds(productId),
+                                stockKeys.holdQuantities(productId), indexKey),
+                            now, String.valueOf(batchSize), member
+                        );
+                        totalReleased += ((Number) result.get(1)).intValue();
+                    } while (((Number) result.get(0)).intValue() >= batchSize);
+                } catch (Exception e) {
+                    log.error("释放过期预占异常: productId={}", productId, e);
+                }
+            }
+        }
+
+        if (totalReleased > 0) {
+            log.info("释放过期预占完成: released={}", totalReleased);
+        }
+        return totalReleased;
+    }
+
+    /**
+     * 启用槽位分组时登记商品所在组的待回收索引，回收任务据此遍历各组（每个索引每个节点只登记一次）
+     */
+    private void registerHoldIndex(Long productId) {
+        if (!stockKeys.isSlotGrouped()) {
+            return;
+        }
+        String indexKey = stockKeys.holdIndex(productId);
+        if (registeredHoldIndexes.add(indexKey)) {
+            try {
+                redissonUtil.getRedissonClient().<String>getSet(STOCK_HOLD_INDEXES_KEY, RedisCodecs.TEXT).add(indexKey);
+            } catch (Exception e) {
+                registeredHoldIndexes.remove(indexKey);
+                log.error("登记待回收预占索引失败: indexKey={}", indexKey, e);
+            }
+        }
+    }
+
+    /**
+     * 获取商品库存（主节点强一致读）
      *
      * @param productId 商品ID
      * @return 库存数量
      */
     public int getStock(Long productId) {
+        return getStock(productId, ReadPreference.PRIMARY);
+    }
+
+    /**
+     * 购物车整单库存扣减：全部商品在一个Lua脚本中先校验后扣减，要么全部成功，要么不做任何修改，无需补偿回滚
+     * 同一商品的多行合并为一行（日志记录第一行的订单与用户）；
+     * 集群模式下脚本的全部key必须位于同一槽位：按槽位分组后只有一组时执行，否则整单拒绝（见 seckill.stock.slot-group-size）
+     *
+     * @param items 购物车商品
+     * @return 整单扣减结果，成功时按合并后的商品顺序给出每个商品的扣减结果
+     */
+    public CartDeductResult deductCart(List<StockDeductRequest> items) {
+        List<StockDeductRequest> lines = mergeCartLines(items);
+        if (lines.isEmpty()) {
+            return CartDeductResult.rejected("购物车为空");
+        }
+        if (redissonUtil.getRedissonClient().getConfig().isClusterConfig()) {
+            Map<Integer, List<StockDeductRequest>> groups = groupBySlot(lines);
+            if (groups.containsKey(-1)) {
+                return CartDeductResult.rejected("集群模式下未启用库存key槽位分组，无法整单扣减");
+            }
+            if (groups.size() > 1) {
+                return CartDeductResult.rejected("购物车商品分布在" + groups.size() + "个槽位分组，无法整单扣减");
+            }
+        }
+
+        try {
+            List<Object> keyObjects = new ArrayList<>(lines.size() * 5);
+            List<String> args = new ArrayList<>(lines.size() * 3);
+            buildGroupedArgs(lines, keyObjects, args);
+
+            List<Object> result = SeckillJfrEvents.timeScript("cartDeduct", 0, lines.size(), () ->
+                redissonUtil.getRedissonClient().getScript(RedisCodecs.TEXT).<List<Object>>eval(
+                    org.redisson.api.RScript.Mode.READ_WRITE,
+                    CART_STOCK_DEDUCT_SCRIPT,
+                    org.redisson.api.RScript.ReturnType.MULTI,
+                    keyObjects,
+                    (Object[]) args.toArray(new String[0])
+                ));
+
+            if (((Number) result.get(0)).intValue() != 1) {
+                StockDeductRequest failed = lines.get(((Number) result.get(1)).intValue() - 1);
+                int available = ((Number) result.get(2)).intValue();
+                eventRecorder.record(EventType.STOCK_DEDUCT_INSUFFICIENT, failed.getProductId(), failed.getQuantity(), available);
+                return new CartDeductResult(false, lines, List.of(), failed.getProductId(), available, "库存不足");
+            }
+
+            List<StockDeductResult> deductResults = new ArrayList<>(lines.size());
+            for (int i = 0; i < lines.size(); i++) {
+                StockDeductRequest line = lines.get(i);
+                int newStock = ((Number) result.get(1 + 2 * i)).intValue();
+                int originalStock = ((Number) result.get(2 + 2 * i)).intValue();
+                deductResults.add(new StockDeductResult(true, newStock, originalStock, line.getQuantity()));
+                eventRecorder.record(EventType.STOCK_DEDUCT_SUCCESS, line.getProductId(), line.getQuantity(), newStock);
+            }
+            return new CartDeductResult(true, lines, deductResults, null, 0, null);
+        } catch (Exception e) {
+            log.error("购物车库存扣减异常: items={}", lines.size(), e);
+            return CartDeductResult.rejected("购物车库存扣减异常: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 按集群槽位对购物车商品分组，同一组的商品可以在一个脚本中整单扣减
+     * 未启用槽位分组时，单个商品的库存key也不在同一槽位，全部归入 -1 组
+     *
+     * @return 槽位 -> 该槽位的商品（保持原有顺序）
+     */
+    public Map<Integer, List<StockDeductRequest>> groupBySlot(List<StockDeductRequest> items) {
+        Map<Integer, List<StockDeductRequest>> groups = new LinkedHashMap<>();
+        for (StockDeductRequest item : items) {
+            groups.computeIfAbsent(stockKeys.slotOf(item.getProductId()), slot -> new ArrayList<>()).add(item);
+        }
+        return groups;
+    }
+
+    private List<StockDeductRequest> mergeCartLines(List<StockDeductRequest> items) {
+        Map<Long, StockDeductRequest> merged = new LinkedHashMap<>();
+        for (StockDeductRequest item : items) {
+            merged.merge(item.getProductId(), item, (first, next) -> new StockDeductRequest(first.getProductId(),
+                first.getQuantity() + next.getQuantity(), first.getOrderId(), first.getUserId()));
+        }
+        return new ArrayList<>(merged.values());
+    }
+
+    /**
+     * 批量/购物车脚本参数：KEYS依次放全部库存key、待回写key、分桶Hash key、总库存key、日志key，ARGV依次放数量、日志、路由桶
+     */
+    private void buildGroupedArgs(List<StockDeductRequest> requests, List<Object> keyObjects, List<String> args) {
+        for (StockDeductRequest request : requests) {
+            keyObjects.add(stockKeys.stock(request.getProductId()));
+            args.add(String.valueOf(request.getQuantity()));
+            hotKeyDetector.record(request.getProductId());
+        }
+        for (StockDeductRequest request : requests) {
+            keyObjects.add(stockKeys.pending(request.getProductId()));
+            String logData = String.format("{\"orderId\":%d,\"userId\":%d,\"quantity\":%d,\"timestamp\":%d}",
+                request.getOrderId(), request.getUserId(), request.getQuantity(), System.currentTimeMillis());
+            args.add(logData);
+        }
+        for (StockDeductRequest request : requests) {
+            keyObjects.add(stockKeys.bucketHash(request.getProductId()));
+            args.add(String.valueOf(stockBucketUtil.routeBucketIndex(request.getProductId(), request.getUserId())));
+        }
+        for (StockDeductRequest request : requests) {
+            keyObjects.add(stockKeys.total(request.getProductId()));
+        }
+        for (StockDeductRequest request : requests) {
+            keyObjects.add(stockKeys.log(request.getProductId()));
+        }
+    }
+
+    /**
+     * 获取商品库存
+     *
+     * @param productId 商品ID
+     * @param preference 读偏好，REPLICA 可能读到从节点上略微滞后的值
+     * @return 库存数量（分桶布局时为总库存）
+     */
+    public int getStock(Long productId, ReadPreference preference) {
         try {
-            String stockKey = STOCK_KEY_PREFIX + productId;
-            Object value = redissonUtil.getRedissonClient().getBucket(stockKey).get();
-            return value != null ? Integer.parseInt(value.toString()) : 0;
+            String stockKey = stockKeys.stock(productId);
+            RedissonClient client = readRouter.client(preference);
+            Long value = client.<Long>getBucket(stockKey, RedisCodecs.NUMBER).get();
+            if (value == null) {
+                value = client.<Long>getBucket(stockKeys.total(productId), RedisCodecs.NUMBER).get();
+            }
+            return value != null ? value.intValue() : 0;
         } catch (Exception e) {
             log.error("获取库存异常: productId={}", productId, e);
             return 0;
@@ -257,15 +704,35 @@ public class StockService {
     }
 
     /**
-     * 设置商品库存
+     * 获取展示用商品库存（本地近端缓存，最大陈旧时间见 seckill.stock-cache.ttl-ms）
+     * 仅用于展示，扣减判断由Lua脚本在Redis中完成
+     *
+     * @param productId 商品ID
+     * @return 库存数量
+     */
+    public int getDisplayStock(Long productId) {
+        return stockNearCache.get(stockKeys.stock(productId), key -> getStock(productId, ReadPreference.REPLICA));
+    }
+
+    /**
+     * 设置商品库存（重置为单key布局，分桶Hash与总库存在同一原子批次中删除）
      *
      * @param productId 商品ID
      * @param stock 库存数量
      */
     public void setStock(Long productId, int stock) {
         try {
-            String stockKey = STOCK_KEY_PREFIX + productId;
-            redissonUtil.getRedissonClient().getBucket(stockKey).set(stock);
+            String stockKey = stockKeys.stock(productId);
+            RBatch batch = redissonUtil.getRedissonClient().createBatch(
+                BatchOptions.defaults().executionMode(BatchOptions.ExecutionMode.IN_MEMORY_ATOMIC));
+            batch.getKeys().deleteAsync(stockKeys.bucketHash(productId), stockKeys.total(productId));
+            batch.<Long>getBucket(stockKey, RedisCodecs.NUMBER).setAsync((long) stock);
+            batch.<String, String>getMap(stockKeys.layout(productId), RedisCodecs.TEXT)
+                .putAllAsync(Map.of("mode", "single", "bucketCount", "0",
+                    "changedAt", String.valueOf(System.currentTimeMillis())));
+            batch.execute();
+            stockNearCache.invalidate(stockKey);
+            stockNearCache.invalidate(stockKeys.total(productId));
             log.info("设置库存成功: productId={}, stock={}", productId, stock);
         } catch (Exception e) {
             log.error("设置库存异常: productId={}, stock={}", productId, stock, e);
@@ -280,8 +747,18 @@ public class StockService {
      */
     public void increaseStock(Long productId, int quantity) {
         try {
-            String stockKey = STOCK_KEY_PREFIX + productId;
-            Long newStock = redissonUtil.getRedissonClient().getAtomicLong(stockKey).addAndGet(quantity);
+            String stockKey = stockKeys.stock(productId);
+            Long newStock = SeckillJfrEvents.timeScript("increase", productId, 1, () ->
+                redissonUtil.getRedissonClient().getScript(RedisCodecs.TEXT).<Long>eval(
+                    org.redisson.api.RScript.Mode.READ_WRITE,
+                    STOCK_INCREASE_SCRIPT,
+                    org.redisson.api.RScript.ReturnType.INTEGER,
+                    Arrays.asList(stockKey, stockKeys.bucketHash(productId), stockKeys.total(productId),
+                        stockKeys.pending(productId)),
+                    String.valueOf(quantity), String.valueOf(stockBucketUtil.routeBucketIndex(productId, null))
+                ));
+            stockNearCache.invalidate(stockKey);
+            stockNearCache.invalidate(stockKeys.total(productId));
             log.info("增加库存成功: productId={}, quantity={}, newStock={}", productId, quantity, newStock);
         } catch (Exception e) {
             log.error("增加库存异常: productId={}, quantity={}", productId, quantity, e);
@@ -289,7 +766,54 @@ public class StockService {
     }
 
     /**
-     * 获取库存扣减日志
+     * 批量增加商品库存（异步）：每个商品一次增加脚本，整块放入一个非原子批次，一次往返提交
+     * 单个商品失败不影响其它商品，批次整体失败时整块返回失败结果，不以异常结束
+     *
+     * @param requests 增加请求列表
+     * @return 与请求一一对应的增加后库存，失败为 null
+     */
+    public CompletionStage<List<Long>> batchIncreaseStockAsync(List<StockIncreaseRequest> requests) {
+        if (requests.isEmpty()) {
+            return CompletableFuture.completedFuture(List.of());
+        }
+        try {
+            RBatch batch = redissonUtil.getRedissonClient().createBatch(BatchOptions.defaults());
+            List<RFuture<Long>> futures = new ArrayList<>(requests.size());
+            for (StockIncreaseRequest request : requests) {
+                Long productId = request.getProductId();
+                futures.add(batch.getScript(RedisCodecs.TEXT).evalAsync(
+                    org.redisson.api.RScript.Mode.READ_WRITE,
+                    STOCK_INCREASE_SCRIPT,
+                    org.redisson.api.RScript.ReturnType.INTEGER,
+                    Arrays.asList(stockKeys.stock(productId), stockKeys.bucketHash(productId), stockKeys.total(productId),
+                        stockKeys.pending(productId)),
+                    String.valueOf(request.getQuantity()), String.valueOf(stockBucketUtil.routeBucketIndex(productId, null))
+                ));
+            }
+            return SeckillJfrEvents.timeScriptAsync("batchIncrease", 0, requests.size(), batch::executeAsync)
+                .handle((ignored, batchError) -> {
+                    if (batchError != null) {
+                        log.error("批量增加库存异常: size={}", requests.size(), batchError);
+                    }
+                    List<Long> results = new ArrayList<>(requests.size());
+                    for (int i = 0; i < requests.size(); i++) {
+                        CompletableFuture<Long> future = futures.get(i).toCompletableFuture();
+                        results.add(future.isCompletedExceptionally() ? null : future.getNow(null));
+                        stockNearCache.invalidate(stockKeys.stock(requests.get(i).getProductId()));
+                        stockNearCache.invalidate(stockKeys.total(requests.get(i).getProductId()));
+                    }
+                    return results;
+                });
+        } catch (Exception e) {
+            log.error("批量增加库存异常: size={}", requests.size(), e);
+            List<Long> failed = new ArrayList<>(requests.size());
+            requests.forEach(request -> failed.add(null));
+            return CompletableFuture.completedFuture(failed);
+        }
+    }
+
+    /**
+     * 获取库存扣减日志（从节点读）
      *
      * @param productId 商品ID
      * @param limit 限制数量
@@ -297,17 +821,80 @@ public class StockService {
      */
     public List<String> getStockLogs(Long productId, int limit) {
         try {
-            String logKey = STOCK_LOG_PREFIX + productId;
-            List<Object> logs = redissonUtil.getRedissonClient().getList(logKey).range(0, limit - 1);
-            return logs.stream()
-                .map(Object::toString)
-                .toList();
+            String logKey = stockKeys.log(productId);
+            return readRouter.client(ReadPreference.REPLICA).<String>getList(logKey, RedisCodecs.TEXT).range(0, limit - 1);
         } catch (Exception e) {
             log.error("获取库存日志异常: productId={}", productId, e);
             return List.of();
         }
     }
 
+    /**
+     * 迁移旧编码的库存值：将默认编解码器（Kryo5等）写入的单key库存改写为纯整数字符串
+     * 逐key比较并替换（compareAndSet），迁移期间发生的扣减不会被覆盖；已是整数字符串的key跳过
+     * 旧版本与单key共用 stock: 前缀的分桶Hash重命名到 stock_bucket: 前缀（目标已存在时跳过）
+     *
+     * @return 迁移结果
+     */
+    public StockEncodingMigrationResult migrateStockEncoding() {
+        RedissonClient client = redissonUtil.getRedissonClient();
+        Codec legacyCodec = client.getConfig().getCodec();
+        int scanned = 0;
+        int migrated = 0;
+        int failed = 0;
+        int relocated = 0;
+
+        for (String key : client.getKeys().getKeysByPattern(STOCK_KEY_PREFIX + "*", 500)) {
+            RType type = client.getKeys().getType(key);
+            if (type == RType.MAP) {
+                try {
+                    String hashKey = stockKeys.bucketHash(StockKeys.parseProductId(key));
+                    if (client.getMap(key).renamenx(hashKey)) {
+                        relocated++;
+                    } else {
+                        log.warn("分桶Hash目标key已存在，跳过重命名: key={}, target={}", key, hashKey);
+                        failed++;
+                    }
+                } catch (Exception e) {
+                    log.error("重命名分桶Hash异常: key={}", key, e);
+                    failed++;
+                }
+                continue;
+            }
+            if (type != RType.OBJECT) {
+                continue;
+            }
+            scanned++;
+            try {
+                RBucket<byte[]> raw = client.getBucket(key, ByteArrayCodec.INSTANCE);
+                byte[] bytes = raw.get();
+                if (bytes == null || RedisCodecs.isPlainInteger(bytes)) {
+                    continue;
+                }
+                Object legacy = RedisCodecs.decodeLegacy(legacyCodec, bytes);
+                if (!(legacy instanceof Number number)) {
+                    log.warn("无法识别的库存值，跳过迁移: key={}, type={}", key, legacy == null ? null : legacy.getClass());
+                    failed++;
+                    continue;
+                }
+                byte[] plain = String.valueOf(number.longValue()).getBytes(StandardCharsets.UTF_8);
+                if (raw.compareAndSet(bytes, plain)) {
+                    stockNearCache.invalidate(key);
+                    migrated++;
+                } else {
+                    log.warn("库存值在迁移期间被修改，跳过: key={}", key);
+                    failed++;
+                }
+            } catch (Exception e) {
+                log.error("迁移库存编码异常: key={}", key, e);
+                failed++;
+            }
+        }
+
+        log.info("库存编码迁移完成: scanned={}, migrated={}, relocated={}, failed={}", scanned, migrated, relocated, failed);
+        return new StockEncodingMigrationResult(scanned, migrated, relocated, failed);
+    }
+
     /**
      * 库存扣减结果
      */
@@ -316,12 +903,18 @@ public class StockService {
         private int newStock;
         private int originalStock;
         private int deductQuantity;
+        private long deductionId;
 
         public StockDeductResult(boolean success, int newStock, int originalStock, int deductQuantity) {
+            this(success, newStock, originalStock, deductQuantity, 0);
+        }
+
+        public StockDeductResult(boolean success, int newStock, int originalStock, int deductQuantity, long deductionId) {
             this.success = success;
             this.newStock = newStock;
             this.originalStock = originalStock;
             this.deductQuantity = deductQuantity;
+            this.deductionId = deductionId;
         }
 
         // Getters
@@ -329,6 +922,8 @@ public class StockService {
         public int getNewStock() { return newStock; }
         public int getOriginalStock() { return originalStock; }
         public int getDeductQuantity() { return deductQuantity; }
+        /** 扣减明细ID，只有单商品扣减成功时大于0 */
+        public long getDeductionId() { return deductionId; }
     }
 
     /**
@@ -354,6 +949,56 @@ public class StockService {
         public Long getUserId() { return userId; }
     }
 
+    /**
+     * 购物车整单扣减结果
+     */
+    public static class CartDeductResult {
+        private final boolean success;
+        private final List<StockDeductRequest> lines;
+        private final List<StockDeductResult> items;
+        private final Long failedProductId;
+        private final int failedAvailableStock;
+        private final String message;
+
+        public CartDeductResult(boolean success, List<StockDeductRequest> lines, List<StockDeductResult> items,
+                                Long failedProductId, int failedAvailableStock, String message) {
+            this.success = success;
+            this.lines = lines;
+            this.items = items;
+            this.failedProductId = failedProductId;
+            this.failedAvailableStock = failedAvailableStock;
+            this.message = message;
+        }
+
+        static CartDeductResult rejected(String message) {
+            return new CartDeductResult(false, List.of(), List.of(), null, 0, message);
+        }
+
+        public boolean isSuccess() { return success; }
+        /** 合并同一商品后的扣减行，与 items 一一对应 */
+        public List<StockDeductRequest> getLines() { return lines; }
+        public List<StockDeductResult> getItems() { return items; }
+        public Long getFailedProductId() { return failedProductId; }
+        public int getFailedAvailableStock() { return failedAvailableStock; }
+        public String getMessage() { return message; }
+    }
+
+    /**
+     * 库存增加请求
+     */
+    public static class StockIncreaseRequest {
+        private final Long productId;
+        private final int quantity;
+
+        public StockIncreaseRequest(Long productId, int quantity) {
+            this.productId = productId;
+            this.quantity = quantity;
+        }
+
+        public Long getProductId() { return productId; }
+        public int getQuantity() { return quantity; }
+    }
+
     /**
      * 库存预占结果
      */
@@ -362,12 +1007,19 @@ public class StockService {
         private int availableStock;
         private int totalStock;
         private int occupyQuantity;
+        private long reservationId;
 
         public StockPreOccupyResult(boolean success, int availableStock, int totalStock, int occupyQuantity) {
+            this(success, availableStock, totalStock, occupyQuantity, 0L);
+        }
+
+        public StockPreOccupyResult(boolean success, int availableStock, int totalStock, int occupyQuantity,
+                                    long reservationId) {
             this.success = success;
             this.availableStock = availableStock;
             this.totalStock = totalStock;
             this.occupyQuantity = occupyQuantity;
+            this.reservationId = reservationId;
         }
 
         // Getters
@@ -375,5 +1027,28 @@ public class StockService {
         public int getAvailableStock() { return availableStock; }
         public int getTotalStock() { return totalStock; }
         public int getOccupyQuantity() { return occupyQuantity; }
+        public long getReservationId() { return reservationId; }
+    }
+
+    /**
+     * 库存编码迁移结果
+     */
+    public static class StockEncodingMigrationResult {
+        private final int scanned;
+        private final int migrated;
+        private final int relocated;
+        private final int failed;
+
+        public StockEncodingMigrationResult(int scanned, int migrated, int relocated, int failed) {
+            this.scanned = scanned;
+            this.migrated = migrated;
+            this.relocated = relocated;
+            this.failed = failed;
+        }
+
+        public int getScanned() { return scanned; }
+        public int getMigrated() { return migrated; }
+        public int getRelocated() { return relocated; }
+        public int getFailed() { return failed; }
     }
-} 
\ No newline at end of file
+}
@@ -0,0 +1,34 @@
+package yw.seckill.service;
+
+import java.util.Map;
+
+/**
+ * 库存写回同步服务
+ * 扣减脚本在Redis中累计每个商品的待回写扣减量，定时合并为一条
+ * "seckill_stock = seckill_stock - ?" 更新写回MySQL，避免每笔订单一次行锁
+ */
+public interface StockSyncService {
+
+    /**
+     * 同步所有进行中的活动，以及仍有待回写扣减量的已结束活动
+     *
+     * @return 本轮实际写回的活动数量
+     */
+    int syncAll();
+
+    /**
+     * 同步指定活动
+     *
+     * @param activityId 活动ID
+     * @return 本次写回的扣减量，0表示无需写回
+     */
+    int syncActivity(Long activityId);
+
+    /**
+     * 校验检查点：数据库库存应等于 Redis库存 + 待回写量 + 回写中的量
+     *
+     * @param activityId 活动ID
+     * @return 检查点及校验结果
+     */
+    Map<String, Object> verifyCheckpoint(Long activityId);
+}
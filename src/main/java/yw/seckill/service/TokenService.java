@@ -1,17 +1,26 @@
 package yw.seckill.service;
 
 import lombok.extern.slf4j.Slf4j;
+import org.redisson.api.BatchOptions;
+import org.redisson.api.RBatch;
+import org.redisson.api.RedissonClient;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
+import yw.seckill.util.RedisCodecs;
+import yw.seckill.util.RedisReadRouter;
+import yw.seckill.util.RedisReadRouter.ReadPreference;
 import yw.seckill.util.RedissonUtil;
+import yw.seckill.util.SeckillJfrEvents;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CompletionStage;
 import java.util.concurrent.TimeUnit;
 
 /**
  * 资格令牌服务
  * 使用Redis INCR生成全局唯一令牌，设置TTL防止重复使用
+ * 令牌值为纯文本标记（RedisCodecs.TEXT），只判断是否存在，旧编码写入的令牌同样可以验证和使用
  */
 @Slf4j
 @Service
@@ -20,6 +29,9 @@ public class TokenService {
     @Autowired
     private RedissonUtil redissonUtil;
 
+    @Autowired
+    private RedisReadRouter readRouter;
+
     private static final String TOKEN_COUNTER_KEY = "token:counter";
     private static final String TOKEN_PREFIX = "token:";
     private static final String ACTIVITY_TOKEN_COUNTER_KEY = "activity:token:counter:";
@@ -43,7 +55,7 @@ public class TokenService {
             
             // 将令牌存储到Redis，设置TTL
             String tokenKey = ACTIVITY_TOKEN_PREFIX + token;
-            redissonUtil.getRedissonClient().getBucket(tokenKey).set("1", ttlSeconds, TimeUnit.SECONDS);
+            redissonUtil.getRedissonClient().<String>getBucket(tokenKey, RedisCodecs.TEXT).set("1", ttlSeconds, TimeUnit.SECONDS);
             
             log.info("生成令牌成功: activityId={}, token={}, ttl={}s", activityId, token, ttlSeconds);
             return token;
@@ -91,7 +103,33 @@ public class TokenService {
     }
 
     /**
-     * 验证令牌是否有效
+     * 异步生成一块令牌（流式发放接口按块调用）：一次 INCRBY 预留连续的令牌ID段，令牌在一个批次中写入，
+     * 各块之间无需加锁；不逐个打日志
+     *
+     * @param activityId 活动ID
+     * @param count 本块数量
+     * @param ttlSeconds 令牌有效期（秒）
+     * @return 本块令牌
+     */
+    public CompletionStage<List<String>> generateTokensAsync(Long activityId, int count, long ttlSeconds) {
+        RedissonClient client = redissonUtil.getRedissonClient();
+        return client.getAtomicLong(ACTIVITY_TOKEN_COUNTER_KEY + activityId).addAndGetAsync(count)
+            .thenCompose(lastId -> {
+                long now = System.currentTimeMillis();
+                RBatch batch = client.createBatch(BatchOptions.defaults());
+                List<String> tokens = new ArrayList<>(count);
+                for (long tokenId = lastId - count + 1; tokenId <= lastId; tokenId++) {
+                    String token = String.format("T%d_%d_%d", activityId, now, tokenId);
+                    batch.<String>getBucket(ACTIVITY_TOKEN_PREFIX + token, RedisCodecs.TEXT)
+                        .setAsync("1", ttlSeconds, TimeUnit.SECONDS);
+                    tokens.add(token);
+                }
+                return batch.executeAsync().thenApply(ignored -> tokens);
+            });
+    }
+
+    /**
+     * 验证令牌是否有效（从节点读：刚生成的令牌可能短暂验证失败，以 consumeToken 在主节点的结果为准）
      *
      * @param token 令牌字符串
      * @return 是否有效
@@ -99,7 +137,7 @@ public class TokenService {
     public boolean validateToken(String token) {
         try {
             String tokenKey = ACTIVITY_TOKEN_PREFIX + token;
-            Object value = redissonUtil.getRedissonClient().getBucket(tokenKey).get();
+            Object value = readRouter.client(ReadPreference.REPLICA).<String>getBucket(tokenKey, RedisCodecs.TEXT).get();
             boolean isValid = value != null;
             
             if (isValid) {
@@ -124,8 +162,15 @@ public class TokenService {
     public boolean consumeToken(String token) {
         try {
             String tokenKey = ACTIVITY_TOKEN_PREFIX + token;
-            Object value = redissonUtil.getRedissonClient().getBucket(tokenKey).getAndDelete();
+            SeckillJfrEvents.TokenConsumeEvent event = new SeckillJfrEvents.TokenConsumeEvent();
+            event.begin();
+            Object value = redissonUtil.getRedissonClient().<String>getBucket(tokenKey, RedisCodecs.TEXT).getAndDelete();
             boolean consumed = value != null;
+            event.end();
+            if (event.shouldCommit()) {
+                event.consumed = consumed;
+                event.commit();
+            }
             
             if (consumed) {
                 log.info("令牌使用成功: token={}", token);
@@ -141,7 +186,7 @@ public class TokenService {
     }
 
     /**
-     * 获取令牌剩余有效期
+     * 获取令牌剩余有效期（从节点读）
      *
      * @param token 令牌字符串
      * @return 剩余秒数，-1表示不存在，-2表示永久
@@ -149,7 +194,7 @@ public class TokenService {
     public long getTokenTTL(String token) {
         try {
             String tokenKey = ACTIVITY_TOKEN_PREFIX + token;
-            return redissonUtil.getRedissonClient().getBucket(tokenKey).remainTimeToLive();
+            return readRouter.client(ReadPreference.REPLICA).<String>getBucket(tokenKey, RedisCodecs.TEXT).remainTimeToLive();
         } catch (Exception e) {
             log.error("获取令牌TTL异常: token={}", token, e);
             return -1;
@@ -166,10 +211,10 @@ public class TokenService {
     public boolean refreshTokenTTL(String token, long ttlSeconds) {
         try {
             String tokenKey = ACTIVITY_TOKEN_PREFIX + token;
-            Object value = redissonUtil.getRedissonClient().getBucket(tokenKey).get();
+            Object value = redissonUtil.getRedissonClient().<String>getBucket(tokenKey, RedisCodecs.TEXT).get();
             
             if (value != null) {
-                redissonUtil.getRedissonClient().getBucket(tokenKey).expire(ttlSeconds, TimeUnit.SECONDS);
+                redissonUtil.getRedissonClient().<String>getBucket(tokenKey, RedisCodecs.TEXT).expire(ttlSeconds, TimeUnit.SECONDS);
                 log.info("刷新令牌TTL成功: token={}, ttl={}s", token, ttlSeconds);
                 return true;
             } else {
@@ -0,0 +1,79 @@
+package yw.seckill.service;
+
+/**
+ * 秒杀排队服务
+ * 活动开始前后，客户端先领取排队号（Redis计数器按到达顺序分配），再轮询状态接口；
+ * 只有前 admit-factor × 活动初始库存（original_stock）个排队号有入场资格，并从活动开始时按 admit-rate-per-second 逐步放行，
+ * 放行后携带入场凭证（请求头 Waiting-Room-Ticket）进入扣减/下单接口
+ */
+public interface WaitingRoomService {
+
+    /**
+     * 入场凭证请求头
+     */
+    String TICKET_HEADER = "Waiting-Room-Ticket";
+
+    /**
+     * 排队号计数器key前缀
+     */
+    String WAITING_ROOM_SEQ_PREFIX = "waiting_room:seq:";
+
+    /**
+     * 已分配排队号Hash key前缀（field为userId，仅记录有入场资格的排队号）
+     */
+    String WAITING_ROOM_TICKETS_PREFIX = "waiting_room:tickets:";
+
+    /**
+     * 领取排队号（同一用户重复领取返回同一排队号）
+     * 名额领完后计数器不再增加，之后的用户（包括重复领取的被拒用户）都得到 名额+1，状态为 REJECTED
+     *
+     * @throws IllegalArgumentException 活动不存在、未到排队时间或已结束
+     */
+    WaitingRoomStatus enter(Long activityId, Long userId);
+
+    /**
+     * 查询排队状态：凭证验签和放行进度在本地计算；活动开始后判断售罄时读取展示库存
+     * （StockService#getDisplayStock，本地近端缓存未命中时回源Redis从节点）
+     */
+    WaitingRoomStatus status(String ticket);
+
+    /**
+     * 活动是否允许该用户进入购买流程：活动未开放排队，或凭证有效且已放行
+     */
+    boolean isAdmittedForActivity(Long activityId, Long userId, String ticket);
+
+    /**
+     * 商品是否允许该用户进入购买流程（按商品所属的排队活动判断）
+     */
+    boolean isAdmittedForProduct(Long productId, Long userId, String ticket);
+
+    /**
+     * 刷新本地缓存的排队活动（定时任务调用）
+     *
+     * @return 当前开放排队的活动数
+     */
+    int refreshRooms();
+
+    /**
+     * 排队状态
+     */
+    enum State {
+        /** 等待放行 */
+        WAITING,
+        /** 已放行，可进入购买流程 */
+        ADMITTED,
+        /** 排队号超出入场名额 */
+        REJECTED,
+        /** 商品已售罄 */
+        SOLD_OUT,
+        /** 凭证无效或活动已结束 */
+        INVALID
+    }
+
+    /**
+     * 排队状态结果
+     */
+    record WaitingRoomStatus(Long activityId, Long userId, long position, long admittedUpTo, long capacity,
+                             long estimatedWaitMs, State state, String ticket) {
+    }
+}
@@ -1,21 +1,85 @@
 package yw.seckill.service.impl;
 
 import lombok.extern.slf4j.Slf4j;
+import org.redisson.api.BatchOptions;
+import org.redisson.api.RBatch;
+import org.redisson.api.RFuture;
+import org.redisson.api.RScript;
+import org.redisson.api.RSetAsync;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import yw.seckill.entity.LockStatistics;
 import yw.seckill.service.LockMonitorService;
+import yw.seckill.util.RedisCodecs;
+import yw.seckill.util.RedissonUtil;
 
+import java.time.Duration;
 import java.time.LocalDateTime;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Predicate;
 
 /**
  * 锁监控服务实现类
+ * - 按锁key累计预聚合的计数、时长总和/最大值和时长直方图，定时把增量写入Redis中按时间分桶的Hash；
+ *   集群视图查询只读取各时间桶的Hash并合并，不传输明细记录
+ * - 本节点的竞争统计由已写入的累计值加上尚未写入的增量得出，不依赖明细记录
+ * - 明细记录（LockStatistics）默认关闭，开启后只保存在本节点内存，作为排查时的补充
  */
 @Slf4j
 @Service
 public class LockMonitorServiceImpl implements LockMonitorService {
+
+    /**
+     * 时长直方图桶数：桶0为0ms，桶i(i>=1)为 [2^(i-1), 2^i) ms，最后一个桶包含更长的时长
+     */
+    private static final int HISTOGRAM_BUCKETS = 18;
+
+    private static final String LOCK_STATS_PREFIX = "lock_stats:";
+
+    // Lua脚本：合并一个节点的增量到时间桶Hash
+    // KEYS = [统计Hash key]，ARGV = [过期秒数, 字段1, 增量1, 字段2, 增量2, ...]，max开头的字段取最大值
+    private static final String FLUSH_SCRIPT =
+        "for i = 2, #ARGV, 2 do " +
+        "  local field = ARGV[i] " +
+        "  local value = tonumber(ARGV[i + 1]) " +
+        "  if string.sub(field, 1, 3) == 'max' then " +
+        "    if value > tonumber(redis.call('HGET', KEYS[1], field) or 0) then " +
+        "      redis.call('HSET', KEYS[1], field, value) " +
+        "    end " +
+        "  else " +
+        "    redis.call('HINCRBY', KEYS[1], field, value) " +
+        "  end " +
+        "end " +
+        "redis.call('EXPIRE', KEYS[1], ARGV[1]) " +
+        "return 1";
+
+    @Autowired
+    private RedissonUtil redissonUtil;
+
+    // 默认关闭：只保留预聚合计数，不为每次加锁分配明细记录（逐次的等待/持有时长由JFR事件提供）
+    @Value("${seckill.lock-monitor.detail-enabled:false}")
+    private boolean detailEnabled;
+
+    @Value("${seckill.lock-stats.bucket-seconds:60}")
+    private long bucketSeconds;
+
+    @Value("${seckill.lock-stats.retention-minutes:1440}")
+    private long retentionMinutes;
+
+    // 本节点自上次写入Redis以来的增量，按锁key
+    private final Map<String, LockAggregate> aggregates = new ConcurrentHashMap<>();
+
+    // 上次写入时空闲而移出 aggregates 的聚合对象，下一次写入时收尾（只在 flushToRedis 中替换）
+    private volatile Map<String, LockAggregate> retired = Map.of();
+
+    // 本节点已取出写入Redis的累计值，按锁key，字段与时间桶Hash相同；超过24小时没有新增的锁key由清理任务移除
+    private final Map<String, LockTotals> totals = new ConcurrentHashMap<>();
     
     // 使用内存存储锁统计信息，实际项目中可以存储到Redis或数据库
     private final Map<String, List<LockStatistics>> lockStatisticsMap = new ConcurrentHashMap<>();
@@ -30,6 +94,7 @@ public class LockMonitorServiceImpl implements LockMonitorService {
      * @param threadId 线程ID
      * @return 本次尝试的统计对象
      */
+    @Deprecated
     @Override
     public LockStatistics recordLockAttempt(String lockKey, String threadId) {
         LockStatistics statistics = LockStatistics.builder()
@@ -43,8 +108,9 @@ public class LockMonitorServiceImpl implements LockMonitorService {
                 .totalRenewalDuration(0L)
                 .build();
         
-        lockStatisticsMap.computeIfAbsent(lockKey, k -> new ArrayList<>()).add(statistics);
-        log.info("记录锁获取尝试: lockKey={}, threadId={}", lockKey, threadId);
+        statisticsList(lockKey).add(statistics);
+        aggregate(lockKey).attempts.increment();
+        log.debug("记录锁获取尝试: lockKey={}, threadId={}", lockKey, threadId);
         
         return statistics;
     }
@@ -55,15 +121,16 @@ public class LockMonitorServiceImpl implements LockMonitorService {
      * @param threadId 线程ID
      * @param waitDuration 等待时长（毫秒）
      */
+    @Deprecated
     @Override
     public void recordLockAcquired(String lockKey, String threadId, Long waitDuration) {
+        LockAggregate aggregate = aggregate(lockKey);
+        aggregate.successes.increment();
+        aggregate.recordWait(waitDuration != null ? waitDuration : 0);
         List<LockStatistics> statisticsList = lockStatisticsMap.get(lockKey);
         if (statisticsList != null) {
-            LockStatistics statistics = statisticsList.stream()
-                    .filter(s -> s.getThreadId().equals(threadId))
-                    .filter(s -> s.getAcquireTime() == null)
-                    .findFirst()
-                    .orElse(null);
+            LockStatistics statistics = findFirst(statisticsList, s -> s.getThreadId().equals(threadId)
+                    && s.getAcquireTime() == null);
             
             if (statistics != null) {
                 statistics.setAcquireTime(LocalDateTime.now());
@@ -71,7 +138,7 @@ public class LockMonitorServiceImpl implements LockMonitorService {
                 statistics.setSuccess(true);
                 statistics.setUpdateTime(LocalDateTime.now());
                 
-                log.info("记录锁获取成功: lockKey={}, threadId={}, waitDuration={}ms", 
+                log.debug("记录锁获取成功: lockKey={}, threadId={}, waitDuration={}ms", 
                         lockKey, threadId, waitDuration);
             }
         }
@@ -83,15 +150,14 @@ public class LockMonitorServiceImpl implements LockMonitorService {
      * @param threadId 线程ID
      * @param holdDuration 持有时长（毫秒）
      */
+    @Deprecated
     @Override
     public void recordLockReleased(String lockKey, String threadId, Long holdDuration) {
+        aggregate(lockKey).recordHold(holdDuration != null ? holdDuration : 0);
         List<LockStatistics> statisticsList = lockStatisticsMap.get(lockKey);
         if (statisticsList != null) {
-            LockStatistics statistics = statisticsList.stream()
-                    .filter(s -> s.getThreadId().equals(threadId))
-                    .filter(s -> s.getReleaseTime() == null)
-                    .findFirst()
-                    .orElse(null);
+            LockStatistics statistics = findFirst(statisticsList, s -> s.getThreadId().equals(threadId)
+                    && s.getReleaseTime() == null);
             
             if (statistics != null) {
                 statistics.setReleaseTime(LocalDateTime.now());
@@ -106,7 +172,7 @@ public class LockMonitorServiceImpl implements LockMonitorService {
                     statistics.setTotalRenewalDuration((long) totalRenewalDuration.get());
                 }
                 
-                log.info("记录锁释放: lockKey={}, threadId={}, holdDuration={}ms, renewalCount={}", 
+                log.debug("记录锁释放: lockKey={}, threadId={}, holdDuration={}ms, renewalCount={}", 
                         lockKey, threadId, holdDuration, statistics.getRenewalCount());
             }
         }
@@ -118,8 +184,10 @@ public class LockMonitorServiceImpl implements LockMonitorService {
      * @param threadId 线程ID
      * @param renewalDuration 本次续期时长（毫秒）
      */
+    @Deprecated
     @Override
     public void recordLockRenewal(String lockKey, String threadId, Long renewalDuration) {
+        aggregate(lockKey).renewals.increment();
         String key = lockKey + ":" + threadId;
         renewalCountMap.computeIfAbsent(key, k -> new AtomicInteger(0)).incrementAndGet();
         totalRenewalDurationMap.computeIfAbsent(key, k -> new AtomicInteger(0))
@@ -135,27 +203,77 @@ public class LockMonitorServiceImpl implements LockMonitorService {
      * @param threadId 线程ID
      * @param waitDuration 等待时长（毫秒）
      */
+    @Deprecated
     @Override
     public void recordLockFailed(String lockKey, String threadId, Long waitDuration) {
+        LockAggregate aggregate = aggregate(lockKey);
+        aggregate.failures.increment();
+        aggregate.recordWait(waitDuration != null ? waitDuration : 0);
         List<LockStatistics> statisticsList = lockStatisticsMap.get(lockKey);
         if (statisticsList != null) {
-            LockStatistics statistics = statisticsList.stream()
-                    .filter(s -> s.getThreadId().equals(threadId))
-                    .filter(s -> s.getAcquireTime() == null)
-                    .findFirst()
-                    .orElse(null);
+            LockStatistics statistics = findFirst(statisticsList, s -> s.getThreadId().equals(threadId)
+                    && s.getAcquireTime() == null);
             
             if (statistics != null) {
                 statistics.setWaitDuration(waitDuration);
                 statistics.setSuccess(false);
                 statistics.setUpdateTime(LocalDateTime.now());
                 
-                log.info("记录锁获取失败: lockKey={}, threadId={}, waitDuration={}ms", 
+                log.debug("记录锁获取失败: lockKey={}, threadId={}, waitDuration={}ms", 
                         lockKey, threadId, waitDuration);
             }
         }
     }
     
+    /**
+     * 记录一次完整的加锁过程（LockHandle 关闭时调用）
+     * 热点路径只把纳秒时长换算为毫秒累加到 LongAdder；明细记录仅在开启时生成
+     */
+    @Override
+    public void recordLockCompleted(String lockKey, String threadId, boolean acquired, long waitNanos,
+                                    long holdNanos) {
+        long waitDuration = waitNanos / 1_000_000;
+        long holdDuration = holdNanos / 1_000_000;
+        LockAggregate aggregate = aggregate(lockKey);
+        aggregate.attempts.increment();
+        (acquired ? aggregate.successes : aggregate.failures).increment();
+        aggregate.recordWait(waitDuration);
+        if (acquired) {
+            aggregate.recordHold(holdDuration);
+        }
+        if (detailEnabled) {
+            recordDetail(lockKey, threadId, acquired, waitDuration, holdDuration);
+        }
+    }
+
+    private void recordDetail(String lockKey, String threadId, boolean acquired, long waitDuration, long holdDuration) {
+        String renewalKey = lockKey + ":" + threadId;
+        AtomicInteger renewalCount = renewalCountMap.remove(renewalKey);
+        AtomicInteger totalRenewalDuration = totalRenewalDurationMap.remove(renewalKey);
+        LocalDateTime now = LocalDateTime.now();
+        LockStatistics.LockStatisticsBuilder builder = LockStatistics.builder()
+                .lockKey(lockKey)
+                .threadId(threadId)
+                .waitStartTime(now.minusNanos((waitDuration + holdDuration) * 1_000_000))
+                .waitDuration(waitDuration)
+                .success(acquired)
+                .renewalCount(0)
+                .totalRenewalDuration(0L)
+                .createTime(now)
+                .updateTime(now);
+        if (acquired) {
+            builder.acquireTime(now.minusNanos(holdDuration * 1_000_000))
+                    .releaseTime(now)
+                    .holdDuration(holdDuration);
+            if (renewalCount != null && totalRenewalDuration != null) {
+                builder.renewalCount(renewalCount.get()).totalRenewalDuration((long) totalRenewalDuration.get());
+            }
+        }
+        statisticsList(lockKey).add(builder.build());
+        log.debug("记录锁使用: lockKey={}, threadId={}, acquired={}, waitDuration={}ms, holdDuration={}ms",
+                lockKey, threadId, acquired, waitDuration, holdDuration);
+    }
+
     /**
      * 获取指定锁的所有统计信息（详细列表）
      * @param lockKey 锁的key
@@ -163,7 +281,7 @@ public class LockMonitorServiceImpl implements LockMonitorService {
      */
     @Override
     public List<LockStatistics> getLockStatistics(String lockKey) {
-        return lockStatisticsMap.getOrDefault(lockKey, new ArrayList<>());
+        return snapshot(lockStatisticsMap.get(lockKey));
     }
     
     /**
@@ -172,84 +290,52 @@ public class LockMonitorServiceImpl implements LockMonitorService {
      */
     @Override
     public Map<String, List<LockStatistics>> getAllLockStatistics() {
-        return new HashMap<>(lockStatisticsMap);
+        Map<String, List<LockStatistics>> all = new HashMap<>();
+        lockStatisticsMap.forEach((lockKey, statisticsList) -> all.put(lockKey, snapshot(statisticsList)));
+        return all;
     }
     
     /**
-     * 获取指定锁的竞争统计（聚合分析）
+     * 获取指定锁在本节点的竞争统计：已写入Redis的累计值加上尚未写入的增量（写入过程中可能短暂少计）
+     * 开启明细记录时附带明细条数和续期总时长
      * @param lockKey 锁的key
-     * @return 该锁的竞争统计信息（如成功率、平均等待/持有时长等）
+     * @return 该锁的竞争统计信息（成功率、等待/持有时长的平均值、最大值和近似分位数等）
      */
     @Override
     public Map<String, Object> getLockCompetitionStats(String lockKey) {
-        List<LockStatistics> statisticsList = getLockStatistics(lockKey);
-        
-        Map<String, Object> stats = new HashMap<>();
-        
-        if (statisticsList.isEmpty()) {
+        Map<String, Long> merged = new HashMap<>();
+        LockTotals flushed = totals.get(lockKey);
+        if (flushed != null) {
+            merged.putAll(flushed.fields);
+        }
+        for (LockAggregate aggregate : new LockAggregate[] {aggregates.get(lockKey), retired.get(lockKey)}) {
+            if (aggregate != null) {
+                mergeFields(merged, aggregate.fields(false));
+            }
+        }
+
+        Map<String, Object> stats = new LinkedHashMap<>();
+        if (merged.isEmpty()) {
             stats.put("message", "暂无锁统计信息");
             return stats;
         }
-        
-        // 计算基本统计信息
-        long totalAttempts = statisticsList.size();
-        long successfulAttempts = statisticsList.stream()
-                .filter(LockStatistics::getSuccess)
-                .count();
-        long failedAttempts = totalAttempts - successfulAttempts;
-        
-        // 计算等待时间统计
-        DoubleSummaryStatistics waitStats = statisticsList.stream()
-                .filter(s -> s.getWaitDuration() != null)
-                .mapToDouble(s -> s.getWaitDuration())
-                .summaryStatistics();
-        
-        // 计算持有时长统计
-        DoubleSummaryStatistics holdStats = statisticsList.stream()
-                .filter(s -> s.getHoldDuration() != null)
-                .mapToDouble(s -> s.getHoldDuration())
-                .summaryStatistics();
-        
-        // 计算续期统计
-        int totalRenewals = statisticsList.stream()
-                .filter(s -> s.getRenewalCount() != null)
-                .mapToInt(LockStatistics::getRenewalCount)
-                .sum();
-        
-        long totalRenewalDuration = statisticsList.stream()
-                .filter(s -> s.getTotalRenewalDuration() != null)
-                .mapToLong(LockStatistics::getTotalRenewalDuration)
-                .sum();
-        
         stats.put("lockKey", lockKey);
-        stats.put("totalAttempts", totalAttempts);
-        stats.put("successfulAttempts", successfulAttempts);
-        stats.put("failedAttempts", failedAttempts);
-        stats.put("successRate", totalAttempts > 0 ? (double) successfulAttempts / totalAttempts : 0.0);
-        
-        // 等待时间统计
-        Map<String, Object> waitTimeStats = new HashMap<>();
-        waitTimeStats.put("min", waitStats.getMin());
-        waitTimeStats.put("max", waitStats.getMax());
-        waitTimeStats.put("average", waitStats.getAverage());
-        waitTimeStats.put("count", waitStats.getCount());
-        stats.put("waitTimeStats", waitTimeStats);
-        
-        // 持有时长统计
-        Map<String, Object> holdTimeStats = new HashMap<>();
-        holdTimeStats.put("min", holdStats.getMin());
-        holdTimeStats.put("max", holdStats.getMax());
-        holdTimeStats.put("average", holdStats.getAverage());
-        holdTimeStats.put("count", holdStats.getCount());
-        stats.put("holdTimeStats", holdTimeStats);
-        
-        // 续期统计
-        stats.put("totalRenewals", totalRenewals);
-        stats.put("totalRenewalDuration", totalRenewalDuration);
-        stats.put("averageRenewalsPerLock", successfulAttempts > 0 ? (double) totalRenewals / successfulAttempts : 0.0);
-        
+        stats.putAll(competitionStats(merged));
+        if (detailEnabled) {
+            List<LockStatistics> details = getLockStatistics(lockKey);
+            stats.put("detailCount", details.size());
+            stats.put("totalRenewalDuration", details.stream()
+                    .filter(s -> s.getTotalRenewalDuration() != null)
+                    .mapToLong(LockStatistics::getTotalRenewalDuration)
+                    .sum());
+        }
         return stats;
     }
+
+    @Override
+    public boolean isDetailEnabled() {
+        return detailEnabled;
+    }
     
     /**
      * 清理过期的统计信息（默认清理24小时以前的数据）
@@ -266,7 +352,317 @@ public class LockMonitorServiceImpl implements LockMonitorService {
         
         // 清理空的统计列表
         lockStatisticsMap.entrySet().removeIf(entry -> entry.getValue().isEmpty());
+
+        long cutoffMillis = System.currentTimeMillis() - TimeUnit.HOURS.toMillis(24);
+        totals.values().removeIf(t -> t.updateMillis < cutoffMillis);
         
         log.info("清理过期锁统计信息完成");
     }
-} 
\ No newline at end of file
+
+    /**
+     * 把本节点各锁key的增量写入当前时间桶，并用一条SADD登记本次写入的锁key（一次批量往返），增量随后清零
+     * 自上次写入以来没有增量的锁key移出Map（锁key可以是订单号等一次性的值，不移除会无限增长）；
+     * 移除前已取得引用的线程可能仍在记录，移出的聚合对象在下一次写入时再取一次增量后丢弃
+     */
+    @Override
+    public synchronized int flushToRedis() {
+        long bucket = currentBucket();
+        long ttlSeconds = TimeUnit.MINUTES.toSeconds(retentionMinutes) + bucketSeconds;
+        RBatch batch = redissonUtil.getRedissonClient().createBatch(BatchOptions.defaults());
+        Set<String> flushed = new HashSet<>();
+        Map<String, LockAggregate> idle = new HashMap<>();
+        for (Map.Entry<String, LockAggregate> entry : aggregates.entrySet()) {
+            if (addFlush(batch, bucket, ttlSeconds, entry.getKey(), entry.getValue())) {
+                flushed.add(entry.getKey());
+            } else if (aggregates.remove(entry.getKey(), entry.getValue())) {
+                idle.put(entry.getKey(), entry.getValue());
+            }
+        }
+        for (Map.Entry<String, LockAggregate> entry : retired.entrySet()) {
+            if (addFlush(batch, bucket, ttlSeconds, entry.getKey(), entry.getValue())) {
+                flushed.add(entry.getKey());
+            }
+        }
+        retired = idle;
+        if (!flushed.isEmpty()) {
+            RSetAsync<String> keys = batch.getSet(keysKey(bucket), RedisCodecs.TEXT);
+            keys.addAllAsync(flushed);
+            keys.expireAsync(Duration.ofSeconds(ttlSeconds));
+            batch.execute();
+        }
+        return flushed.size();
+    }
+
+    private boolean addFlush(RBatch batch, long bucket, long ttlSeconds, String lockKey, LockAggregate aggregate) {
+        List<Object> args = aggregate.fields(true);
+        if (args.isEmpty()) {
+            return false;
+        }
+        totals.computeIfAbsent(lockKey, k -> new LockTotals()).add(args);
+        args.add(0, String.valueOf(ttlSeconds));
+        batch.getScript(RedisCodecs.TEXT).evalAsync(RScript.Mode.READ_WRITE, FLUSH_SCRIPT, RScript.ReturnType.INTEGER,
+                List.of(statsKey(bucket, lockKey)), args.toArray());
+        return true;
+    }
+
+    /**
+     * 集群视图：合并最近 windowMinutes 分钟内各时间桶、各节点写入的统计（不含各节点尚未写入的增量）
+     */
+    @Override
+    public Map<String, Object> getClusterLockStats(String lockKey, int windowMinutes) {
+        List<Long> buckets = windowBuckets(windowMinutes);
+        RBatch batch = redissonUtil.getRedissonClient().createBatch(BatchOptions.defaults());
+        List<RFuture<Map<String, String>>> futures = new ArrayList<>(buckets.size());
+        for (long bucket : buckets) {
+            futures.add(batch.<String, String>getMap(statsKey(bucket, lockKey), RedisCodecs.TEXT).readAllMapAsync());
+        }
+        batch.execute();
+
+        Map<String, Long> merged = new HashMap<>();
+        int bucketsWithData = 0;
+        for (RFuture<Map<String, String>> future : futures) {
+            Map<String, String> fields = future.toCompletableFuture().join();
+            if (fields.isEmpty()) {
+                continue;
+            }
+            bucketsWithData++;
+            fields.forEach((field, value) -> merged.merge(field, Long.parseLong(value),
+                    field.startsWith("max") ? Math::max : Long::sum));
+        }
+
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("lockKey", lockKey);
+        stats.put("windowMinutes", windowMinutes);
+        stats.put("buckets", bucketsWithData);
+        stats.putAll(competitionStats(merged));
+        return stats;
+    }
+
+    /**
+     * 由合并后的计数字段计算竞争统计（本节点与集群视图共用）
+     */
+    private Map<String, Object> competitionStats(Map<String, Long> merged) {
+        long attempts = merged.getOrDefault("attempts", 0L);
+        long successes = merged.getOrDefault("successes", 0L);
+        long renewals = merged.getOrDefault("renewals", 0L);
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("totalAttempts", attempts);
+        stats.put("successfulAttempts", successes);
+        stats.put("failedAttempts", merged.getOrDefault("failures", 0L));
+        stats.put("successRate", attempts > 0 ? (double) successes / attempts : 0.0);
+        stats.put("waitTimeStats", durationStats(merged, "wait"));
+        stats.put("holdTimeStats", durationStats(merged, "hold"));
+        stats.put("totalRenewals", renewals);
+        stats.put("averageRenewalsPerLock", successes > 0 ? (double) renewals / successes : 0.0);
+        return stats;
+    }
+
+    /**
+     * 按 字段, 值 参数对合并计数：max开头的字段取最大值，其余相加（与写入脚本的规则一致）
+     */
+    private static void mergeFields(Map<String, Long> merged, List<Object> args) {
+        for (int i = 0; i + 1 < args.size(); i += 2) {
+            String field = (String) args.get(i);
+            merged.merge(field, Long.parseLong((String) args.get(i + 1)),
+                    field.startsWith("max") ? Math::max : Long::sum);
+        }
+    }
+
+    /**
+     * 最近 windowMinutes 分钟内任一节点写入过统计的锁key
+     */
+    @Override
+    public Set<String> getClusterLockKeys(int windowMinutes) {
+        List<Long> buckets = windowBuckets(windowMinutes);
+        RBatch batch = redissonUtil.getRedissonClient().createBatch(BatchOptions.defaults());
+        List<RFuture<Set<String>>> futures = new ArrayList<>(buckets.size());
+        for (long bucket : buckets) {
+            futures.add(batch.<String>getSet(keysKey(bucket), RedisCodecs.TEXT).readAllAsync());
+        }
+        batch.execute();
+        Set<String> keys = new TreeSet<>();
+        futures.forEach(future -> keys.addAll(future.toCompletableFuture().join()));
+        return keys;
+    }
+
+    // 明细列表为同步列表：追加和 removeIf 自带同步，遍历前在列表上加锁复制
+    private List<LockStatistics> statisticsList(String lockKey) {
+        return lockStatisticsMap.computeIfAbsent(lockKey, k -> Collections.synchronizedList(new ArrayList<>()));
+    }
+
+    private static List<LockStatistics> snapshot(List<LockStatistics> statisticsList) {
+        if (statisticsList == null) {
+            return new ArrayList<>();
+        }
+        synchronized (statisticsList) {
+            return new ArrayList<>(statisticsList);
+        }
+    }
+
+    private static LockStatistics findFirst(List<LockStatistics> statisticsList, Predicate<LockStatistics> filter) {
+        synchronized (statisticsList) {
+            for (LockStatistics statistics : statisticsList) {
+                if (filter.test(statistics)) {
+                    return statistics;
+                }
+            }
+            return null;
+        }
+    }
+
+    private LockAggregate aggregate(String lockKey) {
+        return aggregates.computeIfAbsent(lockKey, k -> new LockAggregate());
+    }
+
+    private Map<String, Object> durationStats(Map<String, Long> merged, String prefix) {
+        long count = merged.getOrDefault(prefix + "Count", 0L);
+        long[] histogram = new long[HISTOGRAM_BUCKETS];
+        for (int i = 0; i < HISTOGRAM_BUCKETS; i++) {
+            histogram[i] = merged.getOrDefault(prefix + "H" + i, 0L);
+        }
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("count", count);
+        stats.put("average", count > 0 ? (double) merged.getOrDefault(prefix + "Sum", 0L) / count : 0.0);
+        stats.put("max", merged.getOrDefault("max" + Character.toUpperCase(prefix.charAt(0)) + prefix.substring(1), 0L));
+        stats.put("p50", percentileUpperBound(histogram, count, 0.50));
+        stats.put("p95", percentileUpperBound(histogram, count, 0.95));
+        stats.put("p99", percentileUpperBound(histogram, count, 0.99));
+        return stats;
+    }
+
+    /**
+     * 按直方图估算分位数，返回所在桶的上界（毫秒）
+     */
+    private static long percentileUpperBound(long[] histogram, long count, double quantile) {
+        if (count == 0) {
+            return 0;
+        }
+        long target = (long) Math.ceil(count * quantile);
+        long cumulative = 0;
+        for (int i = 0; i < histogram.length; i++) {
+            cumulative += histogram[i];
+            if (cumulative >= target) {
+                return i == 0 ? 0 : (1L << i) - 1;
+            }
+        }
+        return (1L << (histogram.length - 1)) - 1;
+    }
+
+    private static int histogramIndex(long durationMillis) {
+        if (durationMillis <= 0) {
+            return 0;
+        }
+        return Math.min(64 - Long.numberOfLeadingZeros(durationMillis), HISTOGRAM_BUCKETS - 1);
+    }
+
+    private long currentBucket() {
+        long nowSeconds = System.currentTimeMillis() / 1000;
+        return nowSeconds - nowSeconds % bucketSeconds;
+    }
+
+    private List<Long> windowBuckets(int windowMinutes) {
+        long current = currentBucket();
+        long count = Math.max(TimeUnit.MINUTES.toSeconds(windowMinutes) / bucketSeconds, 1);
+        List<Long> buckets = new ArrayList<>();
+        for (long i = 0; i < count; i++) {
+            buckets.add(current - i * bucketSeconds);
+        }
+        return buckets;
+    }
+
+    // 哈希标签取锁key：同一把锁的各时间桶在同一槽位，集群查询一个窗口只访问一个节点；
+    // 同一时间桶内不同锁key的写入分散到各槽位，不会集中在一个节点上
+    private static String statsKey(long bucket, String lockKey) {
+        return LOCK_STATS_PREFIX + "{" + lockKey + "}:" + bucket;
+    }
+
+    private static String keysKey(long bucket) {
+        return LOCK_STATS_PREFIX + "keys:" + bucket;
+    }
+
+    /**
+     * 单个锁key的增量计数
+     */
+    private static final class LockAggregate {
+        private final LongAdder attempts = new LongAdder();
+        private final LongAdder successes = new LongAdder();
+        private final LongAdder failures = new LongAdder();
+        private final LongAdder renewals = new LongAdder();
+        private final LongAdder waitCount = new LongAdder();
+        private final LongAdder waitSum = new LongAdder();
+        private final LongAccumulator maxWait = new LongAccumulator(Math::max, 0);
+        private final LongAdder holdCount = new LongAdder();
+        private final LongAdder holdSum = new LongAdder();
+        private final LongAccumulator maxHold = new LongAccumulator(Math::max, 0);
+        private final LongAdder[] waitHistogram = newHistogram();
+        private final LongAdder[] holdHistogram = newHistogram();
+
+        private void recordWait(long millis) {
+            waitCount.increment();
+            waitSum.add(millis);
+            maxWait.accumulate(millis);
+            waitHistogram[histogramIndex(millis)].increment();
+        }
+
+        private void recordHold(long millis) {
+            holdCount.increment();
+            holdSum.add(millis);
+            maxHold.accumulate(millis);
+            holdHistogram[histogramIndex(millis)].increment();
+        }
+
+        /**
+         * 返回非零的 字段, 值 参数对；reset 为 true 时取出并清零增量（清零期间的并发记录计入下一次），否则只读取
+         */
+        private List<Object> fields(boolean reset) {
+            List<Object> args = new ArrayList<>();
+            addField(args, "attempts", sum(attempts, reset));
+            addField(args, "successes", sum(successes, reset));
+            addField(args, "failures", sum(failures, reset));
+            addField(args, "renewals", sum(renewals, reset));
+            addField(args, "waitCount", sum(waitCount, reset));
+            addField(args, "waitSum", sum(waitSum, reset));
+            addField(args, "maxWait", reset ? maxWait.getThenReset() : maxWait.get());
+            addField(args, "holdCount", sum(holdCount, reset));
+            addField(args, "holdSum", sum(holdSum, reset));
+            addField(args, "maxHold", reset ? maxHold.getThenReset() : maxHold.get());
+            for (int i = 0; i < HISTOGRAM_BUCKETS; i++) {
+                addField(args, "waitH" + i, sum(waitHistogram[i], reset));
+                addField(args, "holdH" + i, sum(holdHistogram[i], reset));
+            }
+            return args;
+        }
+
+        private static long sum(LongAdder adder, boolean reset) {
+            return reset ? adder.sumThenReset() : adder.sum();
+        }
+
+        private static void addField(List<Object> args, String field, long value) {
+            if (value != 0) {
+                args.add(field);
+                args.add(String.valueOf(value));
+            }
+        }
+
+        private static LongAdder[] newHistogram() {
+            LongAdder[] histogram = new LongAdder[HISTOGRAM_BUCKETS];
+            for (int i = 0; i < histogram.length; i++) {
+                histogram[i] = new LongAdder();
+            }
+            return histogram;
+        }
+    }
+
+    /**
+     * 单个锁key已写入的累计值（只在 flushToRedis 中追加，查询时并发读取）
+     */
+    private static final class LockTotals {
+        private final Map<String, Long> fields = new ConcurrentHashMap<>();
+        private volatile long updateMillis;
+
+        private void add(List<Object> args) {
+            mergeFields(fields, args);
+            updateMillis = System.currentTimeMillis();
+        }
+    }
+}
\ No newline at end of file
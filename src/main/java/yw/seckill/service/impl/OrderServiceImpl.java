@@ -1,7 +1,9 @@
 package yw.seckill.service.impl;
 
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import yw.seckill.entity.Order;
 import yw.seckill.mapper.OrderMapper;
 import yw.seckill.service.OrderService;
@@ -9,15 +11,24 @@ import yw.seckill.dto.CreateOrderRequestDTO;
 import org.springframework.kafka.core.KafkaTemplate;
 import yw.seckill.config.KafkaConfig;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import yw.seckill.util.OrderMessageCodec;
+import yw.seckill.util.SeckillEventRecorder;
+import yw.seckill.util.SeckillEventRecorder.EventType;
 
+@Slf4j
 @Service
 public class OrderServiceImpl implements OrderService {
     @Autowired
     private OrderMapper orderMapper;
     @Autowired
-    private KafkaTemplate<String, String> kafkaTemplate;
+    private KafkaTemplate<String, byte[]> kafkaTemplate;
     @Autowired
     private ObjectMapper objectMapper;
+    @Autowired
+    private SeckillEventRecorder eventRecorder;
+
+    @Value("${seckill.kafka.order-format:json}")
+    private String orderMessageFormat;
 
     @Override
     public Order getOrderById(Long orderId) {
@@ -29,15 +40,18 @@ public class OrderServiceImpl implements OrderService {
         try {
             // TODO:
             // 参数校验、资格校验
-            // 序列化消息体为JSON
-            String msg = objectMapper.writeValueAsString(request);
-            // 投递Kafka消息
-            kafkaTemplate.send(KafkaConfig.ORDER_TOPIC, msg);
-            // 记录日志
-            System.out.println("[Kafka] 投递下单消息: " + msg);
+            // 序列化消息体（默认JSON，所有消费者升级完成后可切换为二进制编码）
+            byte[] msg = "json".equals(orderMessageFormat)
+                ? objectMapper.writeValueAsBytes(request)
+                : OrderMessageCodec.encode(request);
+            // 投递Kafka消息：以userId为key，同一用户的消息进入同一分区并按顺序消费
+            // （不以activityId为key：秒杀期间绝大多数消息属于同一活动，会集中到一个分区）
+            kafkaTemplate.send(KafkaConfig.ORDER_TOPIC, String.valueOf(request.userId()), msg);
+            // 记录事件（聚合计数+采样）
+            eventRecorder.record(EventType.ORDER_SENT, request.userId(), 0, request.activityId());
         } catch (Exception e) {
             // 记录异常日志
-            System.err.println("[Kafka] 投递下单消息失败: " + e.getMessage());
+            log.error("[Kafka] 投递下单消息失败: userId={}, activityId={}", request.userId(), request.activityId(), e);
             throw new RuntimeException("下单消息投递失败", e);
         }
     }
@@ -0,0 +1,215 @@
+package yw.seckill.service.impl;
+
+import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
+import com.baomidou.mybatisplus.core.conditions.update.UpdateWrapper;
+import lombok.extern.slf4j.Slf4j;
+import org.redisson.api.RScoredSortedSet;
+import org.redisson.api.RScript;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+import yw.seckill.entity.Order;
+import yw.seckill.mapper.OrderMapper;
+import yw.seckill.service.OrderTimeoutService;
+import yw.seckill.util.RedisCodecs;
+import yw.seckill.util.RedissonUtil;
+import yw.seckill.util.StockBucketUtil;
+import yw.seckill.util.StockKeys;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * 订单支付超时服务实现
+ *
+ * 扫描流程：
+ * 1. Lua脚本领取到期订单，并把它们的分数推迟一个租约时间（节点宕机时租约到期后会被重新领取）
+ * 2. 在一个事务中锁定这批订单，将仍为待支付的订单批量更新为已取消
+ * 3. 对已取消订单，Lua脚本按订单携带的扣减明细（数量、桶、用户）归还库存并删除明细，明细删除成功才归还，
+ *    保证每笔扣减只归还一次；没有扣减明细的订单不归还库存。归还后再出队
+ */
+@Slf4j
+@Service
+public class OrderTimeoutServiceImpl implements OrderTimeoutService {
+
+    @Autowired
+    private RedissonUtil redissonUtil;
+
+    @Autowired
+    private StockBucketUtil stockBucketUtil;
+
+    @Autowired
+    private OrderMapper orderMapper;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private StockKeys stockKeys;
+
+    @Value("${seckill.order.pay-timeout-seconds:900}")
+    private long payTimeoutSeconds;
+
+    @Value("${seckill.order.timeout-batch-size:200}")
+    private int batchSize;
+
+    @Value("${seckill.order.timeout-lease-seconds:30}")
+    private long leaseSeconds;
+
+    private static final String ORDER_TIMEOUT_QUEUE_KEY = "order_timeout:queue";
+    private static final int STATUS_UNPAID = 0;
+    private static final int STATUS_CANCELLED = 2;
+
+    // Lua脚本：领取到期订单并续租
+    private static final String CLAIM_SCRIPT =
+        "local ids = redis.call('ZRANGEBYSCORE', KEYS[1], '-inf', ARGV[1], 'LIMIT', 0, tonumber(ARGV[2])) " +
+        "for _, id in ipairs(ids) do " +
+        "  redis.call('ZADD', KEYS[1], 'XX', ARGV[3], id) " +
+        "end " +
+        "return ids";
+
+    // Lua脚本：按扣减明细归还库存（原桶仍存在时归还到原桶，布局已变化时按当前布局归还），同时抵扣待回写MySQL的扣减量
+    // KEYS = [扣减明细key, 库存key, 待回写key, 总库存key, 分桶Hash key]，ARGV = [扣减ID, 用户ID, 路由桶]
+    // 返回归还数量，0 表示明细不存在（已归还、已过期或不属于该用户）
+    private static final String RETURN_STOCK_SCRIPT =
+        "local record = redis.call('HGET', KEYS[1], ARGV[1]) " +
+        "if not record then " +
+        "  return 0 " +
+        "end " +
+        "local quantity, field, user_id = string.match(record, '^(%d+):([^:]+):(.+)$') " +
+        "if user_id ~= ARGV[2] then " +
+        "  return 0 " +
+        "end " +
+        "redis.call('HDEL', KEYS[1], ARGV[1]) " +
+        "local amount = tonumber(quantity) " +
+        "redis.call('DECRBY', KEYS[3], amount) " +
+        "if redis.call('EXISTS', KEYS[5]) == 1 then " +
+        "  if field == '-' or redis.call('HEXISTS', KEYS[5], field) == 0 then " +
+        "    field = tostring(tonumber(ARGV[3]) % redis.call('HLEN', KEYS[5])) " +
+        "  end " +
+        "  redis.call('HINCRBY', KEYS[5], field, amount) " +
+        "  redis.call('INCRBY', KEYS[4], amount) " + // 分桶总库存
+        "  return amount " +
+        "end " +
+        "redis.call('INCRBY', KEYS[2], amount) " +
+        "return amount";
+
+    @Override
+    public void scheduleTimeout(Long orderId) {
+        long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(payTimeoutSeconds);
+        // 已登记的订单（重复消费）保持原超时时间
+        redissonUtil.getRedissonClient().<String>getScoredSortedSet(ORDER_TIMEOUT_QUEUE_KEY, RedisCodecs.TEXT)
+            .addIfAbsent(deadline, String.valueOf(orderId));
+    }
+
+    @Override
+    public int cancelExpiredOrders() {
+        int cancelled = 0;
+        List<Long> orderIds;
+        do {
+            orderIds = claimExpired();
+            if (!orderIds.isEmpty()) {
+                cancelled += cancelBatch(orderIds);
+            }
+        } while (orderIds.size() >= batchSize);
+        return cancelled;
+    }
+
+    @Override
+    public int pendingCount() {
+        return redissonUtil.getRedissonClient().getScoredSortedSet(ORDER_TIMEOUT_QUEUE_KEY, RedisCodecs.TEXT).size();
+    }
+
+    private List<Long> claimExpired() {
+        long now = System.currentTimeMillis();
+        List<Object> ids = redissonUtil.getRedissonClient().getScript(RedisCodecs.TEXT).eval(
+            RScript.Mode.READ_WRITE,
+            CLAIM_SCRIPT,
+            RScript.ReturnType.MULTI,
+            List.of(ORDER_TIMEOUT_QUEUE_KEY),
+            String.valueOf(now), String.valueOf(batchSize),
+            String.valueOf(now + TimeUnit.SECONDS.toMillis(leaseSeconds))
+        );
+        List<Long> orderIds = new ArrayList<>(ids.size());
+        for (Object id : ids) {
+            orderIds.add(Long.valueOf(id.toString()));
+        }
+        return orderIds;
+    }
+
+    private int cancelBatch(List<Long> orderIds) {
+        // 锁定订单并批量取消仍为待支付的订单
+        List<Order> orders = transactionTemplate.execute(status -> {
+            List<Order> locked = orderMapper.selectList(new QueryWrapper<Order>()
+                .select("id", "user_id", "product_id", "status", "deduction_id")
+                .in("id", orderIds)
+                .last("FOR UPDATE"));
+            Set<Long> unpaidIds = locked.stream()
+                .filter(order -> order.getStatus() == STATUS_UNPAID)
+                .map(Order::getId)
+                .collect(Collectors.toSet());
+            if (!unpaidIds.isEmpty()) {
+                orderMapper.update(null, new UpdateWrapper<Order>()
+                    .set("status", STATUS_CANCELLED)
+                    .in("id", unpaidIds)
+                    .eq("status", STATUS_UNPAID));
+                locked.forEach(order -> {
+                    if (unpaidIds.contains(order.getId())) {
+                        order.setStatus(STATUS_CANCELLED);
+                    }
+                });
+            }
+            return locked;
+        });
+
+        // 已取消的订单（包括上轮取消后未来得及归还库存的）按扣减明细归还库存；已支付等其它状态仅出队
+        int cancelled = 0;
+        Set<Long> found = new HashSet<>(orders.size() * 2);
+        RScoredSortedSet<String> queue = redissonUtil.getRedissonClient()
+            .getScoredSortedSet(ORDER_TIMEOUT_QUEUE_KEY, RedisCodecs.TEXT);
+        for (Order order : orders) {
+            found.add(order.getId());
+            boolean isCancelled = order.getStatus() == STATUS_CANCELLED;
+            if (isCancelled && order.getDeductionId() != null) {
+                returnStock(order);
+            }
+            if (queue.remove(String.valueOf(order.getId())) && isCancelled) {
+                cancelled++;
+            }
+        }
+        // 数据库中不存在的订单直接出队
+        orderIds.stream()
+            .filter(id -> !found.contains(id))
+            .forEach(id -> queue.remove(String.valueOf(id)));
+
+        if (cancelled > 0) {
+            log.info("取消超时未支付订单: 领取={}, 取消={}", orderIds.size(), cancelled);
+        }
+        return cancelled;
+    }
+
+    private long returnStock(Order order) {
+        Long productId = order.getProductId();
+        String field = String.valueOf(stockBucketUtil.routeBucketIndex(productId, order.getUserId()));
+        Long returned = redissonUtil.getRedissonClient().getScript(RedisCodecs.TEXT).eval(
+            RScript.Mode.READ_WRITE,
+            RETURN_STOCK_SCRIPT,
+            RScript.ReturnType.INTEGER,
+            Arrays.asList(stockKeys.deductions(productId), stockKeys.stock(productId),
+                stockKeys.pending(productId), stockKeys.total(productId),
+                stockKeys.bucketHash(productId)),
+            String.valueOf(order.getDeductionId()), String.valueOf(order.getUserId()), field
+        );
+        if (returned == 0) {
+            log.warn("超时订单未找到扣减明细，不归还库存: orderId={}, productId={}, deductionId={}",
+                order.getId(), productId, order.getDeductionId());
+        }
+        return returned;
+    }
+}
@@ -6,6 +6,7 @@ import yw.seckill.entity.SeckillActivity;
 import yw.seckill.mapper.SeckillActivityMapper;
 import yw.seckill.service.SeckillActivityService;
 import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
+import java.time.LocalDateTime;
 import java.util.List;
 
 @Service
@@ -25,4 +26,22 @@ public class SeckillActivityServiceImpl implements SeckillActivityService {
     public SeckillActivity getActivityById(Long activityId) {
         return seckillActivityMapper.selectById(activityId);
     }
+    
+    @Override
+    public List<SeckillActivity> getUnstartedActivitiesStartingBefore(LocalDateTime deadline) {
+        QueryWrapper<SeckillActivity> queryWrapper = new QueryWrapper<>();
+        queryWrapper.eq("status", 0) // 未开始
+                .gt("start_time", LocalDateTime.now())
+                .le("start_time", deadline);
+        return seckillActivityMapper.selectList(queryWrapper);
+    }
+
+    @Override
+    public List<SeckillActivity> getWaitingRoomActivities(LocalDateTime deadline) {
+        QueryWrapper<SeckillActivity> queryWrapper = new QueryWrapper<>();
+        queryWrapper.in("status", 0, 1) // 未开始或进行中
+                .le("start_time", deadline)
+                .gt("end_time", LocalDateTime.now());
+        return seckillActivityMapper.selectList(queryWrapper);
+    }
 } 
\ No newline at end of file
@@ -0,0 +1,264 @@
+package yw.seckill.service.impl;
+
+import lombok.extern.slf4j.Slf4j;
+import org.redisson.api.BatchOptions;
+import org.redisson.api.BatchResult;
+import org.redisson.api.RBatch;
+import org.redisson.api.RScript;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+import yw.seckill.entity.SeckillActivity;
+import yw.seckill.entity.StockSyncCheckpoint;
+import yw.seckill.mapper.SeckillActivityMapper;
+import yw.seckill.mapper.StockSyncCheckpointMapper;
+import yw.seckill.service.SeckillActivityService;
+import yw.seckill.service.StockPreheatService;
+import yw.seckill.util.RedisCodecs;
+import yw.seckill.util.RedissonUtil;
+import yw.seckill.util.StockBucketUtil;
+import yw.seckill.util.StockKeys;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 库存预热服务实现
+ * 每个活动的全部写入放在一个原子批次中，一次往返完成；预热标记最后写入，可作为商品就绪的判断依据
+ * 自动预热只处理尚未开始的活动；已开始的活动需显式 force，此时库存按 MySQL库存 - 待回写量 - 未写回的回写中批次 重新加载，
+ * 并保留 pending/inflight 由写回任务继续写回
+ */
+@Slf4j
+@Service
+public class StockPreheatServiceImpl implements StockPreheatService {
+
+    @Autowired
+    private RedissonUtil redissonUtil;
+
+    @Autowired
+    private StockBucketUtil stockBucketUtil;
+
+    @Autowired
+    private SeckillActivityService seckillActivityService;
+
+    @Autowired
+    private StockKeys stockKeys;
+
+    @Autowired
+    private SeckillActivityMapper seckillActivityMapper;
+
+    @Autowired
+    private StockSyncCheckpointMapper checkpointMapper;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Value("${seckill.preheat.lead-seconds:300}")
+    private long leadSeconds;
+
+    @Value("${seckill.preheat.bucketed:false}")
+    private boolean bucketed;
+
+    // Lua脚本：按MySQL库存重新加载进行中活动的库存 -> 加载后的库存
+    // ARGV: MySQL库存、该快照已写回的最大批次号、桶数量（0为单key）；批次号大于快照的 inflight 尚未写入MySQL，需一并扣除
+    private static final String RELOAD_LIVE_STOCK_SCRIPT =
+        "local pending = tonumber(redis.call('GET', KEYS[4]) or 0) " +
+        "local inflight = redis.call('HMGET', KEYS[5], 'seq', 'delta') " +
+        "local unapplied = 0 " +
+        "if inflight[1] and tonumber(inflight[1]) > tonumber(ARGV[2]) then " +
+        "  unapplied = tonumber(inflight[2]) " +
+        "end " +
+        "local stock = math.max(tonumber(ARGV[1]) - pending - unapplied, 0) " +
+        "redis.call('DEL', KEYS[1], KEYS[2], KEYS[3]) " +
+        "local n = tonumber(ARGV[3]) " +
+        "if n > 0 then " +
+        "  local avg = math.floor(stock / n) " +
+        "  local remainder = stock % n " +
+        "  for i = 0, n - 1 do " +
+        "    redis.call('HSET', KEYS[2], tostring(i), i < remainder and avg + 1 or avg) " +
+        "  end " +
+        "  redis.call('SET', KEYS[3], stock) " +
+        "else " +
+        "  redis.call('SET', KEYS[1], stock) " +
+        "end " +
+        "return stock";
+
+    // 最近一次预热结果
+    private final Map<Long, PreheatResult> lastResults = new ConcurrentHashMap<>();
+
+    @Override
+    public int preheatUpcoming() {
+        List<SeckillActivity> activities = seckillActivityService.getUnstartedActivitiesStartingBefore(
+            LocalDateTime.now().plusSeconds(leadSeconds));
+        int count = 0;
+        for (SeckillActivity activity : activities) {
+            try {
+                if (preheat(activity, false) != null) {
+                    count++;
+                }
+            } catch (Exception e) {
+                log.error("库存预热失败: activityId={}, productId={}", activity.getId(), activity.getProductId(), e);
+            }
+        }
+        return count;
+    }
+
+    @Override
+    public PreheatResult preheatActivity(Long activityId, boolean force) {
+        SeckillActivity activity = seckillActivityService.getActivityById(activityId);
+        if (activity == null) {
+            throw new IllegalArgumentException("活动不存在: " + activityId);
+        }
+        if (!isStarted(activity)) {
+            return preheat(activity, force);
+        }
+        if (!force) {
+            throw new IllegalStateException("活动已开始，重新加载库存需要force=true");
+        }
+        // 锁住活动行直到Redis写入完成：期间写回事务无法提交，MySQL库存与检查点批次号保持一致
+        return transactionTemplate.execute(status -> {
+            SeckillActivity locked = seckillActivityMapper.selectForUpdate(activityId);
+            StockSyncCheckpoint checkpoint = checkpointMapper.selectById(activityId);
+            return reloadLive(locked, checkpoint == null ? 0 : checkpoint.getLastSeq());
+        });
+    }
+
+    @Override
+    public boolean isReady(Long productId) {
+        return redissonUtil.getRedissonClient().getBucket(STOCK_READY_PREFIX + productId, RedisCodecs.TEXT).isExists();
+    }
+
+    @Override
+    public PreheatResult getLastResult(Long activityId) {
+        return lastResults.get(activityId);
+    }
+
+    private PreheatResult preheat(SeckillActivity activity, boolean force) {
+        Long activityId = activity.getId();
+        Long productId = activity.getProductId();
+        if (!force && isReady(productId)) {
+            return null;
+        }
+
+        long start = System.nanoTime();
+        int stock = activity.getSeckillStock();
+        String stockKey = stockKeys.stock(productId);
+        String hashKey = stockKeys.bucketHash(productId);
+        String totalKey = stockKeys.total(productId);
+
+        RBatch batch = redissonUtil.getRedissonClient().createBatch(
+            BatchOptions.defaults().executionMode(BatchOptions.ExecutionMode.IN_MEMORY_ATOMIC));
+
+        // 1. 清理两种布局的旧库存及写回计数（活动未开始，此时MySQL为准）
+        batch.getKeys().deleteAsync(stockKey, hashKey, totalKey,
+            stockKeys.pending(productId),
+            stockKeys.syncInflight(productId));
+
+        // 2. 写入库存：单key或分桶Hash
+        int bucketCount = 0;
+        if (bucketed) {
+            Map<String, String> buckets = stockBucketUtil.buildBucketStocks(stock);
+            bucketCount = buckets.size();
+            batch.<String, String>getMap(hashKey, RedisCodecs.TEXT).putAllAsync(buckets);
+            batch.<String>getBucket(totalKey, RedisCodecs.TEXT).setAsync(String.valueOf(stock));
+        } else {
+            batch.<String>getBucket(stockKey, RedisCodecs.TEXT).setAsync(String.valueOf(stock));
+        }
+
+        writeMetadata(batch, activity, bucketCount);
+
+        BatchResult<?> result = batch.execute();
+        long elapsedMicros = (System.nanoTime() - start) / 1000;
+
+        PreheatResult preheatResult = new PreheatResult(activityId, productId, stock, bucketCount,
+            result.getResponses().size(), elapsedMicros);
+        lastResults.put(activityId, preheatResult);
+        log.info("库存预热完成: activityId={}, productId={}, stock={}, bucketCount={}, commands={}, elapsed={}us",
+            activityId, productId, stock, bucketCount, preheatResult.getCommandCount(), elapsedMicros);
+        return preheatResult;
+    }
+
+    /**
+     * 重新加载进行中活动的库存：在同一原子批次中由脚本读取 pending/inflight 并写入剩余库存
+     *
+     * @param activity 已加锁读取的活动
+     * @param appliedSeq 与活动库存同一快照的检查点批次号
+     */
+    private PreheatResult reloadLive(SeckillActivity activity, long appliedSeq) {
+        Long activityId = activity.getId();
+        Long productId = activity.getProductId();
+        long start = System.nanoTime();
+        int bucketCount = bucketed ? stockBucketUtil.getBucketCount() : 0;
+
+        RBatch batch = redissonUtil.getRedissonClient().createBatch(
+            BatchOptions.defaults().executionMode(BatchOptions.ExecutionMode.IN_MEMORY_ATOMIC));
+        batch.getScript(RedisCodecs.TEXT).evalAsync(
+            RScript.Mode.READ_WRITE,
+            RELOAD_LIVE_STOCK_SCRIPT,
+            RScript.ReturnType.INTEGER,
+            Arrays.asList(stockKeys.stock(productId), stockKeys.bucketHash(productId), stockKeys.total(productId),
+                stockKeys.pending(productId), stockKeys.syncInflight(productId)),
+            String.valueOf(activity.getSeckillStock()), String.valueOf(appliedSeq), String.valueOf(bucketCount));
+        writeMetadata(batch, activity, bucketCount);
+
+        BatchResult<?> result = batch.execute();
+        long elapsedMicros = (System.nanoTime() - start) / 1000;
+        int stock = ((Number) result.getResponses().get(0)).intValue();
+
+        PreheatResult preheatResult = new PreheatResult(activityId, productId, stock, bucketCount,
+            result.getResponses().size(), elapsedMicros);
+        lastResults.put(activityId, preheatResult);
+        log.warn("进行中活动库存已重新加载: activityId={}, productId={}, dbStock={}, appliedSeq={}, stock={}, bucketCount={}",
+            activityId, productId, activity.getSeckillStock(), appliedSeq, stock, bucketCount);
+        return preheatResult;
+    }
+
+    private void writeMetadata(RBatch batch, SeckillActivity activity, int bucketCount) {
+        Long activityId = activity.getId();
+        Long productId = activity.getProductId();
+        int stock = activity.getSeckillStock();
+
+        // 3. 库存布局
+        Map<String, String> layout = new HashMap<>();
+        layout.put("mode", bucketed ? "bucket" : "single");
+        layout.put("bucketCount", String.valueOf(bucketCount));
+        layout.put("activityId", String.valueOf(activityId));
+        layout.put("changedAt", String.valueOf(System.currentTimeMillis()));
+        batch.<String, String>getMap(stockKeys.layout(productId), RedisCodecs.TEXT).putAllAsync(layout);
+
+        // 4. 活动元数据
+        Map<String, String> meta = new HashMap<>();
+        meta.put("productId", String.valueOf(productId));
+        meta.put("seckillPrice", activity.getSeckillPrice().toPlainString());
+        meta.put("seckillStock", String.valueOf(stock));
+        meta.put("startTime", String.valueOf(toEpochMilli(activity.getStartTime())));
+        meta.put("endTime", String.valueOf(toEpochMilli(activity.getEndTime())));
+        meta.put("status", String.valueOf(activity.getStatus()));
+        batch.<String, String>getMap(ACTIVITY_META_PREFIX + activityId, RedisCodecs.TEXT).putAllAsync(meta);
+
+        // 5. 就绪标记，保留到活动结束后1小时
+        long ttlSeconds = Math.max(Duration.between(LocalDateTime.now(), activity.getEndTime()).getSeconds(), 0) + 3600;
+        batch.<String>getBucket(STOCK_READY_PREFIX + productId, RedisCodecs.TEXT)
+            .setAsync(String.valueOf(activityId), ttlSeconds, TimeUnit.SECONDS);
+    }
+
+    /**
+     * 活动是否已开始（状态不是未开始，或已到开始时间）
+     */
+    private boolean isStarted(SeckillActivity activity) {
+        return activity.getStatus() == null || activity.getStatus() != 0
+            || !activity.getStartTime().isAfter(LocalDateTime.now());
+    }
+
+    private long toEpochMilli(LocalDateTime time) {
+        return time.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+}
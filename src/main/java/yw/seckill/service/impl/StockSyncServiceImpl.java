@@ -0,0 +1,276 @@
+package yw.seckill.service.impl;
+
+import lombok.extern.slf4j.Slf4j;
+import org.redisson.api.RScript;
+import org.redisson.api.RMap;
+import org.redisson.api.RSet;
+import org.redisson.api.RedissonClient;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+import yw.seckill.entity.SeckillActivity;
+import yw.seckill.entity.StockSyncCheckpoint;
+import yw.seckill.mapper.SeckillActivityMapper;
+import yw.seckill.mapper.StockSyncCheckpointMapper;
+import yw.seckill.service.SeckillActivityService;
+import yw.seckill.service.StockSyncService;
+import yw.seckill.util.RedisCodecs;
+import yw.seckill.util.RedissonUtil;
+import yw.seckill.util.StockKeys;
+
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 库存写回同步服务实现
+ *
+ * 一次同步分三步：
+ * 1. Lua脚本把 pending 中累计的扣减量原子地转移到 inflight，并分配递增批次号（若上次的 inflight 未确认则原样返回重试）
+ * 2. 在一个事务中扣减 seckill_stock 并推进检查点 last_seq；last_seq >= 批次号说明该批次已写回，直接跳过；
+ *    补货使 pending 为负数时按负扣减量增加 seckill_stock；扣减后库存为负（重复或超额的批次）时回滚事务，检查点不推进
+ * 3. 事务提交后删除 inflight，完成确认
+ * 进行中的活动登记在 stock_sync:draining 集合中；活动结束（或状态改为2）后继续同步，
+ * 直到结束超过支付超时时长（超时取消归还的库存都已计入 pending）且 pending、inflight 均为0才移出集合
+ */
+@Slf4j
+@Service
+public class StockSyncServiceImpl implements StockSyncService {
+
+    @Autowired
+    private RedissonUtil redissonUtil;
+
+    @Autowired
+    private SeckillActivityService seckillActivityService;
+
+    @Autowired
+    private SeckillActivityMapper seckillActivityMapper;
+
+    @Autowired
+    private StockSyncCheckpointMapper checkpointMapper;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private StockKeys stockKeys;
+
+    private static final String STOCK_SYNC_DRAINING_KEY = "stock_sync:draining";
+
+    @Value("${seckill.order.pay-timeout-seconds:900}")
+    private long payTimeoutSeconds;
+
+    // Lua脚本：领取待回写批次 -> {批次号, 扣减量}，无待回写时返回 {0, 0}
+    private static final String TAKE_BATCH_SCRIPT =
+        "local pending_key = KEYS[1] " +
+        "local inflight_key = KEYS[2] " +
+        "local seq_key = KEYS[3] " +
+        "local inflight = redis.call('HMGET', inflight_key, 'seq', 'delta') " +
+        "if inflight[1] then " +
+        "  return {tonumber(inflight[1]), tonumber(inflight[2])} " + // 上次未确认的批次，原样重试
+        "end " +
+        "local delta = tonumber(redis.call('GET', pending_key) or 0) " +
+        "if delta == 0 then " +
+        "  return {0, 0} " +
+        "end " +
+        "redis.call('DEL', pending_key) " +
+        "local seq = redis.call('INCR', seq_key) " +
+        "redis.call('HSET', inflight_key, 'seq', seq, 'delta', delta) " +
+        "return {seq, delta}";
+
+    // Lua脚本：确认批次，仅当批次号一致时删除 inflight
+    private static final String ACK_BATCH_SCRIPT =
+        "if redis.call('HGET', KEYS[1], 'seq') == ARGV[1] then " +
+        "  return redis.call('DEL', KEYS[1]) " +
+        "end " +
+        "return 0";
+
+    @Override
+    public int syncAll() {
+        List<SeckillActivity> activities = seckillActivityService.getActiveActivities();
+        RSet<String> draining = redissonUtil.getRedissonClient().getSet(STOCK_SYNC_DRAINING_KEY, RedisCodecs.TEXT);
+        Set<String> activeIds = new HashSet<>();
+        for (SeckillActivity activity : activities) {
+            activeIds.add(String.valueOf(activity.getId()));
+        }
+        if (!activeIds.isEmpty()) {
+            draining.addAll(activeIds);
+        }
+
+        int synced = 0;
+        for (SeckillActivity activity : activities) {
+            if (trySync(activity)) {
+                synced++;
+            }
+        }
+        for (String id : draining.readAll()) {
+            if (activeIds.contains(id)) {
+                continue;
+            }
+            SeckillActivity activity = seckillActivityService.getActivityById(Long.valueOf(id));
+            if (activity == null) {
+                draining.remove(id);
+                continue;
+            }
+            if (trySync(activity)) {
+                synced++;
+            }
+            if (isDrained(activity)) {
+                draining.remove(id);
+                log.info("已结束活动库存写回完成: activityId={}, productId={}", activity.getId(), activity.getProductId());
+            }
+        }
+        return synced;
+    }
+
+    private boolean trySync(SeckillActivity activity) {
+        try {
+            return syncActivity(activity) != 0;
+        } catch (Exception e) {
+            // inflight 保留在Redis中，下一轮会以相同批次号重试
+            log.error("库存写回失败: activityId={}, productId={}", activity.getId(), activity.getProductId(), e);
+            return false;
+        }
+    }
+
+    /**
+     * 已结束的活动是否可以停止同步：结束超过支付超时时长，且没有待回写和回写中的扣减量
+     */
+    private boolean isDrained(SeckillActivity activity) {
+        if (activity.getEndTime() != null
+                && activity.getEndTime().plusSeconds(payTimeoutSeconds).isAfter(LocalDateTime.now())) {
+            return false;
+        }
+        Long productId = activity.getProductId();
+        RedissonClient client = redissonUtil.getRedissonClient();
+        int pending = parseInt(client.getBucket(stockKeys.pending(productId), RedisCodecs.TEXT).get());
+        return pending == 0 && !client.getMap(stockKeys.syncInflight(productId), RedisCodecs.TEXT).isExists();
+    }
+
+    @Override
+    public int syncActivity(Long activityId) {
+        SeckillActivity activity = seckillActivityService.getActivityById(activityId);
+        if (activity == null) {
+            throw new IllegalArgumentException("活动不存在: " + activityId);
+        }
+        return syncActivity(activity);
+    }
+
+    private int syncActivity(SeckillActivity activity) {
+        Long activityId = activity.getId();
+        Long productId = activity.getProductId();
+        String inflightKey = stockKeys.syncInflight(productId);
+
+        RedissonClient client = redissonUtil.getRedissonClient();
+        List<Object> batch = client.getScript(RedisCodecs.TEXT).eval(
+            RScript.Mode.READ_WRITE,
+            TAKE_BATCH_SCRIPT,
+            RScript.ReturnType.MULTI,
+            Arrays.asList(stockKeys.pending(productId), inflightKey, stockKeys.syncSeq(productId))
+        );
+        long seq = ((Number) batch.get(0)).longValue();
+        int delta = ((Number) batch.get(1)).intValue();
+        if (seq == 0) {
+            return 0;
+        }
+
+        Boolean applied = transactionTemplate.execute(status -> {
+            StockSyncCheckpoint checkpoint = checkpointMapper.selectForUpdate(activityId);
+            if (checkpoint != null && checkpoint.getLastSeq() >= seq) {
+                return false; // 该批次已写回（上次确认前中断），只需补确认
+            }
+            if (seckillActivityMapper.decreaseStockBy(activityId, delta) == 0) {
+                // 抛出异常回滚事务，inflight 保留，下一轮以相同批次号重试
+                throw new IllegalStateException("写回扣减量超过MySQL库存: activityId=" + activityId
+                    + ", seq=" + seq + ", delta=" + delta);
+            }
+            Integer dbStock = seckillActivityMapper.selectById(activityId).getSeckillStock();
+
+            boolean isNew = checkpoint == null;
+            if (isNew) {
+                checkpoint = new StockSyncCheckpoint();
+                checkpoint.setActivityId(activityId);
+                checkpoint.setProductId(productId);
+                checkpoint.setSyncedTotal(0L);
+            }
+            checkpoint.setLastSeq(seq);
+            checkpoint.setLastDelta(delta);
+            checkpoint.setSyncedTotal(checkpoint.getSyncedTotal() + delta);
+            checkpoint.setDbStock(dbStock);
+            checkpoint.setSyncTime(LocalDateTime.now());
+            if (isNew) {
+                checkpointMapper.insert(checkpoint);
+            } else {
+                checkpointMapper.updateById(checkpoint);
+            }
+            return true;
+        });
+
+        client.getScript(RedisCodecs.TEXT).eval(
+            RScript.Mode.READ_WRITE,
+            ACK_BATCH_SCRIPT,
+            RScript.ReturnType.INTEGER,
+            List.of(inflightKey),
+            String.valueOf(seq)
+        );
+
+        if (Boolean.TRUE.equals(applied)) {
+            log.info("库存写回成功: activityId={}, productId={}, seq={}, delta={}", activityId, productId, seq, delta);
+            return delta;
+        }
+        log.warn("库存写回批次已存在，仅补确认: activityId={}, productId={}, seq={}", activityId, productId, seq);
+        return 0;
+    }
+
+    @Override
+    public Map<String, Object> verifyCheckpoint(Long activityId) {
+        SeckillActivity activity = seckillActivityService.getActivityById(activityId);
+        if (activity == null) {
+            throw new IllegalArgumentException("活动不存在: " + activityId);
+        }
+        Long productId = activity.getProductId();
+        RedissonClient client = redissonUtil.getRedissonClient();
+
+        int redisStock = readRedisStock(client, productId);
+        int pending = parseInt(client.getBucket(stockKeys.pending(productId), RedisCodecs.TEXT).get());
+        int inflight = parseInt(client.getMap(stockKeys.syncInflight(productId), RedisCodecs.TEXT).get("delta"));
+        int dbStock = activity.getSeckillStock();
+        StockSyncCheckpoint checkpoint = checkpointMapper.selectById(activityId);
+
+        Map<String, Object> result = new HashMap<>();
+        result.put("activityId", activityId);
+        result.put("productId", productId);
+        result.put("dbStock", dbStock);
+        result.put("redisStock", redisStock);
+        result.put("pendingDelta", pending);
+        result.put("inflightDelta", inflight);
+        result.put("expectedDbStock", redisStock + pending + inflight);
+        result.put("consistent", dbStock == redisStock + pending + inflight);
+        result.put("checkpoint", checkpoint);
+        return result;
+    }
+
+    /**
+     * 读取Redis库存：单key或分桶Hash（取各桶之和）
+     */
+    private int readRedisStock(RedissonClient client, Long productId) {
+        RMap<String, String> buckets = client.getMap(stockKeys.bucketHash(productId), RedisCodecs.TEXT);
+        if (buckets.isExists()) {
+            int sum = 0;
+            for (String v : buckets.readAllValues()) {
+                sum += parseInt(v);
+            }
+            return sum;
+        }
+        return parseInt(client.getBucket(stockKeys.stock(productId), RedisCodecs.TEXT).get());
+    }
+
+    private int parseInt(Object value) {
+        return value == null ? 0 : Integer.parseInt(value.toString());
+    }
+}
@@ -0,0 +1,266 @@
+package yw.seckill.service.impl;
+
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.redisson.api.RScript;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import yw.seckill.entity.SeckillActivity;
+import yw.seckill.service.SeckillActivityService;
+import yw.seckill.service.StockService;
+import yw.seckill.service.WaitingRoomService;
+import yw.seckill.util.RedisCodecs;
+import yw.seckill.util.RedissonUtil;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 秒杀排队服务实现
+ * - 领取排队号：一个Lua脚本完成 查重 + INCR + 记录，只有入场名额内的排队号写入Hash，名额外的用户不占Redis内存
+ * - 入场凭证为 activityId.userId.position.签名（HMAC-SHA256），校验只需本地计算，不访问Redis
+ * - 放行进度由活动开始时间和放行速率在本地计算，各节点一致；排队活动列表由定时任务从MySQL刷新到本地
+ * - 签名密钥 seckill.waiting-room.secret 没有默认值：enforce=true 时未配置则启动失败；
+ *   enforce=false 时未配置则使用进程内随机密钥（凭证只在签发节点可验证，入场不做校验）
+ */
+@Slf4j
+@Service
+public class WaitingRoomServiceImpl implements WaitingRoomService {
+
+    @Autowired
+    private RedissonUtil redissonUtil;
+
+    @Autowired
+    private SeckillActivityService seckillActivityService;
+
+    @Autowired
+    private StockService stockService;
+
+    @Value("${seckill.waiting-room.enforce:false}")
+    private boolean enforce;
+
+    @Value("${seckill.waiting-room.lead-seconds:300}")
+    private long leadSeconds;
+
+    @Value("${seckill.waiting-room.admit-factor:2}")
+    private double admitFactor;
+
+    @Value("${seckill.waiting-room.admit-burst:200}")
+    private long admitBurst;
+
+    @Value("${seckill.waiting-room.admit-rate-per-second:500}")
+    private long admitRatePerSecond;
+
+    @Value("${seckill.waiting-room.secret:}")
+    private String secret;
+
+    private byte[] secretKey;
+
+    // Lua脚本：领取排队号，同一用户返回同一排队号；只记录名额内的排队号
+    // 名额领完后不再INCR，返回 名额+1：被拒用户重复领取得到同一个号，计数器也不会随重试增长
+    // KEYS = [计数器key, 排队号Hash key]，ARGV = [userId, 入场名额, 过期秒数]
+    private static final String ENTER_SCRIPT =
+        "local position = redis.call('HGET', KEYS[2], ARGV[1]) " +
+        "if position then " +
+        "  return tonumber(position) " +
+        "end " +
+        "local capacity = tonumber(ARGV[2]) " +
+        "if tonumber(redis.call('GET', KEYS[1]) or '0') >= capacity then " +
+        "  return capacity + 1 " +
+        "end " +
+        "position = redis.call('INCR', KEYS[1]) " +
+        "if position == 1 then " +
+        "  redis.call('EXPIRE', KEYS[1], ARGV[3]) " +
+        "end " +
+        "redis.call('HSET', KEYS[2], ARGV[1], position) " +
+        "redis.call('EXPIRE', KEYS[2], ARGV[3]) " +
+        "return position";
+
+    // 开放排队的活动（按活动ID、商品ID索引），整体替换
+    private volatile Map<Long, Room> roomsByActivity = Map.of();
+    private volatile Map<Long, Room> roomsByProduct = Map.of();
+
+    private final ThreadLocal<Mac> macs = ThreadLocal.withInitial(this::createMac);
+
+    @PostConstruct
+    public void init() {
+        if (secret != null && !secret.isBlank()) {
+            secretKey = secret.getBytes(StandardCharsets.UTF_8);
+            return;
+        }
+        if (enforce) {
+            throw new IllegalStateException("seckill.waiting-room.enforce=true 时必须配置 seckill.waiting-room.secret");
+        }
+        secretKey = new byte[32];
+        new SecureRandom().nextBytes(secretKey);
+        log.warn("未配置 seckill.waiting-room.secret，排队凭证使用进程内随机密钥签名（仅签发节点可验证）");
+    }
+
+    @Override
+    public WaitingRoomStatus enter(Long activityId, Long userId) {
+        Room room = roomsByActivity.get(activityId);
+        if (room == null) {
+            throw new IllegalArgumentException("活动未开放排队: " + activityId);
+        }
+        long ttlSeconds = Math.max(TimeUnit.MILLISECONDS.toSeconds(room.endMillis() - System.currentTimeMillis()), 0) + 3600;
+        Long position = redissonUtil.getRedissonClient().getScript(RedisCodecs.TEXT).eval(
+            RScript.Mode.READ_WRITE,
+            ENTER_SCRIPT,
+            RScript.ReturnType.INTEGER,
+            Arrays.asList(WAITING_ROOM_SEQ_PREFIX + activityId, WAITING_ROOM_TICKETS_PREFIX + activityId),
+            String.valueOf(userId), String.valueOf(room.capacity()), String.valueOf(ttlSeconds)
+        );
+        return statusOf(room, userId, position, sign(activityId, userId, position));
+    }
+
+    @Override
+    public WaitingRoomStatus status(String ticket) {
+        Ticket parsed = parse(ticket);
+        Room room = parsed == null ? null : roomsByActivity.get(parsed.activityId());
+        if (room == null) {
+            return new WaitingRoomStatus(parsed == null ? null : parsed.activityId(),
+                parsed == null ? null : parsed.userId(), 0, 0, 0, 0, State.INVALID, ticket);
+        }
+        return statusOf(room, parsed.userId(), parsed.position(), ticket);
+    }
+
+    @Override
+    public boolean isAdmittedForActivity(Long activityId, Long userId, String ticket) {
+        return isAdmitted(roomsByActivity.get(activityId), userId, ticket);
+    }
+
+    @Override
+    public boolean isAdmittedForProduct(Long productId, Long userId, String ticket) {
+        return isAdmitted(roomsByProduct.get(productId), userId, ticket);
+    }
+
+    @Override
+    public int refreshRooms() {
+        List<SeckillActivity> activities = seckillActivityService.getWaitingRoomActivities(
+            LocalDateTime.now().plusSeconds(leadSeconds));
+        Map<Long, Room> byActivity = new HashMap<>();
+        Map<Long, Room> byProduct = new HashMap<>();
+        for (SeckillActivity activity : activities) {
+            // 按活动初始库存计算名额：seckill_stock 随写回任务递减，用它计算会使名额在活动中不断缩小
+            Integer stock = activity.getOriginalStock() != null ? activity.getOriginalStock() : activity.getSeckillStock();
+            long capacity = (long) Math.ceil(stock * admitFactor);
+            Room room = new Room(activity.getId(), activity.getProductId(), capacity,
+                toEpochMilli(activity.getStartTime()), toEpochMilli(activity.getEndTime()));
+            byActivity.put(room.activityId(), room);
+            byProduct.put(room.productId(), room);
+        }
+        roomsByActivity = Map.copyOf(byActivity);
+        roomsByProduct = Map.copyOf(byProduct);
+        return byActivity.size();
+    }
+
+    private boolean isAdmitted(Room room, Long userId, String ticket) {
+        if (!enforce || room == null) {
+            return true;
+        }
+        Ticket parsed = parse(ticket);
+        if (parsed == null || parsed.activityId() != room.activityId() || !parsed.userId().equals(userId)) {
+            return false;
+        }
+        return parsed.position() <= room.capacity() && parsed.position() <= admittedUpTo(room, System.currentTimeMillis());
+    }
+
+    private WaitingRoomStatus statusOf(Room room, Long userId, long position, String ticket) {
+        long now = System.currentTimeMillis();
+        long admittedUpTo = admittedUpTo(room, now);
+        State state;
+        long waitMs = 0;
+        if (position > room.capacity()) {
+            state = State.REJECTED;
+        } else if (now >= room.startMillis() && stockService.getDisplayStock(room.productId()) <= 0) {
+            state = State.SOLD_OUT;
+        } else if (position <= admittedUpTo) {
+            state = State.ADMITTED;
+        } else {
+            state = State.WAITING;
+            long releaseAt = room.startMillis()
+                + Math.max(position - admitBurst, 0) * 1000 / Math.max(admitRatePerSecond, 1);
+            waitMs = Math.max(releaseAt - now, 0);
+        }
+        return new WaitingRoomStatus(room.activityId(), userId, position, admittedUpTo, room.capacity(),
+            waitMs, state, ticket);
+    }
+
+    /**
+     * 放行进度：活动开始时放行 admit-burst 个，之后按速率递增，不超过入场名额
+     */
+    private long admittedUpTo(Room room, long now) {
+        if (now < room.startMillis()) {
+            return 0;
+        }
+        long released = admitBurst + (now - room.startMillis()) * admitRatePerSecond / 1000;
+        return Math.min(room.capacity(), released);
+    }
+
+    private String sign(long activityId, long userId, long position) {
+        String payload = activityId + "." + userId + "." + position;
+        return payload + "." + signature(payload);
+    }
+
+    private Ticket parse(String ticket) {
+        if (ticket == null) {
+            return null;
+        }
+        int idx = ticket.lastIndexOf('.');
+        if (idx < 0) {
+            return null;
+        }
+        String payload = ticket.substring(0, idx);
+        byte[] expected = signature(payload).getBytes(StandardCharsets.US_ASCII);
+        if (!MessageDigest.isEqual(expected, ticket.substring(idx + 1).getBytes(StandardCharsets.US_ASCII))) {
+            return null;
+        }
+        String[] parts = payload.split("\\.");
+        if (parts.length != 3) {
+            return null;
+        }
+        try {
+            return new Ticket(Long.parseLong(parts[0]), Long.valueOf(parts[1]), Long.parseLong(parts[2]));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private String signature(String payload) {
+        byte[] digest = macs.get().doFinal(payload.getBytes(StandardCharsets.UTF_8));
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(Arrays.copyOf(digest, 16));
+    }
+
+    private Mac createMac() {
+        try {
+            Mac mac = Mac.getInstance("HmacSHA256");
+            mac.init(new SecretKeySpec(secretKey, "HmacSHA256"));
+            return mac;
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("初始化排队凭证签名失败", e);
+        }
+    }
+
+    private long toEpochMilli(LocalDateTime time) {
+        return time.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+
+    private record Room(long activityId, long productId, long capacity, long startMillis, long endMillis) {
+    }
+
+    private record Ticket(long activityId, Long userId, long position) {
+    }
+}
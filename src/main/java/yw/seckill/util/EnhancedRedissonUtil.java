@@ -4,13 +4,29 @@ import lombok.extern.slf4j.Slf4j;
 import org.redisson.api.RLock;
 import org.redisson.api.RedissonClient;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 import yw.seckill.service.LockMonitorService;
 
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
 
 /**
  * 增强的Redisson工具类，支持锁监控和看门狗功能
+ * acquire/acquireAsync 返回锁句柄（try-with-resources），释放时按句柄记录的持有者和获取时刻统计，
+ * 不再在释放时重新拼接线程标识、重新获取锁对象
  */
 @Slf4j
 @Component
@@ -22,6 +38,20 @@ public class EnhancedRedissonUtil {
     @Autowired
     private LockMonitorService lockMonitorService;
 
+    private static final AtomicLong ASYNC_OWNER_SEQ = new AtomicLong();
+
+    // tryLock/unlock 配对使用时，按 lockKey:持有者ID 暂存句柄
+    private final Map<String, LockHandle> heldHandles = new ConcurrentHashMap<>();
+
+    @Value("${seckill.lock.max-batch:32}")
+    private int maxBatch;
+
+    // 两级锁的本地锁，按锁key（公平锁，按到达顺序获得竞争Redis锁的机会），没有线程使用时移除
+    private final Map<String, LocalLock> localLocks = new ConcurrentHashMap<>();
+
+    // 合并执行队列，按锁key，空闲时移除
+    private final Map<String, Combiner> combiners = new ConcurrentHashMap<>();
+
     /**
      * 获取分布式锁（带监控）
      *
@@ -33,74 +63,230 @@ public class EnhancedRedissonUtil {
     }
 
     /**
-     * 尝试获取分布式锁（带监控和看门狗）
+     * 获取锁句柄（推荐用法，配合 try-with-resources）
+     * <pre>
+     * try (LockHandle handle = enhancedRedissonUtil.acquire(key, 3, 10, TimeUnit.SECONDS)) {
+     *     if (handle.isAcquired()) { ... }
+     * }
+     * </pre>
+     * 句柄在获取时一次性记下锁对象、持有者和获取时刻，关闭时按持有者ID释放并记录真实的等待/持有时长；
+     * 未获取成功的句柄关闭时不做任何事
      *
      * @param lockKey    锁的key
      * @param waitTime   等待时间
-     * @param leaseTime  持有锁的时间（看门狗会自动续期）
+     * @param leaseTime  持有锁的时间，-1 表示由看门狗自动续期
      * @param timeUnit   时间单位
-     * @return 是否获取成功
+     * @return 锁句柄
      */
-    public boolean tryLock(String lockKey, long waitTime, long leaseTime, TimeUnit timeUnit) {
-        String threadId = Thread.currentThread().getName() + "-" + Thread.currentThread().getId();
-        long startTime = System.currentTimeMillis();
-        
-        // 记录锁获取尝试
-        lockMonitorService.recordLockAttempt(lockKey, threadId);
-        
-        RLock lock = getLock(lockKey);
+    public LockHandle acquire(String lockKey, long waitTime, long leaseTime, TimeUnit timeUnit) {
+        Thread owner = Thread.currentThread();
+        RLock lock = redissonClient.getLock(lockKey);
+        SeckillJfrEvents.LockAcquireEvent event = new SeckillJfrEvents.LockAcquireEvent();
+        event.begin();
+        long startNanos = System.nanoTime();
+        boolean acquired;
         try {
-            boolean acquired = lock.tryLock(waitTime, leaseTime, timeUnit);
-            
-            long waitDuration = System.currentTimeMillis() - startTime;
-            
-            if (acquired) {
-                // 记录锁获取成功
-                lockMonitorService.recordLockAcquired(lockKey, threadId, waitDuration);
-                log.info("成功获取锁: lockKey={}, threadId={}, waitDuration={}ms", 
-                        lockKey, threadId, waitDuration);
-            } else {
-                // 记录锁获取失败
-                lockMonitorService.recordLockFailed(lockKey, threadId, waitDuration);
-                log.warn("获取锁失败: lockKey={}, threadId={}, waitDuration={}ms", 
-                        lockKey, threadId, waitDuration);
-            }
-            
-            return acquired;
+            acquired = lock.tryLock(waitTime, leaseTime, timeUnit);
         } catch (InterruptedException e) {
-            long waitDuration = System.currentTimeMillis() - startTime;
-            lockMonitorService.recordLockFailed(lockKey, threadId, waitDuration);
-            log.error("获取分布式锁被中断: lockKey={}, threadId={}", lockKey, threadId, e);
             Thread.currentThread().interrupt();
-            return false;
+            log.error("获取分布式锁被中断: lockKey={}", lockKey, e);
+            acquired = false;
         }
+        return new LockHandle(lockKey, lock, owner.threadId(), owner, startNanos, acquired, event);
+    }
+
+    /**
+     * 异步获取锁句柄：持有者为独立生成的ID而不是线程，句柄可以在任意线程（含虚拟线程、回调线程）上释放
+     *
+     * @param lockKey    锁的key
+     * @param waitTime   等待时间
+     * @param leaseTime  持有锁的时间，-1 表示由看门狗自动续期
+     * @param timeUnit   时间单位
+     * @return 锁句柄
+     */
+    public CompletionStage<LockHandle> acquireAsync(String lockKey, long waitTime, long leaseTime, TimeUnit timeUnit) {
+        // 负数ID不会与线程ID冲突
+        long ownerId = -ASYNC_OWNER_SEQ.incrementAndGet();
+        RLock lock = redissonClient.getLock(lockKey);
+        SeckillJfrEvents.LockAcquireEvent event = new SeckillJfrEvents.LockAcquireEvent();
+        event.begin();
+        long startNanos = System.nanoTime();
+        return lock.tryLockAsync(waitTime, leaseTime, timeUnit, ownerId)
+                .thenApply(acquired -> new LockHandle(lockKey, lock, ownerId, null, startNanos, acquired, event));
     }
 
     /**
-     * 释放分布式锁（带监控）
+     * 尝试获取分布式锁（带监控和看门狗），需与 unlock 成对调用；新代码建议使用 acquire
+     *
+     * @param lockKey    锁的key
+     * @param waitTime   等待时间
+     * @param leaseTime  持有锁的时间（看门狗会自动续期）
+     * @param timeUnit   时间单位
+     * @return 是否获取成功
+     */
+    public boolean tryLock(String lockKey, long waitTime, long leaseTime, TimeUnit timeUnit) {
+        LockHandle handle = acquire(lockKey, waitTime, leaseTime, timeUnit);
+        if (handle.isAcquired()) {
+            heldHandles.put(heldKey(lockKey, handle.ownerId), handle);
+            log.debug("成功获取锁: lockKey={}, owner={}, waitDuration={}ns", lockKey, handle.owner, handle.getWaitNanos());
+        } else {
+            log.debug("获取锁失败: lockKey={}, owner={}, waitDuration={}ns", lockKey, handle.owner, handle.getWaitNanos());
+        }
+        return handle.isAcquired();
+    }
+
+    /**
+     * 释放由 tryLock 获取的分布式锁（带监控），持有时长从获取成功时开始计算
      *
      * @param lockKey 锁的key
      */
     public void unlock(String lockKey) {
-        String threadId = Thread.currentThread().getName() + "-" + Thread.currentThread().getId();
+        LockHandle handle = heldHandles.remove(heldKey(lockKey, Thread.currentThread().threadId()));
+        if (handle != null) {
+            handle.close();
+            log.debug("成功释放锁: lockKey={}, owner={}, holdDuration={}ns", lockKey, handle.owner, handle.getHoldNanos());
+            return;
+        }
         RLock lock = getLock(lockKey);
-        
         if (lock.isHeldByCurrentThread()) {
-            long holdStartTime = System.currentTimeMillis();
+            // 重入或未经 tryLock 获取的锁：没有获取时刻，只释放不记录持有时长
             try {
                 lock.unlock();
-                long holdDuration = System.currentTimeMillis() - holdStartTime;
-                lockMonitorService.recordLockReleased(lockKey, threadId, holdDuration);
-                log.info("成功释放锁: lockKey={}, threadId={}, holdDuration={}ms", 
-                        lockKey, threadId, holdDuration);
             } catch (Exception e) {
-                log.error("释放锁失败: lockKey={}, threadId={}", lockKey, threadId, e);
+                log.error("释放锁失败: lockKey={}", lockKey, e);
             }
         } else {
-            log.warn("尝试释放不属于当前线程的锁: lockKey={}, threadId={}", lockKey, threadId);
+            log.warn("尝试释放不属于当前线程的锁: lockKey={}, threadId={}", lockKey, Thread.currentThread().threadId());
+        }
+    }
+
+    /**
+     * 两级锁执行临界区：同一节点、同一锁key的线程先在本地锁上排队，只有本地获胜者去竞争Redis锁，
+     * 节点内的竞争不会放大为对Redis的 tryLock 与 pub/sub 唤醒；等待时间是两级合计的预算
+     * 本地锁按锁key引用计数，不同锁key之间互不阻塞，没有线程使用时从Map中移除
+     *
+     * @param lockKey   锁的key
+     * @param waitTime  等待时间（本地排队 + Redis加锁）
+     * @param leaseTime 持有锁的时间，-1 表示由看门狗自动续期
+     * @param timeUnit  时间单位
+     * @param action    临界区
+     * @return 临界区返回值
+     * @throws RuntimeException 在等待时间内未获取到锁
+     */
+    public <T> T executeWithTieredLock(String lockKey, long waitTime, long leaseTime, TimeUnit timeUnit,
+                                       Supplier<T> action) {
+        long deadline = System.nanoTime() + timeUnit.toNanos(waitTime);
+        LocalLock localLock = localLocks.compute(lockKey, (key, existing) -> {
+            LocalLock retained = existing != null ? existing : new LocalLock();
+            retained.users++;
+            return retained;
+        });
+        try {
+            try {
+                if (!localLock.lock.tryLock(waitTime, timeUnit)) {
+                    throw new RuntimeException("获取本地锁超时: " + lockKey);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException("获取本地锁被中断: " + lockKey, e);
+            }
+            try (LockHandle handle = acquire(lockKey, remainingNanos(deadline),
+                    leaseTime == -1 ? -1 : timeUnit.toNanos(leaseTime), TimeUnit.NANOSECONDS)) {
+                if (!handle.isAcquired()) {
+                    throw new RuntimeException("获取锁失败: " + lockKey);
+                }
+                return action.get();
+            } finally {
+                localLock.lock.unlock();
+            }
+        } finally {
+            localLocks.computeIfPresent(lockKey, (key, existing) -> --existing.users == 0 ? null : existing);
         }
     }
 
+    /**
+     * 合并执行临界区：同一节点、同一锁key的请求进入本地队列，由一个线程获取一次Redis锁后依次执行队列中的临界区
+     * （每次持锁最多 seckill.lock.max-batch 个），其余线程等待自己的结果；临界区之间仍然严格串行
+     * 一次持锁执行多个临界区，leaseTime 需覆盖整批的执行时间，建议使用 -1（看门狗续期）
+     *
+     * @param lockKey   锁的key
+     * @param waitTime  等待时间，超时仍未开始执行的临界区不再执行
+     * @param leaseTime 持有锁的时间，-1 表示由看门狗自动续期
+     * @param timeUnit  时间单位
+     * @param action    临界区，异常只影响本次调用
+     * @return 临界区返回值
+     * @throws RuntimeException 在等待时间内未开始执行，或临界区抛出异常
+     */
+    public <T> T executeWithBatchedLock(String lockKey, long waitTime, long leaseTime, TimeUnit timeUnit,
+                                        Supplier<T> action) {
+        long deadline = System.nanoTime() + timeUnit.toNanos(waitTime);
+        long leaseNanos = leaseTime == -1 ? -1 : timeUnit.toNanos(leaseTime);
+        Combiner combiner = combiners.computeIfAbsent(lockKey, key -> new Combiner());
+        BatchTask<T> task = new BatchTask<>(action, Thread.currentThread());
+        combiner.queue.add(task);
+
+        // 先入队再抢执行权；执行者交出执行权后唤醒队首的等待者接手，入队的任务不会无人执行
+        while (!task.future.isDone() && remainingNanos(deadline) > 0 && !Thread.currentThread().isInterrupted()) {
+            if (combiner.running.compareAndSet(false, true)) {
+                try {
+                    combine(lockKey, combiner, deadline, leaseNanos);
+                } finally {
+                    combiner.running.set(false);
+                }
+                handOff(lockKey, combiner);
+            } else {
+                // 任务完成或执行者交接时被唤醒
+                LockSupport.parkNanos(task, remainingNanos(deadline));
+            }
+        }
+
+        if (task.abandon()) {
+            combiner.queue.remove(task);
+            if (!combiner.running.get()) {
+                handOff(lockKey, combiner);
+            }
+            throw new RuntimeException("获取锁失败: " + lockKey);
+        }
+        return task.join();
+    }
+
+    private void combine(String lockKey, Combiner combiner, long deadline, long leaseNanos) {
+        try (LockHandle handle = acquire(lockKey, remainingNanos(deadline), leaseNanos, TimeUnit.NANOSECONDS)) {
+            if (!handle.isAcquired()) {
+                // 本轮未拿到锁：任务留在队列中，由各自的等待线程在截止时间前继续重试
+                return;
+            }
+            int executed = 0;
+            BatchTask<?> next;
+            while (executed < maxBatch && (next = combiner.queue.poll()) != null) {
+                if (next.run()) {
+                    executed++;
+                }
+            }
+            log.debug("合并执行临界区: lockKey={}, executed={}", lockKey, executed);
+        }
+    }
+
+    /**
+     * 交出执行权：队列中还有任务时唤醒队首的等待者接手，否则移除空闲的队列
+     */
+    private void handOff(String lockKey, Combiner combiner) {
+        BatchTask<?> head;
+        while ((head = combiner.queue.peek()) != null && head.isAbandoned()) {
+            combiner.queue.remove(head);
+        }
+        if (head != null) {
+            LockSupport.unpark(head.waiter);
+        } else {
+            // 此后入队的线程拿到的是已移除的队列，会自行抢到执行权，互斥仍由Redis锁保证
+            combiners.remove(lockKey, combiner);
+        }
+    }
+
+    private static long remainingNanos(long deadline) {
+        return Math.max(deadline - System.nanoTime(), 0);
+    }
+
     /**
      * 使用看门狗机制获取锁（自动续期）
      *
@@ -141,6 +327,186 @@ public class EnhancedRedissonUtil {
         }
     }
 
+    private static String heldKey(String lockKey, long ownerId) {
+        return lockKey + ":" + ownerId;
+    }
+
+    /**
+     * 两级锁中同一锁key的本地锁，users 为正在使用（排队或持有）的线程数，只在Map的 compute 中修改
+     */
+    private static final class LocalLock {
+        private final ReentrantLock lock = new ReentrantLock(true);
+        private int users;
+    }
+
+    /**
+     * 同一锁key的合并执行队列，running 为执行权
+     */
+    private static final class Combiner {
+        private final Queue<BatchTask<?>> queue = new ConcurrentLinkedQueue<>();
+        private final AtomicBoolean running = new AtomicBoolean();
+    }
+
+    /**
+     * 合并执行的临界区：state 保证 执行 与 等待超时放弃 只有一个生效
+     */
+    private static final class BatchTask<T> {
+        private static final int NEW = 0;
+        private static final int RUNNING = 1;
+        private static final int ABANDONED = 2;
+
+        private final Supplier<T> action;
+        private final Thread waiter;
+        private final CompletableFuture<T> future = new CompletableFuture<>();
+        private final AtomicInteger state = new AtomicInteger(NEW);
+
+        private BatchTask(Supplier<T> action, Thread waiter) {
+            this.action = action;
+            this.waiter = waiter;
+        }
+
+        /**
+         * 在持锁线程上执行并唤醒等待者，已被放弃的任务返回false
+         */
+        private boolean run() {
+            if (!state.compareAndSet(NEW, RUNNING)) {
+                return false;
+            }
+            try {
+                future.complete(action.get());
+            } catch (Throwable e) {
+                future.completeExceptionally(e);
+            } finally {
+                LockSupport.unpark(waiter);
+            }
+            return true;
+        }
+
+        /**
+         * 等待超时后放弃，已开始执行的任务不能放弃
+         */
+        private boolean abandon() {
+            return state.compareAndSet(NEW, ABANDONED);
+        }
+
+        private boolean isAbandoned() {
+            return state.get() == ABANDONED;
+        }
+
+        /**
+         * 取执行结果（已开始执行时等待其完成），临界区的异常原样抛出
+         */
+        private T join() {
+            try {
+                return future.join();
+            } catch (CompletionException e) {
+                if (e.getCause() instanceof RuntimeException runtimeException) {
+                    throw runtimeException;
+                }
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * 锁句柄：关闭时释放锁（仅一次）并记录 等待时长 = 获取成功 - 开始获取，持有时长 = 开始释放 - 获取成功
+     * 持有者名称在创建时拼接一次，释放路径只传递纳秒时长，不再分配字符串或时间对象
+     */
+    public final class LockHandle implements AutoCloseable {
+        private final String lockKey;
+        private final RLock lock;
+        private final long ownerId;
+        private final String owner;
+        private final long startNanos;
+        private final long acquiredNanos;
+        private final boolean acquired;
+        private final AtomicBoolean released = new AtomicBoolean();
+        private volatile long releasedNanos;
+        // JFR持有事件，获取成功时开始计时
+        private final SeckillJfrEvents.LockHoldEvent holdEvent;
+
+        private LockHandle(String lockKey, RLock lock, long ownerId, Thread ownerThread, long startNanos,
+                           boolean acquired, SeckillJfrEvents.LockAcquireEvent acquireEvent) {
+            this.lockKey = lockKey;
+            this.lock = lock;
+            this.ownerId = ownerId;
+            this.owner = ownerThread != null ? ownerThread.getName() + "-" + ownerId : "async" + ownerId;
+            this.startNanos = startNanos;
+            this.acquiredNanos = System.nanoTime();
+            this.acquired = acquired;
+            acquireEvent.end();
+            if (acquireEvent.shouldCommit()) {
+                acquireEvent.lockKey = lockKey;
+                acquireEvent.owner = owner;
+                acquireEvent.acquired = acquired;
+                acquireEvent.commit();
+            }
+            this.holdEvent = acquired ? new SeckillJfrEvents.LockHoldEvent() : null;
+            if (holdEvent != null) {
+                holdEvent.begin();
+            }
+            if (!acquired) {
+                lockMonitorService.recordLockCompleted(lockKey, owner, false, getWaitNanos(), 0);
+            }
+        }
+
+        public boolean isAcquired() {
+            return acquired;
+        }
+
+        public String getLockKey() {
+            return lockKey;
+        }
+
+        /**
+         * 等待时长（纳秒）
+         */
+        public long getWaitNanos() {
+            return acquiredNanos - startNanos;
+        }
+
+        /**
+         * 持有时长（纳秒），未释放时为截至当前的时长，未获取时为0
+         */
+        public long getHoldNanos() {
+            if (!acquired) {
+                return 0;
+            }
+            return (released.get() ? releasedNanos : System.nanoTime()) - acquiredNanos;
+        }
+
+        /**
+         * 异步释放锁，不阻塞调用线程；重复调用只释放一次，释放失败（如租期已过）只记录日志
+         */
+        public CompletionStage<Void> releaseAsync() {
+            if (!acquired || !released.compareAndSet(false, true)) {
+                return CompletableFuture.completedFuture(null);
+            }
+            releasedNanos = System.nanoTime();
+            holdEvent.end();
+            if (holdEvent.shouldCommit()) {
+                holdEvent.lockKey = lockKey;
+                holdEvent.owner = owner;
+                holdEvent.commit();
+            }
+            lockMonitorService.recordLockCompleted(lockKey, owner, true, getWaitNanos(), releasedNanos - acquiredNanos);
+            return lock.unlockAsync(ownerId).handle((ignored, e) -> {
+                if (e != null) {
+                    log.error("释放锁失败: lockKey={}, owner={}", lockKey, owner, e);
+                }
+                return null;
+            });
+        }
+
+        /**
+         * 释放锁并等待完成
+         */
+        @Override
+        public void close() {
+            releaseAsync().toCompletableFuture().join();
+        }
+    }
+
     /**
      * 获取Redisson客户端
      *
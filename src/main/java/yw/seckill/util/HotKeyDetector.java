@@ -0,0 +1,111 @@
+package yw.seckill.util;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 热点商品探测（每个节点独立统计本节点收到的请求）
+ * - Count-Min Sketch：DEPTH行 × width列计数器，按采样率抽取请求，在每行的哈希列上+1，
+ *   估计值取各行最小值（只会高估、不会低估），内存固定，与商品数量无关
+ * - 计数按窗口轮换（rotate，由定时任务调用），估算的是上一个完整窗口内的QPS
+ * - 窗口内估计QPS达到 promote-qps 的商品记入候选集合（有上限），轮换时只需遍历候选集合
+ */
+@Component
+public class HotKeyDetector {
+
+    private static final int DEPTH = 4;
+    private static final long[] SEEDS = {
+            0x9E3779B97F4A7C15L, 0xC2B2AE3D27D4EB4FL, 0x165667B19E3779F9L, 0xD6E8FEB86659FD93L
+    };
+
+    private final int mask;
+    private final double sampleRate;
+    private final double promoteQps;
+    private final int maxCandidates;
+    private final Set<Long> candidates = ConcurrentHashMap.newKeySet();
+
+    private volatile AtomicLongArray current;
+    private volatile AtomicLongArray previous;
+    private volatile long windowStartNanos = System.nanoTime();
+    private volatile double previousWindowSeconds = 1.0;
+
+    public HotKeyDetector(@Value("${seckill.hot-key.sample-rate:0.1}") double sampleRate,
+                          @Value("${seckill.hot-key.sketch-width:4096}") int width,
+                          @Value("${seckill.hot-key.promote-qps:2000}") double promoteQps,
+                          @Value("${seckill.hot-key.max-candidates:256}") int maxCandidates) {
+        int size = Integer.highestOneBit(Math.max(width - 1, 1)) << 1;
+        this.mask = size - 1;
+        this.sampleRate = sampleRate;
+        this.promoteQps = promoteQps;
+        this.maxCandidates = maxCandidates;
+        this.current = new AtomicLongArray(DEPTH * size);
+        this.previous = new AtomicLongArray(DEPTH * size);
+    }
+
+    /**
+     * 记录一次请求（请求线程调用，未被采样时只有一次随机数开销）
+     */
+    public void record(long productId) {
+        if (sampleRate <= 0 || (sampleRate < 1 && ThreadLocalRandom.current().nextDouble() >= sampleRate)) {
+            return;
+        }
+        AtomicLongArray counters = current;
+        long min = Long.MAX_VALUE;
+        for (int row = 0; row < DEPTH; row++) {
+            min = Math.min(min, counters.incrementAndGet(index(row, productId)));
+        }
+        if (candidates.size() < maxCandidates && !candidates.contains(productId)) {
+            double elapsedSeconds = Math.max((System.nanoTime() - windowStartNanos) / 1e9, 1.0);
+            if (min / sampleRate / elapsedSeconds >= promoteQps) {
+                candidates.add(productId);
+            }
+        }
+    }
+
+    /**
+     * 结束当前窗口：返回候选商品在该窗口内的估计QPS，并开始新窗口
+     */
+    public synchronized Map<Long, Double> rotate() {
+        long now = System.nanoTime();
+        previousWindowSeconds = Math.max((now - windowStartNanos) / 1e9, 0.001);
+        previous = current;
+        current = new AtomicLongArray(previous.length());
+        windowStartNanos = now;
+
+        Map<Long, Double> rates = new HashMap<>();
+        for (Long productId : candidates) {
+            rates.put(productId, estimateQps(productId));
+        }
+        candidates.clear();
+        return rates;
+    }
+
+    /**
+     * 上一个完整窗口内的估计QPS
+     */
+    public double estimateQps(long productId) {
+        AtomicLongArray counters = previous;
+        long min = Long.MAX_VALUE;
+        for (int row = 0; row < DEPTH; row++) {
+            min = Math.min(min, counters.get(index(row, productId)));
+        }
+        return sampleRate <= 0 ? 0 : min / sampleRate / previousWindowSeconds;
+    }
+
+    private int index(int row, long productId) {
+        return row * (mask + 1) + ((int) (mix(productId ^ SEEDS[row]) >>> 32) & mask);
+    }
+
+    private static long mix(long z) {
+        z = (z ^ (z >>> 33)) * 0xFF51AFD7ED558CCDL;
+        z = (z ^ (z >>> 33)) * 0xC4CEB9FE1A85EC53L;
+        return z ^ (z >>> 33);
+    }
+}
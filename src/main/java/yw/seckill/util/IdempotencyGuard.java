@@ -0,0 +1,166 @@
+package yw.seckill.util;
+
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.redisson.api.RScript;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+import yw.seckill.config.ApiResponse;
+import yw.seckill.util.SeckillEventRecorder.EventType;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+/**
+ * 幂等请求保护（库存扣减、下单、令牌使用等写接口）
+ * - 本节点内：相同幂等key的并发请求合并为一次执行（single-flight），其余请求等待同一结果
+ * - 跨节点：执行前在Redis中以 SET NX 写入"处理中"标记，执行完成后替换为响应JSON并保留 result-ttl-seconds，
+ *   重放请求直接返回原始结果，不会再次触及库存；其它节点正在处理的请求返回"处理中"
+ * - 执行抛出异常时删除标记，不缓存结果，允许客户端重试
+ */
+@Slf4j
+@Component
+public class IdempotencyGuard {
+
+    /**
+     * 客户端传入幂等key的请求头；库存扣减必须传入，其它接口未传入时按请求内容生成
+     */
+    public static final String HEADER = "Idempotency-Key";
+
+    private static final String KEY_PREFIX = "idem:";
+    private static final String PENDING = "PENDING";
+
+    // Lua脚本：已有结果（或处理中标记）则返回，否则写入处理中标记并返回nil
+    private static final String CLAIM_SCRIPT =
+        "local value = redis.call('GET', KEYS[1]) " +
+        "if value then " +
+        "  return value " +
+        "end " +
+        "redis.call('SET', KEYS[1], ARGV[1], 'PX', ARGV[2]) " +
+        "return false";
+
+    @Autowired
+    private RedissonUtil redissonUtil;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private SeckillEventRecorder eventRecorder;
+
+    @Value("${seckill.idempotency.enabled:true}")
+    private boolean enabled;
+
+    @Value("${seckill.idempotency.result-ttl-seconds:60}")
+    private long resultTtlSeconds;
+
+    @Value("${seckill.idempotency.pending-ttl-ms:10000}")
+    private long pendingTtlMs;
+
+    @Value("${seckill.idempotency.wait-ms:3000}")
+    private long waitMs;
+
+    private final Map<String, CompletableFuture<ApiResponse<?>>> inFlight = new ConcurrentHashMap<>();
+
+    /**
+     * 按幂等key执行
+     *
+     * @param scope 接口范围（同一key在不同接口间互不影响）
+     * @param key 幂等key，为空时不做幂等保护直接执行
+     * @param dataType 响应data的类型，用于反序列化重放结果
+     * @param action 实际执行的操作，抛出异常时不缓存结果
+     */
+    @SuppressWarnings("unchecked")
+    public <T> ApiResponse<T> execute(String scope, String key, Class<?> dataType, Supplier<ApiResponse<T>> action) {
+        if (!enabled || !StringUtils.hasText(key)) {
+            return action.get();
+        }
+        String redisKey = KEY_PREFIX + scope + ":" + key;
+
+        CompletableFuture<ApiResponse<?>> future = new CompletableFuture<>();
+        CompletableFuture<ApiResponse<?>> existing = inFlight.putIfAbsent(redisKey, future);
+        if (existing != null) {
+            eventRecorder.record(EventType.IDEMPOTENT_COLLAPSED, 0, 0, 0);
+            return (ApiResponse<T>) await(existing);
+        }
+
+        try {
+            ApiResponse<T> response = claimAndExecute(redisKey, dataType, action);
+            future.complete(response);
+            return response;
+        } catch (RuntimeException e) {
+            future.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(redisKey, future);
+        }
+    }
+
+    private <T> ApiResponse<T> claimAndExecute(String redisKey, Class<?> dataType, Supplier<ApiResponse<T>> action) {
+        String cached = redissonUtil.getRedissonClient().getScript(RedisCodecs.TEXT).eval(
+            RScript.Mode.READ_WRITE,
+            CLAIM_SCRIPT,
+            RScript.ReturnType.VALUE,
+            Collections.singletonList(redisKey),
+            PENDING, String.valueOf(pendingTtlMs)
+        );
+        if (cached != null) {
+            if (PENDING.equals(cached)) {
+                eventRecorder.record(EventType.IDEMPOTENT_REJECTED, 0, 0, 0);
+                return ApiResponse.error("重复请求正在处理中");
+            }
+            eventRecorder.record(EventType.IDEMPOTENT_REPLAYED, 0, 0, 0);
+            return deserialize(cached, dataType);
+        }
+
+        ApiResponse<T> response;
+        try {
+            response = action.get();
+        } catch (RuntimeException e) {
+            redissonUtil.getRedissonClient().getBucket(redisKey, RedisCodecs.TEXT).delete();
+            throw e;
+        }
+        try {
+            redissonUtil.getRedissonClient().<String>getBucket(redisKey, RedisCodecs.TEXT)
+                .set(objectMapper.writeValueAsString(response), resultTtlSeconds, TimeUnit.SECONDS);
+        } catch (Exception e) {
+            // 结果已生效，缓存失败只影响重放，不影响本次响应；处理中标记到期后自动清除
+            log.error("缓存幂等结果失败: key={}", redisKey, e);
+        }
+        return response;
+    }
+
+    private <T> ApiResponse<T> deserialize(String json, Class<?> dataType) {
+        try {
+            JavaType type = objectMapper.getTypeFactory().constructParametricType(ApiResponse.class, dataType);
+            return objectMapper.readValue(json, type);
+        } catch (Exception e) {
+            log.error("解析幂等结果失败: json={}", json, e);
+            return ApiResponse.error("重复请求，原结果不可用");
+        }
+    }
+
+    private ApiResponse<?> await(CompletableFuture<ApiResponse<?>> future) {
+        try {
+            return future.get(waitMs, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            eventRecorder.record(EventType.IDEMPOTENT_REJECTED, 0, 0, 0);
+            return ApiResponse.error("重复请求正在处理中");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return ApiResponse.error("重复请求正在处理中");
+        } catch (ExecutionException e) {
+            // 首个请求执行失败，等待的重复请求同样返回失败，由客户端重试
+            return ApiResponse.error("请求处理异常: " + e.getCause().getMessage());
+        }
+    }
+}
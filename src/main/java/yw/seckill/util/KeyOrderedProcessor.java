@@ -0,0 +1,115 @@
+package yw.seckill.util;
+
+import jakarta.annotation.PreDestroy;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.TopicPartition;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.kafka.listener.BatchListenerFailedException;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
+/**
+ * 按消息key有序、跨key并行地处理一批Kafka消息
+ * - 一次poll得到的消息按key分组（无key的消息按分区分组，保持原有的分区内顺序），每组在线程池中顺序执行，组与组并行
+ * - 整批完成后才返回，下一批在其后开始，同一key的消息跨批次也保持顺序；并行度由线程池大小决定，不受分区数限制
+ * - 某条消息失败时先交给失败处理函数（如转投重试主题），处理成功则视为已完成，同组继续执行后续消息；
+ *   没有失败处理函数或其也失败时，同组后续消息不再执行，整批结束后以列表中最靠前的失败消息抛出 BatchListenerFailedException，
+ *   由容器提交其之前的偏移量并从该消息重新投递（其后已成功的其它key消息会重复投递，与原先逐条消费一样是至少一次）
+ */
+@Component
+public class KeyOrderedProcessor {
+
+    private final ExecutorService executor;
+
+    public KeyOrderedProcessor(@Value("${seckill.kafka.order-consumer.parallelism:32}") int parallelism) {
+        this.executor = Executors.newFixedThreadPool(parallelism,
+                Thread.ofPlatform().name("key-ordered-", 0).daemon().factory());
+    }
+
+    /**
+     * 处理一批消息，全部成功后返回
+     *
+     * @param records 一次poll得到的消息（容器给出的顺序）
+     * @param handler 单条消息处理函数，以异常表示失败
+     * @throws BatchListenerFailedException 存在失败的消息
+     */
+    public <K, V> void process(List<ConsumerRecord<K, V>> records, Consumer<ConsumerRecord<K, V>> handler) {
+        process(records, handler, null);
+    }
+
+    /**
+     * 处理一批消息，失败的消息先交给失败处理函数
+     *
+     * @param records 一次poll得到的消息（容器给出的顺序）
+     * @param handler 单条消息处理函数，以异常表示失败
+     * @param failureHandler 失败处理函数，正常返回表示已妥善处理，抛出异常（可以是原异常）表示未处理；为 null 时失败即终止该组
+     * @throws BatchListenerFailedException 存在未能处理的失败消息
+     */
+    public <K, V> void process(List<ConsumerRecord<K, V>> records, Consumer<ConsumerRecord<K, V>> handler,
+                               BiConsumer<ConsumerRecord<K, V>, Exception> failureHandler) {
+        Map<Object, List<Integer>> groups = new LinkedHashMap<>();
+        for (int i = 0; i < records.size(); i++) {
+            ConsumerRecord<K, V> record = records.get(i);
+            Object groupKey = record.key() != null ? record.key() : new TopicPartition(record.topic(), record.partition());
+            groups.computeIfAbsent(groupKey, k -> new ArrayList<>()).add(i);
+        }
+
+        AtomicInteger firstFailed = new AtomicInteger(Integer.MAX_VALUE);
+        Exception[] causes = new Exception[records.size()];
+        List<CompletableFuture<Void>> futures = new ArrayList<>(groups.size());
+        for (List<Integer> group : groups.values()) {
+            futures.add(CompletableFuture.runAsync(() -> {
+                for (int index : group) {
+                    ConsumerRecord<K, V> record = records.get(index);
+                    try {
+                        handler.accept(record);
+                    } catch (Exception e) {
+                        if (!handleFailure(record, e, failureHandler)) {
+                            causes[index] = e;
+                            firstFailed.accumulateAndGet(index, Math::min);
+                            return;
+                        }
+                    }
+                }
+            }, executor));
+        }
+        CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).join();
+
+        int failed = firstFailed.get();
+        if (failed != Integer.MAX_VALUE) {
+            throw new BatchListenerFailedException("消息处理失败: index=" + failed, causes[failed], failed);
+        }
+    }
+
+    private static <K, V> boolean handleFailure(ConsumerRecord<K, V> record, Exception cause,
+                                                BiConsumer<ConsumerRecord<K, V>, Exception> failureHandler) {
+        if (failureHandler == null) {
+            return false;
+        }
+        try {
+            failureHandler.accept(record, cause);
+            return true;
+        } catch (Exception e) {
+            // 失败处理函数可以原样抛出 cause 表示不处理（如数据库故障），此时不能自我抑制
+            if (e != cause) {
+                cause.addSuppressed(e);
+            }
+            return false;
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+    }
+}
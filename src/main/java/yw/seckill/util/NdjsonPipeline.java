@@ -0,0 +1,150 @@
+package yw.seckill.util;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.function.Function;
+import java.util.function.IntFunction;
+
+/**
+ * NDJSON（每行一个JSON）流式批处理
+ * - 输入逐行解析，每 chunk-size 行组成一块交给异步处理函数（一块对应一次Redis往返）
+ * - 最多 max-in-flight 块同时在途：第N块在Redis中执行时，前面的块已在写回结果，形成流水线
+ * - 结果按输入顺序逐行写出，每写完一块flush一次；内存占用上限约为 chunk-size × max-in-flight 行，与总行数无关
+ * 单行失败由处理函数转换为结果行；整块失败（处理函数以异常结束）时写出一行 {"error": ...} 后继续后续的块
+ */
+@Slf4j
+@Component
+public class NdjsonPipeline {
+
+    public static final String MEDIA_TYPE = "application/x-ndjson";
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Value("${seckill.stream.chunk-size:100}")
+    private int chunkSize;
+
+    @Value("${seckill.stream.max-in-flight:4}")
+    private int maxInFlight;
+
+    /**
+     * 逐行读取输入并分块处理
+     *
+     * @param in NDJSON输入
+     * @param itemType 每行的类型
+     * @param out NDJSON输出
+     * @param chunkProcessor 块处理函数，返回与输入一一对应的结果
+     * @return 写出的结果行数；输入格式错误时在已处理的结果之后写出一行 {"error": ...} 并停止
+     */
+    public <I, R> long process(InputStream in, Class<I> itemType, OutputStream out,
+                               Function<List<I>, CompletionStage<List<R>>> chunkProcessor) throws IOException {
+        Deque<CompletableFuture<List<R>>> inFlight = new ArrayDeque<>();
+        long written = 0;
+        long read = 0;
+        List<I> chunk = new ArrayList<>(chunkSize);
+        try (MappingIterator<I> items = objectMapper.readerFor(itemType).readValues(in)) {
+            while (items.hasNextValue()) {
+                chunk.add(items.nextValue());
+                read++;
+                if (chunk.size() == chunkSize) {
+                    written += submit(inFlight, chunkProcessor.apply(chunk), out);
+                    chunk = new ArrayList<>(chunkSize);
+                }
+            }
+        } catch (JsonProcessingException e) {
+            // 格式错误之前的行照常处理并写出
+            if (!chunk.isEmpty()) {
+                inFlight.addLast(chunkProcessor.apply(chunk).toCompletableFuture());
+            }
+            written += drain(inFlight, out);
+            writeError(out, "第" + (read + 1) + "行格式错误: " + e.getOriginalMessage());
+            return written;
+        }
+        if (!chunk.isEmpty()) {
+            inFlight.addLast(chunkProcessor.apply(chunk).toCompletableFuture());
+        }
+        return written + drain(inFlight, out);
+    }
+
+    /**
+     * 无输入的分块生成（如批量发放令牌）
+     *
+     * @param total 生成总数
+     * @param out NDJSON输出
+     * @param chunkProducer 按块大小生成一块结果
+     * @return 写出的结果行数
+     */
+    public <R> long generate(long total, OutputStream out, IntFunction<CompletionStage<List<R>>> chunkProducer)
+            throws IOException {
+        Deque<CompletableFuture<List<R>>> inFlight = new ArrayDeque<>();
+        long written = 0;
+        for (long remaining = total; remaining > 0; remaining -= chunkSize) {
+            written += submit(inFlight, chunkProducer.apply((int) Math.min(remaining, chunkSize)), out);
+        }
+        return written + drain(inFlight, out);
+    }
+
+    private <R> long submit(Deque<CompletableFuture<List<R>>> inFlight, CompletionStage<List<R>> chunk,
+                            OutputStream out) throws IOException {
+        inFlight.addLast(chunk.toCompletableFuture());
+        long written = 0;
+        while (inFlight.size() >= maxInFlight) {
+            written += writeChunk(inFlight.pollFirst(), out);
+        }
+        return written;
+    }
+
+    private <R> long drain(Deque<CompletableFuture<List<R>>> inFlight, OutputStream out) throws IOException {
+        long written = 0;
+        while (!inFlight.isEmpty()) {
+            written += writeChunk(inFlight.pollFirst(), out);
+        }
+        return written;
+    }
+
+    private <R> int writeChunk(CompletableFuture<List<R>> chunk, OutputStream out) throws IOException {
+        List<R> results;
+        try {
+            results = chunk.join();
+        } catch (CompletionException e) {
+            log.error("NDJSON分块处理失败", e.getCause());
+            writeError(out, "分块处理失败: " + e.getCause().getMessage());
+            return 0;
+        }
+        for (R result : results) {
+            writeLine(out, result);
+        }
+        out.flush();
+        return results.size();
+    }
+
+    /**
+     * 写出一行 {"error": message}
+     */
+    public void writeError(OutputStream out, String message) throws IOException {
+        writeLine(out, Map.of("error", message));
+        out.flush();
+    }
+
+    private void writeLine(OutputStream out, Object value) throws IOException {
+        out.write(objectMapper.writeValueAsBytes(value));
+        out.write('\n');
+    }
+}
@@ -0,0 +1,275 @@
+package yw.seckill.util;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.kafka.config.KafkaListenerEndpointRegistry;
+import org.springframework.kafka.listener.MessageListenerContainer;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 订单消费者的自适应背压：按写库时延调整同时写库的消息数，时延过高或连续失败时暂停拉取
+ * - 每次写库前取得许可，写完按耗时更新时延的指数移动平均（EWMA）
+ * - 时延高于目标值：许可数减半（每个调整间隔最多一次）；低于目标值：每成功 许可数 条增加1，直到配置的并行度
+ * - 时延超过暂停阈值或连续失败达到次数：暂停监听容器（全部分区，已拉取的消息继续写完），暂停时长从基准值开始，
+ *   恢复后试探期内再次触发则加倍，直到上限；试探期许可数从1开始，逐步恢复到配置的并行度后回到正常状态
+ * 暂停期间下单主题和重试主题的容器都不再poll，失败消息的重新投递也随之暂停，避免对变慢的数据库反复重试
+ */
+@Slf4j
+@Component
+public class OrderConsumerBackpressure {
+
+    /**
+     * 下单消息监听容器ID
+     */
+    public static final String LISTENER_ID = "seckill-order-consumer";
+
+    /**
+     * 下单重试消息监听容器ID（与下单消息同时暂停/恢复）
+     */
+    public static final String RETRY_LISTENER_ID = "seckill-order-retry-consumer";
+
+    /**
+     * 背压状态
+     */
+    public enum State {
+        /** 许可数为配置的并行度 */
+        NORMAL,
+        /** 时延偏高，许可数已收缩 */
+        THROTTLED,
+        /** 已暂停拉取 */
+        PAUSED,
+        /** 暂停结束后的试探期 */
+        PROBING
+    }
+
+    private static final double EWMA_ALPHA = 0.2;
+
+    @Autowired
+    private KafkaListenerEndpointRegistry listenerRegistry;
+
+    private final int maxLimit;
+    private final double latencyTargetMs;
+    private final double pauseLatencyMs;
+    private final int pauseAfterFailures;
+    private final long basePauseMs;
+    private final long maxPauseMs;
+    private final long adjustIntervalNanos;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition permitReleased = lock.newCondition();
+    private int limit;
+    private int inFlight;
+    private int successesSinceIncrease;
+    // 负数表示暂停恢复后尚无样本
+    private double ewmaLatencyMs = -1;
+    private int consecutiveFailures;
+    private State state = State.NORMAL;
+    private long pauseMs;
+    private long resumeAtMillis;
+    private long pauseCount;
+    private long lastDecreaseNanos;
+
+    public OrderConsumerBackpressure(@Value("${seckill.kafka.order-consumer.parallelism:32}") int maxLimit,
+                                     @Value("${seckill.kafka.order-consumer.latency-target-ms:50}") double latencyTargetMs,
+                                     @Value("${seckill.kafka.order-consumer.pause-latency-ms:500}") double pauseLatencyMs,
+                                     @Value("${seckill.kafka.order-consumer.pause-after-failures:3}") int pauseAfterFailures,
+                                     @Value("${seckill.kafka.order-consumer.pause-ms:1000}") long basePauseMs,
+                                     @Value("${seckill.kafka.order-consumer.max-pause-ms:30000}") long maxPauseMs,
+                                     @Value("${seckill.kafka.order-consumer.adjust-interval-ms:200}") long adjustIntervalMs) {
+        this.maxLimit = maxLimit;
+        this.latencyTargetMs = latencyTargetMs;
+        this.pauseLatencyMs = pauseLatencyMs;
+        this.pauseAfterFailures = pauseAfterFailures;
+        this.basePauseMs = basePauseMs;
+        this.maxPauseMs = maxPauseMs;
+        this.adjustIntervalNanos = TimeUnit.MILLISECONDS.toNanos(adjustIntervalMs);
+        this.limit = maxLimit;
+        this.pauseMs = basePauseMs;
+        this.lastDecreaseNanos = System.nanoTime() - adjustIntervalNanos;
+    }
+
+    /**
+     * 写库前取得许可，许可数用完时等待其它写库完成
+     */
+    public void acquire() throws InterruptedException {
+        lock.lock();
+        try {
+            while (inFlight >= limit) {
+                permitReleased.await();
+            }
+            inFlight++;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 写库结束后归还许可并记录结果
+     *
+     * @param success 是否写入成功
+     * @param latencyNanos 写库耗时（纳秒）
+     */
+    public void release(boolean success, long latencyNanos) {
+        boolean pause;
+        lock.lock();
+        try {
+            inFlight--;
+            pause = success ? onSuccess(latencyNanos / 1_000_000.0) : onFailure();
+            permitReleased.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        if (pause) {
+            setContainerPaused(true);
+        }
+    }
+
+    /**
+     * 定时检查暂停是否到期，到期后恢复拉取并进入试探期
+     */
+    public void evaluate() {
+        lock.lock();
+        try {
+            if (state != State.PAUSED || System.currentTimeMillis() < resumeAtMillis) {
+                return;
+            }
+            state = State.PROBING;
+            limit = 1;
+            successesSinceIncrease = 0;
+            consecutiveFailures = 0;
+            ewmaLatencyMs = -1;
+        } finally {
+            lock.unlock();
+        }
+        log.info("订单消费者恢复拉取，进入试探期");
+        setContainerPaused(false);
+    }
+
+    public BackpressureStatus getStatus() {
+        lock.lock();
+        try {
+            return new BackpressureStatus(state, limit, maxLimit, inFlight, Math.max(ewmaLatencyMs, 0),
+                consecutiveFailures, pauseCount, state == State.PAUSED ? resumeAtMillis : 0);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // 以下方法在持有锁时调用，返回是否需要暂停容器
+    private boolean onSuccess(double latencyMs) {
+        consecutiveFailures = 0;
+        ewmaLatencyMs = ewmaLatencyMs < 0 ? latencyMs : EWMA_ALPHA * latencyMs + (1 - EWMA_ALPHA) * ewmaLatencyMs;
+        if (state == State.PAUSED) {
+            return false;
+        }
+        if (ewmaLatencyMs > pauseLatencyMs) {
+            return pause("写库时延" + Math.round(ewmaLatencyMs) + "ms");
+        }
+        if (ewmaLatencyMs > latencyTargetMs) {
+            decrease();
+            return false;
+        }
+        if (limit < maxLimit && ++successesSinceIncrease >= limit) {
+            limit++;
+            successesSinceIncrease = 0;
+        }
+        if (limit >= maxLimit && state != State.NORMAL) {
+            state = State.NORMAL;
+            pauseMs = basePauseMs;
+            log.info("订单消费者写库时延恢复正常: ewma={}ms", Math.round(ewmaLatencyMs));
+        }
+        return false;
+    }
+
+    private boolean onFailure() {
+        consecutiveFailures++;
+        if (state == State.PAUSED) {
+            return false;
+        }
+        if (consecutiveFailures >= pauseAfterFailures) {
+            return pause("连续写库失败" + consecutiveFailures + "次");
+        }
+        decrease();
+        return false;
+    }
+
+    private void decrease() {
+        long now = System.nanoTime();
+        if (now - lastDecreaseNanos < adjustIntervalNanos) {
+            return;
+        }
+        lastDecreaseNanos = now;
+        successesSinceIncrease = 0;
+        limit = Math.max(limit / 2, 1);
+        if (state == State.NORMAL) {
+            state = State.THROTTLED;
+        }
+        log.warn("订单消费者收缩写库并行度: limit={}, ewma={}ms", limit, Math.round(Math.max(ewmaLatencyMs, 0)));
+    }
+
+    private boolean pause(String reason) {
+        // 试探期内再次触发说明数据库尚未恢复，暂停时长加倍
+        pauseMs = state == State.PROBING ? Math.min(pauseMs * 2, maxPauseMs) : basePauseMs;
+        state = State.PAUSED;
+        limit = 1;
+        successesSinceIncrease = 0;
+        pauseCount++;
+        resumeAtMillis = System.currentTimeMillis() + pauseMs;
+        log.warn("订单消费者暂停拉取{}ms: {}", pauseMs, reason);
+        return true;
+    }
+
+    private void setContainerPaused(boolean paused) {
+        for (String listenerId : new String[] {LISTENER_ID, RETRY_LISTENER_ID}) {
+            MessageListenerContainer container = listenerRegistry.getListenerContainer(listenerId);
+            if (container == null) {
+                continue;
+            }
+            if (paused) {
+                container.pause();
+            } else {
+                container.resume();
+            }
+        }
+    }
+
+    /**
+     * 背压状态快照
+     */
+    public static class BackpressureStatus {
+        private final State state;
+        private final int limit;
+        private final int maxLimit;
+        private final int inFlight;
+        private final double latencyEwmaMs;
+        private final int consecutiveFailures;
+        private final long pauseCount;
+        private final long resumeAtMillis;
+
+        public BackpressureStatus(State state, int limit, int maxLimit, int inFlight, double latencyEwmaMs,
+                                  int consecutiveFailures, long pauseCount, long resumeAtMillis) {
+            this.state = state;
+            this.limit = limit;
+            this.maxLimit = maxLimit;
+            this.inFlight = inFlight;
+            this.latencyEwmaMs = latencyEwmaMs;
+            this.consecutiveFailures = consecutiveFailures;
+            this.pauseCount = pauseCount;
+            this.resumeAtMillis = resumeAtMillis;
+        }
+
+        public State getState() { return state; }
+        public int getLimit() { return limit; }
+        public int getMaxLimit() { return maxLimit; }
+        public int getInFlight() { return inFlight; }
+        public double getLatencyEwmaMs() { return latencyEwmaMs; }
+        public int getConsecutiveFailures() { return consecutiveFailures; }
+        public long getPauseCount() { return pauseCount; }
+        public long getResumeAtMillis() { return resumeAtMillis; }
+    }
+}
@@ -0,0 +1,165 @@
+package yw.seckill.util;
+
+import yw.seckill.dto.CreateOrderRequestDTO;
+
+import java.nio.charset.StandardCharsets;
+import java.util.HexFormat;
+
+/**
+ * 下单消息的二进制编码
+ * 格式：[版本号 1字节] 后接若干字段，每个字段为 [标签 varint = 字段号 << 3 | 类型] [值]
+ * - 类型 0：varint（无符号LEB128，负数占10字节）；类型 2：varint长度 + 字节，供以后的字符串等字段使用
+ * - 字段号：1 userId，2 activityId，3 productId，4 timestamp，5 deductionId（可选，为空时不写）
+ * 兼容规则：新增字段使用新的字段号，版本号不变，旧消费者跳过未知字段；只有不兼容的布局变化才递增版本号，
+ * 消费者拒绝不认识的版本。JSON消息以 '{' 开头，版本号不会取该值，消费端据此兼容升级前的JSON消息。
+ */
+public final class OrderMessageCodec {
+
+    /**
+     * 当前格式版本
+     */
+    public static final byte VERSION = 1;
+
+    private static final int FIELD_USER_ID = 1;
+    private static final int FIELD_ACTIVITY_ID = 2;
+    private static final int FIELD_PRODUCT_ID = 3;
+    private static final int FIELD_TIMESTAMP = 4;
+    private static final int FIELD_DEDUCTION_ID = 5;
+
+    private static final int WIRE_VARINT = 0;
+    private static final int WIRE_LENGTH_DELIMITED = 2;
+
+    private OrderMessageCodec() {
+    }
+
+    /**
+     * 编码为二进制消息（一次按实际长度分配）
+     */
+    public static byte[] encode(CreateOrderRequestDTO request) {
+        int size = 1
+                + fieldSize(FIELD_USER_ID, request.userId())
+                + fieldSize(FIELD_ACTIVITY_ID, request.activityId())
+                + fieldSize(FIELD_PRODUCT_ID, request.productId())
+                + fieldSize(FIELD_TIMESTAMP, request.timestamp())
+                + (request.deductionId() != null ? fieldSize(FIELD_DEDUCTION_ID, request.deductionId()) : 0);
+        byte[] buf = new byte[size];
+        buf[0] = VERSION;
+        int pos = 1;
+        pos = writeField(buf, pos, FIELD_USER_ID, request.userId());
+        pos = writeField(buf, pos, FIELD_ACTIVITY_ID, request.activityId());
+        pos = writeField(buf, pos, FIELD_PRODUCT_ID, request.productId());
+        pos = writeField(buf, pos, FIELD_TIMESTAMP, request.timestamp());
+        if (request.deductionId() != null) {
+            writeField(buf, pos, FIELD_DEDUCTION_ID, request.deductionId());
+        }
+        return buf;
+    }
+
+    /**
+     * 解码二进制消息
+     *
+     * @throws IllegalArgumentException 版本不支持、消息截断或缺少必填字段
+     */
+    public static CreateOrderRequestDTO decode(byte[] buf) {
+        if (buf.length == 0 || buf[0] != VERSION) {
+            throw new IllegalArgumentException("不支持的下单消息版本: " + (buf.length == 0 ? "空消息" : buf[0]));
+        }
+        Long userId = null;
+        Long activityId = null;
+        Long productId = null;
+        Long timestamp = null;
+        Long deductionId = null;
+        Cursor cursor = new Cursor(buf, 1);
+        while (cursor.pos < buf.length) {
+            long tag = cursor.readVarint();
+            int wireType = (int) (tag & 0x7);
+            int field = (int) (tag >>> 3);
+            if (wireType == WIRE_VARINT) {
+                long value = cursor.readVarint();
+                switch (field) {
+                    case FIELD_USER_ID -> userId = value;
+                    case FIELD_ACTIVITY_ID -> activityId = value;
+                    case FIELD_PRODUCT_ID -> productId = value;
+                    case FIELD_TIMESTAMP -> timestamp = value;
+                    case FIELD_DEDUCTION_ID -> deductionId = value;
+                    default -> {
+                        // 未知字段，跳过
+                    }
+                }
+            } else if (wireType == WIRE_LENGTH_DELIMITED) {
+                cursor.skip(cursor.readVarint());
+            } else {
+                throw new IllegalArgumentException("未知的字段类型: field=" + field + ", type=" + wireType);
+            }
+        }
+        return new CreateOrderRequestDTO(userId, activityId, productId, timestamp, deductionId);
+    }
+
+    /**
+     * 是否为升级前的JSON消息
+     */
+    public static boolean isJson(byte[] buf) {
+        return buf.length > 0 && buf[0] == '{';
+    }
+
+    /**
+     * 消息的可读形式（仅用于日志）：JSON原文，二进制为十六进制
+     */
+    public static String describe(byte[] buf) {
+        return isJson(buf) ? new String(buf, StandardCharsets.UTF_8) : HexFormat.of().formatHex(buf);
+    }
+
+    private static int fieldSize(int field, long value) {
+        return varintSize((long) field << 3 | WIRE_VARINT) + varintSize(value);
+    }
+
+    private static int writeField(byte[] buf, int pos, int field, long value) {
+        pos = writeVarint(buf, pos, (long) field << 3 | WIRE_VARINT);
+        return writeVarint(buf, pos, value);
+    }
+
+    private static int varintSize(long value) {
+        return value == 0 ? 1 : (64 - Long.numberOfLeadingZeros(value) + 6) / 7;
+    }
+
+    private static int writeVarint(byte[] buf, int pos, long value) {
+        while ((value & ~0x7FL) != 0) {
+            buf[pos++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        buf[pos++] = (byte) value;
+        return pos;
+    }
+
+    private static final class Cursor {
+        private final byte[] buf;
+        private int pos;
+
+        private Cursor(byte[] buf, int pos) {
+            this.buf = buf;
+            this.pos = pos;
+        }
+
+        private long readVarint() {
+            long value = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                if (pos >= buf.length) {
+                    throw new IllegalArgumentException("下单消息被截断");
+                }
+                byte b = buf[pos++];
+                value |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return value;
+                }
+            }
+            throw new IllegalArgumentException("varint过长");
+        }
+
+        private void skip(long length) {
+            if (length < 0 || length > buf.length - pos) {
+                throw new IllegalArgumentException("下单消息被截断");
+            }
+            pos += (int) length;
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package yw.seckill.util;
+
+import io.netty.buffer.Unpooled;
+import org.redisson.client.codec.Codec;
+import org.redisson.client.codec.LongCodec;
+import org.redisson.client.codec.StringCodec;
+import org.redisson.codec.CompositeCodec;
+
+import java.io.IOException;
+
+/**
+ * 库存、令牌、分桶等Redis值的统一编码
+ * 线上格式一律为纯十进制整数字符串（或普通文本），与Lua脚本中的 tonumber/INCRBY/HINCRBY 完全一致，
+ * 不使用Redisson默认的Kryo5编解码器（带类型头的二进制，Lua无法识别，Java端需反序列化）
+ */
+public final class RedisCodecs {
+
+    /**
+     * 数值型单值key：库存、总库存、待回写扣减量等
+     */
+    public static final Codec NUMBER = LongCodec.INSTANCE;
+
+    /**
+     * 文本：Lua脚本参数与返回值、令牌标记、库存日志
+     */
+    public static final Codec TEXT = StringCodec.INSTANCE;
+
+    /**
+     * 分桶库存Hash：field为桶索引字符串，value为整数
+     */
+    public static final Codec BUCKET_HASH = new CompositeCodec(StringCodec.INSTANCE, LongCodec.INSTANCE);
+
+    private RedisCodecs() {
+    }
+
+    /**
+     * 是否已是纯整数字符串编码（可选负号+数字）
+     */
+    public static boolean isPlainInteger(byte[] bytes) {
+        if (bytes == null || bytes.length == 0 || bytes.length > 20) {
+            return false;
+        }
+        int start = bytes[0] == '-' ? 1 : 0;
+        if (start == bytes.length) {
+            return false;
+        }
+        for (int i = start; i < bytes.length; i++) {
+            if (bytes[i] < '0' || bytes[i] > '9') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 用旧编解码器（迁移前客户端的默认编解码器）解码原始字节
+     */
+    public static Object decodeLegacy(Codec legacyCodec, byte[] bytes) throws IOException {
+        return legacyCodec.getValueDecoder().decode(Unpooled.wrappedBuffer(bytes), null);
+    }
+}
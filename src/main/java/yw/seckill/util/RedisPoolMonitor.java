@@ -0,0 +1,220 @@
+package yw.seckill.util;
+
+import io.netty.bootstrap.Bootstrap;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelOutboundHandlerAdapter;
+import io.netty.channel.ChannelPromise;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.redisson.client.NettyHook;
+import org.redisson.client.protocol.CommandData;
+import org.redisson.client.protocol.CommandsData;
+import org.redisson.client.protocol.QueueCommand;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Redisson连接池监控与自动调优
+ * - 通过 NettyHook 在每个Redis连接上统计在途命令数（Redisson每条命令独占一个连接，在途命令数即占用的连接数）
+ * - 按节点记录峰值并发和"在途命令数达到连接池上限"的次数（饱和次数）
+ * - 自动调优模式下根据观测到的峰值并发计算建议的连接池大小，并持久化到状态文件，下次启动时使用
+ *   （Redisson连接池在客户端创建后不能调整大小）
+ */
+@Slf4j
+@Component
+public class RedisPoolMonitor {
+
+    private static final String RECOMMENDED_POOL_SIZE = "recommendedPoolSize";
+
+    private final Map<String, NodeStats> nodes = new ConcurrentHashMap<>();
+
+    @Value("${seckill.redis.autotune.enabled:false}")
+    private boolean autotuneEnabled;
+
+    @Value("${seckill.redis.autotune.state-file:redisson-autotune.properties}")
+    private String stateFile;
+
+    @Value("${seckill.redis.autotune.headroom:1.25}")
+    private double headroom;
+
+    @Value("${seckill.redis.autotune.min-pool-size:16}")
+    private int minPoolSize;
+
+    @Value("${seckill.redis.autotune.max-pool-size:512}")
+    private int maxPoolSize;
+
+    private volatile int poolSize;
+
+    public boolean isAutotuneEnabled() {
+        return autotuneEnabled;
+    }
+
+    public int getPoolSize() {
+        return poolSize;
+    }
+
+    /**
+     * 由RedissonConfig在创建客户端时设置，作为饱和判断的上限
+     */
+    public void setPoolSize(int poolSize) {
+        this.poolSize = poolSize;
+    }
+
+    public NettyHook nettyHook() {
+        return new NettyHook() {
+            @Override
+            public void afterBoostrapInitialization(Bootstrap bootstrap) {
+            }
+
+            @Override
+            public void afterChannelInitialization(Channel channel) {
+                channel.pipeline().addLast("seckillPoolMonitor", new InFlightHandler());
+            }
+        };
+    }
+
+    /**
+     * 自动调优的初始连接池大小：上次运行持久化的建议值与启动并发提示中的较大者，限制在[min, max]内
+     */
+    public int autotunePoolSize(int concurrencyHint) {
+        int size = Math.max(concurrencyHint, loadRecommendedPoolSize());
+        return clamp(size);
+    }
+
+    /**
+     * 根据观测到的峰值并发计算建议连接池大小
+     * 出现过饱和时，观测到的并发被连接池上限截断，真实需求未知，按当前大小翻倍
+     */
+    public int recommendPoolSize() {
+        int peak = 0;
+        long saturated = 0;
+        for (NodeStats stats : nodes.values()) {
+            peak = Math.max(peak, stats.peak.get());
+            saturated += stats.saturated.sum();
+        }
+        if (saturated > 0) {
+            return clamp(poolSize * 2);
+        }
+        return clamp((int) Math.ceil(peak * headroom));
+    }
+
+    public Map<String, Object> getMetrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("poolSize", poolSize);
+        metrics.put("autotune", autotuneEnabled);
+        metrics.put("recommendedPoolSize", recommendPoolSize());
+
+        Map<String, Object> nodeMetrics = new LinkedHashMap<>();
+        for (Map.Entry<String, NodeStats> entry : nodes.entrySet()) {
+            NodeStats stats = entry.getValue();
+            long commands = stats.commands.sum();
+            long saturated = stats.saturated.sum();
+            Map<String, Object> item = new LinkedHashMap<>();
+            item.put("inFlight", stats.inFlight.get());
+            item.put("peakInFlight", stats.peak.get());
+            item.put("commands", commands);
+            item.put("saturatedCommands", saturated);
+            item.put("saturationRatio", commands == 0 ? 0.0 : (double) saturated / commands);
+            item.put("utilization", poolSize == 0 ? 0.0 : (double) stats.inFlight.get() / poolSize);
+            nodeMetrics.put(entry.getKey(), item);
+        }
+        metrics.put("nodes", nodeMetrics);
+        return metrics;
+    }
+
+    /**
+     * 持久化建议的连接池大小（仅自动调优模式）
+     */
+    @PreDestroy
+    public void saveRecommendation() {
+        if (!autotuneEnabled || nodes.isEmpty()) {
+            return;
+        }
+        int recommended = recommendPoolSize();
+        Properties properties = new Properties();
+        properties.setProperty(RECOMMENDED_POOL_SIZE, String.valueOf(recommended));
+        try (OutputStream out = Files.newOutputStream(Path.of(stateFile))) {
+            properties.store(out, "Redisson连接池自动调优状态");
+        } catch (IOException e) {
+            log.warn("保存连接池调优状态失败: file={}", stateFile, e);
+            return;
+        }
+        if (recommended != poolSize) {
+            log.info("Redisson连接池建议大小: current={}, recommended={}（下次启动生效）", poolSize, recommended);
+        }
+    }
+
+    private int loadRecommendedPoolSize() {
+        Path path = Path.of(stateFile);
+        if (!Files.exists(path)) {
+            return 0;
+        }
+        Properties properties = new Properties();
+        try (InputStream in = Files.newInputStream(path)) {
+            properties.load(in);
+            return Integer.parseInt(properties.getProperty(RECOMMENDED_POOL_SIZE, "0"));
+        } catch (IOException | NumberFormatException e) {
+            log.warn("读取连接池调优状态失败: file={}", stateFile, e);
+            return 0;
+        }
+    }
+
+    private int clamp(int size) {
+        return Math.min(maxPoolSize, Math.max(minPoolSize, size));
+    }
+
+    private static class NodeStats {
+        final AtomicInteger inFlight = new AtomicInteger();
+        final AtomicInteger peak = new AtomicInteger();
+        final LongAdder commands = new LongAdder();
+        final LongAdder saturated = new LongAdder();
+    }
+
+    /**
+     * 每个连接一个实例：写出命令时计数+1，命令完成时-1；阻塞命令（如BLPOP）不计入
+     */
+    private class InFlightHandler extends ChannelOutboundHandlerAdapter {
+
+        private NodeStats stats;
+
+        @Override
+        public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise) throws Exception {
+            if (msg instanceof QueueCommand command && !command.isBlockingCommand()) {
+                CompletableFuture<?> future = msg instanceof CommandData<?, ?> data ? data.getPromise()
+                        : msg instanceof CommandsData batch ? batch.getPromise() : null;
+                if (future != null) {
+                    NodeStats node = stats(ctx);
+                    int current = node.inFlight.incrementAndGet();
+                    node.commands.increment();
+                    node.peak.accumulateAndGet(current, Math::max);
+                    if (poolSize > 0 && current >= poolSize) {
+                        node.saturated.increment();
+                    }
+                    future.whenComplete((result, error) -> node.inFlight.decrementAndGet());
+                }
+            }
+            super.write(ctx, msg, promise);
+        }
+
+        private NodeStats stats(ChannelHandlerContext ctx) {
+            if (stats == null) {
+                stats = nodes.computeIfAbsent(String.valueOf(ctx.channel().remoteAddress()), key -> new NodeStats());
+            }
+            return stats;
+        }
+    }
+}
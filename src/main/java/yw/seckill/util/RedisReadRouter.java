@@ -0,0 +1,78 @@
+package yw.seckill.util;
+
+import org.redisson.api.RedissonClient;
+import org.redisson.config.ReadMode;
+import org.springframework.beans.factory.DisposableBean;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Redis读路由
+ * - PRIMARY：写操作与强一致读（写后立即读、扣减判断、对账），始终使用主客户端
+ * - REPLICA：可容忍短暂陈旧的只读查询（展示库存、日志、令牌TTL等），使用只读客户端路由到从节点；
+ *   未配置从节点（single模式或关闭副本读）时回退到主客户端
+ * 由 RedissonConfig 创建，并统计两类读请求的数量
+ */
+public class RedisReadRouter implements DisposableBean {
+
+    public enum ReadPreference {
+        PRIMARY,
+        REPLICA
+    }
+
+    private final RedissonClient primary;
+    private final RedissonClient replica;
+    private final ReadMode replicaReadMode;
+
+    private final LongAdder primaryReads = new LongAdder();
+    private final LongAdder replicaReads = new LongAdder();
+    private final LongAdder replicaFallbacks = new LongAdder();
+
+    public RedisReadRouter(RedissonClient primary, RedissonClient replica, ReadMode replicaReadMode) {
+        this.primary = primary;
+        this.replica = replica;
+        this.replicaReadMode = replicaReadMode;
+    }
+
+    /**
+     * 按读偏好选择客户端
+     */
+    public RedissonClient client(ReadPreference preference) {
+        if (preference == ReadPreference.REPLICA) {
+            if (replica != null) {
+                replicaReads.increment();
+                return replica;
+            }
+            replicaFallbacks.increment();
+        }
+        primaryReads.increment();
+        return primary;
+    }
+
+    public boolean isReplicaEnabled() {
+        return replica != null;
+    }
+
+    public Map<String, Object> getMetrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        long primaryCount = primaryReads.sum();
+        long replicaCount = replicaReads.sum();
+        metrics.put("replicaEnabled", isReplicaEnabled());
+        metrics.put("replicaReadMode", replicaReadMode.name());
+        metrics.put("primaryReads", primaryCount);
+        metrics.put("replicaReads", replicaCount);
+        metrics.put("replicaFallbacks", replicaFallbacks.sum());
+        long total = primaryCount + replicaCount;
+        metrics.put("replicaRatio", total == 0 ? 0.0 : (double) replicaCount / total);
+        return metrics;
+    }
+
+    @Override
+    public void destroy() {
+        if (replica != null) {
+            replica.shutdown();
+        }
+    }
+}
@@ -0,0 +1,120 @@
+package yw.seckill.util;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 秒杀请求事件通道（替代热点路径上的逐请求日志）
+ * - 每个事件只累加对应类型的计数器（LongAdder，无锁、无对象分配）
+ * - 按采样率抽取少量事件放入有界队列，队列满时直接丢弃并计数，不阻塞请求线程
+ * - 定时任务调用 flush：输出本周期各类型的增量计数，并以结构化 key=value 形式写出采样事件（logger: seckill.event）
+ */
+@Component
+public class SeckillEventRecorder {
+
+    private static final Logger EVENT_LOG = LoggerFactory.getLogger("seckill.event");
+
+    /**
+     * 事件类型；key/quantity/value 的含义见各类型注释
+     */
+    public enum EventType {
+        /** key=productId, quantity=扣减数量, value=扣减后库存 */
+        STOCK_DEDUCT_SUCCESS,
+        /** key=productId, quantity=扣减数量, value=当前库存 */
+        STOCK_DEDUCT_INSUFFICIENT,
+        /** key=productId, quantity=预占数量, value=可用库存 */
+        STOCK_PRE_OCCUPY_SUCCESS,
+        /** key=productId, quantity=预占数量, value=可用库存 */
+        STOCK_PRE_OCCUPY_INSUFFICIENT,
+        /** key=productId, quantity=扣减数量, value=扣减后库存 */
+        STOCK_HOLD_CONFIRM_SUCCESS,
+        /** key=productId, quantity=0, value=确认状态码 */
+        STOCK_HOLD_CONFIRM_FAILED,
+        /** key=productId, quantity=释放数量, value=预占ID */
+        STOCK_HOLD_CANCEL,
+        /** key=productId, quantity=扣减数量, value=桶索引 */
+        BUCKET_DEDUCT_SUCCESS,
+        /** key=productId, quantity=扣减数量, value=尝试过的桶数 */
+        BUCKET_DEDUCT_INSUFFICIENT,
+        /** key=userId, quantity=0, value=activityId */
+        ORDER_SENT,
+        /** key=orderId, quantity=0, value=activityId */
+        ORDER_CREATED,
+        /** 本节点内合并到正在执行的相同请求；key/quantity/value 均为0 */
+        IDEMPOTENT_COLLAPSED,
+        /** 从Redis重放已完成请求的结果；key/quantity/value 均为0 */
+        IDEMPOTENT_REPLAYED,
+        /** 相同请求正在（其它节点）处理中被拒绝；key/quantity/value 均为0 */
+        IDEMPOTENT_REJECTED
+    }
+
+    private record Event(EventType type, long timestamp, long key, long quantity, long value) {
+    }
+
+    private static final EventType[] TYPES = EventType.values();
+
+    private final LongAdder[] counters = new LongAdder[TYPES.length];
+    private final long[] flushedCounts = new long[TYPES.length];
+    private final LongAdder dropped = new LongAdder();
+    private final ArrayBlockingQueue<Event> samples;
+    private final double sampleRate;
+
+    public SeckillEventRecorder(@Value("${seckill.event.sample-rate:0.01}") double sampleRate,
+                                @Value("${seckill.event.queue-capacity:4096}") int queueCapacity) {
+        this.sampleRate = sampleRate;
+        this.samples = new ArrayBlockingQueue<>(queueCapacity);
+        for (int i = 0; i < counters.length; i++) {
+            counters[i] = new LongAdder();
+        }
+    }
+
+    /**
+     * 记录一次事件（请求线程调用，不做任何IO）
+     */
+    public void record(EventType type, long key, long quantity, long value) {
+        counters[type.ordinal()].increment();
+        if (sampleRate > 0 && ThreadLocalRandom.current().nextDouble() < sampleRate) {
+            if (!samples.offer(new Event(type, System.currentTimeMillis(), key, quantity, value))) {
+                dropped.increment();
+            }
+        }
+    }
+
+    /**
+     * 累计计数（自启动以来，flush不会清零）
+     */
+    public long count(EventType type) {
+        return counters[type.ordinal()].sum();
+    }
+
+    /**
+     * 输出上次flush以来的聚合计数与采样事件
+     */
+    public synchronized void flush() {
+        Event event;
+        while ((event = samples.poll()) != null) {
+            EVENT_LOG.info("event={} ts={} key={} quantity={} value={}",
+                    event.type(), event.timestamp(), event.key(), event.quantity(), event.value());
+        }
+
+        StringBuilder summary = new StringBuilder();
+        for (EventType type : TYPES) {
+            long total = count(type);
+            long delta = total - flushedCounts[type.ordinal()];
+            flushedCounts[type.ordinal()] = total;
+            if (delta > 0) {
+                summary.append(' ').append(type.name()).append('=').append(delta);
+            }
+        }
+        long droppedCount = dropped.sumThenReset();
+        if (!summary.isEmpty() || droppedCount > 0) {
+            EVENT_LOG.info("event-summary{} dropped={}", summary, droppedCount);
+        }
+    }
+}
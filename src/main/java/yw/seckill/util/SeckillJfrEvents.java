@@ -0,0 +1,147 @@
+package yw.seckill.util;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+import java.util.concurrent.CompletionStage;
+import java.util.function.Supplier;
+
+/**
+ * 秒杀热点路径的JFR自定义事件
+ * - 未开启飞行记录（或事件被禁用）时，begin/end/shouldCommit 由JIT消除，几乎没有开销
+ * - 默认不采集调用栈；锁、Lua脚本和令牌事件默认只提交耗时超过 1 ms 的记录，可在 .jfc 配置或
+ *   -XX:StartFlightRecording 参数中按事件名（如 yw.seckill.LuaScript#threshold=0 ms）调整
+ * - 事件与JDK自带的GC、Socket读写、线程停顿事件在同一份记录中，可按时间线对照
+ */
+public final class SeckillJfrEvents {
+
+    private SeckillJfrEvents() {
+    }
+
+    /**
+     * 在事件时长内执行一次Lua脚本调用
+     *
+     * @param script 脚本名称
+     * @param productId 商品ID，多商品脚本传 0
+     * @param items 脚本处理的商品/请求数
+     * @param call 脚本调用
+     */
+    public static <T> T timeScript(String script, long productId, int items, Supplier<T> call) {
+        LuaScriptEvent event = new LuaScriptEvent();
+        event.begin();
+        boolean failed = true;
+        try {
+            T result = call.get();
+            failed = false;
+            return result;
+        } finally {
+            event.end();
+            if (event.shouldCommit()) {
+                event.script = script;
+                event.productId = productId;
+                event.items = items;
+                event.failed = failed;
+                event.commit();
+            }
+        }
+    }
+
+    /**
+     * 异步脚本调用：事件从发起调用开始，到结果完成（可能在Redisson回调线程上）结束
+     */
+    public static <T> CompletionStage<T> timeScriptAsync(String script, long productId, int items,
+                                                         Supplier<? extends CompletionStage<T>> call) {
+        LuaScriptEvent event = new LuaScriptEvent();
+        event.begin();
+        return call.get().whenComplete((result, e) -> {
+            event.end();
+            if (event.shouldCommit()) {
+                event.script = script;
+                event.productId = productId;
+                event.items = items;
+                event.failed = e != null;
+                event.commit();
+            }
+        });
+    }
+
+    @Name("yw.seckill.LockAcquire")
+    @Label("Lock Acquire")
+    @Description("获取分布式锁，时长为等待时长")
+    @Category({"Seckill", "Lock"})
+    @StackTrace(false)
+    @Threshold("1 ms")
+    public static class LockAcquireEvent extends Event {
+        @Label("Lock Key")
+        public String lockKey;
+
+        @Label("Owner")
+        public String owner;
+
+        @Label("Acquired")
+        public boolean acquired;
+    }
+
+    @Name("yw.seckill.LockHold")
+    @Label("Lock Hold")
+    @Description("持有分布式锁，从获取成功到开始释放")
+    @Category({"Seckill", "Lock"})
+    @StackTrace(false)
+    @Threshold("1 ms")
+    public static class LockHoldEvent extends Event {
+        @Label("Lock Key")
+        public String lockKey;
+
+        @Label("Owner")
+        public String owner;
+    }
+
+    @Name("yw.seckill.LuaScript")
+    @Label("Lua Script")
+    @Description("执行库存Lua脚本（含网络往返）")
+    @Category({"Seckill", "Redis"})
+    @StackTrace(false)
+    @Threshold("1 ms")
+    public static class LuaScriptEvent extends Event {
+        @Label("Script")
+        public String script;
+
+        @Label("Product Id")
+        public long productId;
+
+        @Label("Items")
+        public int items;
+
+        @Label("Failed")
+        public boolean failed;
+    }
+
+    @Name("yw.seckill.TokenConsume")
+    @Label("Token Consume")
+    @Description("消费秒杀令牌（GETDEL）")
+    @Category({"Seckill", "Redis"})
+    @StackTrace(false)
+    @Threshold("1 ms")
+    public static class TokenConsumeEvent extends Event {
+        @Label("Consumed")
+        public boolean consumed;
+    }
+
+    @Name("yw.seckill.OrderInsert")
+    @Label("Order Insert")
+    @Description("订单消费者写入MySQL")
+    @Category({"Seckill", "Order"})
+    @StackTrace(false)
+    public static class OrderInsertEvent extends Event {
+        @Label("Rows")
+        public int rows;
+
+        @Label("Activity Id")
+        public long activityId;
+    }
+}
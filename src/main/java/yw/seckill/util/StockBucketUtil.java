@@ -1,24 +1,34 @@
 package yw.seckill.util;
 
 import lombok.extern.slf4j.Slf4j;
+import org.redisson.api.BatchOptions;
+import org.redisson.api.RBatch;
 import org.redisson.api.RScript;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
+import yw.seckill.util.RedisReadRouter.ReadPreference;
+import yw.seckill.util.SeckillEventRecorder.EventType;
 
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
-import java.util.Collections;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.concurrent.ThreadLocalRandom;
 
 /**
  * 库存分桶工具（Redis Hash）
- * - 将单商品库存拆分为固定数量的桶（默认10个），缓解热点Key的并发压力
+ * - 将单商品库存拆分为固定数量的桶（默认10个，可通过 seckill.stock.bucket-count 配置），缓解热点Key的并发压力
  * - 自动将请求基于路由键（如userId、orderId等）映射到固定桶
  * - 支持失败时按顺序尝试其它桶
  *
- * Hash结构：key = "stock:" + productId, field = bucketIndex(0..bucketCount-1), value = 剩余库存
+ * Hash结构：key = StockKeys.bucketHash(productId), field = bucketIndex(0..bucketCount-1), value = 剩余库存
+ * 同一商品任一时刻只有一种布局：单key（stock:{id}）或分桶Hash + 总库存（stock_bucket:{id} + stock_total:{id}），
+ * 两种布局之间的切换见 StockLayoutService
  */
 @Slf4j
 @Component
@@ -27,18 +37,34 @@ public class StockBucketUtil {
     @Autowired
     private RedissonUtil redissonUtil;
 
-    private static final String STOCK_HASH_KEY_PREFIX = "stock:";
-    private static final int DEFAULT_BUCKET_COUNT = 10;
+    @Autowired
+    private StockNearCache stockNearCache;
+
+    @Autowired
+    private SeckillEventRecorder eventRecorder;
+
+    @Autowired
+    private RedisReadRouter readRouter;
+
+    @Autowired
+    private StockKeys stockKeys;
+
+    @Value("${seckill.stock.bucket-count:10}")
+    private int bucketCount;
 
-    // 单桶扣减脚本：对Hash的指定field进行扣减，保证原子性
+    // 单桶扣减脚本：对Hash的指定field进行扣减，保证原子性；同时维护总库存并累计待回写MySQL的扣减量
     private static final String HASH_BUCKET_DEDUCT_SCRIPT =
             "local hash_key = KEYS[1] " +
+            "local pending_key = KEYS[2] " +
+            "local total_key = KEYS[3] " +
             "local field = ARGV[1] " +
             "local deduct_amount = tonumber(ARGV[2]) " +
             "local current_stock = tonumber(redis.call('HGET', hash_key, field) or 0) " +
             "if current_stock >= deduct_amount then " +
             "  local new_stock = current_stock - deduct_amount " +
             "  redis.call('HSET', hash_key, field, new_stock) " +
+            "  redis.call('INCRBY', pending_key, deduct_amount) " +
+            "  redis.call('DECRBY', total_key, deduct_amount) " +
             "  return {1, new_stock, current_stock} " +
             "else " +
             "  return {0, current_stock, current_stock} " +
@@ -48,14 +74,14 @@ public class StockBucketUtil {
      * 生成Hash Key
      */
     public String buildHashKey(Long productId) {
-        return STOCK_HASH_KEY_PREFIX + productId;
+        return stockKeys.bucketHash(productId);
     }
 
     /**
-     * 桶数量（可根据需要扩展成可配置）
+     * 桶数量（seckill.stock.bucket-count，默认10）
      */
     public int getBucketCount() {
-        return DEFAULT_BUCKET_COUNT;
+        return bucketCount;
     }
 
     /**
@@ -83,58 +109,118 @@ public class StockBucketUtil {
     }
 
     /**
-     * 初始化分桶库存：将 totalStock 均匀切分到各桶（余数从低索引开始+1）
+     * 计算分桶库存：将 totalStock 均匀切分到各桶（余数从低索引开始+1）
+     *
+     * @return field(桶索引) -> 桶库存，值为纯整数字符串，与Lua脚本中的 tonumber 一致
      */
-    public void initBucketStocks(Long productId, int totalStock) {
-        String hashKey = buildHashKey(productId);
-        int bucketCount = getBucketCount();
+    public Map<String, String> buildBucketStocks(int totalStock) {
         if (totalStock < 0) {
             throw new IllegalArgumentException("totalStock 不能为负数");
         }
-
+        int bucketCount = getBucketCount();
         int avg = bucketCount == 0 ? 0 : totalStock / bucketCount;
         int remainder = bucketCount == 0 ? 0 : totalStock % bucketCount;
 
+        Map<String, String> buckets = new LinkedHashMap<>(bucketCount * 2);
         for (int i = 0; i < bucketCount; i++) {
-            int value = avg + (i < remainder ? 1 : 0);
-            try {
-                redissonUtil.getRedissonClient().getMap(hashKey).fastPut(String.valueOf(i), value);
-            } catch (Exception e) {
-                log.error("初始化分桶库存失败: productId={}, bucket={}, value={}", productId, i, value, e);
-                throw e;
-            }
+            buckets.put(String.valueOf(i), String.valueOf(avg + (i < remainder ? 1 : 0)));
+        }
+        return buckets;
+    }
+
+    /**
+     * 生成总库存Key
+     */
+    public String buildTotalKey(Long productId) {
+        return stockKeys.total(productId);
+    }
+
+    /**
+     * 初始化分桶库存：所有桶通过一次 HSET 写入，总库存、单key删除和布局标记在同一原子批次中写入
+     */
+    public void initBucketStocks(Long productId, int totalStock) {
+        String hashKey = buildHashKey(productId);
+        Map<String, String> buckets = buildBucketStocks(totalStock);
+        try {
+            RBatch batch = redissonUtil.getRedissonClient().createBatch(
+                    BatchOptions.defaults().executionMode(BatchOptions.ExecutionMode.IN_MEMORY_ATOMIC));
+            batch.<String, String>getMap(hashKey, RedisCodecs.TEXT).putAllAsync(buckets);
+            batch.<String>getBucket(buildTotalKey(productId), RedisCodecs.TEXT).setAsync(String.valueOf(totalStock));
+            batch.getKeys().deleteAsync(stockKeys.stock(productId));
+            batch.<String, String>getMap(stockKeys.layout(productId), RedisCodecs.TEXT)
+                    .putAllAsync(Map.of("mode", "bucket", "bucketCount", String.valueOf(buckets.size()),
+                            "changedAt", String.valueOf(System.currentTimeMillis())));
+            batch.execute();
+            stockNearCache.invalidate(buildTotalKey(productId));
+            stockNearCache.invalidate(stockKeys.stock(productId));
+        } catch (Exception e) {
+            log.error("初始化分桶库存失败: productId={}, totalStock={}", productId, totalStock, e);
+            throw e;
         }
-        log.info("初始化分桶库存成功: productId={}, totalStock={}, bucketCount={}", productId, totalStock, bucketCount);
+        log.info("初始化分桶库存成功: productId={}, totalStock={}, bucketCount={}", productId, totalStock, buckets.size());
     }
 
     /**
-     * 获取总库存（聚合所有桶）
+     * 获取总库存：读取扣减脚本维护的总库存，O(1)；总库存key不存在时回退为聚合所有桶（主节点强一致读）
      */
     public int getTotalStock(Long productId) {
+        return getTotalStock(productId, ReadPreference.PRIMARY);
+    }
+
+    /**
+     * 按读偏好获取总库存
+     */
+    public int getTotalStock(Long productId, ReadPreference preference) {
+        try {
+            Long total = readRouter.client(preference)
+                    .<Long>getBucket(buildTotalKey(productId), RedisCodecs.NUMBER).get();
+            if (total != null) {
+                return total.intValue();
+            }
+            return sumBucketStocks(productId);
+        } catch (Exception e) {
+            log.error("获取总库存异常: productId={}", productId, e);
+            return 0;
+        }
+    }
+
+    /**
+     * 获取展示用总库存（本地近端缓存，最大陈旧时间见 seckill.stock-cache.ttl-ms）
+     */
+    public int getDisplayTotalStock(Long productId) {
+        return stockNearCache.get(buildTotalKey(productId), key -> getTotalStock(productId, ReadPreference.REPLICA));
+    }
+
+    /**
+     * 聚合所有桶的库存
+     */
+    public int sumBucketStocks(Long productId) {
         try {
             String hashKey = buildHashKey(productId);
-            List<Object> values = new ArrayList<>(redissonUtil.getRedissonClient().getMap(hashKey).values());
+            Collection<Long> values = redissonUtil.getRedissonClient()
+                    .<String, Long>getMap(hashKey, RedisCodecs.BUCKET_HASH).readAllValues();
             int sum = 0;
-            for (Object v : values) {
+            for (Long v : values) {
                 if (v != null) {
-                    sum += Integer.parseInt(String.valueOf(v));
+                    sum += v.intValue();
                 }
             }
             return sum;
         } catch (Exception e) {
-            log.error("获取总库存异常: productId={}", productId, e);
+            log.error("聚合分桶库存异常: productId={}", productId, e);
             return 0;
         }
     }
 
     /**
-     * 获取单个桶库存
+     * 获取单个桶库存（从节点读，仅用于查询展示，扣减判断在Lua脚本中完成）
      */
     public int getBucketStock(Long productId, int bucketIndex) {
         try {
             String hashKey = buildHashKey(productId);
-            Object v = redissonUtil.getRedissonClient().getMap(hashKey).get(String.valueOf(bucketIndex));
-            return v == null ? 0 : Integer.parseInt(String.valueOf(v));
+            Long v = readRouter.client(ReadPreference.REPLICA)
+                    .<String, Long>getMap(hashKey, RedisCodecs.BUCKET_HASH).get(String.valueOf(bucketIndex));
+            return v == null ? 0 : v.intValue();
         } catch (Exception e) {
             log.error("获取桶库存异常: productId={}, bucketIndex={}", productId, bucketIndex, e);
             return 0;
@@ -165,19 +251,18 @@ public class StockBucketUtil {
         }
 
         for (int bucketIndex : order) {
-            List<Object> result = evalHashBucketDeduct(hashKey, String.valueOf(bucketIndex), quantity);
+            List<Object> result = evalHashBucketDeduct(productId, hashKey, String.valueOf(bucketIndex), quantity);
             boolean success = ((Number) result.get(0)).intValue() == 1;
             int newBucketStock = ((Number) result.get(1)).intValue();
             int beforeBucketStock = ((Number) result.get(2)).intValue();
 
             if (success) {
-                log.info("扣减成功: productId={}, bucketIndex={}, quantity={}, newBucketStock={}",
-                        productId, bucketIndex, quantity, newBucketStock);
+                eventRecorder.record(EventType.BUCKET_DEDUCT_SUCCESS, productId, quantity, bucketIndex);
                 return new DeductResult(true, productId, bucketIndex, quantity, newBucketStock, beforeBucketStock);
             }
         }
 
-        log.warn("扣减失败（所有桶不足）: productId={}, quantity={}", productId, quantity);
+        eventRecorder.record(EventType.BUCKET_DEDUCT_INSUFFICIENT, productId, quantity, bucketCount);
         return new DeductResult(false, productId, -1, quantity, 0, 0);
     }
 
@@ -191,28 +276,27 @@ public class StockBucketUtil {
         }
 
         String hashKey = buildHashKey(productId);
-        List<Object> result = evalHashBucketDeduct(hashKey, String.valueOf(bucketIndex), quantity);
+        List<Object> result = evalHashBucketDeduct(productId, hashKey, String.valueOf(bucketIndex), quantity);
         boolean success = ((Number) result.get(0)).intValue() == 1;
         int newBucketStock = ((Number) result.get(1)).intValue();
         int beforeBucketStock = ((Number) result.get(2)).intValue();
         if (success) {
-            log.info("扣减成功: productId={}, bucketIndex={}, quantity={}, newBucketStock={}",
-                    productId, bucketIndex, quantity, newBucketStock);
+            eventRecorder.record(EventType.BUCKET_DEDUCT_SUCCESS, productId, quantity, bucketIndex);
         } else {
-            log.warn("扣减失败: productId={}, bucketIndex={}, quantity={}, currentBucketStock={}",
-                    productId, bucketIndex, quantity, beforeBucketStock);
+            eventRecorder.record(EventType.BUCKET_DEDUCT_INSUFFICIENT, productId, quantity, 1);
         }
         return new DeductResult(success, productId, bucketIndex, quantity, newBucketStock, beforeBucketStock);
     }
 
-    private List<Object> evalHashBucketDeduct(String hashKey, String field, int quantity) {
-        return redissonUtil.getRedissonClient().getScript().eval(
-                RScript.Mode.READ_WRITE,
-                HASH_BUCKET_DEDUCT_SCRIPT,
-                RScript.ReturnType.MULTI,
-                Collections.singletonList(hashKey),
-                field, String.valueOf(quantity)
-        );
+    private List<Object> evalHashBucketDeduct(Long productId, String hashKey, String field, int quantity) {
+        return SeckillJfrEvents.timeScript("bucketDeduct", productId, 1, () ->
+                redissonUtil.getRedissonClient().getScript(RedisCodecs.TEXT).eval(
+                        RScript.Mode.READ_WRITE,
+                        HASH_BUCKET_DEDUCT_SCRIPT,
+                        RScript.ReturnType.MULTI,
+                        Arrays.asList(hashKey, stockKeys.pending(productId), buildTotalKey(productId)),
+                        field, String.valueOf(quantity)
+                ));
     }
 
     /**
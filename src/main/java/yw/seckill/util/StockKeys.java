@@ -0,0 +1,172 @@
+package yw.seckill.util;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * 商品库存相关的Redis key命名
+ * 单key库存、扣减日志、待回写扣减量、分桶Hash、总库存、布局标记都由扣减/布局脚本在同一次调用中访问，统一在这里生成。
+ * seckill.stock.slot-group-size > 0 时，key中加入按商品ID分组的哈希标签（如 stock:{sg12}:1234），
+ * 同组商品的全部库存key落在同一个集群槽位，单商品脚本和同组商品的购物车脚本在集群模式下合法；
+ * 默认 0 保持原有key名（stock:1234），适用于单机/哨兵部署。修改分组大小需要重新预热库存。
+ * 库存预占的计数、有序集合、数量Hash、序号同样按商品带标签；待回收商品索引按槽位分组各一个，与组内商品的预占key同槽位。
+ */
+@Component
+public class StockKeys {
+
+    /**
+     * Redis集群槽位数
+     */
+    public static final int SLOT_COUNT = 16384;
+
+    @Value("${seckill.stock.slot-group-size:0}")
+    private long slotGroupSize;
+
+    public String stock(Long productId) {
+        return "stock:" + tag(productId) + productId;
+    }
+
+    public String log(Long productId) {
+        return "stock_log:" + tag(productId) + productId;
+    }
+
+    /**
+     * 待回写MySQL的扣减量
+     */
+    public String pending(Long productId) {
+        return "stock_sync:pending:" + tag(productId) + productId;
+    }
+
+    /**
+     * 回写中的批次（seq/delta），由写回任务和在线重新加载库存的脚本与 pending 一起访问
+     */
+    public String syncInflight(Long productId) {
+        return "stock_sync:inflight:" + tag(productId) + productId;
+    }
+
+    /**
+     * 回写批次号计数器
+     */
+    public String syncSeq(Long productId) {
+        return "stock_sync:seq:" + tag(productId) + productId;
+    }
+
+    /**
+     * 分桶Hash：field = 桶索引(0..bucketCount-1)，value = 剩余库存
+     */
+    public String bucketHash(Long productId) {
+        return "stock_bucket:" + tag(productId) + productId;
+    }
+
+    /**
+     * 分桶总库存：由初始化和扣减脚本维护，读取总库存只需一次GET
+     */
+    public String total(Long productId) {
+        return "stock_total:" + tag(productId) + productId;
+    }
+
+    /**
+     * 库存布局标记（mode/bucketCount/changedAt）
+     */
+    public String layout(Long productId) {
+        return "stock_layout:" + tag(productId) + productId;
+    }
+
+    /**
+     * 单商品扣减明细Hash：field = 扣减ID，value = 数量:桶(单key为 -):用户ID，超时取消订单时按明细归还
+     */
+    public String deductions(Long productId) {
+        return "stock_deduction:" + tag(productId) + productId;
+    }
+
+    /**
+     * 扣减ID序号（按商品分配）
+     */
+    public String deductionSeq(Long productId) {
+        return "stock_deduction_seq:" + tag(productId) + productId;
+    }
+
+    /**
+     * 预占总量
+     */
+    public String occupy(Long productId) {
+        return "stock_occupy:" + tag(productId) + productId;
+    }
+
+    /**
+     * 预占有序集合：member = 预占ID，score = 截止时间
+     */
+    public String holds(Long productId) {
+        return "stock_hold:" + tag(productId) + productId;
+    }
+
+    /**
+     * 预占数量Hash：field = 预占ID，value = 数量
+     */
+    public String holdQuantities(Long productId) {
+        return "stock_hold_qty:" + tag(productId) + productId;
+    }
+
+    /**
+     * 预占ID序号（按商品分配，预占ID在商品内唯一）
+     */
+    public String holdSeq(Long productId) {
+        return "stock_hold_seq:" + tag(productId) + productId;
+    }
+
+    /**
+     * 有未释放预占的商品索引：启用槽位分组时每组一个（stock_hold:products:{sg12}），否则全局一个
+     */
+    public String holdIndex(Long productId) {
+        return isSlotGrouped() ? "stock_hold:products:{sg" + Math.floorDiv(productId, slotGroupSize) + "}"
+                : "stock_hold:products";
+    }
+
+    /**
+     * 是否启用了槽位分组（未启用时同一商品的各个key也可能分布在不同槽位）
+     */
+    public boolean isSlotGrouped() {
+        return slotGroupSize > 0;
+    }
+
+    /**
+     * 商品全部库存key所在的集群槽位，未启用槽位分组时返回 -1
+     */
+    public int slotOf(Long productId) {
+        return isSlotGrouped() ? keySlot(stock(productId)) : -1;
+    }
+
+    /**
+     * 从库存key中解析商品ID（兼容带哈希标签与不带哈希标签的key）
+     */
+    public static Long parseProductId(String key) {
+        return Long.valueOf(key.substring(key.lastIndexOf(':') + 1));
+    }
+
+    /**
+     * 计算key的集群槽位：CRC16(XMODEM) mod 16384，存在非空 {tag} 时只对tag计算
+     */
+    public static int keySlot(String key) {
+        int start = key.indexOf('{');
+        if (start >= 0) {
+            int end = key.indexOf('}', start + 1);
+            if (end > start + 1) {
+                key = key.substring(start + 1, end);
+            }
+        }
+        int crc = 0;
+        for (byte b : key.getBytes(StandardCharsets.UTF_8)) {
+            crc ^= (b & 0xFF) << 8;
+            for (int i = 0; i < 8; i++) {
+                crc = (crc & 0x8000) != 0 ? (crc << 1) ^ 0x1021 : crc << 1;
+            }
+        }
+        return (crc & 0xFFFF) % SLOT_COUNT;
+    }
+
+    private String tag(Long productId) {
+        return slotGroupSize > 0 ? "{sg" + Math.floorDiv(productId, slotGroupSize) + "}:" : "";
+    }
+}
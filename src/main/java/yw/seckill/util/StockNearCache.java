@@ -0,0 +1,106 @@
+package yw.seckill.util;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Comparator;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.ToIntFunction;
+
+/**
+ * 库存本地近端缓存
+ * - 仅用于展示类读取（商品页轮询库存），扣减判断始终走Redis
+ * - 条目最多缓存 ttlMs 毫秒，即展示库存的最大陈旧时间
+ * - 同一key并发未命中时只有一个线程回源Redis，其它线程等待同一个 CompletableFuture；回源在Map操作之外执行，不占用桶锁
+ * - 条目数达到上限时先清理已过期条目，仍超出时淘汰最早写入的四分之一
+ */
+@Component
+public class StockNearCache {
+
+    @Value("${seckill.stock-cache.ttl-ms:500}")
+    private long ttlMs;
+
+    @Value("${seckill.stock-cache.max-size:10000}")
+    private int maxSize;
+
+    private final Map<String, Entry> cache = new ConcurrentHashMap<>();
+
+    private final AtomicBoolean evicting = new AtomicBoolean();
+
+    /**
+     * 读取缓存，过期或不存在时调用 loader 回源
+     */
+    public int get(String key, ToIntFunction<String> loader) {
+        while (true) {
+            long now = System.nanoTime();
+            Entry entry = cache.get(key);
+            if (entry != null && entry.expireAt - now > 0) {
+                return await(entry.value);
+            }
+            if (entry == null && cache.size() >= maxSize) {
+                evict(now);
+            }
+            Entry loading = new Entry(new CompletableFuture<>(), now + TimeUnit.MILLISECONDS.toNanos(ttlMs));
+            boolean owner = entry == null ? cache.putIfAbsent(key, loading) == null : cache.replace(key, entry, loading);
+            if (!owner) {
+                continue; // 其它线程已开始回源，重新读取
+            }
+            try {
+                int value = loader.applyAsInt(key);
+                loading.value.complete(value);
+                return value;
+            } catch (RuntimeException e) {
+                cache.remove(key, loading);
+                loading.value.completeExceptionally(e);
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * 使本地缓存失效（本节点写库存后调用）
+     */
+    public void invalidate(String key) {
+        cache.remove(key);
+    }
+
+    private static int await(CompletableFuture<Integer> value) {
+        try {
+            return value.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    private void evict(long now) {
+        if (!evicting.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            cache.values().removeIf(e -> e.expireAt - now <= 0 && e.value.isDone());
+            int size = cache.size();
+            if (size >= maxSize) {
+                int excess = size - maxSize * 3 / 4;
+                cache.entrySet().stream()
+                    .filter(e -> e.getValue().value.isDone())
+                    .sorted(Comparator.comparingLong(e -> e.getValue().expireAt - now))
+                    .limit(excess)
+                    .toList()
+                    .forEach(e -> cache.remove(e.getKey(), e.getValue()));
+            }
+        } finally {
+            evicting.set(false);
+        }
+    }
+
+    private record Entry(CompletableFuture<Integer> value, long expireAt) {
+    }
+}
@@ -43,6 +43,7 @@ CREATE TABLE IF NOT EXISTS t_order (
     order_no VARCHAR(32) UNIQUE NOT NULL,
     amount DECIMAL(10,2) NOT NULL,
     status INT NOT NULL DEFAULT 0, -- 0-待支付 1-已支付 2-已取消 3-已退款
+    deduction_id BIGINT NULL, -- 库存扣减明细ID（stock_deduction:{productId}）
     create_time TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
     update_time TIMESTAMP DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP,
     FOREIGN KEY (activity_id) REFERENCES t_seckill_activity(id),
@@ -60,6 +61,18 @@ CREATE TABLE IF NOT EXISTS t_user_seckill_qualify (
     FOREIGN KEY (activity_id) REFERENCES t_seckill_activity(id)
 ) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci;
 
+-- 库存回写检查点表（Redis -> MySQL 写回同步）
+CREATE TABLE IF NOT EXISTS t_stock_sync_checkpoint (
+    activity_id BIGINT PRIMARY KEY,
+    product_id BIGINT NOT NULL,
+    last_seq BIGINT NOT NULL DEFAULT 0,
+    last_delta INT NOT NULL DEFAULT 0,
+    synced_total BIGINT NOT NULL DEFAULT 0,
+    db_stock INT NOT NULL DEFAULT 0,
+    sync_time TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+    FOREIGN KEY (activity_id) REFERENCES t_seckill_activity(id)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci;
+
 -- 插入测试数据
 INSERT INTO t_product (name, description, price, stock, status) VALUES 
 ('iPhone 15 Pro', '苹果最新旗舰手机', 7999.00, 100, 1),
@@ -36,6 +36,7 @@ CREATE TABLE t_order (
     order_no VARCHAR(32) UNIQUE NOT NULL,
     amount DECIMAL(10,2) NOT NULL,
     status INT NOT NULL DEFAULT 0, -- 0-待支付 1-已支付 2-已取消 3-已退款
+    deduction_id BIGINT NULL, -- 库存扣减明细ID（stock_deduction:{productId}）
     create_time TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
     update_time TIMESTAMP DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP,
     FOREIGN KEY (activity_id) REFERENCES t_seckill_activity(id),
@@ -51,4 +52,16 @@ CREATE TABLE t_user_seckill_qualify (
     create_time TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
     UNIQUE KEY uk_user_activity (user_id, activity_id),
     FOREIGN KEY (activity_id) REFERENCES t_seckill_activity(id)
+);
+
+-- 库存回写检查点表（Redis -> MySQL 写回同步）
+CREATE TABLE t_stock_sync_checkpoint (
+    activity_id BIGINT PRIMARY KEY,
+    product_id BIGINT NOT NULL,
+    last_seq BIGINT NOT NULL DEFAULT 0,
+    last_delta INT NOT NULL DEFAULT 0,
+    synced_total BIGINT NOT NULL DEFAULT 0,
+    db_stock INT NOT NULL DEFAULT 0,
+    sync_time TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+    FOREIGN KEY (activity_id) REFERENCES t_seckill_activity(id)
 ); 
\ No newline at end of file
@@ -0,0 +1,139 @@
+package yw.seckill.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.CannotGetJdbcConnectionException;
+import org.springframework.kafka.config.KafkaListenerEndpointRegistry;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.listener.BatchListenerFailedException;
+import org.springframework.kafka.support.Acknowledgment;
+import org.springframework.test.util.ReflectionTestUtils;
+import yw.seckill.config.KafkaConfig;
+import yw.seckill.dto.CreateOrderRequestDTO;
+import yw.seckill.entity.Order;
+import yw.seckill.mapper.OrderMapper;
+import yw.seckill.util.KeyOrderedProcessor;
+import yw.seckill.util.OrderConsumerBackpressure;
+import yw.seckill.util.OrderMessageCodec;
+import yw.seckill.util.SeckillEventRecorder;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * 下单消息失败的去向：数据库故障留在原分区重新投递，数据问题转投死信主题（Kafka发送用Mock代替）
+ */
+class OrderConsumerServiceTest {
+
+    private final OrderMapper orderMapper = mock(OrderMapper.class);
+    private final KafkaTemplate<String, byte[]> kafkaTemplate = mockKafkaTemplate();
+    private final KeyOrderedProcessor keyOrderedProcessor = new KeyOrderedProcessor(4);
+    private final Acknowledgment ack = mock(Acknowledgment.class);
+    private OrderConsumerBackpressure backpressure;
+    private OrderConsumerService consumer;
+
+    @BeforeEach
+    void setUp() {
+        backpressure = new OrderConsumerBackpressure(4, 50, 500, 3, 60_000, 60_000, 200);
+        ReflectionTestUtils.setField(backpressure, "listenerRegistry", mock(KafkaListenerEndpointRegistry.class));
+
+        OrderRetryService retryService = new OrderRetryService();
+        ReflectionTestUtils.setField(retryService, "kafkaTemplate", kafkaTemplate);
+        ReflectionTestUtils.setField(retryService, "backpressure", backpressure);
+        ReflectionTestUtils.setField(retryService, "retryDelaysMs", new long[] {1000, 10000});
+        ReflectionTestUtils.setField(retryService, "sendTimeoutMs", 1000L);
+
+        consumer = new OrderConsumerService();
+        ReflectionTestUtils.setField(consumer, "objectMapper", new ObjectMapper());
+        ReflectionTestUtils.setField(consumer, "orderMapper", orderMapper);
+        ReflectionTestUtils.setField(consumer, "orderTimeoutService", mock(OrderTimeoutService.class));
+        ReflectionTestUtils.setField(consumer, "eventRecorder", mock(SeckillEventRecorder.class));
+        ReflectionTestUtils.setField(consumer, "keyOrderedProcessor", keyOrderedProcessor);
+        ReflectionTestUtils.setField(consumer, "backpressure", backpressure);
+        ReflectionTestUtils.setField(consumer, "orderRetryService", retryService);
+    }
+
+    @AfterEach
+    void tearDown() {
+        keyOrderedProcessor.shutdown();
+    }
+
+    @Test
+    void connectionFailureStaysInPartition() {
+        when(orderMapper.insert(any(Order.class))).thenThrow(new CannotGetJdbcConnectionException("connection refused"));
+
+        assertThrows(BatchListenerFailedException.class, () -> consumer.handleOrderMessages(List.of(record(0)), ack));
+
+        verify(ack, never()).acknowledge();
+        verify(kafkaTemplate, never()).send(any(ProducerRecord.class));
+    }
+
+    @Test
+    void failuresWhileBackpressurePausedStayInPartition() {
+        // 连续失败达到阈值后背压暂停，此后的失败即使不是已知的数据访问异常也按数据库故障处理
+        for (int i = 0; i < 3; i++) {
+            backpressure.release(false, 0);
+        }
+        assertEquals(OrderConsumerBackpressure.State.PAUSED, backpressure.getStatus().getState());
+        when(orderMapper.insert(any(Order.class))).thenThrow(new IllegalStateException("statement timeout"));
+
+        assertThrows(BatchListenerFailedException.class, () -> consumer.handleOrderMessages(List.of(record(0)), ack));
+        assertThrows(IllegalStateException.class, () -> consumer.handleRetryMessage(record(1), ack));
+
+        verify(ack, never()).acknowledge();
+        verify(kafkaTemplate, never()).send(any(ProducerRecord.class));
+    }
+
+    @Test
+    void dataErrorGoesToDeadLetterTopic() {
+        when(orderMapper.insert(any(Order.class))).thenThrow(new DataIntegrityViolationException("column too long"));
+
+        consumer.handleOrderMessages(List.of(record(0)), ack);
+
+        verify(ack).acknowledge();
+        assertEquals(KafkaConfig.ORDER_DLT_TOPIC, sentTopic());
+    }
+
+    @Test
+    void otherFailureGoesToRetryTopicWhileDatabaseIsHealthy() {
+        when(orderMapper.insert(any(Order.class))).thenThrow(new IllegalStateException("unexpected"));
+
+        consumer.handleOrderMessages(List.of(record(0)), ack);
+
+        verify(ack).acknowledge();
+        assertEquals(KafkaConfig.orderRetryTopic(0), sentTopic());
+    }
+
+    @SuppressWarnings("unchecked")
+    private String sentTopic() {
+        ArgumentCaptor<ProducerRecord<String, byte[]>> captor = ArgumentCaptor.forClass(ProducerRecord.class);
+        verify(kafkaTemplate).send(captor.capture());
+        return captor.getValue().topic();
+    }
+
+    private static ConsumerRecord<String, byte[]> record(long offset) {
+        byte[] message = OrderMessageCodec.encode(new CreateOrderRequestDTO(1001L, 7L, 42L, 1_700_000_000_123L + offset));
+        return new ConsumerRecord<>(KafkaConfig.ORDER_TOPIC, 0, offset, "1001", message);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static KafkaTemplate<String, byte[]> mockKafkaTemplate() {
+        KafkaTemplate<String, byte[]> template = mock(KafkaTemplate.class);
+        when(template.send(any(ProducerRecord.class))).thenReturn(CompletableFuture.completedFuture(null));
+        return template;
+    }
+}
@@ -0,0 +1,106 @@
+package yw.seckill.service.impl;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.redisson.api.RBatch;
+import org.redisson.api.RScript;
+import org.redisson.api.RScriptAsync;
+import org.redisson.api.RSetAsync;
+import org.redisson.api.RedissonClient;
+import org.springframework.test.util.ReflectionTestUtils;
+import yw.seckill.util.RedissonUtil;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * 本节点锁竞争统计基于预聚合计数：未开启明细记录时也有数据，写入Redis前后结果一致；时间桶key以锁key为哈希标签
+ */
+class LockMonitorServiceImplTest {
+
+    private static final String LOCK_KEY = "order:1001";
+
+    private final RBatch batch = mock(RBatch.class);
+    private final RScriptAsync script = mock(RScriptAsync.class);
+    @SuppressWarnings("unchecked")
+    private final RSetAsync<Object> keys = mock(RSetAsync.class);
+    private LockMonitorServiceImpl monitor;
+
+    @BeforeEach
+    void setUp() {
+        when(batch.getScript(any())).thenReturn(script);
+        when(batch.getSet(anyString(), any())).thenReturn(keys);
+        RedissonClient client = mock(RedissonClient.class);
+        when(client.createBatch(any())).thenReturn(batch);
+        RedissonUtil redissonUtil = mock(RedissonUtil.class);
+        when(redissonUtil.getRedissonClient()).thenReturn(client);
+
+        monitor = new LockMonitorServiceImpl();
+        ReflectionTestUtils.setField(monitor, "redissonUtil", redissonUtil);
+        ReflectionTestUtils.setField(monitor, "bucketSeconds", 60L);
+        ReflectionTestUtils.setField(monitor, "retentionMinutes", 1440L);
+    }
+
+    @Test
+    void competitionStatsComeFromAggregatesWithoutDetails() {
+        monitor.recordLockCompleted(LOCK_KEY, "t1", true, 2_000_000, 10_000_000);
+        monitor.recordLockCompleted(LOCK_KEY, "t2", true, 6_000_000, 30_000_000);
+        monitor.recordLockCompleted(LOCK_KEY, "t3", false, 100_000_000, 0);
+
+        assertTrue(monitor.getLockStatistics(LOCK_KEY).isEmpty());
+        Map<String, Object> before = monitor.getLockCompetitionStats(LOCK_KEY);
+        assertEquals(3L, before.get("totalAttempts"));
+        assertEquals(2L, before.get("successfulAttempts"));
+        assertEquals(1L, before.get("failedAttempts"));
+        assertEquals(100L, waitStats(before).get("max"));
+        assertEquals(20.0, ((Map<?, ?>) before.get("holdTimeStats")).get("average"));
+
+        // 写入Redis后增量清零，累计值保留
+        assertEquals(1, monitor.flushToRedis());
+        assertEquals(before, monitor.getLockCompetitionStats(LOCK_KEY));
+
+        monitor.recordLockCompleted(LOCK_KEY, "t4", true, 0, 0);
+        Map<String, Object> after = monitor.getLockCompetitionStats(LOCK_KEY);
+        assertEquals(4L, after.get("totalAttempts"));
+        assertEquals(100L, waitStats(after).get("max"));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void statsKeysAreTaggedByLockKey() {
+        monitor.recordLockCompleted(LOCK_KEY, "t1", true, 0, 0);
+        monitor.recordLockCompleted("order:1002", "t2", true, 0, 0);
+        assertEquals(2, monitor.flushToRedis());
+
+        ArgumentCaptor<List<Object>> statsKeys = ArgumentCaptor.forClass(List.class);
+        verify(script, times(2)).evalAsync(eq(RScript.Mode.READ_WRITE), anyString(), eq(RScript.ReturnType.INTEGER),
+                statsKeys.capture(), any(Object[].class));
+        ArgumentCaptor<String> keysKey = ArgumentCaptor.forClass(String.class);
+        verify(batch).getSet(keysKey.capture(), any());
+        String bucket = keysKey.getValue().substring("lock_stats:keys:".length());
+        assertTrue(statsKeys.getAllValues().contains(List.of("lock_stats:{" + LOCK_KEY + "}:" + bucket)));
+        assertTrue(statsKeys.getAllValues().contains(List.of("lock_stats:{order:1002}:" + bucket)));
+        verify(keys).addAllAsync(Set.of(LOCK_KEY, "order:1002"));
+    }
+
+    @Test
+    void unknownLockHasNoStats() {
+        assertEquals("暂无锁统计信息", monitor.getLockCompetitionStats(LOCK_KEY).get("message"));
+    }
+
+    private static Map<?, ?> waitStats(Map<String, Object> stats) {
+        return (Map<?, ?>) stats.get("waitTimeStats");
+    }
+}
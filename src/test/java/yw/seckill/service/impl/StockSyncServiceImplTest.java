@@ -0,0 +1,151 @@
+package yw.seckill.service.impl;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+import yw.seckill.entity.SeckillActivity;
+import yw.seckill.entity.StockSyncCheckpoint;
+import yw.seckill.mapper.SeckillActivityMapper;
+import yw.seckill.mapper.StockSyncCheckpointMapper;
+import yw.seckill.service.SeckillActivityService;
+import yw.seckill.service.StockService;
+import yw.seckill.support.InMemoryRedis;
+import yw.seckill.util.RedissonUtil;
+import yw.seckill.util.StockBucketUtil;
+import yw.seckill.util.StockKeys;
+import yw.seckill.util.StockNearCache;
+
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * 库存写回与补货：补货脚本同时扣减待回写量，核对始终满足 DB = Redis + pending + inflight，写回后MySQL包含补货量；
+ * 扣减量超过MySQL库存时回滚事务并保留 inflight
+ * Lua脚本在 InMemoryRedis 中真实执行，MySQL由Mock模拟
+ */
+class StockSyncServiceImplTest {
+
+    private static final long ACTIVITY_ID = 7L;
+    private static final long PRODUCT_ID = 1L;
+
+    private final InMemoryRedis redis = new InMemoryRedis();
+    private final StockKeys stockKeys = new StockKeys();
+    private final SeckillActivityMapper activityMapper = mock(SeckillActivityMapper.class);
+    private final StockSyncCheckpointMapper checkpointMapper = mock(StockSyncCheckpointMapper.class);
+    private final SeckillActivity activity = new SeckillActivity();
+    private StockService stockService;
+    private StockSyncServiceImpl syncService;
+
+    @BeforeEach
+    void setUp() {
+        RedissonUtil redissonUtil = mock(RedissonUtil.class);
+        when(redissonUtil.getRedissonClient()).thenReturn(redis.client());
+
+        stockService = new StockService();
+        ReflectionTestUtils.setField(stockService, "redissonUtil", redissonUtil);
+        ReflectionTestUtils.setField(stockService, "stockKeys", stockKeys);
+        ReflectionTestUtils.setField(stockService, "stockBucketUtil", mock(StockBucketUtil.class));
+        ReflectionTestUtils.setField(stockService, "stockNearCache", mock(StockNearCache.class));
+
+        activity.setId(ACTIVITY_ID);
+        activity.setProductId(PRODUCT_ID);
+        activity.setSeckillStock(100);
+        SeckillActivityService activityService = mock(SeckillActivityService.class);
+        when(activityService.getActivityById(ACTIVITY_ID)).thenReturn(activity);
+        when(activityMapper.selectById(ACTIVITY_ID)).thenReturn(activity);
+        // 与 decreaseStockBy 的SQL一致：扣减后不能为负
+        when(activityMapper.decreaseStockBy(eq(ACTIVITY_ID), anyInt())).thenAnswer(invocation -> {
+            int delta = invocation.getArgument(1);
+            if (activity.getSeckillStock() < delta) {
+                return 0;
+            }
+            activity.setSeckillStock(activity.getSeckillStock() - delta);
+            return 1;
+        });
+        TransactionTemplate transactionTemplate = mock(TransactionTemplate.class);
+        when(transactionTemplate.execute(any())).thenAnswer(invocation ->
+            invocation.<TransactionCallback<?>>getArgument(0).doInTransaction(null));
+
+        syncService = new StockSyncServiceImpl();
+        ReflectionTestUtils.setField(syncService, "redissonUtil", redissonUtil);
+        ReflectionTestUtils.setField(syncService, "seckillActivityService", activityService);
+        ReflectionTestUtils.setField(syncService, "seckillActivityMapper", activityMapper);
+        ReflectionTestUtils.setField(syncService, "checkpointMapper", checkpointMapper);
+        ReflectionTestUtils.setField(syncService, "transactionTemplate", transactionTemplate);
+        ReflectionTestUtils.setField(syncService, "stockKeys", stockKeys);
+
+        // 已售出10件，尚未写回
+        redis.set(stockKeys.stock(PRODUCT_ID), 90);
+        redis.set(stockKeys.pending(PRODUCT_ID), 10);
+    }
+
+    @Test
+    void restockKeepsCheckpointConsistentAndIsWrittenBack() {
+        stockService.increaseStock(PRODUCT_ID, 5);
+
+        assertEquals("95", redis.get(stockKeys.stock(PRODUCT_ID)));
+        assertEquals("5", redis.get(stockKeys.pending(PRODUCT_ID)));
+        assertConsistent(100);
+
+        assertEquals(5, syncService.syncActivity(ACTIVITY_ID));
+        assertEquals(95, activity.getSeckillStock());
+        assertConsistent(95);
+    }
+
+    @Test
+    void restockLargerThanPendingIncreasesMysqlStock() {
+        stockService.increaseStock(PRODUCT_ID, 20);
+
+        assertEquals("-10", redis.get(stockKeys.pending(PRODUCT_ID)));
+        assertConsistent(100);
+
+        assertEquals(-10, syncService.syncActivity(ACTIVITY_ID));
+        assertEquals(110, activity.getSeckillStock());
+        assertConsistent(110);
+    }
+
+    @Test
+    void bucketedRestockKeepsCheckpointConsistent() {
+        redis.set(stockKeys.stock(PRODUCT_ID), 0);
+        redis.hset(stockKeys.bucketHash(PRODUCT_ID), "0", 45);
+        redis.hset(stockKeys.bucketHash(PRODUCT_ID), "1", 45);
+        redis.set(stockKeys.total(PRODUCT_ID), 90);
+
+        stockService.increaseStock(PRODUCT_ID, 5);
+
+        assertEquals("50", redis.hash(stockKeys.bucketHash(PRODUCT_ID)).get("0"));
+        assertEquals("95", redis.get(stockKeys.total(PRODUCT_ID)));
+        assertConsistent(100);
+        syncService.syncActivity(ACTIVITY_ID);
+        assertConsistent(95);
+    }
+
+    @Test
+    void writeBackExceedingMysqlStockRollsBackAndKeepsInflight() {
+        activity.setSeckillStock(5);
+
+        assertThrows(IllegalStateException.class, () -> syncService.syncActivity(ACTIVITY_ID));
+
+        assertEquals(5, activity.getSeckillStock());
+        assertEquals("10", redis.hash(stockKeys.syncInflight(PRODUCT_ID)).get("delta"));
+        verify(checkpointMapper, never()).insert(any(StockSyncCheckpoint.class));
+    }
+
+    private void assertConsistent(int expectedDbStock) {
+        Map<String, Object> result = syncService.verifyCheckpoint(ACTIVITY_ID);
+        assertEquals(expectedDbStock, result.get("dbStock"));
+        assertTrue((Boolean) result.get("consistent"), result.toString());
+    }
+}
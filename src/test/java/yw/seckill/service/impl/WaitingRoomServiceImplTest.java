@@ -0,0 +1,98 @@
+package yw.seckill.service.impl;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import yw.seckill.entity.SeckillActivity;
+import yw.seckill.service.SeckillActivityService;
+import yw.seckill.service.StockService;
+import yw.seckill.service.WaitingRoomService.State;
+import yw.seckill.service.WaitingRoomService.WaitingRoomStatus;
+import yw.seckill.support.InMemoryRedis;
+import yw.seckill.util.RedissonUtil;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * 排队活动刷新与入场校验（领取排队号的Lua脚本在 InMemoryRedis 中执行）
+ */
+class WaitingRoomServiceImplTest {
+
+    private static final long ACTIVITY_ID = 7L;
+    private static final long PRODUCT_ID = 1L;
+    private static final long USER_ID = 1001L;
+
+    private final SeckillActivityService activityService = mock(SeckillActivityService.class);
+    private final SeckillActivity activity = new SeckillActivity();
+    private WaitingRoomServiceImpl waitingRoom;
+
+    @BeforeEach
+    void setUp() {
+        RedissonUtil redissonUtil = mock(RedissonUtil.class);
+        when(redissonUtil.getRedissonClient()).thenReturn(new InMemoryRedis().client());
+        StockService stockService = mock(StockService.class);
+        when(stockService.getDisplayStock(anyLong())).thenReturn(10);
+
+        activity.setId(ACTIVITY_ID);
+        activity.setProductId(PRODUCT_ID);
+        activity.setSeckillStock(10);
+        activity.setOriginalStock(10);
+        activity.setStatus(1);
+        activity.setStartTime(LocalDateTime.now().minusMinutes(1));
+        activity.setEndTime(LocalDateTime.now().plusHours(1));
+        when(activityService.getWaitingRoomActivities(any())).thenReturn(List.of(activity));
+
+        waitingRoom = new WaitingRoomServiceImpl();
+        ReflectionTestUtils.setField(waitingRoom, "redissonUtil", redissonUtil);
+        ReflectionTestUtils.setField(waitingRoom, "seckillActivityService", activityService);
+        ReflectionTestUtils.setField(waitingRoom, "stockService", stockService);
+        ReflectionTestUtils.setField(waitingRoom, "enforce", true);
+        ReflectionTestUtils.setField(waitingRoom, "leadSeconds", 300L);
+        ReflectionTestUtils.setField(waitingRoom, "admitFactor", 2.0);
+        ReflectionTestUtils.setField(waitingRoom, "admitBurst", 200L);
+        ReflectionTestUtils.setField(waitingRoom, "admitRatePerSecond", 500L);
+        ReflectionTestUtils.setField(waitingRoom, "secret", "test-secret");
+        waitingRoom.init();
+    }
+
+    @Test
+    void roomKeepsEnforcingAfterStartTime() {
+        assertEquals(1, waitingRoom.refreshRooms());
+
+        assertFalse(waitingRoom.isAdmittedForActivity(ACTIVITY_ID, USER_ID, null));
+        assertFalse(waitingRoom.isAdmittedForProduct(PRODUCT_ID, USER_ID, null));
+
+        WaitingRoomStatus status = waitingRoom.enter(ACTIVITY_ID, USER_ID);
+        assertEquals(State.ADMITTED, status.state());
+        assertTrue(waitingRoom.isAdmittedForActivity(ACTIVITY_ID, USER_ID, status.ticket()));
+        assertTrue(waitingRoom.isAdmittedForProduct(PRODUCT_ID, USER_ID, status.ticket()));
+        assertFalse(waitingRoom.isAdmittedForActivity(ACTIVITY_ID, USER_ID + 1, status.ticket()));
+    }
+
+    @Test
+    void capacityDoesNotShrinkAsStockIsWrittenBack() {
+        waitingRoom.refreshRooms();
+        for (long userId = 1; userId <= 20; userId++) {
+            assertEquals(userId, waitingRoom.enter(ACTIVITY_ID, userId).position());
+        }
+
+        // 写回任务扣减了MySQL中的 seckill_stock
+        activity.setSeckillStock(2);
+        waitingRoom.refreshRooms();
+
+        WaitingRoomStatus last = waitingRoom.enter(ACTIVITY_ID, 20L);
+        assertEquals(20, last.capacity());
+        assertEquals(State.ADMITTED, last.state());
+        assertTrue(waitingRoom.isAdmittedForActivity(ACTIVITY_ID, 20L, last.ticket()));
+        assertEquals(State.REJECTED, waitingRoom.enter(ACTIVITY_ID, 21L).state());
+    }
+}
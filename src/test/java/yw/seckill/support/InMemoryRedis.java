@@ -0,0 +1,217 @@
+package yw.seckill.support;
+
+import org.luaj.vm2.Globals;
+import org.luaj.vm2.LuaTable;
+import org.luaj.vm2.LuaValue;
+import org.luaj.vm2.Varargs;
+import org.luaj.vm2.lib.VarArgFunction;
+import org.luaj.vm2.lib.jse.JsePlatform;
+import org.mockito.Mockito;
+import org.redisson.api.RBucket;
+import org.redisson.api.RMap;
+import org.redisson.api.RScript;
+import org.redisson.api.RedissonClient;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 单元测试用的内存Redis：用 LuaJ 执行生产代码中的Lua脚本，redis.call 只实现脚本用到的字符串/Hash命令
+ * client() 返回的 RedissonClient 只支持 getScript().eval、getBucket().get 和 getMap() 的读取方法
+ */
+public class InMemoryRedis {
+
+    private final Map<String, String> strings = new HashMap<>();
+    private final Map<String, Map<String, String>> hashes = new HashMap<>();
+    private final RedissonClient client;
+
+    public InMemoryRedis() {
+        client = Mockito.mock(RedissonClient.class, invocation -> switch (invocation.getMethod().getName()) {
+            case "getScript" -> Mockito.mock(RScript.class, scriptCall -> {
+                if (!scriptCall.getMethod().getName().equals("eval") || scriptCall.getRawArguments().length != 5) {
+                    throw new UnsupportedOperationException(scriptCall.getMethod().toString());
+                }
+                Object[] args = scriptCall.getRawArguments();
+                @SuppressWarnings("unchecked")
+                List<Object> keys = (List<Object>) args[3];
+                return eval((String) args[1], keys, (Object[]) args[4]);
+            });
+            case "getBucket" -> bucket((String) invocation.getArgument(0));
+            case "getMap" -> map((String) invocation.getArgument(0));
+            default -> throw new UnsupportedOperationException(invocation.getMethod().toString());
+        });
+    }
+
+    public RedissonClient client() {
+        return client;
+    }
+
+    public String get(String key) {
+        return strings.get(key);
+    }
+
+    public void set(String key, Object value) {
+        strings.put(key, String.valueOf(value));
+    }
+
+    public Map<String, String> hash(String key) {
+        return hashes.getOrDefault(key, Map.of());
+    }
+
+    public void hset(String key, String field, Object value) {
+        hashes.computeIfAbsent(key, k -> new LinkedHashMap<>()).put(field, String.valueOf(value));
+    }
+
+    /**
+     * 执行脚本，返回值按Redis规则转换：数字为Long，字符串为String，数组为List，nil/false为null
+     */
+    public synchronized Object eval(String script, List<?> keys, Object... argv) {
+        Globals globals = JsePlatform.standardGlobals();
+        if (globals.get("unpack").isnil()) {
+            globals.set("unpack", globals.get("table").get("unpack"));
+        }
+        LuaTable redis = new LuaTable();
+        redis.set("call", new VarArgFunction() {
+            @Override
+            public Varargs invoke(Varargs args) {
+                List<String> command = new ArrayList<>();
+                for (int i = 1; i <= args.narg(); i++) {
+                    command.add(args.arg(i).tojstring());
+                }
+                return execute(command);
+            }
+        });
+        globals.set("redis", redis);
+        globals.set("KEYS", toLuaArray(keys));
+        globals.set("ARGV", toLuaArray(List.of(argv)));
+        return toJava(globals.load(script).call());
+    }
+
+    private LuaValue execute(List<String> command) {
+        String name = command.get(0).toUpperCase();
+        String key = command.size() > 1 ? command.get(1) : null;
+        switch (name) {
+            case "GET":
+                return bulk(strings.get(key));
+            case "SET":
+                strings.put(key, command.get(2));
+                return LuaValue.valueOf("OK");
+            case "DEL": {
+                int removed = 0;
+                for (String k : command.subList(1, command.size())) {
+                    removed += (strings.remove(k) != null ? 1 : 0) + (hashes.remove(k) != null ? 1 : 0);
+                }
+                return LuaValue.valueOf(removed);
+            }
+            case "EXISTS":
+                return LuaValue.valueOf(strings.containsKey(key) || hashes.containsKey(key) ? 1 : 0);
+            case "EXPIRE":
+            case "PEXPIRE":
+                return LuaValue.valueOf(1);
+            case "INCR":
+                return incrBy(key, 1);
+            case "INCRBY":
+                return incrBy(key, Long.parseLong(command.get(2)));
+            case "DECRBY":
+                return incrBy(key, -Long.parseLong(command.get(2)));
+            case "HGET":
+                return bulk(hash(key).get(command.get(2)));
+            case "HMGET": {
+                LuaTable values = new LuaTable();
+                for (int i = 2; i < command.size(); i++) {
+                    values.set(i - 1, bulk(hash(key).get(command.get(i))));
+                }
+                return values;
+            }
+            case "HSET": {
+                int added = 0;
+                for (int i = 2; i + 1 < command.size(); i += 2) {
+                    added += hash(key).containsKey(command.get(i)) ? 0 : 1;
+                    hset(key, command.get(i), command.get(i + 1));
+                }
+                return LuaValue.valueOf(added);
+            }
+            case "HDEL": {
+                Map<String, String> hash = hashes.get(key);
+                int removed = 0;
+                for (String field : command.subList(2, command.size())) {
+                    removed += hash != null && hash.remove(field) != null ? 1 : 0;
+                }
+                if (hash != null && hash.isEmpty()) {
+                    hashes.remove(key);
+                }
+                return LuaValue.valueOf(removed);
+            }
+            case "HEXISTS":
+                return LuaValue.valueOf(hash(key).containsKey(command.get(2)) ? 1 : 0);
+            case "HLEN":
+                return LuaValue.valueOf(hash(key).size());
+            case "HINCRBY": {
+                long value = Long.parseLong(hash(key).getOrDefault(command.get(2), "0")) + Long.parseLong(command.get(3));
+                hset(key, command.get(2), value);
+                return LuaValue.valueOf(value);
+            }
+            default:
+                throw new UnsupportedOperationException("未实现的Redis命令: " + name);
+        }
+    }
+
+    private LuaValue incrBy(String key, long delta) {
+        long value = Long.parseLong(strings.getOrDefault(key, "0")) + delta;
+        strings.put(key, String.valueOf(value));
+        return LuaValue.valueOf(value);
+    }
+
+    private RBucket<Object> bucket(String key) {
+        return Mockito.mock(RBucket.class, call -> switch (call.getMethod().getName()) {
+            case "get" -> strings.get(key);
+            case "isExists" -> strings.containsKey(key);
+            default -> throw new UnsupportedOperationException(call.getMethod().toString());
+        });
+    }
+
+    private RMap<Object, Object> map(String key) {
+        return Mockito.mock(RMap.class, call -> switch (call.getMethod().getName()) {
+            case "get" -> hash(key).get(String.valueOf(call.getArgument(0, Object.class)));
+            case "isExists" -> hashes.containsKey(key);
+            case "readAllValues" -> new ArrayList<>(hash(key).values());
+            case "readAllMap" -> new HashMap<>(hash(key));
+            default -> throw new UnsupportedOperationException(call.getMethod().toString());
+        });
+    }
+
+    private static LuaValue bulk(String value) {
+        return value == null ? LuaValue.FALSE : LuaValue.valueOf(value);
+    }
+
+    private static LuaTable toLuaArray(List<?> values) {
+        LuaTable table = new LuaTable();
+        for (int i = 0; i < values.size(); i++) {
+            table.set(i + 1, LuaValue.valueOf(String.valueOf(values.get(i))));
+        }
+        return table;
+    }
+
+    private static Object toJava(LuaValue value) {
+        if (value.isnil() || (value.isboolean() && !value.toboolean())) {
+            return null;
+        }
+        if (value.isboolean()) {
+            return 1L;
+        }
+        if (value.type() == LuaValue.TNUMBER) {
+            return (long) value.todouble();
+        }
+        if (value.istable()) {
+            List<Object> list = new ArrayList<>();
+            for (int i = 1; i <= value.length(); i++) {
+                list.add(toJava(value.get(i)));
+            }
+            return list;
+        }
+        return value.tojstring();
+    }
+}
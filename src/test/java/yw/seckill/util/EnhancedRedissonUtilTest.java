@@ -0,0 +1,199 @@
+package yw.seckill.util;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.redisson.api.RLock;
+import org.redisson.api.RedissonClient;
+import org.redisson.misc.CompletableFutureWrapper;
+import org.springframework.test.util.ReflectionTestUtils;
+import yw.seckill.service.LockMonitorService;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * executeWithBatchedLock 的合并执行、超时放弃和执行权交接（Redis锁用Mock代替）
+ */
+class EnhancedRedissonUtilTest {
+
+    private static final String LOCK_KEY = "test:batched";
+
+    private final RLock lock = mock(RLock.class);
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+    private EnhancedRedissonUtil util;
+
+    @BeforeEach
+    void setUp() {
+        RedissonClient redissonClient = mock(RedissonClient.class);
+        when(redissonClient.getLock(anyString())).thenReturn(lock);
+        when(lock.unlockAsync(anyLong())).thenAnswer(invocation -> new CompletableFutureWrapper<>((Void) null));
+        util = new EnhancedRedissonUtil();
+        ReflectionTestUtils.setField(util, "redissonClient", redissonClient);
+        ReflectionTestUtils.setField(util, "lockMonitorService", mock(LockMonitorService.class));
+        ReflectionTestUtils.setField(util, "maxBatch", 32);
+    }
+
+    @Test
+    void sectionsRunOneAtATimeAndEachCallerGetsItsOwnResult() throws Exception {
+        when(lock.tryLock(anyLong(), anyLong(), any(TimeUnit.class))).thenReturn(true);
+        AtomicInteger running = new AtomicInteger();
+        AtomicBoolean overlapped = new AtomicBoolean();
+        List<Future<Integer>> results = new ArrayList<>();
+        for (int i = 0; i < 16; i++) {
+            int value = i;
+            results.add(executor.submit(() -> util.executeWithBatchedLock(LOCK_KEY, 5, -1, TimeUnit.SECONDS, () -> {
+                if (running.incrementAndGet() > 1) {
+                    overlapped.set(true);
+                }
+                running.decrementAndGet();
+                return value;
+            })));
+        }
+        for (int i = 0; i < results.size(); i++) {
+            assertEquals(i, results.get(i).get(5, TimeUnit.SECONDS));
+        }
+        assertFalse(overlapped.get());
+        assertTrue(combiners().isEmpty());
+    }
+
+    @Test
+    void exceptionOnlyFailsItsOwnCaller() {
+        when(lockTryLock()).thenReturn(true);
+        assertThrows(IllegalStateException.class, () -> util.executeWithBatchedLock(LOCK_KEY, 1, -1, TimeUnit.SECONDS,
+            () -> {
+                throw new IllegalStateException("boom");
+            }));
+        assertEquals("ok", util.executeWithBatchedLock(LOCK_KEY, 1, -1, TimeUnit.SECONDS, () -> "ok"));
+    }
+
+    @Test
+    void taskAbandonedAfterWaitTimeIsNeverRunAndQueueIsRemoved() {
+        when(lockTryLock()).thenReturn(false);
+        AtomicBoolean ran = new AtomicBoolean();
+        RuntimeException e = assertThrows(RuntimeException.class,
+            () -> util.executeWithBatchedLock(LOCK_KEY, 50, -1, TimeUnit.MILLISECONDS, () -> ran.getAndSet(true)));
+        assertEquals("获取锁失败: " + LOCK_KEY, e.getMessage());
+        assertFalse(ran.get());
+        assertTrue(combiners().isEmpty());
+    }
+
+    @Test
+    void abandonedTaskIsSkippedWhileLaterWaiterStillRuns() throws Exception {
+        CountDownLatch redisLocked = new CountDownLatch(1);
+        CountDownLatch releaseRedis = new CountDownLatch(1);
+        when(lockTryLock()).thenAnswer(invocation -> {
+            redisLocked.countDown();
+            return releaseRedis.await(5, TimeUnit.SECONDS);
+        });
+
+        // 执行者卡在获取Redis锁上，队列中依次是：执行者自己的任务、会超时放弃的任务、正常等待的任务
+        Future<String> first = executor.submit(() -> util.executeWithBatchedLock(LOCK_KEY, 5, -1, TimeUnit.SECONDS,
+            () -> "first"));
+        assertTrue(redisLocked.await(5, TimeUnit.SECONDS));
+        AtomicBoolean abandonedRan = new AtomicBoolean();
+        Future<?> abandoned = executor.submit(() -> util.executeWithBatchedLock(LOCK_KEY, 100, -1,
+            TimeUnit.MILLISECONDS, () -> abandonedRan.getAndSet(true)));
+        Future<String> last = executor.submit(() -> util.executeWithBatchedLock(LOCK_KEY, 5, -1, TimeUnit.SECONDS,
+            () -> "last"));
+        awaitCondition(() -> queue().size() == 3);
+
+        Exception timeout = assertThrows(Exception.class, () -> abandoned.get(5, TimeUnit.SECONDS));
+        assertEquals("获取锁失败: " + LOCK_KEY, timeout.getCause().getMessage());
+        assertEquals(2, queue().size());
+
+        releaseRedis.countDown();
+        assertEquals("first", first.get(5, TimeUnit.SECONDS));
+        assertEquals("last", last.get(5, TimeUnit.SECONDS));
+        assertFalse(abandonedRan.get());
+        awaitCondition(() -> combiners().isEmpty());
+    }
+
+    @Test
+    void batchLimitHandsOffToQueuedWaiter() throws Exception {
+        ReflectionTestUtils.setField(util, "maxBatch", 1);
+        CountDownLatch redisLocked = new CountDownLatch(1);
+        CountDownLatch releaseRedis = new CountDownLatch(1);
+        AtomicInteger acquisitions = new AtomicInteger();
+        when(lockTryLock()).thenAnswer(invocation -> {
+            if (acquisitions.incrementAndGet() == 1) {
+                redisLocked.countDown();
+                return releaseRedis.await(5, TimeUnit.SECONDS);
+            }
+            return true;
+        });
+
+        List<Future<Integer>> results = new ArrayList<>();
+        results.add(executor.submit(() -> util.executeWithBatchedLock(LOCK_KEY, 5, -1, TimeUnit.SECONDS, () -> 0)));
+        assertTrue(redisLocked.await(5, TimeUnit.SECONDS));
+        for (int i = 1; i < 4; i++) {
+            int value = i;
+            results.add(executor.submit(() -> util.executeWithBatchedLock(LOCK_KEY, 5, -1, TimeUnit.SECONDS,
+                () -> value)));
+        }
+        awaitCondition(() -> queue().size() == 4);
+
+        releaseRedis.countDown();
+        for (int i = 0; i < results.size(); i++) {
+            assertEquals(i, results.get(i).get(5, TimeUnit.SECONDS));
+        }
+        // 每次持锁只执行一个临界区，剩余任务由被唤醒的等待者接手
+        assertEquals(4, acquisitions.get());
+        awaitCondition(() -> combiners().isEmpty());
+    }
+
+    @Test
+    void tieredLocalLockIsRemovedWhenUnused() {
+        when(lockTryLock()).thenReturn(false);
+        assertThrows(RuntimeException.class, () -> util.executeWithTieredLock(LOCK_KEY, 10, -1, TimeUnit.MILLISECONDS,
+            () -> "never"));
+        when(lockTryLock()).thenReturn(true);
+        assertEquals("ok", util.executeWithTieredLock(LOCK_KEY, 1, -1, TimeUnit.SECONDS, () -> "ok"));
+        assertTrue(((Map<?, ?>) ReflectionTestUtils.getField(util, "localLocks")).isEmpty());
+    }
+
+    private boolean lockTryLock() {
+        try {
+            return lock.tryLock(anyLong(), anyLong(), any(TimeUnit.class));
+        } catch (InterruptedException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<String, Object> combiners() {
+        return (Map<String, Object>) ReflectionTestUtils.getField(util, "combiners");
+    }
+
+    private Collection<?> queue() {
+        Object combiner = combiners().get(LOCK_KEY);
+        return combiner == null ? List.of() : (Collection<?>) ReflectionTestUtils.getField(combiner, "queue");
+    }
+
+    private static void awaitCondition(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.nanoTime() < deadline, "等待条件超时");
+            Thread.sleep(5);
+        }
+    }
+}
@@ -0,0 +1,119 @@
+package yw.seckill.util;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import yw.seckill.dto.CreateOrderRequestDTO;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * OrderMessageCodec 的编解码、兼容规则和对升级前JSON消息的识别
+ */
+class OrderMessageCodecTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Test
+    void roundTripKeepsAllFields() {
+        CreateOrderRequestDTO request = new CreateOrderRequestDTO(1001L, 7L, 42L, 1_700_000_000_123L, 99L);
+        byte[] message = OrderMessageCodec.encode(request);
+        assertEquals(OrderMessageCodec.VERSION, message[0]);
+        assertFalse(OrderMessageCodec.isJson(message));
+        assertEquals(request, OrderMessageCodec.decode(message));
+    }
+
+    @Test
+    void roundTripWithoutDeductionIdAndWithExtremeValues() {
+        CreateOrderRequestDTO request = new CreateOrderRequestDTO(0L, Long.MAX_VALUE, -1L, Long.MIN_VALUE);
+        CreateOrderRequestDTO decoded = OrderMessageCodec.decode(OrderMessageCodec.encode(request));
+        assertEquals(request, decoded);
+        assertNull(decoded.deductionId());
+    }
+
+    @Test
+    void unknownFieldsAreSkipped() {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.write(OrderMessageCodec.VERSION);
+        writeVarintField(out, 1, 1001);
+        writeVarintField(out, 9, 123456789);          // 未来新增的varint字段
+        writeVarintField(out, 2, 7);
+        writeVarint(out, 10L << 3 | 2);               // 未来新增的变长字段
+        byte[] payload = "future".getBytes(StandardCharsets.UTF_8);
+        writeVarint(out, payload.length);
+        out.writeBytes(payload);
+        writeVarintField(out, 3, 42);
+        writeVarintField(out, 4, 1_700_000_000_123L);
+
+        CreateOrderRequestDTO decoded = OrderMessageCodec.decode(out.toByteArray());
+        assertEquals(new CreateOrderRequestDTO(1001L, 7L, 42L, 1_700_000_000_123L), decoded);
+    }
+
+    @Test
+    void truncatedMessageIsRejected() {
+        // 只含必填字段：任何截断都会丢失必填字段（可选的 deductionId 整个缺失仍是合法消息）
+        byte[] message = OrderMessageCodec.encode(new CreateOrderRequestDTO(1001L, 7L, 42L, 1_700_000_000_123L));
+        for (int length = 2; length < message.length; length++) {
+            byte[] truncated = Arrays.copyOf(message, length);
+            // 截断在字段中间时报截断，恰好截在字段边界时缺少必填字段
+            assertThrows(IllegalArgumentException.class, () -> OrderMessageCodec.decode(truncated),
+                "length=" + length);
+        }
+    }
+
+    @Test
+    void truncatedLengthDelimitedFieldIsRejected() {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.write(OrderMessageCodec.VERSION);
+        writeVarint(out, 10L << 3 | 2);
+        writeVarint(out, 100);
+        out.writeBytes(new byte[] {1, 2, 3});
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class,
+            () -> OrderMessageCodec.decode(out.toByteArray()));
+        assertEquals("下单消息被截断", e.getMessage());
+    }
+
+    @Test
+    void unsupportedVersionAndEmptyMessageAreRejected() {
+        byte[] message = OrderMessageCodec.encode(new CreateOrderRequestDTO(1001L, 7L, 42L, 1L));
+        message[0] = (byte) (OrderMessageCodec.VERSION + 1);
+        assertThrows(IllegalArgumentException.class, () -> OrderMessageCodec.decode(message));
+        assertThrows(IllegalArgumentException.class, () -> OrderMessageCodec.decode(new byte[0]));
+    }
+
+    @Test
+    void legacyJsonMessageIsRecognizedAndParsed() throws Exception {
+        byte[] legacy = "{\"userId\":1001,\"activityId\":7,\"productId\":42,\"timestamp\":1700000000123}"
+            .getBytes(StandardCharsets.UTF_8);
+        assertTrue(OrderMessageCodec.isJson(legacy));
+        assertEquals("{\"userId\":1001,\"activityId\":7,\"productId\":42,\"timestamp\":1700000000123}",
+            OrderMessageCodec.describe(legacy));
+        CreateOrderRequestDTO decoded = objectMapper.readValue(legacy, CreateOrderRequestDTO.class);
+        assertEquals(new CreateOrderRequestDTO(1001L, 7L, 42L, 1_700_000_000_123L), decoded);
+
+        CreateOrderRequestDTO withDeduction = new CreateOrderRequestDTO(1001L, 7L, 42L, 1_700_000_000_123L, 99L);
+        byte[] json = objectMapper.writeValueAsBytes(withDeduction);
+        assertTrue(OrderMessageCodec.isJson(json));
+        assertEquals(withDeduction, objectMapper.readValue(json, CreateOrderRequestDTO.class));
+    }
+
+    private static void writeVarintField(ByteArrayOutputStream out, int field, long value) {
+        writeVarint(out, (long) field << 3);
+        writeVarint(out, value);
+    }
+
+    private static void writeVarint(ByteArrayOutputStream out, long value) {
+        while ((value & ~0x7FL) != 0) {
+            out.write((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.write((int) value);
+    }
+}